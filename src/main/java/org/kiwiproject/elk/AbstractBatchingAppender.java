@@ -0,0 +1,281 @@
+package org.kiwiproject.elk;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static org.kiwiproject.elk.ElkFlightRecorderEvents.TRANSPORT_STAGE;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.encoder.Encoder;
+import com.google.common.collect.Queues;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.kiwiproject.elk.ElkFlightRecorderEvents.BatchFlushEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Base class for appenders that buffer events in a bounded queue, and send them in batches
+ * from a single sender thread.
+ * <p>
+ * Events are encoded on the sender thread, not on the logging thread. A batch is sent when it
+ * contains {@code maxBatchSize} events, or when {@code flushInterval} has elapsed since the
+ * first event in the batch was taken from the queue, whichever comes first. When the queue is
+ * full, events are dropped, never blocking the logging thread.
+ * <p>
+ * When {@code virtualThreads} is set, the sender thread, and any threads subclasses create using
+ * {@link #newThreadFactory(String)}, are virtual threads. Either way, stopping waits for the sender
+ * thread and the subclass's threads to finish, up to {@code shutdownGracePeriod}, and then interrupts
+ * any still running.
+ * <p>
+ * Sending each batch, and dropping events, are recorded as Flight Recorder events, when enabled.
+ */
+@Getter(AccessLevel.PACKAGE)
+@Setter(AccessLevel.PACKAGE)
+abstract class AbstractBatchingAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+
+    static final int DEFAULT_QUEUE_SIZE = 8192;
+    static final int DEFAULT_MAX_BATCH_SIZE = 500;
+    static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofSeconds(1);
+    static final Duration DEFAULT_SHUTDOWN_GRACE_PERIOD = Duration.ofSeconds(5);
+
+    private static final int DROPPED_WARN_FREQUENCY = 1000;
+    private static final long STOP_CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private Encoder<ILoggingEvent> encoder;
+    private int queueSize = DEFAULT_QUEUE_SIZE;
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private Duration flushInterval = DEFAULT_FLUSH_INTERVAL;
+    private Duration shutdownGracePeriod = DEFAULT_SHUTDOWN_GRACE_PERIOD;
+    private ElkCircuitBreaker circuitBreaker;
+    private LossAccountingFilter lossAccounting;
+    private boolean virtualThreads;
+
+    @Setter(AccessLevel.NONE)
+    private final LongAdder droppedEventCount = new LongAdder();
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private BlockingQueue<ILoggingEvent> queue;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Thread senderThread;
+
+    @Override
+    public void start() {
+        if (isNull(encoder)) {
+            addError("No encoder was configured for appender " + name);
+            return;
+        }
+
+        encoder.setContext(getContext());
+        if (!encoder.isStarted()) {
+            encoder.start();
+        }
+
+        if (!startSender()) {
+            return;
+        }
+
+        queue = new ArrayBlockingQueue<>(queueSize);
+        super.start();
+
+        senderThread = ElkThreads.newThread(virtualThreads,
+                "elk-" + getTransportName() + "-sender-" + name, this::sendUntilStopped);
+        senderThread.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+
+        super.stop();
+
+        try {
+            senderThread.join(shutdownGracePeriod.toMillis());
+            if (senderThread.isAlive()) {
+                addWarn("Sender thread did not finish within " + shutdownGracePeriod + "; interrupting it." +
+                        " Some queued events have not been sent");
+                senderThread.interrupt();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            addWarn("Interrupted waiting for queued events to be sent", e);
+        }
+
+        stopSender();
+        encoder.stop();
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        if (queue.offer(event)) {
+            return;
+        }
+
+        droppedEventCount.increment();
+        recordFailure();
+        if (nonNull(lossAccounting)) {
+            lossAccounting.recordDropped();
+        }
+        ElkFlightRecorderEvents.recordDrop(TRANSPORT_STAGE, "queue full", event);
+        var dropped = droppedEventCount.sum();
+        if (dropped % DROPPED_WARN_FREQUENCY == 1) {
+            addWarn("Dropped " + dropped + " events (and counting...) because the queue is full [" + queueSize + "]");
+        }
+    }
+
+    private void sendUntilStopped() {
+        var batch = new ArrayList<ILoggingEvent>(maxBatchSize);
+
+        while (isStarted() || !queue.isEmpty()) {
+            try {
+                fillBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                sendQuietly(batch);
+                return;
+            }
+
+            sendQuietly(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Fill the batch until it is full or the flush interval elapses. While waiting, periodically
+     * check whether the appender was stopped, so that stopping does not wait for the flush interval.
+     */
+    private void fillBatch(List<ILoggingEvent> batch) throws InterruptedException {
+        var deadline = System.nanoTime() + flushInterval.toNanos();
+
+        while (batch.size() < maxBatchSize && isStarted()) {
+            var remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+
+            Queues.drain(queue, batch, maxBatchSize - batch.size(),
+                    Math.min(remaining, STOP_CHECK_INTERVAL_NANOS), TimeUnit.NANOSECONDS);
+        }
+
+        queue.drainTo(batch, maxBatchSize - batch.size());
+    }
+
+    private void sendQuietly(List<ILoggingEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        var flush = new BatchFlushEvent();
+        flush.begin();
+        try {
+            sendBatch(batch);
+            recordFlush(flush, batch.size(), true);
+        } catch (InterruptedException e) {
+            // Stopping, not a transport failure, so the circuit breaker is not told
+            Thread.currentThread().interrupt();
+            recordFlush(flush, batch.size(), false);
+            droppedEventCount.add(batch.size());
+            ElkFlightRecorderEvents.recordDrop(TRANSPORT_STAGE, "interrupted", batch.size());
+            addWarn("Interrupted sending batch of " + batch.size() + " events. Dropping them.");
+        } catch (Exception e) {
+            recordFlush(flush, batch.size(), false);
+            droppedEventCount.add(batch.size());
+            recordFailure();
+            ElkFlightRecorderEvents.recordDrop(TRANSPORT_STAGE, "batch failed", batch.size());
+            addWarn("Unable to send batch of " + batch.size() + " events. Dropping them.", e);
+        }
+    }
+
+    private void recordFlush(BatchFlushEvent flush, int eventCount, boolean succeeded) {
+        flush.end();
+        if (flush.shouldCommit()) {
+            flush.transport = getTransportName();
+            flush.eventCount = eventCount;
+            flush.succeeded = succeeded;
+            flush.commit();
+        }
+    }
+
+    /**
+     * Encode the given event using the configured encoder.
+     */
+    protected byte[] encode(ILoggingEvent event) {
+        return encoder.encode(event);
+    }
+
+    /**
+     * Report to the circuit breaker, if there is one, that events were delivered.
+     * Subclasses call this once delivery is confirmed.
+     */
+    protected void recordSuccess() {
+        if (nonNull(circuitBreaker)) {
+            circuitBreaker.recordSuccess();
+        }
+    }
+
+    /**
+     * Report to the circuit breaker, if there is one, that events could not be delivered.
+     * This is called when the queue is full and when {@link #sendBatch(List)} throws an exception;
+     * subclasses also call this when delivery fails later.
+     */
+    protected void recordFailure() {
+        if (nonNull(circuitBreaker)) {
+            circuitBreaker.recordFailure();
+        }
+    }
+
+    /**
+     * Create a factory of threads for the subclass's own I/O work, such as retries, which are
+     * virtual threads when {@code virtualThreads} is set.
+     */
+    protected ThreadFactory newThreadFactory(String threadName) {
+        return ElkThreads.newThreadFactory(virtualThreads, threadName);
+    }
+
+    /**
+     * The number of events currently waiting in the queue.
+     */
+    int getQueuedEventCount() {
+        return isNull(queue) ? 0 : queue.size();
+    }
+
+    /**
+     * A short name for the transport, used to name the sender thread.
+     */
+    protected abstract String getTransportName();
+
+    /**
+     * Prepare to send batches, for example by opening connections or files.
+     * Called before the sender thread starts.
+     *
+     * @return true if ready to send, false if the appender should not start
+     */
+    protected abstract boolean startSender();
+
+    /**
+     * Send the given batch of events. Called only from the sender thread.
+     * <p>
+     * The list is reused after this method returns, so implementations must not keep a reference to it.
+     * If this throws an exception, all the events in the batch are counted as dropped.
+     */
+    protected abstract void sendBatch(List<ILoggingEvent> batch) throws Exception;
+
+    /**
+     * Release any resources acquired by {@link #startSender()}. Called after the sender thread has finished.
+     */
+    protected abstract void stopSender();
+}
@@ -0,0 +1,155 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static java.util.stream.Collectors.toMap;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+import static org.kiwiproject.collect.KiwiMaps.isNullOrEmpty;
+
+import ch.qos.logback.core.spi.DeferredProcessingAware;
+import io.dropwizard.logging.common.AbstractAppenderFactory;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import net.logstash.logback.composite.GlobalCustomFieldsJsonProvider;
+import org.kiwiproject.config.provider.ElkLoggerConfigProvider;
+import org.kiwiproject.config.provider.ResolvedBy;
+import org.kiwiproject.json.JsonHelper;
+import tools.jackson.databind.node.JsonNodeFactory;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Base class for the ELK appender factories, containing the configuration they share: the Logstash
+ * host and port (falling back to {@link ElkLoggerConfigProvider}), custom fields, field names,
+ * disabled fields, and encoding.
+ *
+ * @param <E> the type of event
+ * @see ElkAppenderFactory
+ * @see ElkAccessAppenderFactory
+ */
+@Setter
+@Getter(AccessLevel.PACKAGE)  // getters are visible with package scope for testing
+public abstract class AbstractElkAppenderFactory<E extends DeferredProcessingAware> extends AbstractAppenderFactory<E> {
+
+    static final JsonHelper JSON_HELPER = JsonHelper.newDropwizardJsonHelper();
+
+    private static final String ELK_PROVIDER_ERROR_MESSAGE_TEMPLATE =
+            "Unable to get ELK host and/or port from ElkLoggerConfigProvider." +
+                    " Host resolution: %s, Port resolution: %s";
+
+    private String host;
+    private Integer port;
+    private boolean includeContext;
+    private Map<String, String> customFields;
+    private Map<String, String> fieldNames;
+    private Set<String> disabledFields;
+    private ElkEncoding encoding;
+    @Setter(AccessLevel.NONE) private ElkLoggerConfigProvider elkLoggerConfigProvider;  // don't allow setting this
+
+    protected AbstractElkAppenderFactory() {
+        includeContext = true;
+        customFields = new HashMap<>();
+        fieldNames = new HashMap<>();
+        disabledFields = new HashSet<>();
+        encoding = ElkEncoding.JSON;
+        elkLoggerConfigProvider = ElkLoggerConfigProvider.builder().build();
+    }
+
+    /**
+     * If no custom fields are configured on the factory, use the custom fields
+     * provided by the {@link ElkLoggerConfigProvider}, if any.
+     */
+    void resolveCustomFields() {
+        var providerCustomFields = elkLoggerConfigProvider.getCustomFields();
+        if (isNullOrEmpty(customFields) && nonNull(providerCustomFields)) {
+            customFields = new HashMap<>(providerCustomFields);
+        }
+    }
+
+    /**
+     * If the host or port is not configured on the factory, get it from the {@link ElkLoggerConfigProvider}.
+     *
+     * @throws IllegalStateException if the host or port cannot be provided, or if the port is invalid
+     */
+    void resolveHostAndPort() {
+        Map<String, ResolvedBy> resolvedBy = elkLoggerConfigProvider.getResolvedBy();
+        var hostResolvedBy = resolvedBy.get("host");
+        var portResolvedBy = resolvedBy.get("port");
+
+        if (isBlank(host)) {
+            checkState(canProvideHost(resolvedBy),
+                    ELK_PROVIDER_ERROR_MESSAGE_TEMPLATE, hostResolvedBy, portResolvedBy);
+
+            host = elkLoggerConfigProvider.getHost();
+        }
+
+        if (isNull(port)) {
+            checkState(canProvidePort(resolvedBy),
+                    ELK_PROVIDER_ERROR_MESSAGE_TEMPLATE, hostResolvedBy, portResolvedBy);
+
+            port = elkLoggerConfigProvider.getPort();
+        }
+
+        checkState(port > 0 && port < 65536, "port %s is not a valid port (must be in range 1-65535)", port);
+    }
+
+    private static boolean canProvideHost(Map<String, ResolvedBy> resolvedBy) {
+        return canProvide(resolvedBy, "host");
+    }
+
+    private static boolean canProvidePort(Map<String, ResolvedBy> resolvedBy) {
+        return canProvide(resolvedBy, "port");
+    }
+
+    private static boolean canProvide(Map<String, ResolvedBy> resolvedBy, String property) {
+        return resolvedBy.get(property) != ResolvedBy.NONE;
+    }
+
+    Optional<String> getCustomFieldsAsJson() {
+        var filteredCustomFields = getFilteredCustomFields();
+
+        return filteredCustomFields.isEmpty() ?
+                Optional.empty() : Optional.of(JSON_HELPER.toJson(filteredCustomFields));
+    }
+
+    /**
+     * Create a provider for the custom fields, if there are any. The provider is given an
+     * already-parsed node, so it works with every encoding, unlike a custom fields JSON
+     * string, which binary mappers cannot parse.
+     */
+    Optional<GlobalCustomFieldsJsonProvider<E>> newCustomFieldsProvider() {
+        var filteredCustomFields = getFilteredCustomFields();
+        if (filteredCustomFields.isEmpty()) {
+            return Optional.empty();
+        }
+
+        var customFieldsNode = JsonNodeFactory.instance.objectNode();
+        filteredCustomFields.forEach(customFieldsNode::put);
+
+        var customFieldsProvider = new GlobalCustomFieldsJsonProvider<E>();
+        customFieldsProvider.setCustomFieldsNode(customFieldsNode);
+        return Optional.of(customFieldsProvider);
+    }
+
+    Map<String, String> getFilteredCustomFields() {
+        if (isNullOrEmpty(customFields)) {
+            return Map.of();
+        }
+
+        return customFields.entrySet()
+                .stream()
+                .filter(entry -> isNotBlank(entry.getKey()) && isNotBlank(entry.getValue()))
+                .collect(toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    Map<String, String> getFieldNameMap() {
+        return isNull(fieldNames) ? Map.of() : fieldNames;
+    }
+}
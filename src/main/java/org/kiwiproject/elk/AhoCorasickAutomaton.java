@@ -0,0 +1,155 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * A deterministic Aho-Corasick automaton, which finds every occurrence of a set of keywords in a
+ * single pass over a string, with one table lookup per character however many keywords there are.
+ * <p>
+ * To keep the transition table small, the alphabet is reduced to the characters that occur in the
+ * keywords, plus one class for all other characters. Searching does not allocate.
+ */
+class AhoCorasickAutomaton {
+
+    static final int ROOT = 0;
+
+    private static final int[] NO_MATCHES = new int[0];
+    private static final int ASCII_SIZE = 128;
+    private static final int OTHER_CLASS = 0;
+
+    private final int[] asciiClasses;
+    private final char[] nonAsciiChars;
+    private final int[] nonAsciiClasses;
+    private final int classCount;
+    private final int[] transitions;
+    private final int[][] matches;
+    private final int[] keywordLengths;
+
+    /**
+     * Build the automaton for the given keywords. A keyword's index in the list identifies it in
+     * {@link #matches(int)}.
+     *
+     * @param keywords the keywords to find, none of which may be empty
+     */
+    AhoCorasickAutomaton(List<String> keywords) {
+        keywordLengths = new int[keywords.size()];
+
+        // Number the distinct characters, leaving class 0 for characters not in any keyword
+        var chars = new TreeSet<Character>();
+        for (var i = 0; i < keywords.size(); i++) {
+            var keyword = keywords.get(i);
+            checkArgument(!keyword.isEmpty(), "keywords must not be empty");
+            keywordLengths[i] = keyword.length();
+            keyword.chars().forEach(c -> chars.add((char) c));
+        }
+
+        asciiClasses = new int[ASCII_SIZE];
+        var nonAscii = chars.stream().filter(c -> c >= ASCII_SIZE).toList();
+        nonAsciiChars = new char[nonAscii.size()];
+        nonAsciiClasses = new int[nonAscii.size()];
+        var nextClass = 1;
+        for (var c : chars) {
+            if (c < ASCII_SIZE) {
+                asciiClasses[c] = nextClass++;
+            }
+        }
+        for (var i = 0; i < nonAscii.size(); i++) {
+            nonAsciiChars[i] = nonAscii.get(i);
+            nonAsciiClasses[i] = nextClass++;
+        }
+        classCount = nextClass;
+
+        // Build the trie, with -1 for missing transitions
+        var maxStates = 1 + keywords.stream().mapToInt(String::length).sum();
+        var table = new int[maxStates * classCount];
+        Arrays.fill(table, -1);
+        var outputs = new ArrayList<List<Integer>>();
+        outputs.add(new ArrayList<>());
+        var stateCount = 1;
+        for (var i = 0; i < keywords.size(); i++) {
+            var state = ROOT;
+            for (var c : keywords.get(i).toCharArray()) {
+                var index = state * classCount + classOf(c);
+                if (table[index] < 0) {
+                    table[index] = stateCount++;
+                    outputs.add(new ArrayList<>());
+                }
+                state = table[index];
+            }
+            outputs.get(state).add(i);
+        }
+
+        // Turn it into a DFA breadth-first, so the failure state of each state is complete before it is needed
+        var failures = new int[stateCount];
+        var queue = new ArrayDeque<Integer>();
+        for (var c = 0; c < classCount; c++) {
+            var next = table[c];
+            if (next < 0) {
+                table[c] = ROOT;
+            } else {
+                failures[next] = ROOT;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            var failure = failures[state];
+            outputs.get(state).addAll(outputs.get(failure));
+            for (var c = 0; c < classCount; c++) {
+                var index = state * classCount + c;
+                var next = table[index];
+                var failureNext = table[failure * classCount + c];
+                if (next < 0) {
+                    table[index] = failureNext;
+                } else {
+                    failures[next] = failureNext;
+                    queue.add(next);
+                }
+            }
+        }
+
+        transitions = Arrays.copyOf(table, stateCount * classCount);
+        matches = new int[stateCount][];
+        for (var state = 0; state < stateCount; state++) {
+            var output = outputs.get(state);
+            matches[state] = output.isEmpty() ? NO_MATCHES : output.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * @return the state after reading the given character in the given state
+     */
+    int next(int state, char c) {
+        return transitions[state * classCount + classOf(c)];
+    }
+
+    /**
+     * @return the indexes of the keywords that end at the last character read to reach the given
+     * state, which is empty for most states
+     */
+    int[] matches(int state) {
+        return matches[state];
+    }
+
+    int keywordLength(int keyword) {
+        return keywordLengths[keyword];
+    }
+
+    int stateCount() {
+        return matches.length;
+    }
+
+    private int classOf(char c) {
+        if (c < ASCII_SIZE) {
+            return asciiClasses[c];
+        }
+        var index = Arrays.binarySearch(nonAsciiChars, c);
+        return index < 0 ? OTHER_CLASS : nonAsciiClasses[index];
+    }
+}
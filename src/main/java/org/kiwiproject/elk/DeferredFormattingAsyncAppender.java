@@ -0,0 +1,119 @@
+package org.kiwiproject.elk;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * An {@link AsyncAppender} that, when all the arguments of an event are immutable, leaves
+ * formatting the message to the worker thread instead of doing it on the logging thread.
+ * <p>
+ * Before queueing an event, {@link AsyncAppender} calls
+ * {@link ILoggingEvent#prepareForDeferredProcessing()}, which formats the message so that later
+ * changes to mutable arguments are not seen. Arguments that cannot change need no such protection,
+ * so for those events only the thread name and MDC, which do depend on the logging thread, are
+ * captured before queueing. The message is formatted (once, and cached by the event) when the
+ * encoder asks for it on the worker thread.
+ * <p>
+ * The following are considered immutable: {@code null}, {@link String}, boxed primitives,
+ * {@link BigInteger}, {@link BigDecimal}, enums, {@link UUID}, the types in {@code java.time},
+ * and records whose components are all declared as immutable types. Events with any other
+ * argument are prepared eagerly, exactly as {@link AsyncAppender} does.
+ */
+class DeferredFormattingAsyncAppender extends FlightRecordingAsyncAppender {
+
+    private static final Set<Class<?>> IMMUTABLE_TYPES = Set.of(
+            String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class,
+            Long.class, Float.class, Double.class, BigInteger.class, BigDecimal.class, UUID.class);
+
+    private static final ClassValue<Boolean> IMMUTABLE = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return isImmutableType(type, new HashSet<>());
+        }
+    };
+
+    @Override
+    protected void preprocess(ILoggingEvent event) {
+        if (event instanceof LoggingEvent loggingEvent && canDeferFormatting(loggingEvent)) {
+            loggingEvent.getThreadName();
+            loggingEvent.getMDCPropertyMap();
+            if (isIncludeCallerData()) {
+                loggingEvent.getCallerData();
+            }
+            return;
+        }
+
+        super.preprocess(event);
+    }
+
+    private static boolean canDeferFormatting(LoggingEvent event) {
+        var arguments = event.getArgumentArray();
+        return isNull(arguments) || areImmutable(arguments);
+    }
+
+    static boolean areImmutable(Object[] arguments) {
+        for (var argument : arguments) {
+            if (!isImmutable(argument)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isImmutable(Object argument) {
+        return isNull(argument) || IMMUTABLE.get(argument.getClass());
+    }
+
+    /**
+     * Only exact classes are checked, since a subclass of e.g. {@link BigDecimal} can be mutable.
+     * Record component types are checked as declared, so they must also be final (or an enum or
+     * primitive) for any value of that type to be immutable. A record that (indirectly) contains
+     * itself is immutable if its other components are.
+     */
+    private static boolean isImmutableType(Class<?> type, Set<Class<?>> visiting) {
+        if (type.isPrimitive() || IMMUTABLE_TYPES.contains(type) || isEnum(type)) {
+            return true;
+        }
+
+        if ("java.time".equals(type.getPackageName())) {
+            return true;
+        }
+
+        if (!type.isRecord()) {
+            return false;
+        }
+
+        if (!visiting.add(type)) {
+            return true;
+        }
+
+        return Arrays.stream(type.getRecordComponents())
+                .map(RecordComponent::getType)
+                .allMatch(componentType -> isFinal(componentType) && isImmutableType(componentType, visiting));
+    }
+
+    private static boolean isFinal(Class<?> type) {
+        return type.isPrimitive() || type.isEnum() || Modifier.isFinal(type.getModifiers());
+    }
+
+    /**
+     * An enum constant with a body is an anonymous subclass of its enum, for which
+     * {@link Class#isEnum()} is false.
+     */
+    private static boolean isEnum(Class<?> type) {
+        return type.isEnum() || (nonNull(type.getSuperclass()) && type.getSuperclass().isEnum());
+    }
+}
@@ -0,0 +1,221 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import ch.qos.logback.core.encoder.Encoder;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import net.logstash.logback.encoder.StreamingEncoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of direct {@link ByteBuffer}s that events are encoded into, so that each encoded event does
+ * not become a new array on the heap that lives until it has been sent.
+ * <p>
+ * Buffers come in power-of-two size classes, from {@value #MIN_CLASS_SIZE} bytes to
+ * {@value #MAX_CLASS_SIZE} bytes. An event is encoded into a buffer of the class that fits twice the
+ * moving average of encoded sizes, so most events fit first time; one that does not is copied into a
+ * buffer of a larger class as it is encoded. Buffers must be {@link #release(ByteBuffer) released} once
+ * they have been written to the socket. Released buffers are kept for reuse until the pooled buffers
+ * reach a maximum total size; beyond that, and buffers larger than the largest class, are left to the
+ * garbage collector.
+ */
+class DirectBufferPool implements MetricSet {
+
+    static final String METRICS_PREFIX = MetricRegistry.name(ElkAppenderFactory.class, "bufferPool");
+
+    static final int MIN_CLASS_SIZE = 256;
+    static final int MAX_CLASS_SIZE = 64 * 1024;
+    static final long DEFAULT_MAX_POOLED_BYTES = 16 * 1024 * 1024;
+
+    private static final int MIN_CLASS_SHIFT = Integer.numberOfTrailingZeros(MIN_CLASS_SIZE);
+    private static final int CLASS_COUNT = Integer.numberOfTrailingZeros(MAX_CLASS_SIZE) - MIN_CLASS_SHIFT + 1;
+    private static final int MAX_BUFFERS_PER_CLASS = 1024;
+    private static final double AVERAGE_WEIGHT = 0.05;
+
+    private static final DirectBufferPool SHARED = new DirectBufferPool(DEFAULT_MAX_POOLED_BYTES);
+
+    private final ArrayBlockingQueue<ByteBuffer>[] classes;
+    private final long maxPooledBytes;
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final Counter hits = new Counter();
+    private final Counter misses = new Counter();
+
+    /**
+     * Updated without synchronization, since losing an occasional update to a moving average does not matter.
+     */
+    private volatile double averageSize = MIN_CLASS_SIZE / 2.0;
+
+    @SuppressWarnings("unchecked")
+    DirectBufferPool(long maxPooledBytes) {
+        checkArgument(maxPooledBytes >= 0, "maxPooledBytes must not be negative");
+        this.maxPooledBytes = maxPooledBytes;
+        this.classes = new ArrayBlockingQueue[CLASS_COUNT];
+        for (var i = 0; i < CLASS_COUNT; i++) {
+            var maxBuffers = Math.min(maxPooledBytes / classSize(i), MAX_BUFFERS_PER_CLASS);
+            classes[i] = new ArrayBlockingQueue<>((int) Math.max(maxBuffers, 1));
+        }
+    }
+
+    /**
+     * @return the pool shared by the appenders in this JVM
+     */
+    static DirectBufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Take a cleared buffer with at least the given capacity, which must be released once used.
+     */
+    ByteBuffer acquire(int minCapacity) {
+        if (minCapacity > MAX_CLASS_SIZE) {
+            misses.inc();
+            return ByteBuffer.allocateDirect(minCapacity);
+        }
+
+        var sizeClass = sizeClassFor(minCapacity);
+        var buffer = classes[sizeClass].poll();
+        if (buffer == null) {
+            misses.inc();
+            return ByteBuffer.allocateDirect(classSize(sizeClass));
+        }
+
+        hits.inc();
+        pooledBytes.addAndGet(-buffer.capacity());
+        return buffer.clear();
+    }
+
+    /**
+     * Return a buffer taken from this pool, once it is no longer used.
+     */
+    void release(ByteBuffer buffer) {
+        if (!isPoolable(buffer)) {
+            return;
+        }
+
+        var capacity = buffer.capacity();
+        if (pooledBytes.addAndGet(capacity) > maxPooledBytes || !classes[sizeClassFor(capacity)].offer(buffer)) {
+            pooledBytes.addAndGet(-capacity);
+        }
+    }
+
+    /**
+     * Encode an event into a pooled buffer, which must be released once written.
+     *
+     * @return the buffer, flipped so that the encoded event is between its position and limit
+     */
+    <E> ByteBuffer encode(Encoder<E> encoder, E event) {
+        ByteBuffer buffer;
+        if (encoder instanceof StreamingEncoder<?>) {
+            var outputStream = new BufferOutputStream(acquire((int) (averageSize * 2)));
+            var encoded = false;
+            try {
+                @SuppressWarnings("unchecked")
+                var streamingEncoder = (StreamingEncoder<E>) encoder;
+                streamingEncoder.encode(event, outputStream);
+                encoded = true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                if (!encoded) {
+                    release(outputStream.buffer);
+                }
+            }
+            buffer = outputStream.buffer.flip();
+        } else {
+            var bytes = encoder.encode(event);
+            buffer = acquire(bytes.length).put(bytes).flip();
+        }
+
+        averageSize += AVERAGE_WEIGHT * (buffer.remaining() - averageSize);
+        return buffer;
+    }
+
+    long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    long getHitCount() {
+        return hits.getCount();
+    }
+
+    long getMissCount() {
+        return misses.getCount();
+    }
+
+    double getAverageSize() {
+        return averageSize;
+    }
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        return Map.of(
+                "pooledBytes", (Gauge<Long>) this::getPooledBytes,
+                "averageEventSize", (Gauge<Double>) this::getAverageSize,
+                "hits", hits,
+                "misses", misses
+        );
+    }
+
+    private static boolean isPoolable(ByteBuffer buffer) {
+        var capacity = buffer.capacity();
+        return buffer.isDirect()
+                && capacity >= MIN_CLASS_SIZE
+                && capacity <= MAX_CLASS_SIZE
+                && Integer.bitCount(capacity) == 1;
+    }
+
+    private static int sizeClassFor(int capacity) {
+        var shift = 32 - Integer.numberOfLeadingZeros(Math.max(capacity, MIN_CLASS_SIZE) - 1);
+        return shift - MIN_CLASS_SHIFT;
+    }
+
+    private static int classSize(int sizeClass) {
+        return MIN_CLASS_SIZE << sizeClass;
+    }
+
+    /**
+     * Writes into a pooled buffer, replacing it with a larger one when it is full.
+     */
+    private class BufferOutputStream extends OutputStream {
+
+        private ByteBuffer buffer;
+
+        BufferOutputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            ensureRemaining(1);
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            ensureRemaining(length);
+            buffer.put(bytes, offset, length);
+        }
+
+        private void ensureRemaining(int length) {
+            if (buffer.remaining() >= length) {
+                return;
+            }
+
+            var larger = acquire(Math.max(buffer.capacity() * 2, buffer.position() + length));
+            larger.put(buffer.flip());
+            release(buffer);
+            buffer = larger;
+        }
+    }
+}
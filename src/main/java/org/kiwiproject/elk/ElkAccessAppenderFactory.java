@@ -0,0 +1,256 @@
+package org.kiwiproject.elk;
+
+import static java.util.Objects.isNull;
+
+import ch.qos.logback.access.common.spi.IAccessEvent;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.encoder.Encoder;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import io.dropwizard.logging.common.async.AsyncAppenderFactory;
+import io.dropwizard.logging.common.filter.LevelFilterFactory;
+import io.dropwizard.logging.common.layout.LayoutFactory;
+import io.dropwizard.util.Duration;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import net.logstash.logback.appender.LogstashAccessTcpSocketAppender;
+import net.logstash.logback.composite.ContextJsonProvider;
+import net.logstash.logback.composite.FieldNamesAware;
+import net.logstash.logback.composite.JsonProvider;
+import net.logstash.logback.composite.LogstashVersionJsonProvider;
+import net.logstash.logback.composite.accessevent.AccessEventFormattedTimestampJsonProvider;
+import net.logstash.logback.composite.accessevent.AccessEventJsonProviders;
+import net.logstash.logback.composite.accessevent.AccessMessageJsonProvider;
+import net.logstash.logback.composite.accessevent.ContentLengthJsonProvider;
+import net.logstash.logback.composite.accessevent.ElapsedTimeJsonProvider;
+import net.logstash.logback.composite.accessevent.MethodJsonProvider;
+import net.logstash.logback.composite.accessevent.ProtocolJsonProvider;
+import net.logstash.logback.composite.accessevent.RemoteHostJsonProvider;
+import net.logstash.logback.composite.accessevent.RemoteUserJsonProvider;
+import net.logstash.logback.composite.accessevent.RequestedUriJsonProvider;
+import net.logstash.logback.composite.accessevent.RequestedUrlJsonProvider;
+import net.logstash.logback.composite.accessevent.StatusCodeJsonProvider;
+import net.logstash.logback.encoder.AccessEventCompositeJsonEncoder;
+import net.logstash.logback.fieldnames.LogstashAccessFieldNames;
+import org.kiwiproject.config.provider.ElkLoggerConfigProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An implementation of {@link io.dropwizard.logging.common.AppenderFactory AppenderFactory}
+ * that sends request (access) log events to Logstash.
+ * <p>
+ * This is the request log counterpart of {@link ElkAppenderFactory}, and shares its host, port,
+ * custom fields, field names, and encoding configuration. Dropwizard uses a single registry of
+ * appender types for application and request logs, so this has its own type, {@code elk-access}:
+ * <pre>
+ * server:
+ *   requestLog:
+ *     appenders:
+ *       - type: elk-access
+ *         customFields:
+ *           service: order-service
+ * </pre>
+ * Access events always have the same shape, so instead of the general purpose encoder used for
+ * access events, this uses a fixed list of field providers, each writing one field directly from
+ * the event. The {@code message} field, which is a formatted Apache-style copy of the other fields
+ * and is the most expensive field to produce, is omitted unless {@code includeMessage} is true.
+ * <p>
+ * The available configuration properties are listed below.
+ * <table>
+ *     <caption>Configuration properties</caption>
+ *     <tr>
+ *         <td>Name</td>
+ *         <td>Default</td>
+ *         <td>Description</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code host}</td>
+ *         <td>{@code null}</td>
+ *         <td>
+ *             The Logstash host. If not provided, then fall back to the value
+ *             provided by {@link ElkLoggerConfigProvider}.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code port}</td>
+ *         <td>{@code null}</td>
+ *         <td>
+ *             The Logstash port. If not provided, then fall back to the value
+ *             provided by {@link ElkLoggerConfigProvider}.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code useUdp}</td>
+ *         <td>{@code false}</td>
+ *         <td>Whether to send each event in its own UDP datagram instead of using TCP.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code keepAliveInterval}</td>
+ *         <td>{@code null}</td>
+ *         <td>
+ *             If set, keep the TCP connection alive when nothing has been written for this long.
+ *             See {@link TcpTransportFactory}.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code maxConnectionAge}</td>
+ *         <td>{@code null}</td>
+ *         <td>If set, reconnect after writing an event once the TCP connection is this old.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code includeContext}</td>
+ *         <td>{@code true}</td>
+ *         <td>Whether to include the logging context in access events.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code includeMessage}</td>
+ *         <td>{@code false}</td>
+ *         <td>Whether to include the Apache-style {@code message} field.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code customFields}</td>
+ *         <td>empty map</td>
+ *         <td>
+ *             Custom fields that will be included in access events.
+ *             If not provided, then fall back to the value provided
+ *             by {@link ElkLoggerConfigProvider}.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code fieldNames}</td>
+ *         <td>empty map</td>
+ *         <td>
+ *             Map containing Logstash field name mappings, e.g. {@code statusCode}, {@code requestedUri},
+ *             or {@code elapsedTime}. These override the default values in {@link LogstashAccessFieldNames}.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code disabledFields}</td>
+ *         <td>empty set</td>
+ *         <td>
+ *             Names of default fields to omit entirely from access events, using the same names
+ *             as the keys in {@code fieldNames}, e.g. {@code version} or {@code requestedUrl}.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code encoding}</td>
+ *         <td>{@code json}</td>
+ *         <td>The wire format: {@code json}, {@code cbor}, or {@code smile}. See {@link ElkEncoding}.</td>
+ *     </tr>
+ * </table>
+ *
+ * The host, port, and custom fields fall back to {@link ElkLoggerConfigProvider} in the same
+ * way as they do for {@link ElkAppenderFactory}.
+ */
+@Setter
+@Getter(AccessLevel.PACKAGE)  // getters are visible with package scope for testing
+@JsonTypeName("elk-access")
+public class ElkAccessAppenderFactory extends AbstractElkAppenderFactory<IAccessEvent> {
+
+    private boolean useUdp;
+    private Duration keepAliveInterval;
+    private Duration maxConnectionAge;
+    private boolean includeMessage;
+
+    @Override
+    public Appender<IAccessEvent> build(LoggerContext loggerContext,
+                                        String applicationName,
+                                        LayoutFactory<IAccessEvent> layoutFactory,
+                                        LevelFilterFactory<IAccessEvent> levelFilterFactory,
+                                        AsyncAppenderFactory<IAccessEvent> asyncAppenderFactory) {
+
+        resolveCustomFields();
+        resolveHostAndPort();
+
+        var appender = useUdp ? createUdpAppender() : createTcpAppender();
+
+        appender.setName("elk-access");
+        appender.setContext(loggerContext);
+        appender.addFilter(levelFilterFactory.build(threshold));
+        appender.start();
+
+        return wrapAsync(appender, asyncAppenderFactory);
+    }
+
+    private Appender<IAccessEvent> createTcpAppender() {
+        var encoder = createEncoder();
+        var binary = getEncoding().isBinary();
+
+        var appender = new LogstashAccessTcpSocketAppender();
+        appender.addDestination(getHost() + ":" + getPort());
+        appender.setEncoder(binary ? new LengthPrefixedEncoder<>(encoder) : encoder);
+        TcpConnectionHelper.configure(appender, binary, keepAliveInterval, maxConnectionAge);
+
+        return appender;
+    }
+
+    private Appender<IAccessEvent> createUdpAppender() {
+        var appender = new EncoderUdpSocketAppender<IAccessEvent>();
+        appender.setHost(getHost());
+        appender.setPort(getPort());
+        appender.setEncoder(createEncoder());
+        ElkAppenderMetrics.register(DirectBufferPool.METRICS_PREFIX, appender.getBufferPool());
+
+        return appender;
+    }
+
+    /**
+     * Creates an encoder for the fixed shape of access events.
+     */
+    Encoder<IAccessEvent> createEncoder() {
+        var encoder = new AccessEventCompositeJsonEncoder();
+
+        var encoding = getEncoding();
+        if (encoding.isBinary()) {
+            encoder.setDataFormat(encoding.getDataFormat());
+            encoder.setLineSeparator(null);
+        }
+
+        var providers = new AccessEventJsonProviders();
+        createProviders().forEach(providers::addProvider);
+        encoder.setProviders(providers);
+
+        return encoder;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<JsonProvider<IAccessEvent>> createProviders() {
+        var providers = new ArrayList<JsonProvider<IAccessEvent>>();
+
+        providers.add(new AccessEventFormattedTimestampJsonProvider());
+        providers.add(new LogstashVersionJsonProvider<>());
+        if (includeMessage) {
+            providers.add(new AccessMessageJsonProvider());
+        }
+        providers.add(new MethodJsonProvider());
+        providers.add(new ProtocolJsonProvider());
+        providers.add(new StatusCodeJsonProvider());
+        providers.add(new RequestedUrlJsonProvider());
+        providers.add(new RequestedUriJsonProvider());
+        providers.add(new RemoteHostJsonProvider());
+        providers.add(new RemoteUserJsonProvider());
+        providers.add(new ContentLengthJsonProvider());
+        providers.add(new ElapsedTimeJsonProvider());
+        if (isIncludeContext()) {
+            providers.add(new ContextJsonProvider<>());
+        }
+        newCustomFieldsProvider().ifPresent(providers::add);
+
+        var fieldNames = getAccessFieldNames();
+        providers.stream()
+                .filter(FieldNamesAware.class::isInstance)
+                .map(FieldNamesAware.class::cast)
+                .forEach(provider -> provider.setFieldNames(fieldNames));
+
+        return providers;
+    }
+
+    private LogstashAccessFieldNames getAccessFieldNames() {
+        var disabledFields = isNull(getDisabledFields()) ? Set.<String>of() : getDisabledFields();
+        return ElkFieldHelper.getAccessFieldNamesFromMap(getFieldNameMap(), disabledFields);
+    }
+}
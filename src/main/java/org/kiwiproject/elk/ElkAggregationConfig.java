@@ -0,0 +1,135 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.nonNull;
+import static org.kiwiproject.collect.KiwiMaps.isNotNullOrEmpty;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import io.dropwizard.util.Duration;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Configures aggregation of high-volume, low-value log events into periodic summary events.
+ * <p>
+ * Events from the configured loggers, at or below the configured level, are not sent. Instead,
+ * they are counted by logger, level, and optionally the value of an MDC key, and once every
+ * {@code interval} a single summary event containing the counts and a few sample messages is sent.
+ * For example:
+ * <pre>
+ * logging:
+ *   appenders:
+ *     - type: elk
+ *       aggregation:
+ *         interval: 30s
+ *         mdcKey: tenantId
+ *         loggers:
+ *           org.eclipse.jetty: INFO
+ *           org.acme.service.cache: DEBUG
+ * </pre>
+ * Each entry in {@code loggers} applies to the named logger and its descendants. When more than
+ * one entry applies, the one with the longest name is used.
+ * <p>
+ * The summary event is logged by the {@value LogVolumeAggregationFilter#SUMMARY_LOGGER_NAME} logger
+ * at {@code INFO}, so the appender's {@code threshold} must allow {@code INFO} events.
+ * <table>
+ *     <caption>Configuration properties</caption>
+ *     <tr>
+ *         <td>Name</td>
+ *         <td>Default</td>
+ *         <td>Description</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code loggers}</td>
+ *         <td>empty map</td>
+ *         <td>
+ *             Logger names mapped to the most severe level to aggregate. For example, {@code INFO}
+ *             aggregates {@code TRACE}, {@code DEBUG}, and {@code INFO} events, but not {@code WARN}.
+ *             A level that is not a valid logback level fails the build of the appender.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code interval}</td>
+ *         <td>{@code 10 seconds}</td>
+ *         <td>How often to send a summary event.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code mdcKey}</td>
+ *         <td>{@code null}</td>
+ *         <td>An optional MDC key whose value is included in the counts, e.g. a tenant identifier.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code maxSamples}</td>
+ *         <td>{@code 3}</td>
+ *         <td>The number of sample messages to include for each count.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code maxGroups}</td>
+ *         <td>{@code 1000}</td>
+ *         <td>
+ *             The number of distinct logger, level, and MDC value combinations to count in each
+ *             interval. Beyond this, events are counted without their MDC value if their logger and
+ *             level already have a count, and otherwise in a single count per level for the logger
+ *             {@value LogVolumeAggregationFilter#OTHER_LOGGERS}, so memory stays bounded however
+ *             many loggers or MDC values there are.
+ *         </td>
+ *     </tr>
+ * </table>
+ */
+@Setter
+@Getter(AccessLevel.PACKAGE)  // getters are visible with package scope for testing
+public class ElkAggregationConfig {
+
+    static final Duration DEFAULT_INTERVAL = Duration.seconds(10);
+    static final int DEFAULT_MAX_SAMPLES = 3;
+    static final int DEFAULT_MAX_GROUPS = 1_000;
+
+    private Map<String, String> loggers = new HashMap<>();
+    private Duration interval = DEFAULT_INTERVAL;
+    private String mdcKey;
+    private int maxSamples = DEFAULT_MAX_SAMPLES;
+    private int maxGroups = DEFAULT_MAX_GROUPS;
+
+    /**
+     * @return true if any loggers are configured to be aggregated
+     */
+    boolean isEnabled() {
+        return isNotNullOrEmpty(loggers);
+    }
+
+    /**
+     * Build a filter that aggregates the configured events and periodically sends summary events
+     * to the given appender. The filter is registered with the logger context, so that it stops
+     * when the context stops.
+     */
+    LogVolumeAggregationFilter build(LoggerContext loggerContext, Appender<ILoggingEvent> appender) {
+        checkState(interval.toMilliseconds() > 0, "aggregation interval must be positive");
+        checkState(maxSamples >= 0, "aggregation maxSamples must not be negative");
+        checkState(maxGroups > 0, "aggregation maxGroups must be positive");
+
+        var levels = new HashMap<String, Level>();
+        loggers.forEach((name, level) -> levels.put(name, parseLevel(name, level)));
+
+        var filter = new LogVolumeAggregationFilter(levels, appender, interval.toJavaDuration(),
+                mdcKey, maxSamples, maxGroups);
+        filter.setContext(loggerContext);
+        filter.setName("elk-aggregation");
+        loggerContext.register(filter);
+        filter.start();
+
+        return filter;
+    }
+
+    private static Level parseLevel(String loggerName, String level) {
+        var parsed = Level.toLevel(level, null);
+        checkState(nonNull(parsed), "aggregation level %s of logger %s is not valid", level, loggerName);
+        return parsed;
+    }
+}
@@ -0,0 +1,33 @@
+package org.kiwiproject.elk;
+
+import io.dropwizard.core.Configuration;
+import io.dropwizard.core.ConfiguredBundle;
+import io.dropwizard.core.setup.Environment;
+
+/**
+ * A Dropwizard bundle that registers the metrics of the ELK appenders with the application's
+ * {@link com.codahale.metrics.MetricRegistry MetricRegistry}, for example the batch size and
+ * request latency histograms of the HTTP transport.
+ * <p>
+ * Add it to your application in the {@code initialize} method:
+ * <pre>
+ * bootstrap.addBundle(new ElkAppenderBundle());
+ * </pre>
+ * It also registers {@link ElkLoggerStatsTask}, which prints the loggers sending the most
+ * bytes to Logstash when {@code trackLoggerStats} is enabled on the appender, and
+ * {@link ElkTailTask}, which prints the most recent events when {@code tailEvents} is set.
+ * Finally, it registers {@link ElkCircuitBreakerHealthCheck}, which is unhealthy while the
+ * {@code circuitBreaker} of any appender is rejecting events.
+ * <p>
+ * The appenders work without this bundle; it only makes their metrics and stats visible.
+ */
+public class ElkAppenderBundle implements ConfiguredBundle<Configuration> {
+
+    @Override
+    public void run(Configuration configuration, Environment environment) {
+        ElkAppenderMetrics.attach(environment.metrics());
+        environment.admin().addTask(new ElkLoggerStatsTask());
+        environment.admin().addTask(new ElkTailTask());
+        environment.healthChecks().register(ElkCircuitBreakerHealthCheck.NAME, new ElkCircuitBreakerHealthCheck());
+    }
+}
@@ -3,35 +3,31 @@ package org.kiwiproject.elk;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
-import static java.util.stream.Collectors.toMap;
-import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.kiwiproject.collect.KiwiMaps.isNotNullOrEmpty;
-import static org.kiwiproject.collect.KiwiMaps.isNullOrEmpty;
 
 import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.status.WarnStatus;
+import com.codahale.metrics.MetricSet;
 import com.fasterxml.jackson.annotation.JsonTypeName;
-import io.dropwizard.logging.common.AbstractAppenderFactory;
 import io.dropwizard.logging.common.async.AsyncAppenderFactory;
 import io.dropwizard.logging.common.filter.LevelFilterFactory;
 import io.dropwizard.logging.common.layout.LayoutFactory;
+import io.dropwizard.util.DataSize;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import net.logstash.logback.appender.LogstashTcpSocketAppender;
-import net.logstash.logback.appender.LogstashUdpSocketAppender;
 import net.logstash.logback.encoder.LogstashEncoder;
 import net.logstash.logback.fieldnames.LogstashFieldNames;
 import net.logstash.logback.layout.LogstashLayout;
 import org.kiwiproject.config.provider.ElkLoggerConfigProvider;
-import org.kiwiproject.config.provider.ResolvedBy;
-import org.kiwiproject.json.JsonHelper;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * An implementation of {@link io.dropwizard.logging.common.AppenderFactory AppenderFactory}
@@ -56,7 +52,8 @@ import java.util.Optional;
  *     org.acme.service: INFO
  *   appenders:
  *     - type: elk
- *       useUdp: true
+ *       transport:
+ *         type: udp
  *       includeContext: false
  *       fieldNames:
  *         logger: loggerName
@@ -72,6 +69,14 @@ import java.util.Optional;
  *         <td>Description</td>
  *     </tr>
  *     <tr>
+ *         <td>{@code name}</td>
+ *         <td>{@code elk}</td>
+ *         <td>
+ *             The name of the appender, under which its metrics, circuit breaker, logger stats, and
+ *             event tail are reported. Each elk appender of an application needs a unique name.
+ *         </td>
+ *     </tr>
+ *     <tr>
  *         <td>{@code host}</td>
  *         <td>{@code null}</td>
  *         <td>
@@ -88,9 +93,25 @@ import java.util.Optional;
  *         </td>
  *     </tr>
  *     <tr>
+ *         <td>{@code transport}</td>
+ *         <td>{@code tcp}</td>
+ *         <td>
+ *             How to deliver log messages, given as an object with a {@code type}:
+ *             {@code tcp} ({@link TcpTransportFactory}), {@code udp} ({@link UdpTransportFactory}),
+ *             {@code http} ({@link HttpTransportFactory}), {@code file} ({@link FileTransportFactory}),
+ *             {@code memory} ({@link MemoryTransportFactory}),
+ *             {@code shared-memory} ({@link SharedMemoryTransportFactory}),
+ *             or {@code unix-socket} ({@link UnixSocketTransportFactory}). Additional transports can be
+ *             added by implementing {@link ElkTransportFactory}.
+ *         </td>
+ *     </tr>
+ *     <tr>
  *         <td>{@code useUdp}</td>
  *         <td>{@code false}</td>
- *         <td>Whether to use UDP for connections to Logstash.</td>
+ *         <td>
+ *             Whether to use UDP for connections to Logstash. This is a shorthand for the
+ *             {@code udp} transport, and cannot be combined with any other transport.
+ *         </td>
  *     </tr>
  *     <tr>
  *         <td>{@code includeCallerData}</td>
@@ -128,6 +149,153 @@ import java.util.Optional;
  *             These override the default values in {@link net.logstash.logback.fieldnames.LogstashFieldNames LogstashFieldNames}.
  *         </td>
  *     </tr>
+ *     <tr>
+ *         <td>{@code disabledFields}</td>
+ *         <td>empty set</td>
+ *         <td>
+ *             Names of default fields to omit entirely from log messages, using the same names as
+ *             the keys in {@code fieldNames}, e.g. {@code version}, {@code levelValue}, or {@code thread}.
+ *             Use {@code includeCallerData}, {@code includeMdc}, and {@code includeContext} to omit
+ *             the caller, MDC, and context fields.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code payloadProfile}</td>
+ *         <td>{@code standard}</td>
+ *         <td>
+ *             A preset that omits default fields. Use {@code minimal} to omit the {@code @version},
+ *             {@code level_value}, and {@code thread_name} fields, and the logger context. These are
+ *             combined with any {@code disabledFields}. See {@link ElkPayloadProfile}.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code aggregation}</td>
+ *         <td>{@code null}</td>
+ *         <td>
+ *             Loggers whose events, at or below a given level, are counted instead of sent, with a
+ *             summary event sent periodically. See {@link ElkAggregationConfig}.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code circuitBreaker}</td>
+ *         <td>{@code null}</td>
+ *         <td>
+ *             Rejects events before any formatting or encoding while the transport is failing to
+ *             deliver them. See {@link ElkCircuitBreakerConfig}.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code masking}</td>
+ *         <td>{@code null}</td>
+ *         <td>
+ *             Rules for masking sensitive data, such as tokens and email addresses, in targeted fields
+ *             as events are encoded. See {@link ElkMaskingConfig}.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code lossAccounting}</td>
+ *         <td>{@code null}</td>
+ *         <td>
+ *             Adds an instance id and sequence number to each event, and sends a heartbeat event with
+ *             the number of events appended, sent, and dropped, so that loss can be measured downstream.
+ *             See {@link ElkLossAccountingConfig}.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code heapPressure}</td>
+ *         <td>{@code null}</td>
+ *         <td>
+ *             Sheds low-priority events, and limits how many events are queued, while the heap is
+ *             nearly full after garbage collection. See {@link ElkHeapPressureConfig}.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code trackLoggerStats}</td>
+ *         <td>{@code false}</td>
+ *         <td>
+ *             Whether to keep approximate per-logger event counts and encoded sizes, which
+ *             {@link ElkLoggerStatsTask} prints to find the loggers sending the most bytes.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code trackedLoggers}</td>
+ *         <td>{@code 50}</td>
+ *         <td>The number of highest-volume loggers to keep exact counts and size histograms for.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code publishEvents}</td>
+ *         <td>{@code false}</td>
+ *         <td>
+ *             Whether to publish each encoded event to {@link ElkEventPublisher#shared()}, for
+ *             in-process subscribers.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code tailEvents}</td>
+ *         <td>{@code 0}</td>
+ *         <td>
+ *             The number of most recently encoded events to keep in memory, including those
+ *             rejected by the circuit breaker, which {@link ElkTailTask} prints, e.g. to see
+ *             what was logged while Logstash was unavailable. Zero disables the tail.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code tailMaxSize}</td>
+ *         <td>{@code 1MiB}</td>
+ *         <td>The maximum total size of the encoded events kept in the tail.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code deferFormatting}</td>
+ *         <td>from {@code tuningProfile}</td>
+ *         <td>
+ *             Whether to format log messages on the async worker thread, instead of on the logging
+ *             thread, when all of their arguments are immutable. See {@link DeferredFormattingAsyncAppender}.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code maxQueuedBytes}</td>
+ *         <td>{@code null}</td>
+ *         <td>
+ *             The maximum total estimated size of the events in the async queue, in addition to its
+ *             {@code queueSize} in events, e.g. {@code 16MiB}. When it is reached, events are dropped if
+ *             {@code neverBlock} is set, and otherwise callers wait. The queued bytes are available as
+ *             metrics named after {@code name} when {@link ElkAppenderBundle} is added. See
+ *             {@link QueuedBytesBudget}.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code tuningProfile}</td>
+ *         <td>{@code standard}</td>
+ *         <td>
+ *             A preset of buffering settings for a goal: {@code standard}, {@code throughput},
+ *             {@code low-latency}, or {@code lossless}. It sets {@code queueSize},
+ *             {@code discardingThreshold}, {@code neverBlock}, and {@code deferFormatting}, unless
+ *             those are set explicitly, and the buffers of the {@code tcp} and {@code unix-socket}
+ *             transports. The effective settings are logged at {@code INFO} when the appender is
+ *             built. See {@link ElkTuningProfile}.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code virtualThreads}</td>
+ *         <td>{@code false}</td>
+ *         <td>
+ *             Whether the transport sends, connects, and retries on virtual threads instead of
+ *             platform threads, for the {@code tcp}, {@code unix-socket}, {@code http}, and
+ *             {@code shared-memory} transports. Requires Java 21 or later; on earlier versions,
+ *             a warning is reported as a logback status message and platform threads are used.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code encoding}</td>
+ *         <td>{@code json}</td>
+ *         <td>
+ *             The wire format: {@code json}, {@code cbor}, or {@code smile}. The binary formats
+ *             use the same field names and custom fields as JSON. Over TCP, each binary event is
+ *             preceded by its length as a four-byte, big-endian integer, since binary events
+ *             cannot be newline-delimited. Over UDP, each event is sent in its own datagram.
+ *             See {@link ElkEncoding}.
+ *         </td>
+ *     </tr>
  * </table>
  *
  * Note that if either {@code host} or {@code port} is not specified, the fallback
@@ -143,33 +311,80 @@ import java.util.Optional;
 @Setter
 @Getter(AccessLevel.PACKAGE)  // getters are visible with package scope for testing
 @JsonTypeName("elk")
-public class ElkAppenderFactory extends AbstractAppenderFactory<ILoggingEvent> {
+public class ElkAppenderFactory extends AbstractElkAppenderFactory<ILoggingEvent> {
 
-    private static final JsonHelper JSON_HELPER = JsonHelper.newDropwizardJsonHelper();
-    private static final String ELK_PROVIDER_ERROR_MESSAGE_TEMPLATE =
-            "Unable to get ELK host and/or port from ElkLoggerConfigProvider." +
-                    " Host resolution: %s, Port resolution: %s";
+    static final String DEFAULT_NAME = "elk";
+    static final int DEFAULT_TRACKED_LOGGERS = 50;
+    static final DataSize DEFAULT_TAIL_MAX_SIZE = DataSize.mebibytes(1);
 
     // NOTE: includeCallerData is handled by the inherited setter/getter from AbstractAppenderFactory
-
-    private String host;
-    private Integer port;
+    // NOTE: queueSize, discardingThreshold, and neverBlock are inherited from AbstractAppenderFactory,
+    //       whose setters are overridden below to record which were set explicitly, since those
+    //       take precedence over the tuning profile
+    // NOTE: host, port, includeContext, customFields, fieldNames, disabledFields, and encoding
+    //       are handled by the inherited setters/getters from AbstractElkAppenderFactory
+
+    private String name;
+    private ElkTransportFactory transport;
     private boolean useUdp;
-    private boolean includeContext;
     private boolean includeMdc;
-    private Map<String, String> customFields;
-    private Map<String, String> fieldNames;
-    @Setter(AccessLevel.NONE) private ElkLoggerConfigProvider elkLoggerConfigProvider;  // don't allow setting this
+    private ElkPayloadProfile payloadProfile;
+    private ElkAggregationConfig aggregation;
+    private ElkCircuitBreakerConfig circuitBreaker;
+    private ElkMaskingConfig masking;
+    private ElkLossAccountingConfig lossAccounting;
+    private ElkHeapPressureConfig heapPressure;
+    private boolean trackLoggerStats;
+    private int trackedLoggers;
+    private boolean publishEvents;
+    private int tailEvents;
+    private DataSize tailMaxSize;
+    private Boolean deferFormatting;
+    private DataSize maxQueuedBytes;
+    private ElkTuningProfile tuningProfile;
+    private boolean virtualThreads;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Integer explicitQueueSize;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Integer explicitDiscardingThreshold;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Boolean explicitNeverBlock;
 
     /**
      * Create a new instance with default values.
      */
     public ElkAppenderFactory() {
-        includeContext = true;
+        name = DEFAULT_NAME;
         includeMdc = true;
-        customFields = new HashMap<>();
-        fieldNames = new HashMap<>();
-        elkLoggerConfigProvider = ElkLoggerConfigProvider.builder().build();
+        payloadProfile = ElkPayloadProfile.STANDARD;
+        transport = new TcpTransportFactory();
+        trackedLoggers = DEFAULT_TRACKED_LOGGERS;
+        tailMaxSize = DEFAULT_TAIL_MAX_SIZE;
+        tuningProfile = ElkTuningProfile.STANDARD;
+    }
+
+    @Override
+    public void setQueueSize(int queueSize) {
+        super.setQueueSize(queueSize);
+        explicitQueueSize = queueSize;
+    }
+
+    @Override
+    public void setDiscardingThreshold(int discardingThreshold) {
+        super.setDiscardingThreshold(discardingThreshold);
+        explicitDiscardingThreshold = discardingThreshold;
+    }
+
+    @Override
+    public void setNeverBlock(boolean neverBlock) {
+        super.setNeverBlock(neverBlock);
+        explicitNeverBlock = neverBlock;
     }
 
     @Override
@@ -179,113 +394,469 @@ public class ElkAppenderFactory extends AbstractAppenderFactory<ILoggingEvent> {
                                          LevelFilterFactory<ILoggingEvent> levelFilterFactory,
                                          AsyncAppenderFactory<ILoggingEvent> asyncAppenderFactory) {
 
-        Map<String, ResolvedBy> resolvedBy = elkLoggerConfigProvider.getResolvedBy();
-        var hostResolvedBy = resolvedBy.get("host");
-        var portResolvedBy = resolvedBy.get("port");
+        resolveCustomFields();
+
+        checkState(isNotBlank(name), "name must not be blank");
+        var accounting = createLossAccounting(loggerContext);
+        var masker = createMasker();
+        var tailRing = createTailRing(loggerContext, masker);
+        var taps = createTaps(tailRing);
+        var appender = getEffectiveTransport()
+                .build(new TransportContext(loggerContext, taps, masker, accounting));
 
-        if (isBlank(host)) {
-            checkState(canProvideHost(resolvedBy),
-                    ELK_PROVIDER_ERROR_MESSAGE_TEMPLATE, hostResolvedBy, portResolvedBy);
+        appender.setName("elk");
+        appender.setContext(loggerContext);
+        if (nonNull(accounting)) {
+            appender.addFilter(accounting.newHeartbeatFilter());
+        }
+        appender.addFilter(levelFilterFactory.build(threshold));
+        var breaker = createCircuitBreaker(loggerContext, appender);
+        getTcpAppenders(appender).forEach(tcpAppender -> tcpAppender.addListener(new FlightRecordingTcpListener()));
+        addLossAccountingListener(accounting, appender);
+        applyTuningProfile(loggerContext, appender);
+        applyVirtualThreads(loggerContext, appender);
+        appender.start();
 
-            host = elkLoggerConfigProvider.getHost();
+        var asyncAppender = (FlightRecordingAsyncAppender) wrapAsync(appender, getEffectiveAsyncAppenderFactory());
+        addQueuedBytesBudget(asyncAppender);
+        register(loggerContext, asyncAppender, LoggerStats.REGISTRY, taps.loggerStats());
+        register(loggerContext, asyncAppender, EventTailRing.REGISTRY, tailRing);
+        if (nonNull(breaker)) {
+            breaker.setTailRing(tailRing);
+            register(loggerContext, asyncAppender, ElkCircuitBreaker.REGISTRY, breaker);
+            registerMetrics(asyncAppender, ElkCircuitBreaker.METRICS_NAME, breaker);
+        }
+        addAggregationFilter(loggerContext, asyncAppender);
+        if (nonNull(accounting)) {
+            startLossAccounting(accounting, asyncAppender, breaker);
+        }
+        if (nonNull(breaker)) {
+            asyncAppender.addFilter(breaker);
         }
+        addHeapPressureFilter(loggerContext, asyncAppender, accounting);
 
-        if (isNull(port)) {
-            checkState(canProvidePort(resolvedBy),
-                    ELK_PROVIDER_ERROR_MESSAGE_TEMPLATE, hostResolvedBy, portResolvedBy);
+        return asyncAppender;
+    }
 
-            port = elkLoggerConfigProvider.getPort();
+    /**
+     * Register a component of the appender under its name, for the admin tasks and health check,
+     * until the appender is stopped.
+     */
+    private <T> void register(LoggerContext loggerContext,
+                              FlightRecordingAsyncAppender asyncAppender,
+                              ElkAppenderRegistry<T> registry,
+                              T component) {
+        if (isNull(component)) {
+            return;
         }
 
-        var providerCustomFields = elkLoggerConfigProvider.getCustomFields();
-        if (isNullOrEmpty(customFields) && nonNull(providerCustomFields)) {
-            customFields = new HashMap<>(providerCustomFields);
+        var appenderName = name;
+        var replaced = registry.register(appenderName, component);
+        if (nonNull(replaced)) {
+            loggerContext.getStatusManager().add(new WarnStatus(
+                    "Another running elk appender is named " + appenderName +
+                            ", and only the stats, tail, and circuit breaker of the newest are reported;" +
+                            " set a unique name on each elk appender", this));
         }
+        asyncAppender.runOnStop(() -> registry.unregister(appenderName, component));
+    }
 
-        var appender = createAppender();
+    /**
+     * Register the metrics of a component of the appender under its name, until the appender is stopped.
+     */
+    private void registerMetrics(FlightRecordingAsyncAppender asyncAppender, String component, MetricSet metricSet) {
+        var prefix = ElkAppenderMetrics.prefix(name, component);
+        ElkAppenderMetrics.register(prefix, metricSet);
+        asyncAppender.runOnStop(() -> ElkAppenderMetrics.unregister(prefix, metricSet));
+    }
 
-        appender.setName("elk");
-        appender.setContext(loggerContext);
-        appender.addFilter(levelFilterFactory.build(threshold));
-        appender.start();
+    /**
+     * Dropwizard configures the async appender after building it, e.g. its queue size, so
+     * replacing only the instance it builds keeps all the async settings. The replacement
+     * records Flight Recorder events for the logging threads' side of the queue.
+     */
+    private AsyncAppenderFactory<ILoggingEvent> getEffectiveAsyncAppenderFactory() {
+        return isDeferFormattingEffective() ? DeferredFormattingAsyncAppender::new : FlightRecordingAsyncAppender::new;
+    }
 
-        return wrapAsync(appender, asyncAppenderFactory);
+    private boolean isDeferFormattingEffective() {
+        return nonNull(deferFormatting) ? deferFormatting : tuningProfile.isDeferFormatting();
     }
 
-    private static boolean canProvideHost(Map<String, ResolvedBy> resolvedBy) {
-        return canProvide(resolvedBy, "host");
+    /**
+     * Apply the tuning profile to the async settings that were not set explicitly, which the
+     * inherited {@code wrapAsync} then uses, and to the transport's buffers if it is TCP-based.
+     * Report the effective settings, since they may come from several places.
+     */
+    private void applyTuningProfile(LoggerContext loggerContext, Appender<ILoggingEvent> appender) {
+        checkState(nonNull(tuningProfile), "tuningProfile must not be null");
+
+        var queueSize = nonNull(explicitQueueSize) ? explicitQueueSize : tuningProfile.getQueueSize();
+        var discardingThreshold = nonNull(explicitDiscardingThreshold) ?
+                explicitDiscardingThreshold : tuningProfile.getDiscardingThreshold();
+        var neverBlock = nonNull(explicitNeverBlock) ? explicitNeverBlock : tuningProfile.isNeverBlock();
+        super.setQueueSize(queueSize);
+        super.setDiscardingThreshold(discardingThreshold);
+        super.setNeverBlock(neverBlock);
+
+        var settings = new StringBuilder()
+                .append("Tuning profile ").append(tuningProfile)
+                .append(": queueSize=").append(queueSize)
+                .append(", discardingThreshold=").append(discardingThreshold)
+                .append(", neverBlock=").append(neverBlock)
+                .append(", deferFormatting=").append(isDeferFormattingEffective());
+
+        var tcpAppenders = getTcpAppenders(appender);
+        tcpAppenders.forEach(tuningProfile::configure);
+        if (!tcpAppenders.isEmpty()) {
+            var tcpAppender = tcpAppenders.get(0);
+            if (tcpAppenders.size() > 1) {
+                settings.append(", connections=").append(tcpAppenders.size());
+            }
+            settings.append(", ringBufferSize=").append(tcpAppender.getRingBufferSize())
+                    .append(", writeBufferSize=").append(tcpAppender.getWriteBufferSize())
+                    .append(", appendTimeout=").append(tcpAppender.getAppendTimeout());
+        }
+
+        loggerContext.getLogger(ElkAppenderFactory.class).info(settings.toString());
+    }
+
+    /**
+     * Limit the bytes in the async queue, if set, before any events are appended.
+     */
+    private void addQueuedBytesBudget(FlightRecordingAsyncAppender asyncAppender) {
+        if (isNull(maxQueuedBytes)) {
+            return;
+        }
+
+        checkState(maxQueuedBytes.toBytes() > 0, "maxQueuedBytes must be positive");
+        var budget = new QueuedBytesBudget(maxQueuedBytes.toBytes());
+        asyncAppender.setQueuedBytesBudget(budget);
+        registerMetrics(asyncAppender, QueuedBytesBudget.METRICS_NAME, budget);
+    }
+
+    /**
+     * Have the transport do its I/O work on virtual threads, if enabled and supported. The async
+     * appender's worker thread, which hands events to the transport, is created by logback and is
+     * always a platform thread.
+     */
+    private void applyVirtualThreads(LoggerContext loggerContext, Appender<ILoggingEvent> appender) {
+        if (!virtualThreads) {
+            return;
+        }
+
+        if (!ElkThreads.isVirtualThreadSupported()) {
+            loggerContext.getLogger(ElkAppenderFactory.class)
+                    .warn("virtualThreads requires Java 21 or later; using platform threads instead");
+            return;
+        }
+
+        getTcpAppenders(appender).forEach(TcpConnectionHelper::useVirtualThreads);
+        if (appender instanceof AbstractBatchingAppender batchingAppender) {
+            batchingAppender.setVirtualThreads(true);
+        }
+        if (appender instanceof SharedMemoryRingAppender ringAppender) {
+            ringAppender.setVirtualThreads(true);
+        }
+    }
+
+    /**
+     * Create the circuit breaker, if enabled, and have the transport report to it. The breaker
+     * is added as a filter to the outermost appender, after the aggregation filter, so that
+     * rejected events are denied before they are formatted and queued.
+     */
+    private ElkCircuitBreaker createCircuitBreaker(LoggerContext loggerContext, Appender<ILoggingEvent> appender) {
+        if (isNull(circuitBreaker) || !circuitBreaker.isEnabled()) {
+            return null;
+        }
+
+        var breaker = circuitBreaker.build(loggerContext);
+        getTcpAppenders(appender).forEach(tcpAppender -> tcpAppender.addListener(breaker.newTcpListener()));
+        if (appender instanceof AbstractBatchingAppender batchingAppender) {
+            batchingAppender.setCircuitBreaker(breaker);
+        }
+        return breaker;
+    }
+
+    /**
+     * The filter is added to the outermost appender, so that aggregated events are
+     * counted on the logging thread and never queued or encoded.
+     */
+    private void addAggregationFilter(LoggerContext loggerContext, Appender<ILoggingEvent> appender) {
+        if (nonNull(aggregation) && aggregation.isEnabled()) {
+            appender.addFilter(aggregation.build(loggerContext, appender));
+        }
     }
 
-    private static boolean canProvidePort(Map<String, ResolvedBy> resolvedBy) {
-        return canProvide(resolvedBy, "port");
+    /**
+     * @return the Logstash TCP appender, or each of those of a transport with several connections
+     */
+    private static List<LogstashTcpSocketAppender> getTcpAppenders(Appender<ILoggingEvent> appender) {
+        if (appender instanceof LogstashTcpSocketAppender tcpAppender) {
+            return List.of(tcpAppender);
+        } else if (appender instanceof ParallelTcpAppender parallelAppender) {
+            return parallelAppender.getConnections();
+        }
+        return List.of();
     }
 
-    private static boolean canProvide(Map<String, ResolvedBy> resolvedBy, String property) {
-        return resolvedBy.get(property) != ResolvedBy.NONE;
+    private LossAccountingFilter createLossAccounting(LoggerContext loggerContext) {
+        if (isNull(lossAccounting) || !lossAccounting.isEnabled()) {
+            return null;
+        }
+
+        return lossAccounting.build(loggerContext, threshold);
+    }
+
+    /**
+     * Have the transport report the events it drops before encoding them. Events it drops after
+     * encoding them have a sequence number, so they are seen as gaps downstream instead.
+     */
+    private static void addLossAccountingListener(LossAccountingFilter accounting, Appender<ILoggingEvent> appender) {
+        if (isNull(accounting)) {
+            return;
+        }
+
+        getTcpAppenders(appender).forEach(tcpAppender -> tcpAppender.addListener(accounting.newTcpListener()));
+        if (appender instanceof AbstractBatchingAppender batchingAppender) {
+            batchingAppender.setLossAccounting(accounting);
+        }
     }
 
-    private Appender<ILoggingEvent> createAppender() {
-        checkState(port > 0 && port < 65536, "port %s is not a valid port (must be in range 1-65535)", port);
+    /**
+     * The filter is added to the outermost appender after the aggregation filter, so that aggregated
+     * events are not counted, and before the circuit breaker, whose rejected events it counts as dropped.
+     */
+    private static void startLossAccounting(LossAccountingFilter accounting,
+                                            Appender<ILoggingEvent> asyncAppender,
+                                            ElkCircuitBreaker breaker) {
+        if (asyncAppender instanceof FlightRecordingAsyncAppender flightRecordingAppender) {
+            flightRecordingAppender.setLossAccounting(accounting);
+        }
+        accounting.setCircuitBreaker(breaker);
+        accounting.setAppender(asyncAppender);
+        accounting.start();
+        asyncAppender.addFilter(accounting);
+    }
+
+    /**
+     * The filter is added to the outermost appender last, so that the events it sheds have already
+     * passed the aggregation filter and the circuit breaker, and are counted as dropped.
+     */
+    private void addHeapPressureFilter(LoggerContext loggerContext,
+                                       FlightRecordingAsyncAppender asyncAppender,
+                                       LossAccountingFilter accounting) {
+        if (isNull(heapPressure) || !heapPressure.isEnabled()) {
+            return;
+        }
+
+        var filter = heapPressure.build(loggerContext);
+        filter.setAppender(asyncAppender);
+        filter.setLossAccounting(accounting);
+        filter.start();
+        asyncAppender.addFilter(filter);
+        asyncAppender.runOnStop(filter::stop);
+        registerMetrics(asyncAppender, HeapPressureFilter.METRICS_NAME, filter);
+    }
+
+    private SensitiveDataMasker createMasker() {
+        if (isNull(masking) || !masking.isEnabled()) {
+            return null;
+        }
+
+        return masking.build();
+    }
 
-        return useUdp ? createUdpAppender() : createTcpAppender();
+    private Taps createTaps(EventTailRing tailRing) {
+        return new Taps(createLoggerStats(), publishEvents ? ElkEventPublisher.shared() : null, tailRing);
+    }
+
+    private LoggerStats createLoggerStats() {
+        if (!trackLoggerStats) {
+            return null;
+        }
+
+        checkState(trackedLoggers > 0, "trackedLoggers must be positive");
+        return new LoggerStats(trackedLoggers);
+    }
+
+    /**
+     * The tail keeps the bytes the transport's encoder already produced. Its own encoder, which has
+     * no taps or sequence numbers, is only used for the events the circuit breaker rejects.
+     */
+    private EventTailRing createTailRing(LoggerContext loggerContext, SensitiveDataMasker masker) {
+        if (tailEvents == 0) {
+            return null;
+        }
+
+        checkState(tailEvents > 0, "tailEvents must not be negative");
+        checkState(nonNull(tailMaxSize) && tailMaxSize.toBytes() > 0, "tailMaxSize must be positive");
+
+        var encoder = createEncoder(new Taps(null, null, null), masker, null);
+        encoder.setContext(loggerContext);
+        encoder.start();
+
+        var tailRing = new EventTailRing(tailEvents, tailMaxSize.toBytes(), getEncoding().isBinary(), encoder::encode);
+        tailRing.setThreshold(threshold);
+        return tailRing;
+    }
+
+    /**
+     * The optional consumers of each encoded event, any of which may be null.
+     */
+    private record Taps(LoggerStats loggerStats, ElkEventPublisher publisher, EventTailRing tailRing) {
+    }
+
+    private ElkTransportFactory getEffectiveTransport() {
+        checkState(nonNull(transport), "transport must not be null");
+
+        if (useUdp) {
+            checkState(transport instanceof TcpTransportFactory || transport instanceof UdpTransportFactory,
+                    "useUdp cannot be combined with transport %s", transport.getClass().getSimpleName());
+            return transport instanceof UdpTransportFactory ? transport : new UdpTransportFactory();
+        }
+
+        return transport;
+    }
+
+    /**
+     * Resolves the host and port only when a transport asks for them, since transports
+     * such as {@code file} and {@code memory} do not send to Logstash directly.
+     */
+    private class TransportContext implements ElkTransportContext {
+
+        private final LoggerContext loggerContext;
+        private final Taps taps;
+        private final SensitiveDataMasker masker;
+        private final LossAccountingFilter accounting;
+
+        TransportContext(LoggerContext loggerContext,
+                         Taps taps,
+                         SensitiveDataMasker masker,
+                         LossAccountingFilter accounting) {
+            this.loggerContext = loggerContext;
+            this.taps = taps;
+            this.masker = masker;
+            this.accounting = accounting;
+        }
+
+        @Override
+        public LoggerContext getLoggerContext() {
+            return loggerContext;
+        }
+
+        @Override
+        public String getHost() {
+            resolveHostAndPort();
+            return ElkAppenderFactory.this.getHost();
+        }
+
+        @Override
+        public int getPort() {
+            resolveHostAndPort();
+            return ElkAppenderFactory.this.getPort();
+        }
+
+        @Override
+        public ElkEncoding getEncoding() {
+            return ElkAppenderFactory.this.getEncoding();
+        }
+
+        @Override
+        public LogstashEncoder newEncoder() {
+            return createEncoder(taps, masker, accounting);
+        }
+
+        @Override
+        public LogstashLayout newLayout() {
+            return createLayout(taps, masker, accounting);
+        }
     }
 
     @SuppressWarnings("DuplicatedCode")
-    private LogstashTcpSocketAppender createTcpAppender() {
-        var encoder = new LogstashEncoder();
+    private LogstashEncoder createEncoder(Taps taps, SensitiveDataMasker masker, LossAccountingFilter accounting) {
+        var encoder = new TappedLogstashEncoder(taps.loggerStats(), taps.publisher(), taps.tailRing());
         encoder.setIncludeCallerData(isIncludeCallerData());
         encoder.setIncludeMdc(includeMdc);
-        encoder.setIncludeContext(includeContext);
+        encoder.setIncludeContext(isContextIncluded());
 
-        if (isNotNullOrEmpty(customFields)) {
-            getCustomFieldsAsJson().ifPresent(encoder::setCustomFields);
+        var encoding = getEncoding();
+        if (encoding.isBinary()) {
+            encoder.setDataFormat(encoding.getDataFormat());
+            encoder.setLineSeparator(null);
         }
 
-        if (isNotNullOrEmpty(fieldNames)) {
+        addCustomFields(encoder);
+
+        if (hasFieldNameCustomizations()) {
             encoder.setFieldNames(getLogstashFieldNames());
         }
 
-        var appender = new LogstashTcpSocketAppender();
-        appender.addDestination(host + ":" + port);
-        appender.setEncoder(encoder);
+        if (nonNull(accounting)) {
+            encoder.addProvider(accounting.newSequenceProvider());
+        }
+
+        if (nonNull(masker)) {
+            encoder.addDecorator(masker);
+        }
+
+        return encoder;
+    }
 
-        return appender;
+    /**
+     * The custom fields are given to the encoder as a JSON string, which it parses using the
+     * mapper for its data format. Binary mappers cannot parse text, so for binary encodings the
+     * custom fields are instead provided as an already-parsed node.
+     */
+    private void addCustomFields(LogstashEncoder encoder) {
+        if (getEncoding().isBinary()) {
+            newCustomFieldsProvider().ifPresent(encoder::addProvider);
+        } else {
+            getCustomFieldsAsJson().ifPresent(encoder::setCustomFields);
+        }
     }
 
     @SuppressWarnings("DuplicatedCode")
-    private LogstashUdpSocketAppender createUdpAppender() {
-        var layout = new LogstashLayout();
+    private LogstashLayout createLayout(Taps taps, SensitiveDataMasker masker, LossAccountingFilter accounting) {
+        var layout = new TappedLogstashLayout(taps.loggerStats(), taps.publisher(), taps.tailRing());
         layout.setIncludeCallerData(isIncludeCallerData());
         layout.setIncludeMdc(includeMdc);
-        layout.setIncludeContext(includeContext);
+        layout.setIncludeContext(isContextIncluded());
 
-        if (isNotNullOrEmpty(customFields)) {
-            getCustomFieldsAsJson().ifPresent(layout::setCustomFields);
-        }
+        getCustomFieldsAsJson().ifPresent(layout::setCustomFields);
 
-        if (isNotNullOrEmpty(fieldNames)) {
+        if (hasFieldNameCustomizations()) {
             layout.setFieldNames(getLogstashFieldNames());
         }
 
-        var appender = new LogstashUdpSocketAppender();
-        appender.setHost(host);
-        appender.setPort(port);
-        appender.setLayout(layout);
+        if (nonNull(accounting)) {
+            layout.addProvider(accounting.newSequenceProvider());
+        }
+
+        if (nonNull(masker)) {
+            layout.addDecorator(masker);
+        }
 
-        return appender;
+        return layout;
     }
 
-    private Optional<String> getCustomFieldsAsJson() {
-        var filteredCustomFields = customFields.entrySet()
-                .stream()
-                .filter(entry -> isNotBlank(entry.getKey()) && isNotBlank(entry.getValue()))
-                .collect(toMap(Map.Entry::getKey, Map.Entry::getValue));
+    private boolean isContextIncluded() {
+        return isIncludeContext() && payloadProfile.isContextAllowed();
+    }
 
-        return filteredCustomFields.isEmpty() ?
-                Optional.empty() : Optional.of(JSON_HELPER.toJson(filteredCustomFields));
+    private boolean hasFieldNameCustomizations() {
+        return isNotNullOrEmpty(getFieldNames()) || !getEffectiveDisabledFields().isEmpty();
     }
 
     private LogstashFieldNames getLogstashFieldNames() {
-        return ElkFieldHelper.getFieldNamesFromMap(fieldNames);
+        return ElkFieldHelper.getFieldNamesFromMap(getFieldNameMap(), getEffectiveDisabledFields());
+    }
+
+    private Set<String> getEffectiveDisabledFields() {
+        var effectiveDisabledFields = new HashSet<>(payloadProfile.getDisabledFields());
+        if (nonNull(getDisabledFields())) {
+            effectiveDisabledFields.addAll(getDisabledFields());
+        }
+        return effectiveDisabledFields;
     }
 }
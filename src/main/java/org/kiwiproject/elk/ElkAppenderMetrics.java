@@ -0,0 +1,68 @@
+package org.kiwiproject.elk;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import lombok.experimental.UtilityClass;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the metrics of appenders built by {@link ElkAppenderFactory}.
+ * <p>
+ * Appenders are built while the logging configuration is processed, before there is a
+ * {@link MetricRegistry} to register their metrics with. So they are kept here until a registry
+ * is attached by {@link ElkAppenderBundle}. Appenders built after that (e.g., when logging is
+ * reconfigured) are registered with the attached registries immediately, replacing the metrics
+ * of the appender they replace. The metrics of an appender are removed when it is stopped.
+ * <p>
+ * Each appender's metrics are named using its {@code name}, e.g.
+ * {@code org.kiwiproject.elk.ElkAppenderFactory.elk.circuitBreaker.state}, so that the metrics of
+ * several appenders are kept apart.
+ */
+@UtilityClass
+class ElkAppenderMetrics {
+
+    private static final Map<String, MetricSet> METRIC_SETS = new ConcurrentHashMap<>();
+    private static final Set<MetricRegistry> REGISTRIES = ConcurrentHashMap.newKeySet();
+
+    void register(String prefix, MetricSet metricSet) {
+        METRIC_SETS.put(prefix, metricSet);
+        REGISTRIES.forEach(registry -> registerWith(registry, prefix, metricSet));
+    }
+
+    /**
+     * Remove the given metrics, unless they have already been replaced by those of another appender.
+     */
+    void unregister(String prefix, MetricSet metricSet) {
+        if (METRIC_SETS.remove(prefix, metricSet)) {
+            REGISTRIES.forEach(registry -> registry.removeMatching((name, metric) -> name.startsWith(prefix + ".")));
+        }
+    }
+
+    /**
+     * @return the prefix of the metrics of the given component of the named appender
+     */
+    String prefix(String appenderName, String component) {
+        return MetricRegistry.name(ElkAppenderFactory.class, appenderName, component);
+    }
+
+    void attach(MetricRegistry registry) {
+        REGISTRIES.add(registry);
+        METRIC_SETS.forEach((prefix, metricSet) -> registerWith(registry, prefix, metricSet));
+    }
+
+    void detach(MetricRegistry registry) {
+        REGISTRIES.remove(registry);
+    }
+
+    Map<String, MetricSet> getMetricSets() {
+        return Map.copyOf(METRIC_SETS);
+    }
+
+    private static void registerWith(MetricRegistry registry, String prefix, MetricSet metricSet) {
+        registry.removeMatching((name, metric) -> name.startsWith(prefix + "."));
+        registry.registerAll(prefix, metricSet);
+    }
+}
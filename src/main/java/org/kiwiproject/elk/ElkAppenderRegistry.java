@@ -0,0 +1,51 @@
+package org.kiwiproject.elk;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds one kind of component, such as the circuit breaker, of each running appender built by
+ * {@link ElkAppenderFactory}, keyed by the appender's {@code name}, for the admin tasks and health
+ * check registered by {@link ElkAppenderBundle}.
+ * <p>
+ * Appenders are built while the logging configuration is processed, before the bundle runs, so
+ * their components are kept here for it to find. Each component is removed when its appender is
+ * stopped, e.g. when logging is reconfigured, so only those of running appenders are reported.
+ *
+ * @param <T> the type of component
+ */
+class ElkAppenderRegistry<T> {
+
+    private final Map<String, T> components = new ConcurrentHashMap<>();
+
+    /**
+     * Register the component of the named appender.
+     *
+     * @return the component of another running appender with the same name, which this replaces, or null
+     */
+    T register(String appenderName, T component) {
+        return components.put(appenderName, component);
+    }
+
+    /**
+     * Remove the component of the named appender, unless it has already been replaced by that of
+     * another appender with the same name.
+     */
+    void unregister(String appenderName, T component) {
+        components.remove(appenderName, component);
+    }
+
+    Optional<T> get(String appenderName) {
+        return Optional.ofNullable(components.get(appenderName));
+    }
+
+    /**
+     * @return the components, sorted by appender name
+     */
+    SortedMap<String, T> getAll() {
+        return new TreeMap<>(components);
+    }
+}
@@ -0,0 +1,223 @@
+package org.kiwiproject.elk;
+
+import static java.util.Objects.nonNull;
+import static org.kiwiproject.elk.ElkFlightRecorderEvents.CIRCUIT_BREAKER_STAGE;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.filter.Filter;
+import ch.qos.logback.core.spi.FilterReply;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import com.google.common.base.Ticker;
+import lombok.AccessLevel;
+import lombok.Setter;
+import net.logstash.logback.appender.listener.TcpAppenderListener;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A circuit breaker that rejects events while the transport is failing to deliver them, so that
+ * no work is spent formatting, queueing, and encoding events that would only be dropped.
+ * <p>
+ * It is a {@link Filter} added to the outermost appender, so rejected events are denied on the
+ * logging thread before anything else happens to them. The transport reports its outcomes using
+ * {@link #recordSuccess()} and {@link #recordFailure()}:
+ * <ul>
+ *     <li>{@code CLOSED}: events are accepted. After {@code failureThreshold} consecutive failures,
+ *     the breaker opens.</li>
+ *     <li>{@code OPEN}: events are rejected and counted. After {@code openDuration}, the breaker
+ *     becomes half-open.</li>
+ *     <li>{@code HALF_OPEN}: one event per {@code openDuration} is accepted, as a probe. A success
+ *     closes the breaker, and a failure opens it again.</li>
+ * </ul>
+ * A success reported in any state (e.g. the TCP transport reconnecting on its own) closes the breaker.
+ * Loss accounting heartbeats are never rejected, so that they report the rejected events once the
+ * transport recovers. When the appender keeps an {@link EventTailRing}, rejected events are added to it,
+ * since they are never encoded for Logstash.
+ * <p>
+ * This is also a {@link MetricSet} containing the current state, the number of rejected events,
+ * and the number of transitions to each state. The breaker of each running appender is kept in
+ * {@link #REGISTRY}, for {@link ElkCircuitBreakerHealthCheck}.
+ */
+class ElkCircuitBreaker extends Filter<ILoggingEvent> implements MetricSet {
+
+    static final String METRICS_NAME = "circuitBreaker";
+
+    static final ElkAppenderRegistry<ElkCircuitBreaker> REGISTRY = new ElkAppenderRegistry<>();
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final Ticker ticker;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong nextAttemptNanos = new AtomicLong();
+
+    private final LongAdder rejectedEvents = new LongAdder();
+    private final Counter opened = new Counter();
+    private final Counter halfOpened = new Counter();
+    private final Counter closed = new Counter();
+
+    @Setter(AccessLevel.PACKAGE)
+    private EventTailRing tailRing;
+
+    ElkCircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, Ticker.systemTicker());
+    }
+
+    ElkCircuitBreaker(int failureThreshold, Duration openDuration, Ticker ticker) {
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        this.ticker = ticker;
+    }
+
+    @Override
+    public FilterReply decide(ILoggingEvent event) {
+        if (allowEvent() || LossAccountingFilter.isHeartbeat(event)) {
+            return FilterReply.NEUTRAL;
+        }
+
+        rejectedEvents.increment();
+        ElkFlightRecorderEvents.recordDrop(CIRCUIT_BREAKER_STAGE, "circuit open", event);
+        if (nonNull(tailRing)) {
+            tailRing.addRejected(event);
+        }
+        return FilterReply.DENY;
+    }
+
+    /**
+     * @return true if an event may be sent now
+     */
+    boolean allowEvent() {
+        return switch (state.get()) {
+            case CLOSED -> true;
+            case OPEN -> tryHalfOpen();
+            case HALF_OPEN -> tryProbe();
+        };
+    }
+
+    private boolean tryHalfOpen() {
+        var now = ticker.read();
+        if (now - nextAttemptNanos.get() < 0) {
+            return false;
+        }
+
+        if (state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+            halfOpened.inc();
+            addInfo("Circuit breaker is half-open; sending a probe event");
+        }
+        return tryProbe();
+    }
+
+    /**
+     * Allow a single event once the wait since the previous attempt has elapsed.
+     */
+    private boolean tryProbe() {
+        var now = ticker.read();
+        var next = nextAttemptNanos.get();
+        return now - next >= 0 && nextAttemptNanos.compareAndSet(next, now + openDurationNanos);
+    }
+
+    /**
+     * Record that the transport delivered an event, or (re)connected. This is called for every
+     * event sent, so it only writes when something changes.
+     */
+    void recordSuccess() {
+        if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+        if (state.get() != State.CLOSED && state.getAndSet(State.CLOSED) != State.CLOSED) {
+            closed.inc();
+            addInfo("Circuit breaker is closed; the transport recovered");
+        }
+    }
+
+    /**
+     * Record that the transport failed to deliver an event, or to connect.
+     */
+    void recordFailure() {
+        var current = state.get();
+        if (current == State.HALF_OPEN) {
+            open(State.HALF_OPEN);
+        } else if (current == State.CLOSED && consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            open(State.CLOSED);
+        }
+    }
+
+    private void open(State from) {
+        nextAttemptNanos.set(ticker.read() + openDurationNanos);
+        if (state.compareAndSet(from, State.OPEN)) {
+            opened.inc();
+            addWarn("Circuit breaker is open; rejecting events until the transport recovers");
+        }
+    }
+
+    State getState() {
+        return state.get();
+    }
+
+    long getRejectedEventCount() {
+        return rejectedEvents.sum();
+    }
+
+    /**
+     * Create a listener that reports the outcomes of a Logstash TCP appender to this breaker.
+     */
+    TcpAppenderListener<ILoggingEvent> newTcpListener() {
+        return new TcpAppenderListener<>() {
+            @Override
+            public void connectionOpened(Appender<ILoggingEvent> appender, Socket socket) {
+                recordSuccess();
+            }
+
+            @Override
+            public void eventSent(Appender<ILoggingEvent> appender, Socket socket,
+                                  ILoggingEvent event, long durationInNanos) {
+                recordSuccess();
+            }
+
+            @Override
+            public void connectionFailed(Appender<ILoggingEvent> appender,
+                                         InetSocketAddress address, Throwable reason) {
+                recordFailure();
+            }
+
+            @Override
+            public void eventSendFailure(Appender<ILoggingEvent> appender,
+                                         ILoggingEvent event, Throwable reason) {
+                recordFailure();
+            }
+
+            @Override
+            public void eventAppendFailed(Appender<ILoggingEvent> appender,
+                                          ILoggingEvent event, Throwable reason) {
+                recordFailure();
+            }
+        };
+    }
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        return Map.of(
+                "state", (Gauge<String>) () -> state.get().name(),
+                "rejectedEvents", (Gauge<Long>) this::getRejectedEventCount,
+                "opened", opened,
+                "halfOpened", halfOpened,
+                "closed", closed
+        );
+    }
+}
@@ -0,0 +1,80 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import ch.qos.logback.classic.LoggerContext;
+import io.dropwizard.util.Duration;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configures a circuit breaker that rejects events, before any formatting or encoding, while the
+ * transport is failing to deliver them. For example:
+ * <pre>
+ * logging:
+ *   appenders:
+ *     - type: elk
+ *       circuitBreaker:
+ *         failureThreshold: 10
+ *         openDuration: 30s
+ * </pre>
+ * Failures are reported by the {@code tcp} transport (failed connections and sends, and events
+ * dropped because its buffer is full) and by the {@code http} transport (failed requests, and events
+ * dropped because its queue is full). Other transports do not report failures, so the circuit
+ * breaker never opens for them. Rejected events are counted, and are available as metrics when
+ * {@link ElkAppenderBundle} is added. See {@link ElkCircuitBreaker}.
+ * <table>
+ *     <caption>Configuration properties</caption>
+ *     <tr>
+ *         <td>Name</td>
+ *         <td>Default</td>
+ *         <td>Description</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code enabled}</td>
+ *         <td>{@code true}</td>
+ *         <td>Whether to use the circuit breaker.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code failureThreshold}</td>
+ *         <td>{@code 5}</td>
+ *         <td>The number of consecutive failures that opens the circuit breaker.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code openDuration}</td>
+ *         <td>{@code 10 seconds}</td>
+ *         <td>
+ *             How long to reject events before sending a probe event, and how often to send
+ *             another probe while the transport has not recovered.
+ *         </td>
+ *     </tr>
+ * </table>
+ */
+@Setter
+@Getter(AccessLevel.PACKAGE)  // getters are visible with package scope for testing
+public class ElkCircuitBreakerConfig {
+
+    static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    static final Duration DEFAULT_OPEN_DURATION = Duration.seconds(10);
+
+    private boolean enabled = true;
+    private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private Duration openDuration = DEFAULT_OPEN_DURATION;
+
+    /**
+     * Build the circuit breaker. {@link ElkAppenderFactory} registers it, and its metrics, under
+     * the appender's name.
+     */
+    ElkCircuitBreaker build(LoggerContext loggerContext) {
+        checkState(failureThreshold > 0, "circuitBreaker failureThreshold must be positive");
+        checkState(openDuration.toMilliseconds() > 0, "circuitBreaker openDuration must be positive");
+
+        var circuitBreaker = new ElkCircuitBreaker(failureThreshold, openDuration.toJavaDuration());
+        circuitBreaker.setContext(loggerContext);
+        circuitBreaker.setName("elk-circuit-breaker");
+        circuitBreaker.start();
+
+        return circuitBreaker;
+    }
+}
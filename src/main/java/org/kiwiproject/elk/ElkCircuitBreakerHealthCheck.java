@@ -0,0 +1,47 @@
+package org.kiwiproject.elk;
+
+import static java.util.stream.Collectors.joining;
+
+import com.codahale.metrics.health.HealthCheck;
+
+/**
+ * A health check that is unhealthy while the {@link ElkCircuitBreaker} of any ELK appender is
+ * open or half-open, i.e. while events are being rejected because Logstash is unreachable. It is
+ * healthy when no appender has the circuit breaker enabled.
+ * <p>
+ * It is registered by {@link ElkAppenderBundle} as {@value #NAME}.
+ */
+public class ElkCircuitBreakerHealthCheck extends HealthCheck {
+
+    static final String NAME = "elk-circuit-breaker";
+
+    private final ElkAppenderRegistry<ElkCircuitBreaker> breakers;
+
+    public ElkCircuitBreakerHealthCheck() {
+        this(ElkCircuitBreaker.REGISTRY);
+    }
+
+    ElkCircuitBreakerHealthCheck(ElkAppenderRegistry<ElkCircuitBreaker> breakers) {
+        this.breakers = breakers;
+    }
+
+    @Override
+    protected Result check() {
+        var allBreakers = breakers.getAll();
+        if (allBreakers.isEmpty()) {
+            return Result.healthy("Circuit breaker is not enabled");
+        }
+
+        var notClosed = allBreakers.entrySet()
+                .stream()
+                .filter(entry -> entry.getValue().getState() != ElkCircuitBreaker.State.CLOSED)
+                .map(entry -> String.format("Circuit breaker of appender %s is %s; %d events have been rejected",
+                        entry.getKey(), entry.getValue().getState(), entry.getValue().getRejectedEventCount()))
+                .collect(joining(". "));
+        if (notClosed.isEmpty()) {
+            return Result.healthy("Circuit breakers are closed for appenders: %s", String.join(", ", allBreakers.keySet()));
+        }
+
+        return Result.unhealthy(notClosed);
+    }
+}
@@ -0,0 +1,29 @@
+package org.kiwiproject.elk;
+
+/**
+ * How the {@link TcpTransportFactory tcp} transport distributes events across its connections when it
+ * has more than one.
+ *
+ * @see TcpTransportFactory#setDistribution(ElkConnectionDistribution)
+ */
+public enum ElkConnectionDistribution {
+
+    /**
+     * Each event is sent on the next connection in turn. This is the default, and spreads events most
+     * evenly, but events may arrive in a different order than they were logged.
+     */
+    ROUND_ROBIN,
+
+    /**
+     * All events logged by a thread are sent on the same connection, so they arrive in the order the
+     * thread logged them.
+     */
+    THREAD,
+
+    /**
+     * All events with the same value of the {@code distributionKey} MDC key, such as a request or tenant
+     * id, are sent on the same connection, so they arrive in order. Events without a value are
+     * distributed round-robin.
+     */
+    MDC
+}
@@ -0,0 +1,47 @@
+package org.kiwiproject.elk;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import net.logstash.logback.dataformat.DataFormatFactory;
+
+/**
+ * The wire format used to encode log events sent to Logstash.
+ *
+ * @see ElkAppenderFactory#setEncoding(ElkEncoding)
+ */
+public enum ElkEncoding {
+
+    /**
+     * Newline-delimited JSON text. This is the default, and is what the Logstash
+     * {@code json_lines} codec expects.
+     */
+    JSON(DataFormatFactory.JSON),
+
+    /**
+     * Binary <a href="https://cbor.io">CBOR</a>, which the Logstash {@code cbor} codec can decode.
+     */
+    CBOR(DataFormatFactory.CBOR),
+
+    /**
+     * Binary <a href="https://github.com/FasterXML/smile-format-specification">Smile</a>,
+     * the binary JSON format natively supported by Jackson.
+     */
+    SMILE(DataFormatFactory.SMILE);
+
+    /**
+     * The name of the logstash-logback-encoder data format.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final String dataFormat;
+
+    ElkEncoding(String dataFormat) {
+        this.dataFormat = dataFormat;
+    }
+
+    /**
+     * Whether this is a binary encoding, which cannot be delimited by newlines.
+     */
+    boolean isBinary() {
+        return this != JSON;
+    }
+}
@@ -0,0 +1,196 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link Flow.Publisher} of the events sent by the ELK appender, exactly as encoded for
+ * Logstash, for in-process consumers such as anomaly detectors or a buffer of recent events.
+ * <p>
+ * Events are published only when {@code publishEvents} is enabled on the appender. Use the
+ * {@link #shared() shared} instance to subscribe:
+ * <pre>
+ * ElkEventPublisher.shared().subscribe(mySubscriber);
+ * </pre>
+ * The shared instance outlives the appender, so subscriptions continue when logging is reconfigured.
+ * <p>
+ * Publishing never blocks the appender. Each subscriber has a bounded buffer. Events are only
+ * buffered for a subscriber that has requested more events, and when its buffer is full the
+ * oldest buffered event is dropped to make room. Events are only copied when at least one
+ * subscriber has outstanding demand, so a subscriber that requests nothing costs nothing.
+ * <p>
+ * Events are delivered to each subscriber in order, on the publisher's {@link Executor}, which by
+ * default is the {@link ForkJoinPool#commonPool() common pool}. The same {@code byte[]} is given
+ * to every subscriber, so subscribers must not modify it.
+ */
+public final class ElkEventPublisher implements Flow.Publisher<byte[]> {
+
+    static final int DEFAULT_BUFFER_SIZE = 1_024;
+
+    private static final ElkEventPublisher SHARED = new ElkEventPublisher(ForkJoinPool.commonPool(), DEFAULT_BUFFER_SIZE);
+
+    private final Executor executor;
+    private final int bufferSize;
+    private final List<ElkEventSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * @return the publisher that ELK appenders publish to
+     */
+    public static ElkEventPublisher shared() {
+        return SHARED;
+    }
+
+    ElkEventPublisher(Executor executor, int bufferSize) {
+        checkArgument(bufferSize > 0, "bufferSize must be positive");
+        this.executor = requireNonNull(executor);
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super byte[]> subscriber) {
+        requireNonNull(subscriber);
+        var subscription = new ElkEventSubscription(subscriber);
+        subscriptions.add(subscription);
+        subscriber.onSubscribe(subscription);
+    }
+
+    /**
+     * @return true if any subscriber has outstanding demand, i.e. if publishing an event would do anything
+     */
+    boolean hasDemand() {
+        for (var subscription : subscriptions) {
+            if (subscription.requested.get() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Offer an encoded event to every subscriber with outstanding demand. Never blocks.
+     */
+    void publish(byte[] encodedEvent) {
+        for (var subscription : subscriptions) {
+            subscription.offer(encodedEvent);
+        }
+    }
+
+    /**
+     * @return the number of events dropped for all current subscribers because their buffers were full
+     */
+    long getDroppedEventCount() {
+        return subscriptions.stream().mapToLong(subscription -> subscription.dropped.sum()).sum();
+    }
+
+    int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    private class ElkEventSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super byte[]> subscriber;
+        private final BlockingQueue<byte[]> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final LongAdder dropped = new LongAdder();
+        private volatile Throwable requestError;
+
+        ElkEventSubscription(Flow.Subscriber<? super byte[]> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void offer(byte[] encodedEvent) {
+            if (requested.get() <= 0 || cancelled.get()) {
+                return;
+            }
+
+            while (!buffer.offer(encodedEvent)) {
+                if (buffer.poll() != null) {
+                    dropped.increment();
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                requestError = new IllegalArgumentException("request must be positive, but was " + n);
+            } else {
+                requested.accumulateAndGet(n, (current, added) -> {
+                    var sum = current + added;
+                    return sum < 0 ? Long.MAX_VALUE : sum;
+                });
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            if (cancelled.compareAndSet(false, true)) {
+                subscriptions.remove(this);
+                buffer.clear();
+            }
+        }
+
+        /**
+         * Schedule delivery, unless delivery is already scheduled or running; in that case,
+         * the running delivery will see the new events or demand before it finishes.
+         */
+        private void drain() {
+            if (wip.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this::deliver);
+                } catch (RuntimeException e) {
+                    wip.set(0);
+                    cancel();
+                }
+            }
+        }
+
+        private void deliver() {
+            var missed = 1;
+            do {
+                if (cancelled.get()) {
+                    return;
+                }
+
+                if (requestError != null) {
+                    cancel();
+                    subscriber.onError(requestError);
+                    return;
+                }
+
+                while (requested.get() > 0 && !cancelled.get()) {
+                    var encodedEvent = buffer.poll();
+                    if (encodedEvent == null) {
+                        break;
+                    }
+
+                    requested.decrementAndGet();
+                    try {
+                        subscriber.onNext(encodedEvent);
+                    } catch (RuntimeException e) {
+                        cancel();
+                        return;
+                    }
+                }
+
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
@@ -1,13 +1,62 @@
 package org.kiwiproject.elk;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static net.logstash.logback.fieldnames.LogstashCommonFieldNames.IGNORE_FIELD_INDICATOR;
+
 import lombok.experimental.UtilityClass;
+import net.logstash.logback.fieldnames.LogstashAccessFieldNames;
 import net.logstash.logback.fieldnames.LogstashFieldNames;
 
 import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
 
 @UtilityClass
 class ElkFieldHelper {
 
+    /**
+     * The names of the fields that can be disabled (omitted entirely) using
+     * {@link #getFieldNamesFromMap(Map, Set)}, mapped to the setter that changes them.
+     * <p>
+     * The nested {@code caller}, {@code mdc}, and {@code context} fields are not included since
+     * they are controlled using the {@code includeCallerData}, {@code includeMdc}, and
+     * {@code includeContext} properties.
+     */
+    private static final Map<String, BiConsumer<LogstashFieldNames, String>> DISABLEABLE_FIELDS = Map.ofEntries(
+            Map.entry("timestamp", LogstashFieldNames::setTimestamp),
+            Map.entry("version", LogstashFieldNames::setVersion),
+            Map.entry("message", LogstashFieldNames::setMessage),
+            Map.entry("logger", LogstashFieldNames::setLogger),
+            Map.entry("thread", LogstashFieldNames::setThread),
+            Map.entry("level", LogstashFieldNames::setLevel),
+            Map.entry("levelValue", LogstashFieldNames::setLevelValue),
+            Map.entry("callerClass", LogstashFieldNames::setCallerClass),
+            Map.entry("callerMethod", LogstashFieldNames::setCallerMethod),
+            Map.entry("callerFile", LogstashFieldNames::setCallerFile),
+            Map.entry("callerLine", LogstashFieldNames::setCallerLine),
+            Map.entry("stackTrace", LogstashFieldNames::setStackTrace),
+            Map.entry("tags", LogstashFieldNames::setTags)
+    );
+
+    /**
+     * The names of the access event fields that can be disabled using
+     * {@link #getAccessFieldNamesFromMap(Map, Set)}, mapped to the setter that changes them.
+     */
+    private static final Map<String, BiConsumer<LogstashAccessFieldNames, String>> DISABLEABLE_ACCESS_FIELDS = Map.ofEntries(
+            Map.entry("timestamp", LogstashAccessFieldNames::setTimestamp),
+            Map.entry("version", LogstashAccessFieldNames::setVersion),
+            Map.entry("message", LogstashAccessFieldNames::setMessage),
+            Map.entry("method", LogstashAccessFieldNames::setMethod),
+            Map.entry("protocol", LogstashAccessFieldNames::setProtocol),
+            Map.entry("statusCode", LogstashAccessFieldNames::setStatusCode),
+            Map.entry("requestedUrl", LogstashAccessFieldNames::setRequestedUrl),
+            Map.entry("requestedUri", LogstashAccessFieldNames::setRequestedUri),
+            Map.entry("remoteHost", LogstashAccessFieldNames::setRemoteHost),
+            Map.entry("remoteUser", LogstashAccessFieldNames::setRemoteUser),
+            Map.entry("contentLength", LogstashAccessFieldNames::setContentLength),
+            Map.entry("elapsedTime", LogstashAccessFieldNames::setElapsedTime)
+    );
+
     LogstashFieldNames getFieldNamesFromMap(Map<String, String> map) {
         var fieldNames = new LogstashFieldNames();
 
@@ -17,6 +66,7 @@ class ElkFieldHelper {
         fieldNames.setLogger(map.getOrDefault("logger", "logger_name"));
         fieldNames.setThread(map.getOrDefault("thread", "thread_name"));
         fieldNames.setLevel(map.getOrDefault("level", "level"));
+        fieldNames.setLevelValue(map.getOrDefault("levelValue", "level_value"));
         fieldNames.setCaller(map.getOrDefault("caller", null));
         fieldNames.setCallerClass(map.getOrDefault("callerClass", "caller_class_name"));
         fieldNames.setCallerMethod(map.getOrDefault("callerMethod", "caller_method_name"));
@@ -29,4 +79,64 @@ class ElkFieldHelper {
 
         return fieldNames;
     }
+
+    /**
+     * Same as {@link #getFieldNamesFromMap(Map)}, but additionally omits the given fields
+     * entirely from log events, by setting them to the Logstash "ignore" indicator.
+     *
+     * @throws IllegalArgumentException if any of the disabled fields cannot be disabled
+     */
+    LogstashFieldNames getFieldNamesFromMap(Map<String, String> map, Set<String> disabledFields) {
+        var fieldNames = getFieldNamesFromMap(map);
+
+        disabledFields.forEach(field -> {
+            var setter = DISABLEABLE_FIELDS.get(field);
+            checkArgument(setter != null, "field %s cannot be disabled (allowed: %s)",
+                    field, DISABLEABLE_FIELDS.keySet().stream().sorted().toList());
+
+            setter.accept(fieldNames, IGNORE_FIELD_INDICATOR);
+        });
+
+        return fieldNames;
+    }
+
+    LogstashAccessFieldNames getAccessFieldNamesFromMap(Map<String, String> map) {
+        var fieldNames = new LogstashAccessFieldNames();
+
+        fieldNames.setTimestamp(map.getOrDefault("timestamp", "@timestamp"));
+        fieldNames.setVersion(map.getOrDefault("version", "@version"));
+        fieldNames.setMessage(map.getOrDefault("message", "message"));
+        fieldNames.setMethod(map.getOrDefault("method", "method"));
+        fieldNames.setProtocol(map.getOrDefault("protocol", "protocol"));
+        fieldNames.setStatusCode(map.getOrDefault("statusCode", "status_code"));
+        fieldNames.setRequestedUrl(map.getOrDefault("requestedUrl", "requested_url"));
+        fieldNames.setRequestedUri(map.getOrDefault("requestedUri", "requested_uri"));
+        fieldNames.setRemoteHost(map.getOrDefault("remoteHost", "remote_host"));
+        fieldNames.setRemoteUser(map.getOrDefault("remoteUser", "remote_user"));
+        fieldNames.setContentLength(map.getOrDefault("contentLength", "content_length"));
+        fieldNames.setElapsedTime(map.getOrDefault("elapsedTime", "elapsed_time"));
+        fieldNames.setContext(map.getOrDefault("context", null));
+
+        return fieldNames;
+    }
+
+    /**
+     * Same as {@link #getAccessFieldNamesFromMap(Map)}, but additionally omits the given fields
+     * entirely from access events, by setting them to the Logstash "ignore" indicator.
+     *
+     * @throws IllegalArgumentException if any of the disabled fields cannot be disabled
+     */
+    LogstashAccessFieldNames getAccessFieldNamesFromMap(Map<String, String> map, Set<String> disabledFields) {
+        var fieldNames = getAccessFieldNamesFromMap(map);
+
+        disabledFields.forEach(field -> {
+            var setter = DISABLEABLE_ACCESS_FIELDS.get(field);
+            checkArgument(setter != null, "field %s cannot be disabled (allowed: %s)",
+                    field, DISABLEABLE_ACCESS_FIELDS.keySet().stream().sorted().toList());
+
+            setter.accept(fieldNames, IGNORE_FIELD_INDICATOR);
+        });
+
+        return fieldNames;
+    }
 }
@@ -0,0 +1,200 @@
+package org.kiwiproject.elk;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import lombok.experimental.UtilityClass;
+
+/**
+ * The JDK Flight Recorder events for each stage of the appender's pipeline, so that slow or dropped
+ * events can be correlated with garbage collection, socket, and other JVM events in one recording.
+ * <p>
+ * Like the built-in events, each can be enabled, disabled, and given a threshold in the recording
+ * settings, e.g. {@code org.kiwiproject.elk.Encode#threshold=0 ms}. Disabled events cost nothing
+ * beyond a check, since their construction is eliminated by the JIT compiler. By default, the timed
+ * events on the path of every log event are only recorded when they exceed a threshold, so that a
+ * default recording is not flooded with them.
+ */
+@UtilityClass
+class ElkFlightRecorderEvents {
+
+    static final String ASYNC_QUEUE_STAGE = "asyncQueue";
+    static final String TRANSPORT_STAGE = "transport";
+    static final String CIRCUIT_BREAKER_STAGE = "circuitBreaker";
+    static final String HEAP_PRESSURE_STAGE = "heapPressure";
+
+    private static final String CATEGORY = "ELK Appender";
+
+    /**
+     * The time a logging thread spent adding an event to the async appender's queue, which
+     * includes waiting for space when the queue is full and the appender may block.
+     */
+    @Name("org.kiwiproject.elk.Enqueue")
+    @Label("ELK Enqueue")
+    @Category({ "Logging", CATEGORY })
+    @Description("Adding a log event to the async appender's queue")
+    @Threshold("1 ms")
+    static class EnqueueEvent extends Event {
+
+        @Label("Logger")
+        String loggerName;
+
+        @Label("Level")
+        String level;
+    }
+
+    /**
+     * The time spent encoding an event, and the size of the encoded event.
+     */
+    @Name("org.kiwiproject.elk.Encode")
+    @Label("ELK Encode")
+    @Category({ "Logging", CATEGORY })
+    @Description("Encoding a log event")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static class EncodeEvent extends Event {
+
+        @Label("Logger")
+        String loggerName;
+
+        @Label("Size")
+        @DataAmount
+        long size;
+    }
+
+    /**
+     * The time spent sending a batch of events, by a batching transport or the shared-memory
+     * ring forwarder.
+     */
+    @Name("org.kiwiproject.elk.BatchFlush")
+    @Label("ELK Batch Flush")
+    @Category({ "Logging", CATEGORY })
+    @Description("Sending a batch of log events")
+    @StackTrace(false)
+    static class BatchFlushEvent extends Event {
+
+        @Label("Transport")
+        String transport;
+
+        @Label("Event Count")
+        int eventCount;
+
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+
+    /**
+     * The time spent writing to a socket connected to Logstash or a local shipper.
+     */
+    @Name("org.kiwiproject.elk.SocketWrite")
+    @Label("ELK Socket Write")
+    @Category({ "Logging", CATEGORY })
+    @Description("Writing log events to a socket")
+    @Threshold("10 ms")
+    @StackTrace(false)
+    static class SocketWriteEvent extends Event {
+
+        @Label("Destination")
+        String destination;
+
+        @Label("Bytes Written")
+        @DataAmount
+        long bytesWritten;
+    }
+
+    /**
+     * The time spent trying to connect to Logstash or a local shipper, and whether it succeeded.
+     */
+    @Name("org.kiwiproject.elk.ConnectionAttempt")
+    @Label("ELK Connection Attempt")
+    @Category({ "Logging", CATEGORY })
+    @Description("Connecting to Logstash")
+    @StackTrace(false)
+    static class ConnectionAttemptEvent extends Event {
+
+        @Label("Destination")
+        String destination;
+
+        @Label("Succeeded")
+        boolean succeeded;
+
+        @Label("Failure")
+        String failure;
+    }
+
+    /**
+     * The time from losing, or failing to make, a connection until it was made again, which is
+     * how long events could not be sent.
+     */
+    @Name("org.kiwiproject.elk.Reconnect")
+    @Label("ELK Reconnect")
+    @Category({ "Logging", CATEGORY })
+    @Description("Reconnecting to Logstash after the connection was lost or could not be made")
+    @StackTrace(false)
+    static class ReconnectEvent extends Event {
+
+        @Label("Destination")
+        String destination;
+
+        @Label("Failed Attempts")
+        int failedAttempts;
+    }
+
+    /**
+     * One or more events that were dropped, and at which stage.
+     */
+    @Name("org.kiwiproject.elk.Drop")
+    @Label("ELK Drop")
+    @Category({ "Logging", CATEGORY })
+    @Description("Log events that were dropped instead of sent")
+    @StackTrace(false)
+    static class DropEvent extends Event {
+
+        @Label("Stage")
+        @Description("asyncQueue, transport, or circuitBreaker")
+        String stage;
+
+        @Label("Reason")
+        String reason;
+
+        @Label("Logger")
+        @Description("The logger of the dropped event, if only one event was dropped")
+        String loggerName;
+
+        @Label("Event Count")
+        int eventCount;
+    }
+
+    /**
+     * Record that the given event was dropped, if drop events are enabled.
+     */
+    void recordDrop(String stage, String reason, ILoggingEvent event) {
+        var drop = new DropEvent();
+        if (drop.shouldCommit()) {
+            drop.stage = stage;
+            drop.reason = reason;
+            drop.loggerName = event.getLoggerName();
+            drop.eventCount = 1;
+            drop.commit();
+        }
+    }
+
+    /**
+     * Record that the given number of events were dropped, if drop events are enabled.
+     */
+    void recordDrop(String stage, String reason, int eventCount) {
+        var drop = new DropEvent();
+        if (drop.shouldCommit()) {
+            drop.stage = stage;
+            drop.reason = reason;
+            drop.eventCount = eventCount;
+            drop.commit();
+        }
+    }
+}
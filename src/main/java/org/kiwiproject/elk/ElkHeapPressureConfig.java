@@ -0,0 +1,97 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configures shedding of events while the heap is nearly full, so that events buffered by the appender
+ * do not make a memory emergency worse. For example:
+ * <pre>
+ * logging:
+ *   appenders:
+ *     - type: elk
+ *       heapPressure:
+ *         elevatedThreshold: 0.8
+ *         criticalThreshold: 0.9
+ * </pre>
+ * The pressure is the fraction of the heap (more precisely, of the fullest heap memory pool, such as
+ * the old generation) still used after garbage collection, which is evaluated from JMX notifications
+ * as collections happen. Above the {@code elevatedThreshold}, events below the {@code elevatedLevel}
+ * are shed, and so is any event while the async queue is half full. Above the {@code criticalThreshold},
+ * events below the {@code criticalLevel} are shed, and so is any event while the async queue is an
+ * eighth full. Normal behavior is restored once the pressure drops below the threshold again. Each
+ * change is reported by a {@code WARN} event from the {@value HeapPressureFilter#LOGGER_NAME} logger,
+ * and the level, pressure, shed events, and changes are available as metrics when
+ * {@link ElkAppenderBundle} is added. See {@link HeapPressureFilter}.
+ * <table>
+ *     <caption>Configuration properties</caption>
+ *     <tr>
+ *         <td>Name</td>
+ *         <td>Default</td>
+ *         <td>Description</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code enabled}</td>
+ *         <td>{@code true}</td>
+ *         <td>Whether to shed events under heap pressure.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code elevatedThreshold}</td>
+ *         <td>{@code 0.8}</td>
+ *         <td>The fraction of the heap used after collection above which the pressure is elevated.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code criticalThreshold}</td>
+ *         <td>{@code 0.9}</td>
+ *         <td>The fraction of the heap used after collection above which the pressure is critical.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code elevatedLevel}</td>
+ *         <td>{@code WARN}</td>
+ *         <td>The lowest level of events that are kept while the pressure is elevated.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code criticalLevel}</td>
+ *         <td>{@code ERROR}</td>
+ *         <td>The lowest level of events that are kept while the pressure is critical.</td>
+ *     </tr>
+ * </table>
+ */
+@Setter
+@Getter(AccessLevel.PACKAGE)  // getters are visible with package scope for testing
+public class ElkHeapPressureConfig {
+
+    static final double DEFAULT_ELEVATED_THRESHOLD = 0.8;
+    static final double DEFAULT_CRITICAL_THRESHOLD = 0.9;
+
+    private boolean enabled = true;
+    private double elevatedThreshold = DEFAULT_ELEVATED_THRESHOLD;
+    private double criticalThreshold = DEFAULT_CRITICAL_THRESHOLD;
+    private String elevatedLevel = "WARN";
+    private String criticalLevel = "ERROR";
+
+    /**
+     * Build the filter. The filter is registered with the logger context so that it stops, and stops
+     * listening for notifications, when the context stops. It is started once its appender is set.
+     * {@link ElkAppenderFactory} registers its metrics under the appender's name.
+     */
+    HeapPressureFilter build(LoggerContext loggerContext) {
+        checkState(elevatedThreshold > 0 && elevatedThreshold < 1,
+                "heapPressure elevatedThreshold must be between 0 and 1");
+        checkState(criticalThreshold > elevatedThreshold && criticalThreshold < 1,
+                "heapPressure criticalThreshold must be between elevatedThreshold and 1");
+
+        var filter = new HeapPressureFilter(elevatedThreshold, criticalThreshold,
+                Level.toLevel(elevatedLevel, Level.WARN), Level.toLevel(criticalLevel, Level.ERROR));
+        filter.setContext(loggerContext);
+        filter.setName("elk-heap-pressure");
+        loggerContext.register(filter);
+
+        return filter;
+    }
+}
@@ -0,0 +1,58 @@
+package org.kiwiproject.elk;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The format of the request bodies sent by the HTTP transport.
+ *
+ * @see HttpTransportFactory#setBatchFormat(ElkHttpBatchFormat)
+ */
+public enum ElkHttpBatchFormat {
+
+    /**
+     * Newline-delimited JSON, one event per line. This is the default, and is what the
+     * Logstash {@code json_lines} codec expects.
+     */
+    NDJSON("application/x-ndjson", "", "\n", "\n"),
+
+    /**
+     * A single JSON array containing all the events in the batch. The Logstash {@code http}
+     * input splits arrays into separate events when using the {@code json} codec.
+     */
+    JSON_ARRAY("application/json", "[", ",", "]");
+
+    /**
+     * The value of the {@code Content-Type} header for request bodies in this format.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final String contentType;
+
+    private final byte[] start;
+    private final byte[] separator;
+    private final byte[] end;
+
+    ElkHttpBatchFormat(String contentType, String start, String separator, String end) {
+        this.contentType = contentType;
+        this.start = start.getBytes(UTF_8);
+        this.separator = separator.getBytes(UTF_8);
+        this.end = end.getBytes(UTF_8);
+    }
+
+    void writeStart(OutputStream out) throws IOException {
+        out.write(start);
+    }
+
+    void writeSeparator(OutputStream out) throws IOException {
+        out.write(separator);
+    }
+
+    void writeEnd(OutputStream out) throws IOException {
+        out.write(end);
+    }
+}
@@ -0,0 +1,87 @@
+package org.kiwiproject.elk;
+
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A Dropwizard admin task that prints the loggers sending the most bytes to Logstash, with
+ * their event counts and encoded size percentiles, as recorded by {@link LoggerStats}.
+ * <p>
+ * It is registered by {@link ElkAppenderBundle}, and requires {@code trackLoggerStats} to be
+ * enabled on the appender. For example:
+ * <pre>
+ * curl -X POST 'http://localhost:8081/tasks/elk-logger-stats?limit=10'
+ * </pre>
+ * Add {@code reset=true} to clear the stats after printing them. When several appenders track
+ * logger stats, the stats of each are printed after a {@code ==> name <==} header; the
+ * {@code appender} parameter selects a single one by name.
+ */
+public class ElkLoggerStatsTask extends Task {
+
+    static final int DEFAULT_LIMIT = 20;
+
+    private static final String ROW_FORMAT = "%-60s %12s %14s %8s %8s %8s %8s%n";
+
+    private final ElkAppenderRegistry<LoggerStats> allStats;
+
+    public ElkLoggerStatsTask() {
+        this(LoggerStats.REGISTRY);
+    }
+
+    ElkLoggerStatsTask(ElkAppenderRegistry<LoggerStats> allStats) {
+        super("elk-logger-stats");
+        this.allStats = allStats;
+    }
+
+    @Override
+    public void execute(Map<String, List<String>> parameters, PrintWriter output) {
+        var statsByAppender = allStats.getAll();
+        var appenderName = getFirstParameter(parameters, "appender");
+        appenderName.ifPresent(name -> statsByAppender.keySet().retainAll(List.of(name)));
+        if (statsByAppender.isEmpty()) {
+            output.println(appenderName
+                    .map(name -> "Logger stats are not enabled for appender " + name + ".")
+                    .orElse("Logger stats are not enabled. Set trackLoggerStats to true on the elk appender."));
+            return;
+        }
+
+        var limit = getFirstParameter(parameters, "limit").map(Integer::parseInt).orElse(DEFAULT_LIMIT);
+        var reset = getFirstParameter(parameters, "reset").map(Boolean::parseBoolean).orElse(false);
+
+        statsByAppender.forEach((name, stats) -> {
+            if (statsByAppender.size() > 1) {
+                output.println("==> " + name + " <==");
+            }
+            printStats(stats, limit, output);
+            if (reset) {
+                stats.reset();
+                output.println();
+                output.println("Stats were reset");
+            }
+        });
+    }
+
+    private static void printStats(LoggerStats stats, int limit, PrintWriter output) {
+        output.printf("Total: %d events, %d bytes%n%n", stats.getTotalEvents(), stats.getTotalBytes());
+        output.printf(ROW_FORMAT, "logger", "events", "bytes", "mean", "p50", "p99", "max");
+        for (var entry : stats.getTopLoggers(limit)) {
+            var sizes = entry.sizes();
+            output.printf(ROW_FORMAT,
+                    entry.loggerName(),
+                    entry.estimatedEvents(),
+                    entry.estimatedBytes(),
+                    Math.round(sizes.getMean()),
+                    Math.round(sizes.getMedian()),
+                    Math.round(sizes.get99thPercentile()),
+                    sizes.getMax());
+        }
+    }
+
+    private static Optional<String> getFirstParameter(Map<String, List<String>> parameters, String name) {
+        return parameters.getOrDefault(name, List.of()).stream().findFirst();
+    }
+}
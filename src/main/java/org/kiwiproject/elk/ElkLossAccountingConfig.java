@@ -0,0 +1,83 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import io.dropwizard.util.Duration;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configures accounting for events, so that loss can be measured downstream, for example per service.
+ * For example:
+ * <pre>
+ * logging:
+ *   appenders:
+ *     - type: elk
+ *       lossAccounting:
+ *         heartbeatInterval: 30s
+ * </pre>
+ * Each event is sent with an {@code instance_id} field, which is a random id for the appender that is
+ * stable for its lifetime (normally, the lifetime of the process), and a {@code sequence} field, which
+ * is assigned as the event is encoded, starting at 1. A heartbeat event is sent every
+ * {@code heartbeatInterval} by the {@value LossAccountingFilter#HEARTBEAT_LOGGER_NAME} logger at
+ * {@code INFO}, with the cumulative counts in a {@code delivery} field:
+ * <ul>
+ *     <li>{@code appended}: the events given to the appender, at or above its threshold, and heartbeats</li>
+ *     <li>{@code sent}: the events encoded and given to the transport, i.e. the last sequence number</li>
+ *     <li>
+ *         {@code dropped}: the events dropped before being sent, because a queue or buffer was full or
+ *         the circuit breaker was open
+ *     </li>
+ * </ul>
+ * So the events lost by the appender are {@code dropped}, and those lost after being encoded (by the
+ * network, Logstash, a failed {@code http} batch, or a full {@code shared-memory} ring) are the sequence
+ * numbers up to {@code sent} that are missing downstream. Events aggregated into summaries are not
+ * counted. The heartbeat is sent whatever the appender's {@code threshold}, and is never rejected by
+ * the circuit breaker or shed under heap pressure; it is counted in {@code appended} and {@code sent}
+ * of the next heartbeat. See {@link LossAccountingFilter}.
+ * <table>
+ *     <caption>Configuration properties</caption>
+ *     <tr>
+ *         <td>Name</td>
+ *         <td>Default</td>
+ *         <td>Description</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code enabled}</td>
+ *         <td>{@code true}</td>
+ *         <td>Whether to add sequence numbers and send heartbeats.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code heartbeatInterval}</td>
+ *         <td>{@code 1 minute}</td>
+ *         <td>How often to send a heartbeat event with the cumulative counts.</td>
+ *     </tr>
+ * </table>
+ */
+@Setter
+@Getter(AccessLevel.PACKAGE)  // getters are visible with package scope for testing
+public class ElkLossAccountingConfig {
+
+    static final Duration DEFAULT_HEARTBEAT_INTERVAL = Duration.minutes(1);
+
+    private boolean enabled = true;
+    private Duration heartbeatInterval = DEFAULT_HEARTBEAT_INTERVAL;
+
+    /**
+     * Build the filter, which is registered with the logger context so that it stops when the context
+     * stops. It is started once its appender is set.
+     */
+    LossAccountingFilter build(LoggerContext loggerContext, Level threshold) {
+        checkState(heartbeatInterval.toMilliseconds() > 0, "lossAccounting heartbeatInterval must be positive");
+
+        var filter = new LossAccountingFilter(threshold, heartbeatInterval.toJavaDuration());
+        filter.setContext(loggerContext);
+        filter.setName("elk-loss-accounting");
+        loggerContext.register(filter);
+
+        return filter;
+    }
+}
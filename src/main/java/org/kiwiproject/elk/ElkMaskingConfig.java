@@ -0,0 +1,131 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.nonNull;
+import static org.kiwiproject.collect.KiwiCollections.isNullOrEmpty;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Stream;
+
+/**
+ * Configures masking of sensitive data, such as tokens, card numbers, and email addresses, as events
+ * are encoded, so that it never leaves the host. For example:
+ * <pre>
+ * logging:
+ *   appenders:
+ *     - type: elk
+ *       masking:
+ *         fields: [message, stack_trace]
+ *         maskedFields: [sessionId]
+ *         rules:
+ *           - prefix: "Bearer "
+ *           - prefix: "password="
+ *           - pattern: "[\\w.+-]+@[\\w-]+\\.[\\w.-]+"
+ *             requires: ["@"]
+ *           - pattern: "\\b(?:\\d[ -]?){12,18}\\d\\b"
+ *             fields: [message]
+ * </pre>
+ * Field names are those in the encoded event, so an MDC key is targeted by its name, and fields
+ * renamed using {@code fieldNames} are targeted by their new names.
+ * <p>
+ * The literals and prefixes of all rules, and the literals that patterns require, are compiled into
+ * a single automaton that scans each value once, however many rules there are. Regular expressions
+ * are the expensive part, so give each {@code pattern} the {@code requires} literals that any match
+ * must contain, and only the {@code fields} it is needed for. See {@link SensitiveDataMasker}.
+ * <table>
+ *     <caption>Configuration properties</caption>
+ *     <tr>
+ *         <td>Name</td>
+ *         <td>Default</td>
+ *         <td>Description</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code enabled}</td>
+ *         <td>{@code true}</td>
+ *         <td>Whether to mask sensitive data.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code mask}</td>
+ *         <td>{@code ****}</td>
+ *         <td>The text that replaces sensitive data.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code fields}</td>
+ *         <td>{@code [message]}</td>
+ *         <td>The fields that rules apply to, unless a rule lists its own {@code fields}.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code maskedFields}</td>
+ *         <td>empty set</td>
+ *         <td>Fields, such as MDC keys, whose values are always masked entirely.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code rules}</td>
+ *         <td>empty list</td>
+ *         <td>The rules for finding sensitive data. See {@link ElkMaskingRule}.</td>
+ *     </tr>
+ * </table>
+ */
+@Setter
+@Getter(AccessLevel.PACKAGE)  // getters are visible with package scope for testing
+public class ElkMaskingConfig {
+
+    static final String DEFAULT_MASK = "****";
+    static final String DEFAULT_FIELD = "message";
+
+    private boolean enabled = true;
+    private String mask = DEFAULT_MASK;
+    private Set<String> fields = new HashSet<>(Set.of(DEFAULT_FIELD));
+    private Set<String> maskedFields = new HashSet<>();
+    private List<ElkMaskingRule> rules = new ArrayList<>();
+
+    /**
+     * Validate the rules, and compile them into a masker.
+     */
+    SensitiveDataMasker build() {
+        checkState(nonNull(mask), "masking mask must not be null");
+
+        var effectiveRules = isNullOrEmpty(rules) ? List.<ElkMaskingRule>of() : rules;
+        for (var i = 0; i < effectiveRules.size(); i++) {
+            validate(effectiveRules.get(i), i);
+        }
+
+        return new SensitiveDataMasker(mask,
+                isNullOrEmpty(maskedFields) ? Set.of() : maskedFields,
+                isNullOrEmpty(fields) ? Set.of() : fields,
+                effectiveRules);
+    }
+
+    private static void validate(ElkMaskingRule rule, int index) {
+        var definitions = Stream.of(rule.getLiteral(), rule.getPrefix(), rule.getPattern())
+                .filter(Objects::nonNull)
+                .toList();
+        checkState(definitions.size() == 1,
+                "masking rule %s must have exactly one of literal, prefix, or pattern", index);
+        checkState(!definitions.get(0).isEmpty(), "masking rule %s must not be empty", index);
+
+        if (nonNull(rule.getPattern())) {
+            try {
+                Pattern.compile(rule.getPattern());
+            } catch (PatternSyntaxException e) {
+                throw new IllegalStateException("masking rule " + index + " has an invalid pattern", e);
+            }
+        }
+
+        if (!isNullOrEmpty(rule.getRequires())) {
+            checkState(nonNull(rule.getPattern()), "masking rule %s can only have requires with a pattern", index);
+            checkState(rule.getRequires().stream().allMatch(required -> nonNull(required) && !required.isEmpty()),
+                    "masking rule %s must not require empty literals", index);
+        }
+    }
+}
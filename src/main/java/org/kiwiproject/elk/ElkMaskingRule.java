@@ -0,0 +1,67 @@
+package org.kiwiproject.elk;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A rule for finding sensitive data to mask, in an {@link ElkMaskingConfig}. Exactly one of
+ * {@code literal}, {@code prefix}, and {@code pattern} must be set.
+ * <table>
+ *     <caption>Configuration properties</caption>
+ *     <tr>
+ *         <td>Name</td>
+ *         <td>Default</td>
+ *         <td>Description</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code literal}</td>
+ *         <td>{@code null}</td>
+ *         <td>Text that is masked wherever it occurs, e.g. a known test credential.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code prefix}</td>
+ *         <td>{@code null}</td>
+ *         <td>
+ *             Text that is followed by a sensitive value, e.g. {@code Bearer } or {@code password=}.
+ *             The prefix is kept, and the value after it is masked up to the next whitespace, quote,
+ *             or one of the characters <code>, ; &amp; ) ] } &lt; &gt;</code>.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code pattern}</td>
+ *         <td>{@code null}</td>
+ *         <td>A regular expression whose matches are masked, e.g. for email addresses.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code requires}</td>
+ *         <td>empty list</td>
+ *         <td>
+ *             For a {@code pattern}, literals of which a value must contain at least one before the
+ *             regular expression runs on it, e.g. {@code @} for email addresses. Without them, the
+ *             regular expression runs on every value of the rule's fields.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code fields}</td>
+ *         <td>empty set</td>
+ *         <td>
+ *             The fields the rule applies to, such as {@code message}, {@code stack_trace}, or an MDC
+ *             key. When empty, the masking configuration's {@code fields} are used.
+ *         </td>
+ *     </tr>
+ * </table>
+ */
+@Setter
+@Getter(AccessLevel.PACKAGE)  // getters are visible with package scope for testing
+public class ElkMaskingRule {
+
+    private String literal;
+    private String prefix;
+    private String pattern;
+    private List<String> requires;
+    private Set<String> fields;
+}
@@ -0,0 +1,385 @@
+package org.kiwiproject.elk;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import ch.qos.logback.core.ContextBase;
+import ch.qos.logback.core.spi.ContextAwareBase;
+import ch.qos.logback.core.status.OnConsoleStatusListener;
+import com.google.common.base.Ticker;
+import org.kiwiproject.elk.ElkFlightRecorderEvents.BatchFlushEvent;
+import org.kiwiproject.elk.ElkFlightRecorderEvents.ConnectionAttemptEvent;
+import org.kiwiproject.elk.ElkFlightRecorderEvents.ReconnectEvent;
+import org.kiwiproject.elk.ElkFlightRecorderEvents.SocketWriteEvent;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Forwards the events in a {@link SharedMemoryRing} to Logstash over TCP, in batches.
+ * <p>
+ * Every process using the ring may run a forwarder, but only one at a time forwards events: the
+ * one holding an exclusive lock on the ring's lock file. The others try to take the lock once a
+ * second, so if the forwarding process exits or crashes, another takes over. Events are only
+ * released from the ring after they have been written to the socket, so events in a batch that
+ * fails are sent again after reconnecting. Each batch is written straight from the ring, without
+ * copying, in a single gathering write.
+ * <p>
+ * The forwarder can also run as a separate process, using the same ring file:
+ * <pre>
+ * java -cp dropwizard-elk-appender.jar:... org.kiwiproject.elk.ElkRingForwarder /dev/shm/elk-appender/elk-events.ring logstash.acme.com 5044
+ * </pre>
+ * Problems are reported as logback status messages, not logged, since logging them could add
+ * more events to the ring. Batches, connection attempts, socket writes, and reconnects are recorded
+ * as Flight Recorder events, when enabled.
+ */
+public class ElkRingForwarder extends ContextAwareBase {
+
+    static final long DEFAULT_MAX_BATCH_BYTES = 256 * 1024;
+    static final long DEFAULT_CAPACITY = 64 * 1024 * 1024;
+
+    private static final Duration ELECTION_INTERVAL = Duration.ofSeconds(1);
+    private static final Duration CLAIM_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration IDLE_WAIT = Duration.ofMillis(5);
+    private static final Duration MAX_RECONNECT_DELAY = Duration.ofSeconds(30);
+    private static final int CONNECT_TIMEOUT_MILLIS = 5_000;
+
+    private final SharedMemoryRing ring;
+    private final Path lockFile;
+    private final InetSocketAddress destination;
+    private final long maxBatchBytes;
+    private final Ticker ticker;
+
+    private final LongAdder forwardedEventCount = new LongAdder();
+    private final LongAdder skippedEventCount = new LongAdder();
+
+    private volatile boolean running;
+    private volatile boolean elected;
+    private boolean virtualThreads;
+    private Thread thread;
+
+    ElkRingForwarder(SharedMemoryRing ring, Path lockFile, String host, int port, long maxBatchBytes) {
+        this(ring, lockFile, host, port, maxBatchBytes, Ticker.systemTicker());
+    }
+
+    ElkRingForwarder(SharedMemoryRing ring, Path lockFile, String host, int port, long maxBatchBytes, Ticker ticker) {
+        this.ring = ring;
+        this.lockFile = lockFile;
+        this.destination = InetSocketAddress.createUnresolved(host, port);
+        this.maxBatchBytes = maxBatchBytes;
+        this.ticker = ticker;
+    }
+
+    /**
+     * Run a forwarder in its own process, until the process is stopped.
+     *
+     * @param args the ring file, the Logstash host, and the Logstash port
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length != 3) {
+            System.err.println("Usage: ElkRingForwarder <ring-file> <logstash-host> <logstash-port>");
+            System.exit(1);
+        }
+
+        var ringFile = Path.of(args[0]);
+        var ring = SharedMemoryRing.open(ringFile, DEFAULT_CAPACITY);
+        var forwarder = new ElkRingForwarder(ring, lockFileFor(ringFile), args[1], Integer.parseInt(args[2]),
+                DEFAULT_MAX_BATCH_BYTES);
+        forwarder.setContext(newConsoleStatusContext());
+        Runtime.getRuntime().addShutdownHook(new Thread(forwarder::stop));
+
+        forwarder.start();
+        forwarder.thread.join();
+    }
+
+    private static ContextBase newConsoleStatusContext() {
+        var context = new ContextBase();
+        var statusListener = new OnConsoleStatusListener();
+        statusListener.setContext(context);
+        statusListener.start();
+        context.getStatusManager().add(statusListener);
+        return context;
+    }
+
+    /**
+     * @return the lock file used to elect the forwarder of the given ring file
+     */
+    static Path lockFileFor(Path ringFile) {
+        return ringFile.resolveSibling(ringFile.getFileName() + ".lock");
+    }
+
+    /**
+     * Run on a virtual thread instead of a platform thread. Must be called before starting.
+     */
+    void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    void start() {
+        running = true;
+        thread = ElkThreads.newThread(virtualThreads, "elk-ring-forwarder", this::run);
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        if (isNull(thread)) {
+            return;
+        }
+
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+            if (thread.isAlive()) {
+                addWarn("Forwarder did not finish within 5 seconds; interrupting it");
+                thread.interrupt();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    boolean isElected() {
+        return elected;
+    }
+
+    long getForwardedEventCount() {
+        return forwardedEventCount.sum();
+    }
+
+    long getSkippedEventCount() {
+        return skippedEventCount.sum();
+    }
+
+    private void run() {
+        try (var lockChannel = SharedMemoryRing.openOwnerOnly(lockFile, StandardOpenOption.WRITE)) {
+            while (running) {
+                var lock = tryLock(lockChannel);
+                if (isNull(lock)) {
+                    pause(ELECTION_INTERVAL);
+                    continue;
+                }
+
+                try (lock) {
+                    elected = true;
+                    addInfo("Forwarding events from " + ring.getPath() + " to " + destination);
+                    forwardUntilStopped();
+                } finally {
+                    elected = false;
+                }
+            }
+        } catch (IOException e) {
+            addError("Unable to use lock file " + lockFile + "; not forwarding events", e);
+        }
+    }
+
+    /**
+     * Another thread in this JVM (e.g. the forwarder of an appender being replaced) may hold the
+     * lock, in which case this throws {@link OverlappingFileLockException} instead of returning null.
+     */
+    private static FileLock tryLock(FileChannel lockChannel) throws IOException {
+        try {
+            return lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    private void forwardUntilStopped() {
+        SocketChannel channel = null;
+        var reconnectDelay = Duration.ofMillis(100);
+        var claimedSince = 0L;
+        ReconnectEvent reconnect = null;
+        var failedAttempts = 0;
+
+        try {
+            while (running) {
+                try {
+                    if (isNull(channel)) {
+                        channel = connect();
+                        reconnectDelay = Duration.ofMillis(100);
+                        recordReconnect(reconnect, failedAttempts);
+                        reconnect = null;
+                        failedAttempts = 0;
+                    }
+
+                    var sent = sendBatch(channel);
+                    if (sent > 0) {
+                        claimedSince = 0;
+                        continue;
+                    }
+
+                    claimedSince = skipAbandonedRecord(claimedSince);
+                    pause(IDLE_WAIT);
+                } catch (IOException e) {
+                    addWarn("Unable to forward events to " + destination + "; retrying in " + reconnectDelay, e);
+                    closeQuietly(channel);
+                    channel = null;
+                    if (isNull(reconnect)) {
+                        reconnect = new ReconnectEvent();
+                        reconnect.begin();
+                    }
+                    failedAttempts++;
+                    pause(reconnectDelay);
+                    reconnectDelay = min(reconnectDelay.multipliedBy(2), MAX_RECONNECT_DELAY);
+                }
+            }
+        } finally {
+            closeQuietly(channel);
+        }
+    }
+
+    private void recordReconnect(ReconnectEvent reconnect, int failedAttempts) {
+        if (isNull(reconnect)) {
+            return;
+        }
+
+        reconnect.end();
+        if (reconnect.shouldCommit()) {
+            reconnect.destination = destination.toString();
+            reconnect.failedAttempts = failedAttempts;
+            reconnect.commit();
+        }
+    }
+
+    private SocketChannel connect() throws IOException {
+        var attempt = new ConnectionAttemptEvent();
+        attempt.begin();
+        var address = new InetSocketAddress(destination.getHostString(), destination.getPort());
+        var channel = SocketChannel.open();
+        try {
+            channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+            channel.socket().connect(address, CONNECT_TIMEOUT_MILLIS);
+            FlightRecordingSocket.recordConnectionAttempt(attempt, String.valueOf(address), null);
+            return channel;
+        } catch (IOException e) {
+            FlightRecordingSocket.recordConnectionAttempt(attempt, String.valueOf(address), e);
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Write the next batch of events, and release them from the ring once written.
+     *
+     * @return the number of events sent
+     */
+    private int sendBatch(SocketChannel channel) throws IOException {
+        var batch = new ArrayList<ByteBuffer>();
+        var next = ring.peekBuffers(maxBatchBytes, batch::add);
+
+        if (!batch.isEmpty()) {
+            writeBatch(channel, batch);
+        }
+
+        if (next > ring.getReadPosition()) {
+            ring.release(next);
+        }
+        forwardedEventCount.add(batch.size());
+        return batch.size();
+    }
+
+    private void writeBatch(SocketChannel channel, List<ByteBuffer> batch) throws IOException {
+        var flush = new BatchFlushEvent();
+        flush.begin();
+        var succeeded = false;
+        try {
+            var payloads = batch.toArray(ByteBuffer[]::new);
+            var remaining = batch.stream().mapToLong(ByteBuffer::remaining).sum();
+            while (remaining > 0) {
+                remaining -= write(channel, payloads);
+            }
+            succeeded = true;
+        } finally {
+            flush.end();
+            if (flush.shouldCommit()) {
+                flush.transport = "shared-memory";
+                flush.eventCount = batch.size();
+                flush.succeeded = succeeded;
+                flush.commit();
+            }
+        }
+    }
+
+    private long write(SocketChannel channel, ByteBuffer[] payloads) throws IOException {
+        var write = new SocketWriteEvent();
+        write.begin();
+
+        var written = channel.write(payloads);
+
+        write.end();
+        if (write.shouldCommit()) {
+            write.destination = destination.toString();
+            write.bytesWritten = written;
+            write.commit();
+        }
+        return written;
+    }
+
+    /**
+     * Skip the record at the read position if it has been claimed but not committed for longer
+     * than the claim timeout, and the process that claimed it is no longer running, since it can
+     * then never be completed. A record claimed by a running process is never skipped, since that
+     * process may still write to it. A record whose claimant was never recorded, because its
+     * producer crashed right after claiming it, is skipped after the claim timeout.
+     *
+     * @return when the record at the read position was first seen claimed, or zero if it is not claimed
+     */
+    private long skipAbandonedRecord(long claimedSince) {
+        var claimed = ring.getClaimedRecord();
+        if (isNull(claimed)) {
+            return 0;
+        }
+
+        var now = ticker.read();
+        if (claimedSince == 0) {
+            return now;
+        }
+
+        if (now - claimedSince > CLAIM_TIMEOUT.toNanos() && !claimed.claimant().isRunning()) {
+            var claimant = claimed.claimant();
+            addWarn("Skipping an event in " + ring.getPath() + " that was never completed by " +
+                    (claimant.equals(SharedMemoryRing.Claimant.UNKNOWN) ?
+                            "a process that crashed while claiming it" :
+                            "process " + claimant.pid() + ", which is no longer running"));
+            ring.release(ring.getReadPosition() + claimed.size());
+            skippedEventCount.increment();
+            return 0;
+        }
+        return claimedSince;
+    }
+
+    private void pause(Duration duration) {
+        if (running) {
+            LockSupport.parkNanos(duration.toNanos());
+        }
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        if (nonNull(channel)) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // ignore; the channel is being discarded
+            }
+        }
+    }
+}
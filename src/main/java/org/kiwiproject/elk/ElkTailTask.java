@@ -0,0 +1,94 @@
+package org.kiwiproject.elk;
+
+import ch.qos.logback.classic.Level;
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * A Dropwizard admin task that prints the most recent events encoded by the appender, exactly as
+ * encoded for Logstash, from the {@link EventTailRing}. This is most useful when Logstash is
+ * unavailable, since it includes the events the circuit breaker rejected.
+ * <p>
+ * It is registered by {@link ElkAppenderBundle}, and requires {@code tailEvents} to be set
+ * on the appender. For example:
+ * <pre>
+ * curl -X POST 'http://localhost:8081/tasks/elk-tail?level=WARN&amp;logger=org.acme&amp;limit=50'
+ * </pre>
+ * The {@code level} parameter is the minimum level, and the {@code logger} parameter is a
+ * logger name prefix. Events in a binary encoding are printed in Base64. When several appenders
+ * keep a tail, the events of each are printed after a {@code ==> name <==} header, like
+ * {@code tail} does for several files; the {@code appender} parameter selects a single one by name.
+ */
+public class ElkTailTask extends Task {
+
+    static final int DEFAULT_LIMIT = 100;
+
+    private final ElkAppenderRegistry<EventTailRing> rings;
+
+    public ElkTailTask() {
+        this(EventTailRing.REGISTRY);
+    }
+
+    ElkTailTask(ElkAppenderRegistry<EventTailRing> rings) {
+        super("elk-tail");
+        this.rings = rings;
+    }
+
+    @Override
+    public void execute(Map<String, List<String>> parameters, PrintWriter output) {
+        var allRings = rings.getAll();
+        var appenderName = getFirstParameter(parameters, "appender");
+        appenderName.ifPresent(name -> allRings.keySet().retainAll(List.of(name)));
+        if (allRings.isEmpty()) {
+            output.println(appenderName
+                    .map(name -> "The event tail is not enabled for appender " + name + ".")
+                    .orElse("The event tail is not enabled. Set tailEvents on the elk appender."));
+            return;
+        }
+
+        var limit = getFirstParameter(parameters, "limit").map(Integer::parseInt).orElse(DEFAULT_LIMIT);
+        var filter = levelFilter(parameters).and(loggerFilter(parameters));
+
+        allRings.forEach((name, ring) -> {
+            if (allRings.size() > 1) {
+                output.println("==> " + name + " <==");
+            }
+            printEvents(ring, filter, limit, output);
+        });
+    }
+
+    private static void printEvents(EventTailRing ring,
+                                    Predicate<EventTailRing.Entry> filter,
+                                    int limit,
+                                    PrintWriter output) {
+        for (var entry : ring.getEvents(filter, limit)) {
+            output.println(ring.isBinary() ?
+                    Base64.getEncoder().encodeToString(entry.encoded()) :
+                    new String(entry.encoded(), StandardCharsets.UTF_8).stripTrailing());
+        }
+    }
+
+    private static Predicate<EventTailRing.Entry> levelFilter(Map<String, List<String>> parameters) {
+        return getFirstParameter(parameters, "level")
+                .map(level -> Level.toLevel(level, Level.ALL))
+                .<Predicate<EventTailRing.Entry>>map(level -> entry -> entry.level().isGreaterOrEqual(level))
+                .orElse(entry -> true);
+    }
+
+    private static Predicate<EventTailRing.Entry> loggerFilter(Map<String, List<String>> parameters) {
+        return getFirstParameter(parameters, "logger")
+                .<Predicate<EventTailRing.Entry>>map(prefix -> entry -> entry.loggerName().startsWith(prefix))
+                .orElse(entry -> true);
+    }
+
+    private static Optional<String> getFirstParameter(Map<String, List<String>> parameters, String name) {
+        return parameters.getOrDefault(name, List.of()).stream().findFirst();
+    }
+}
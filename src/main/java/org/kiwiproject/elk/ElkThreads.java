@@ -0,0 +1,91 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.nonNull;
+
+import lombok.experimental.UtilityClass;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the threads that do an appender's I/O work: sending, connecting, and retrying. These are
+ * virtual threads when requested and supported by the JVM, and daemon platform threads otherwise.
+ * <p>
+ * Virtual threads are created using reflection, since this library is built for Java 17, which does
+ * not have them. They are supported from Java 21, and in Java 19 and 20 when preview features are enabled.
+ */
+@UtilityClass
+class ElkThreads {
+
+    private static final VirtualThreads VIRTUAL_THREADS = VirtualThreads.find();
+
+    /**
+     * @return true if this JVM can create virtual threads
+     */
+    static boolean isVirtualThreadSupported() {
+        return nonNull(VIRTUAL_THREADS);
+    }
+
+    /**
+     * Create a factory of threads with the given name.
+     *
+     * @param virtual whether to create virtual threads instead of daemon platform threads
+     * @param name    the name of each thread
+     * @throws IllegalStateException if virtual threads are requested but not supported
+     */
+    static ThreadFactory newThreadFactory(boolean virtual, String name) {
+        if (virtual) {
+            checkState(isVirtualThreadSupported(), "virtual threads are not supported by this JVM");
+            return VIRTUAL_THREADS.newThreadFactory(name);
+        }
+
+        return runnable -> {
+            var thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Create an unstarted thread with the given name, which runs the given task.
+     *
+     * @see #newThreadFactory(boolean, String)
+     */
+    static Thread newThread(boolean virtual, String name, Runnable task) {
+        return newThreadFactory(virtual, name).newThread(task);
+    }
+
+    /**
+     * The {@code Thread.ofVirtual().name(name).factory()} methods, found using reflection.
+     */
+    private record VirtualThreads(Method ofVirtual, Method nameMethod, Method factoryMethod) {
+
+        /**
+         * @return the methods, or null if virtual threads are not available
+         */
+        static VirtualThreads find() {
+            try {
+                var builderClass = Class.forName("java.lang.Thread$Builder");
+                var virtualThreads = new VirtualThreads(Thread.class.getMethod("ofVirtual"),
+                        builderClass.getMethod("name", String.class),
+                        builderClass.getMethod("factory"));
+
+                // fails in Java 19 and 20 unless preview features are enabled
+                virtualThreads.newThreadFactory("elk");
+                return virtualThreads;
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        ThreadFactory newThreadFactory(String name) {
+            try {
+                var builder = nameMethod.invoke(ofVirtual.invoke(null), name);
+                return (ThreadFactory) factoryMethod.invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Unable to create a virtual thread factory", e);
+            }
+        }
+    }
+}
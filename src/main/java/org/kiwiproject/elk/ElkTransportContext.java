@@ -0,0 +1,53 @@
+package org.kiwiproject.elk;
+
+import ch.qos.logback.classic.LoggerContext;
+import net.logstash.logback.encoder.LogstashEncoder;
+import net.logstash.logback.layout.LogstashLayout;
+
+/**
+ * Provides an {@link ElkTransportFactory} with the settings of the {@link ElkAppenderFactory}
+ * it belongs to.
+ */
+public interface ElkTransportContext {
+
+    /**
+     * The logger context the appender is being built for, for transports that need to start
+     * components (such as rolling policies) before the appender itself is started.
+     */
+    LoggerContext getLoggerContext();
+
+    /**
+     * The Logstash host, from the factory or else from the
+     * {@link org.kiwiproject.config.provider.ElkLoggerConfigProvider ElkLoggerConfigProvider}.
+     * Transports that do not send to Logstash directly should not call this.
+     *
+     * @throws IllegalStateException if the host is not configured and cannot be provided
+     */
+    String getHost();
+
+    /**
+     * The Logstash port, from the factory or else from the
+     * {@link org.kiwiproject.config.provider.ElkLoggerConfigProvider ElkLoggerConfigProvider}.
+     * Transports that do not send to Logstash directly should not call this.
+     *
+     * @throws IllegalStateException if the port is not configured and cannot be provided, or is invalid
+     */
+    int getPort();
+
+    /**
+     * The configured wire format.
+     */
+    ElkEncoding getEncoding();
+
+    /**
+     * Create a new encoder that produces events using the configured fields and encoding.
+     * Binary encodings have no line separator.
+     */
+    LogstashEncoder newEncoder();
+
+    /**
+     * Create a new layout that produces JSON events using the configured fields,
+     * for transports that require a text layout instead of an encoder.
+     */
+    LogstashLayout newLayout();
+}
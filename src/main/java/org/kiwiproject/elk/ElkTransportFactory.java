@@ -0,0 +1,40 @@
+package org.kiwiproject.elk;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import io.dropwizard.jackson.Discoverable;
+
+/**
+ * A factory for the appender that sends encoded log events to their destination, configured
+ * using the {@code transport} property of {@link ElkAppenderFactory}. For example:
+ * <pre>
+ * logging:
+ *   appenders:
+ *     - type: elk
+ *       transport:
+ *         type: http
+ *         path: /logs
+ * </pre>
+ * Implementations are discovered by Dropwizard's Jackson subtype resolver. To add a transport,
+ * implement this interface, annotate the implementation with
+ * {@link com.fasterxml.jackson.annotation.JsonTypeName JsonTypeName}, and list it in
+ * {@code META-INF/services/org.kiwiproject.elk.ElkTransportFactory}.
+ * <p>
+ * The transport is responsible only for delivering events. Everything else configured on
+ * {@link ElkAppenderFactory}, such as the fields, custom fields, and encoding, is applied by the
+ * encoder (or layout) obtained from the {@link ElkTransportContext}, so it applies unchanged to
+ * every transport.
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+public interface ElkTransportFactory extends Discoverable {
+
+    /**
+     * Build the appender for this transport. The returned appender must not be started; the
+     * caller names, starts, and wraps it.
+     *
+     * @param context provides the destination and the configured encoder
+     * @return a new appender
+     */
+    Appender<ILoggingEvent> build(ElkTransportContext context);
+}
@@ -0,0 +1,92 @@
+package org.kiwiproject.elk;
+
+import ch.qos.logback.core.AsyncAppenderBase;
+import ch.qos.logback.core.util.Duration;
+import lombok.AccessLevel;
+import lombok.Getter;
+import net.logstash.logback.appender.AsyncDisruptorAppender;
+import net.logstash.logback.appender.LogstashTcpSocketAppender;
+
+/**
+ * Presets for the buffering settings of the appender, for a given goal. Each profile sets the
+ * async appender's {@code queueSize}, {@code discardingThreshold}, and {@code neverBlock}, and
+ * {@code deferFormatting}, unless those are set explicitly, as well as the ring buffer size,
+ * write buffer size, and append timeout of the {@code tcp} and {@code unix-socket} transports.
+ * <p>
+ * Events pass through two buffers: the async appender's queue, filled by the logging threads,
+ * and the transport's ring buffer, filled by the async appender's worker thread. What happens
+ * when each fills up decides whether callers wait or events are lost.
+ *
+ * @see ElkAppenderFactory#setTuningProfile(ElkTuningProfile)
+ */
+@Getter(AccessLevel.PACKAGE)
+public enum ElkTuningProfile {
+
+    /**
+     * The Dropwizard and logstash-logback-encoder defaults: a queue of 256 events that blocks
+     * callers when full, discarding events at INFO and below once it is 80% full, and a ring
+     * buffer of 8192 events that drops events when full. This is the default.
+     */
+    STANDARD(AsyncAppenderBase.DEFAULT_QUEUE_SIZE, -1, false, false,
+            AsyncDisruptorAppender.DEFAULT_RING_BUFFER_SIZE, 8 * 1024, Duration.buildByMilliseconds(0)),
+
+    /**
+     * Send as many events as possible: a large queue that absorbs bursts without discarding
+     * events by level, a large write buffer to reduce system calls, and formatting on the worker
+     * thread. When the ring buffer is full, the worker waits up to 100 milliseconds for space
+     * instead of dropping the event, which lets the sender catch up; callers never wait, so
+     * events are dropped from the queue instead when Logstash cannot keep up.
+     */
+    THROUGHPUT(8192, 0, true, true, AsyncDisruptorAppender.DEFAULT_RING_BUFFER_SIZE, 64 * 1024,
+            Duration.buildByMilliseconds(100)),
+
+    /**
+     * Spend as little time as possible on the logging thread: callers never wait, events at
+     * INFO and below are discarded early under pressure, and messages are formatted on the worker
+     * thread. The queue is only as large as needed to absorb typical bursts, to stay cache-friendly.
+     */
+    LOW_LATENCY(2048, -1, true, true, AsyncDisruptorAppender.DEFAULT_RING_BUFFER_SIZE, 8 * 1024,
+            Duration.buildByMilliseconds(0)),
+
+    /**
+     * Never lose events: nothing is discarded by level, and when the buffers are full, the
+     * worker thread and then callers wait for space, so logging slows down while Logstash is
+     * slow or unreachable. Do not combine with a circuit breaker, which rejects events.
+     */
+    LOSSLESS(8192, 0, false, false, 65_536, 64 * 1024, Duration.buildByMilliseconds(-1));
+
+    private final int queueSize;
+    private final int discardingThreshold;
+    private final boolean neverBlock;
+    private final boolean deferFormatting;
+    private final int ringBufferSize;
+    private final int writeBufferSize;
+    private final Duration appendTimeout;
+
+    ElkTuningProfile(int queueSize,
+                     int discardingThreshold,
+                     boolean neverBlock,
+                     boolean deferFormatting,
+                     int ringBufferSize,
+                     int writeBufferSize,
+                     Duration appendTimeout) {
+
+        this.queueSize = queueSize;
+        this.discardingThreshold = discardingThreshold;
+        this.neverBlock = neverBlock;
+        this.deferFormatting = deferFormatting;
+        this.ringBufferSize = ringBufferSize;
+        this.writeBufferSize = writeBufferSize;
+        this.appendTimeout = appendTimeout;
+    }
+
+    /**
+     * Apply this profile's ring buffer size, write buffer size, and append timeout to the
+     * given appender, which must not have been started.
+     */
+    void configure(LogstashTcpSocketAppender appender) {
+        appender.setRingBufferSize(ringBufferSize);
+        appender.setWriteBufferSize(writeBufferSize);
+        appender.setAppendTimeout(appendTimeout);
+    }
+}
@@ -0,0 +1,104 @@
+package org.kiwiproject.elk;
+
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.encoder.Encoder;
+import ch.qos.logback.core.spi.DeferredProcessingAware;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * A UDP appender that sends each event, as encoded by an {@link Encoder}, in its own datagram.
+ * <p>
+ * Unlike {@link net.logstash.logback.appender.LogstashUdpSocketAppender LogstashUdpSocketAppender},
+ * which requires a {@link ch.qos.logback.core.Layout Layout} that produces text, this can send
+ * binary encodings such as CBOR and Smile. No framing is needed since each datagram contains
+ * exactly one event.
+ * <p>
+ * Each event is encoded into a buffer taken from a {@link DirectBufferPool}, which is released once
+ * the datagram has been sent.
+ *
+ * @param <E> the type of event
+ */
+@Getter
+@Setter
+class EncoderUdpSocketAppender<E extends DeferredProcessingAware> extends UnsynchronizedAppenderBase<E> {
+
+    /**
+     * The largest payload that fits in a single UDP datagram over IPv4.
+     */
+    static final int MAX_DATAGRAM_SIZE = 65_507;
+
+    private String host;
+    private int port;
+    private Encoder<E> encoder;
+    private DirectBufferPool bufferPool = DirectBufferPool.shared();
+
+    private InetSocketAddress address;
+    private DatagramChannel channel;
+
+    @Override
+    public void start() {
+        if (encoder == null) {
+            addError("No encoder was configured for appender " + name);
+            return;
+        }
+
+        address = new InetSocketAddress(host, port);
+        if (address.isUnresolved()) {
+            addError("Unable to resolve UDP host " + host);
+            return;
+        }
+
+        try {
+            channel = DatagramChannel.open();
+        } catch (IOException e) {
+            addError("Unable to create UDP socket", e);
+            return;
+        }
+
+        encoder.setContext(getContext());
+        if (!encoder.isStarted()) {
+            encoder.start();
+        }
+
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                addWarn("Unable to close UDP socket", e);
+            }
+        }
+        if (encoder != null) {
+            encoder.stop();
+        }
+    }
+
+    @Override
+    protected void append(E event) {
+        var buffer = bufferPool.encode(encoder, event);
+        try {
+            var size = buffer.remaining();
+            if (size > MAX_DATAGRAM_SIZE) {
+                addWarn("Dropping event of " + size + " bytes, which is larger than the maximum UDP datagram size");
+                return;
+            }
+
+            channel.send(buffer, address);
+        } catch (IOException e) {
+            addWarn("Unable to send event to " + address, e);
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+}
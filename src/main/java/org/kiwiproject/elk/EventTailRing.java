@@ -0,0 +1,169 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.nonNull;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import lombok.AccessLevel;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A fixed-size ring of the most recently encoded events, so that the events that could not be
+ * sent while Logstash was unavailable can still be looked at, using {@link ElkTailTask}.
+ * <p>
+ * The ring is bounded both by the number of events and by the total number of encoded bytes.
+ * It holds the same {@code byte[]} the encoder produced, so adding an event does not encode or
+ * copy it again. Adding is lock-free: it claims the next slot with a single atomic increment,
+ * and then, only if the byte limit is exceeded, clears the oldest slots until it is not.
+ * <p>
+ * Events rejected by {@link ElkCircuitBreaker} are never encoded for Logstash, so the breaker
+ * adds them using {@link #addRejected(ILoggingEvent)}, which encodes them with the ring's own
+ * encoder. This is the only time the ring encodes, and only while the breaker is not closed.
+ * Events shed by {@link HeapPressureFilter} are not kept, so as not to allocate under heap pressure.
+ * <p>
+ * The ring of each running appender is kept in {@link #REGISTRY}, for {@link ElkTailTask}.
+ */
+class EventTailRing {
+
+    static final ElkAppenderRegistry<EventTailRing> REGISTRY = new ElkAppenderRegistry<>();
+
+    private final int capacity;
+    private final long maxBytes;
+    private final boolean binary;
+    private final Function<ILoggingEvent, byte[]> rejectedEncoder;
+    private final AtomicReferenceArray<Entry> slots;
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicLong oldest = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    @Setter(AccessLevel.PACKAGE)
+    private Level threshold = Level.ALL;
+
+    /**
+     * One encoded event.
+     *
+     * @param sequence   the position of the event in the ring, increasing by one for each event added
+     * @param timestamp  the event timestamp, in epoch milliseconds
+     * @param level      the event level
+     * @param loggerName the logger name
+     * @param encoded    the event exactly as encoded for Logstash; must not be modified
+     */
+    record Entry(long sequence, long timestamp, Level level, String loggerName, byte[] encoded) {
+    }
+
+    /**
+     * @param capacity        the maximum number of events to keep
+     * @param maxBytes        the maximum total size of the encoded events to keep
+     * @param binary          whether the events are encoded in a binary format, rather than as JSON text
+     * @param rejectedEncoder encodes the events rejected by the circuit breaker
+     */
+    EventTailRing(int capacity, long maxBytes, boolean binary, Function<ILoggingEvent, byte[]> rejectedEncoder) {
+        checkArgument(capacity > 0, "capacity must be positive");
+        checkArgument(maxBytes > 0, "maxBytes must be positive");
+        this.capacity = capacity;
+        this.maxBytes = maxBytes;
+        this.binary = binary;
+        this.rejectedEncoder = rejectedEncoder;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Encode and add an event that was rejected before it could be encoded for Logstash, if it is
+     * not below the threshold.
+     */
+    void addRejected(ILoggingEvent event) {
+        if (event.getLevel().isGreaterOrEqual(threshold)) {
+            add(event.getTimeStamp(), event.getLevel(), event.getLoggerName(), rejectedEncoder.apply(event));
+        }
+    }
+
+    /**
+     * Add an encoded event, replacing the oldest event if the ring is full. Events larger than the
+     * byte limit are not added.
+     */
+    void add(long timestamp, Level level, String loggerName, byte[] encoded) {
+        if (encoded.length > maxBytes) {
+            return;
+        }
+
+        var sequence = next.getAndIncrement();
+        var entry = new Entry(sequence, timestamp, level, loggerName, encoded);
+        var replaced = slots.getAndSet(slot(sequence), entry);
+        var replacedSize = nonNull(replaced) ? replaced.encoded().length : 0;
+        var total = bytes.addAndGet(encoded.length - replacedSize);
+
+        if (total > maxBytes) {
+            evictUntilWithinLimit(sequence);
+        }
+    }
+
+    /**
+     * Clear the oldest slots until the byte limit is no longer exceeded, never clearing the
+     * event just added. A slot is only cleared if it still holds the event being evicted,
+     * since a concurrent add may already have replaced it.
+     */
+    private void evictUntilWithinLimit(long sequence) {
+        while (bytes.get() > maxBytes) {
+            var current = oldest.get();
+            var candidate = Math.max(current, sequence - capacity + 1);
+            if (candidate >= sequence) {
+                return;
+            }
+
+            if (oldest.compareAndSet(current, candidate + 1)) {
+                var index = slot(candidate);
+                var entry = slots.get(index);
+                if (nonNull(entry) && entry.sequence() == candidate && slots.compareAndSet(index, entry, null)) {
+                    bytes.addAndGet(-entry.encoded().length);
+                }
+            }
+        }
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+    /**
+     * Get the events that match the given filter, oldest first, keeping at most the newest {@code limit}.
+     */
+    List<Entry> getEvents(Predicate<Entry> filter, int limit) {
+        var events = new ArrayList<Entry>();
+        var last = next.get();
+        for (var sequence = Math.max(0, last - capacity); sequence < last; sequence++) {
+            var entry = slots.get(slot(sequence));
+            if (nonNull(entry) && entry.sequence() == sequence && filter.test(entry)) {
+                events.add(entry);
+            }
+        }
+        return events.size() > limit ? events.subList(events.size() - limit, events.size()) : events;
+    }
+
+    long getTotalBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Remove all events.
+     */
+    void clear() {
+        for (var i = 0; i < capacity; i++) {
+            var entry = slots.getAndSet(i, null);
+            if (nonNull(entry)) {
+                bytes.addAndGet(-entry.encoded().length);
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.nonNull;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.rolling.RollingFileAppender;
+import ch.qos.logback.core.rolling.SizeAndTimeBasedRollingPolicy;
+import ch.qos.logback.core.util.FileSize;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import io.dropwizard.util.DataSize;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Writes events as newline-delimited JSON to a local file, which is rolled over daily and when it
+ * reaches {@code maxFileSize}. This is intended for a local shipper (such as Filebeat or the
+ * Logstash {@code file} input) to pick up.
+ * <pre>
+ * logging:
+ *   appenders:
+ *     - type: elk
+ *       transport:
+ *         type: file
+ *         currentLogFilename: /var/log/acme/elk.ndjson
+ *         archivedFileCount: 3
+ * </pre>
+ * <table>
+ *     <caption>Configuration properties</caption>
+ *     <tr>
+ *         <td>Name</td>
+ *         <td>Default</td>
+ *         <td>Description</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code currentLogFilename}</td>
+ *         <td>(required)</td>
+ *         <td>The file to write events to.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code archivedLogFilenamePattern}</td>
+ *         <td>{@code currentLogFilename} + {@code .%d{yyyy-MM-dd}.%i.gz}</td>
+ *         <td>
+ *             The pattern for archived files. It must contain {@code %d} and {@code %i}.
+ *             If it ends with {@code .gz}, archived files are compressed.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code archivedFileCount}</td>
+ *         <td>{@code 7}</td>
+ *         <td>The number of days of archived files to keep.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code maxFileSize}</td>
+ *         <td>{@code 100MiB}</td>
+ *         <td>The size at which the current file is rolled over.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code totalSizeCap}</td>
+ *         <td>{@code null}</td>
+ *         <td>The maximum total size of all archived files, if any.</td>
+ *     </tr>
+ * </table>
+ * Only the {@code json} encoding is supported. The host and port are not used.
+ */
+@Setter
+@Getter(AccessLevel.PACKAGE)  // getters are visible with package scope for testing
+@JsonTypeName("file")
+public class FileTransportFactory implements ElkTransportFactory {
+
+    private String currentLogFilename;
+    private String archivedLogFilenamePattern;
+    private int archivedFileCount = 7;
+    private DataSize maxFileSize = DataSize.mebibytes(100);
+    private DataSize totalSizeCap;
+
+    @Override
+    public Appender<ILoggingEvent> build(ElkTransportContext context) {
+        checkState(isNotBlank(currentLogFilename), "currentLogFilename is required for the file transport");
+
+        var encoding = context.getEncoding();
+        checkState(!encoding.isBinary(), "encoding %s is not supported by the file transport", encoding);
+
+        var loggerContext = context.getLoggerContext();
+
+        var encoder = context.newEncoder();
+        encoder.setLineSeparator("UNIX");
+        encoder.setContext(loggerContext);
+        encoder.start();
+
+        var appender = new RollingFileAppender<ILoggingEvent>();
+        appender.setContext(loggerContext);
+        appender.setFile(currentLogFilename);
+        appender.setEncoder(encoder);
+
+        var rollingPolicy = new SizeAndTimeBasedRollingPolicy<ILoggingEvent>();
+        rollingPolicy.setContext(loggerContext);
+        rollingPolicy.setParent(appender);
+        rollingPolicy.setFileNamePattern(getEffectiveArchivedLogFilenamePattern());
+        rollingPolicy.setMaxHistory(archivedFileCount);
+        rollingPolicy.setMaxFileSize(new FileSize(maxFileSize.toBytes()));
+        if (nonNull(totalSizeCap)) {
+            rollingPolicy.setTotalSizeCap(new FileSize(totalSizeCap.toBytes()));
+        }
+        rollingPolicy.start();
+
+        appender.setRollingPolicy(rollingPolicy);
+        appender.setTriggeringPolicy(rollingPolicy);
+
+        return appender;
+    }
+
+    String getEffectiveArchivedLogFilenamePattern() {
+        return isBlank(archivedLogFilenamePattern) ?
+                currentLogFilename + ".%d{yyyy-MM-dd}.%i.gz" : archivedLogFilenamePattern;
+    }
+}
@@ -0,0 +1,256 @@
+package org.kiwiproject.elk;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static org.kiwiproject.elk.ElkFlightRecorderEvents.ASYNC_QUEUE_STAGE;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import com.google.common.collect.Iterators;
+import lombok.AccessLevel;
+import lombok.Setter;
+import org.kiwiproject.elk.ElkFlightRecorderEvents.DropEvent;
+import org.kiwiproject.elk.ElkFlightRecorderEvents.EnqueueEvent;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link AsyncAppender} that records {@link EnqueueEvent Flight Recorder events} for the time
+ * spent queueing each event, and {@link DropEvent events} for events it discards.
+ * <p>
+ * {@link AsyncAppender} does not report when it drops an event because the queue is full and it
+ * may not block, so that is inferred from the queue having no space left just before the event
+ * is added, and only checked when drop events are enabled or loss accounting is set, which is
+ * also told of each dropped event.
+ * <p>
+ * The queue can also be limited by the estimated size of its events, using a {@link QueuedBytesBudget}.
+ * The appender attached to this one is wrapped in a hand-off, which releases each event's bytes when
+ * the worker hands the event over to it; the attached appender itself is still what
+ * {@link #getAppender(String)} and {@link #iteratorForAppenders()} return.
+ * <p>
+ * Actions to run when it is stopped, such as removing the appender's metrics, can be added using
+ * {@link #runOnStop(Runnable)}.
+ */
+class FlightRecordingAsyncAppender extends AsyncAppender {
+
+    @Setter(AccessLevel.PACKAGE)
+    private LossAccountingFilter lossAccounting;
+
+    private QueuedBytesBudget queuedBytesBudget;
+    private final AtomicInteger admittedEvents = new AtomicInteger();
+
+    private final List<Runnable> stopActions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Run the given action after this appender is stopped.
+     */
+    void runOnStop(Runnable action) {
+        stopActions.add(action);
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+
+        super.stop();
+        stopActions.forEach(Runnable::run);
+    }
+
+    /**
+     * Limit the estimated size of the queued events, as well as their number. This must be set before
+     * any events are appended.
+     * <p>
+     * If {@code neverBlock} is set, an event is dropped when the budget is exhausted. Since the queue drops
+     * events silently, which would leave their bytes reserved, the events admitted but not yet handed over
+     * by the worker are also counted, and an event is dropped instead of being offered once there are as
+     * many as the queue holds. That can drop events slightly earlier than the queue alone would, while the
+     * worker hands over the events it just took. Otherwise the logging thread waits for space.
+     */
+    void setQueuedBytesBudget(QueuedBytesBudget budget) {
+        queuedBytesBudget = budget;
+    }
+
+    @Override
+    public void addAppender(Appender<ILoggingEvent> newAppender) {
+        super.addAppender(new HandOff(newAppender));
+    }
+
+    @Override
+    public Appender<ILoggingEvent> getAppender(String name) {
+        return unwrap(super.getAppender(name));
+    }
+
+    @Override
+    public Iterator<Appender<ILoggingEvent>> iteratorForAppenders() {
+        return Iterators.transform(super.iteratorForAppenders(), FlightRecordingAsyncAppender::unwrap);
+    }
+
+    @Override
+    public boolean isAttached(Appender<ILoggingEvent> appender) {
+        return Iterators.contains(iteratorForAppenders(), appender);
+    }
+
+    @Override
+    public boolean detachAppender(Appender<ILoggingEvent> appender) {
+        var handOffs = super.iteratorForAppenders();
+        while (handOffs.hasNext()) {
+            var handOff = handOffs.next();
+            if (unwrap(handOff) == appender) {
+                return super.detachAppender(handOff);
+            }
+        }
+        return false;
+    }
+
+    private static Appender<ILoggingEvent> unwrap(Appender<ILoggingEvent> appender) {
+        return appender instanceof HandOff handOff ? handOff.delegate : appender;
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        if (isNull(queuedBytesBudget)) {
+            recordDropIfQueueFull(event);
+        } else if (!reserveBytes(event)) {
+            return;
+        }
+
+        var enqueue = new EnqueueEvent();
+        enqueue.begin();
+
+        super.append(event);
+
+        enqueue.end();
+        if (enqueue.shouldCommit()) {
+            enqueue.loggerName = event.getLoggerName();
+            enqueue.level = event.getLevel().toString();
+            enqueue.commit();
+        }
+    }
+
+    /**
+     * Mirror the checks of {@code AsyncAppenderBase.append}: an event that is discarded because of the
+     * discarding threshold is recorded by {@link #isDiscardable(ILoggingEvent)} instead.
+     */
+    private void recordDropIfQueueFull(ILoggingEvent event) {
+        if (!isNeverBlock() || (isNull(lossAccounting) && !new DropEvent().isEnabled())) {
+            return;
+        }
+
+        if (isQueueFull(event)) {
+            recordDropped(event, "queue full");
+        }
+    }
+
+    private boolean isQueueFull(ILoggingEvent event) {
+        return getRemainingCapacity() == 0 && !(isQueueBelowDiscardingThreshold() && super.isDiscardable(event));
+    }
+
+    /**
+     * Reserve the event's bytes, applying the overflow policy when the queue or the budget is full.
+     *
+     * @return true if the event may be queued, false if it was dropped
+     */
+    private boolean reserveBytes(ILoggingEvent event) {
+        var size = QueuedBytesBudget.estimateSize(event);
+        if (!isNeverBlock()) {
+            queuedBytesBudget.reserve(size);
+            admittedEvents.incrementAndGet();
+            return true;
+        }
+
+        if (admittedEvents.incrementAndGet() > getQueueSize()) {
+            admittedEvents.decrementAndGet();
+            recordDropped(event, "queue full");
+            return false;
+        }
+
+        if (!queuedBytesBudget.tryReserve(size)) {
+            admittedEvents.decrementAndGet();
+            queuedBytesBudget.recordDropped();
+            recordDropped(event, "byte budget");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * This is only called when the queue is nearly full, and events for which it returns true are discarded,
+     * so their bytes are released.
+     */
+    @Override
+    protected boolean isDiscardable(ILoggingEvent event) {
+        var discardable = super.isDiscardable(event);
+        if (discardable) {
+            recordDropped(event, "discarding threshold");
+            release(event);
+        }
+        return discardable;
+    }
+
+    /**
+     * Release what the event took of the budget, once it has left the queue.
+     */
+    private void release(ILoggingEvent event) {
+        if (nonNull(queuedBytesBudget)) {
+            admittedEvents.decrementAndGet();
+            queuedBytesBudget.release(QueuedBytesBudget.estimateSize(event));
+        }
+    }
+
+    private void recordDropped(ILoggingEvent event, String reason) {
+        if (nonNull(lossAccounting)) {
+            lossAccounting.recordDropped();
+        }
+        ElkFlightRecorderEvents.recordDrop(ASYNC_QUEUE_STAGE, reason, event);
+    }
+
+    /**
+     * Hands each event the worker takes from the queue to the attached appender, after releasing its bytes.
+     */
+    private class HandOff extends UnsynchronizedAppenderBase<ILoggingEvent> {
+
+        private final Appender<ILoggingEvent> delegate;
+
+        HandOff(Appender<ILoggingEvent> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void doAppend(ILoggingEvent event) {
+            release(event);
+            delegate.doAppend(event);
+        }
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            doAppend(event);
+        }
+
+        @Override
+        public String getName() {
+            return delegate.getName();
+        }
+
+        @Override
+        public void start() {
+            delegate.start();
+        }
+
+        @Override
+        public void stop() {
+            delegate.stop();
+        }
+
+        @Override
+        public boolean isStarted() {
+            return delegate.isStarted();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.kiwiproject.elk;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import jdk.net.ExtendedSocketOptions;
+import org.kiwiproject.elk.ElkFlightRecorderEvents.ConnectionAttemptEvent;
+import org.kiwiproject.elk.ElkFlightRecorderEvents.SocketWriteEvent;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.time.Duration;
+import javax.net.SocketFactory;
+
+/**
+ * A TCP {@link Socket} that records {@link ConnectionAttemptEvent} and {@link SocketWriteEvent}
+ * Flight Recorder events for its connection attempts and writes, when enabled.
+ */
+class FlightRecordingSocket extends Socket {
+
+    private volatile String destination;
+
+    @Override
+    public void connect(SocketAddress endpoint, int timeout) throws IOException {
+        destination = String.valueOf(endpoint);
+
+        var attempt = new ConnectionAttemptEvent();
+        attempt.begin();
+        try {
+            super.connect(endpoint, timeout);
+            recordConnectionAttempt(attempt, destination, null);
+        } catch (IOException e) {
+            recordConnectionAttempt(attempt, destination, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return recordWrites(super.getOutputStream(), destination);
+    }
+
+    /**
+     * Record the outcome of a connection attempt that began with the given event.
+     *
+     * @param failure the reason the attempt failed, or null if it succeeded
+     */
+    static void recordConnectionAttempt(ConnectionAttemptEvent attempt, String destination, IOException failure) {
+        attempt.end();
+        if (attempt.shouldCommit()) {
+            attempt.destination = destination;
+            attempt.succeeded = isNull(failure);
+            attempt.failure = nonNull(failure) ? failure.toString() : null;
+            attempt.commit();
+        }
+    }
+
+    /**
+     * Wrap the given socket output stream so that its writes are recorded.
+     */
+    static OutputStream recordWrites(OutputStream outputStream, String destination) {
+        return new FilterOutputStream(outputStream) {
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                var write = new SocketWriteEvent();
+                write.begin();
+
+                out.write(bytes, offset, length);
+
+                write.end();
+                if (write.shouldCommit()) {
+                    write.destination = destination;
+                    write.bytesWritten = length;
+                    write.commit();
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates {@link FlightRecordingSocket}s, optionally with TCP keep-alive probes enabled.
+     */
+    static class Factory extends SocketFactory {
+
+        private final Duration keepAliveIdle;
+
+        Factory() {
+            this(null);
+        }
+
+        /**
+         * @param keepAliveIdle if not null, how long a connection may be idle before TCP keep-alive
+         *                      probes are sent, and the interval between them, where supported
+         */
+        Factory(Duration keepAliveIdle) {
+            this.keepAliveIdle = keepAliveIdle;
+        }
+
+        @Override
+        public Socket createSocket() throws IOException {
+            return newSocket();
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return connected(null, new InetSocketAddress(host, port));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            return connected(new InetSocketAddress(localHost, localPort), new InetSocketAddress(host, port));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            return connected(null, new InetSocketAddress(host, port));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort)
+                throws IOException {
+            return connected(new InetSocketAddress(localAddress, localPort), new InetSocketAddress(address, port));
+        }
+
+        private Socket connected(SocketAddress localAddress, SocketAddress endpoint) throws IOException {
+            var socket = newSocket();
+            try {
+                if (nonNull(localAddress)) {
+                    socket.bind(localAddress);
+                }
+                socket.connect(endpoint);
+                return socket;
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        private Socket newSocket() throws IOException {
+            var socket = new FlightRecordingSocket();
+            if (nonNull(keepAliveIdle)) {
+                socket.setKeepAlive(true);
+                var seconds = (int) Math.max(1, keepAliveIdle.toSeconds());
+                setIfSupported(socket, ExtendedSocketOptions.TCP_KEEPIDLE, seconds);
+                setIfSupported(socket, ExtendedSocketOptions.TCP_KEEPINTERVAL, seconds);
+            }
+            return socket;
+        }
+
+        /**
+         * The idle time and interval are not supported on every platform, which then uses its defaults.
+         */
+        private static void setIfSupported(Socket socket, SocketOption<Integer> option, int value) throws IOException {
+            if (socket.supportedOptions().contains(option)) {
+                socket.setOption(option, value);
+            }
+        }
+    }
+}
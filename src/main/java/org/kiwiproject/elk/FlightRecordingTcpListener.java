@@ -0,0 +1,68 @@
+package org.kiwiproject.elk;
+
+import static java.util.Objects.isNull;
+import static org.kiwiproject.elk.ElkFlightRecorderEvents.TRANSPORT_STAGE;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import net.logstash.logback.appender.listener.TcpAppenderListener;
+import org.kiwiproject.elk.ElkFlightRecorderEvents.ReconnectEvent;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Records Flight Recorder events for what a Logstash TCP appender reports: a {@link ReconnectEvent}
+ * spanning the time from losing, or failing to make, a connection until one is made again, and a
+ * drop event for each event that could not be added to its ring buffer.
+ * <p>
+ * The connection attempts and socket writes themselves are recorded by {@link FlightRecordingSocket}.
+ */
+class FlightRecordingTcpListener implements TcpAppenderListener<ILoggingEvent> {
+
+    private final AtomicReference<ReconnectEvent> pendingReconnect = new AtomicReference<>();
+    private final AtomicInteger failedAttempts = new AtomicInteger();
+
+    @Override
+    public void connectionClosed(Appender<ILoggingEvent> appender, Socket socket) {
+        if (appender.isStarted()) {
+            beginReconnect();
+        }
+    }
+
+    @Override
+    public void connectionFailed(Appender<ILoggingEvent> appender, InetSocketAddress address, Throwable reason) {
+        beginReconnect();
+        failedAttempts.incrementAndGet();
+    }
+
+    private void beginReconnect() {
+        var reconnect = new ReconnectEvent();
+        if (reconnect.isEnabled() && pendingReconnect.compareAndSet(null, reconnect)) {
+            failedAttempts.set(0);
+            reconnect.begin();
+        }
+    }
+
+    @Override
+    public void connectionOpened(Appender<ILoggingEvent> appender, Socket socket) {
+        var reconnect = pendingReconnect.getAndSet(null);
+        if (isNull(reconnect)) {
+            return;
+        }
+
+        reconnect.end();
+        if (reconnect.shouldCommit()) {
+            reconnect.destination = String.valueOf(socket.getRemoteSocketAddress());
+            reconnect.failedAttempts = failedAttempts.get();
+            reconnect.commit();
+        }
+    }
+
+    @Override
+    public void eventAppendFailed(Appender<ILoggingEvent> appender, ILoggingEvent event, Throwable reason) {
+        ElkFlightRecorderEvents.recordDrop(TRANSPORT_STAGE, "ring buffer full", event);
+    }
+}
@@ -0,0 +1,269 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.nonNull;
+import static org.kiwiproject.elk.ElkFlightRecorderEvents.HEAP_PRESSURE_STAGE;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.AsyncAppenderBase;
+import ch.qos.logback.core.filter.Filter;
+import ch.qos.logback.core.spi.FilterReply;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import lombok.AccessLevel;
+import lombok.Setter;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+/**
+ * Sheds events while the heap is nearly full, so that events buffered by the appender do not add to
+ * the pressure and tip the JVM into back-to-back full collections.
+ * <p>
+ * The pressure is the highest fraction of its maximum size that a heap memory pool (e.g. the old
+ * generation) still uses after a collection. It is evaluated after each garbage collection, using the
+ * garbage collectors' JMX notifications, so nothing is polled. The pools' collection-usage thresholds
+ * are JVM-wide settings that other filters and libraries may rely on, so they are left alone. There
+ * are three levels:
+ * <ul>
+ *     <li>{@code NORMAL}: every event is accepted.</li>
+ *     <li>{@code ELEVATED}: above the elevated threshold, events below the elevated level are denied,
+ *     and so is any event once the async queue holds half its capacity.</li>
+ *     <li>{@code CRITICAL}: above the critical threshold, events below the critical level are denied,
+ *     and so is any event once the async queue holds an eighth of its capacity.</li>
+ * </ul>
+ * The level drops again once the pressure is {@value #RECOVERY_MARGIN} below the threshold, so that
+ * it does not flap. It is a {@link Filter} added to the outermost appender, so shed events are denied
+ * on the logging thread before they are formatted or queued; while the level is {@code NORMAL}, that
+ * is a single volatile read. Each transition is counted, and reported by a single {@code WARN} event
+ * from the {@value #LOGGER_NAME} logger, which is never shed, and neither are loss accounting heartbeats.
+ * <p>
+ * This is also a {@link MetricSet} containing the current level and pressure, the number of shed
+ * events, and the number of transitions to each level. {@link ElkAppenderFactory} registers it under
+ * the appender's name.
+ *
+ * @see ElkHeapPressureConfig
+ */
+class HeapPressureFilter extends Filter<ILoggingEvent> implements MetricSet {
+
+    static final String METRICS_NAME = "heapPressure";
+    static final String LOGGER_NAME = "org.kiwiproject.elk.HeapPressure";
+    static final double RECOVERY_MARGIN = 0.05;
+
+    enum PressureLevel {
+        NORMAL, ELEVATED, CRITICAL
+    }
+
+    private final double elevatedThreshold;
+    private final double criticalThreshold;
+    private final Level elevatedLevel;
+    private final Level criticalLevel;
+
+    private final LongAdder shedEvents = new LongAdder();
+    private final Map<PressureLevel, Counter> transitions = new EnumMap<>(PressureLevel.class);
+    private final NotificationListener listener = this::handleNotification;
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+
+    private volatile PressureLevel level = PressureLevel.NORMAL;
+    private volatile double pressure;
+
+    @Setter(AccessLevel.PACKAGE)
+    private AsyncAppenderBase<ILoggingEvent> appender;
+
+    @Setter(AccessLevel.PACKAGE)
+    private LossAccountingFilter lossAccounting;
+
+    HeapPressureFilter(double elevatedThreshold, double criticalThreshold, Level elevatedLevel, Level criticalLevel) {
+        this.elevatedThreshold = elevatedThreshold;
+        this.criticalThreshold = criticalThreshold;
+        this.elevatedLevel = elevatedLevel;
+        this.criticalLevel = criticalLevel;
+        for (var pressureLevel : PressureLevel.values()) {
+            transitions.put(pressureLevel, new Counter());
+        }
+    }
+
+    /**
+     * Listen for garbage collections.
+     */
+    @Override
+    public void start() {
+        checkState(nonNull(appender), "appender must be set before starting");
+
+        ManagementFactory.getGarbageCollectorMXBeans().forEach(this::addListener);
+
+        super.start();
+    }
+
+    private void addListener(Object bean) {
+        if (bean instanceof NotificationEmitter emitter) {
+            emitter.addNotificationListener(listener, null, null);
+            emitters.add(emitter);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+
+        super.stop();
+        for (var emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (ListenerNotFoundException e) {
+                // ignore; it is already removed
+            }
+        }
+        emitters.clear();
+    }
+
+    @Override
+    public FilterReply decide(ILoggingEvent event) {
+        var current = level;
+        if (current == PressureLevel.NORMAL
+                || LOGGER_NAME.equals(event.getLoggerName())
+                || LossAccountingFilter.isHeartbeat(event)) {
+            return FilterReply.NEUTRAL;
+        }
+
+        var minimumLevel = current == PressureLevel.CRITICAL ? criticalLevel : elevatedLevel;
+        var queueCapacity = appender.getQueueSize() / (current == PressureLevel.CRITICAL ? 8 : 2);
+        var queueFull = appender.getNumberOfElementsInQueue() >= queueCapacity;
+        if (event.getLevel().isGreaterOrEqual(minimumLevel) && !queueFull) {
+            return FilterReply.NEUTRAL;
+        }
+
+        shedEvents.increment();
+        if (nonNull(lossAccounting)) {
+            lossAccounting.recordDropped();
+        }
+        ElkFlightRecorderEvents.recordDrop(HEAP_PRESSURE_STAGE, "heap pressure", event);
+        return FilterReply.DENY;
+    }
+
+    private void handleNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+
+        try {
+            update(measurePressure());
+        } catch (Exception e) {
+            addWarn("Unable to evaluate heap pressure", e);
+        }
+    }
+
+    /**
+     * @return the highest fraction of its maximum size that a monitored pool used after its last collection
+     */
+    private static double measurePressure() {
+        var highest = 0.0;
+        for (var pool : getMonitoredPools()) {
+            var usage = pool.getCollectionUsage();
+            if (nonNull(usage) && usage.getMax() > 0) {
+                highest = Math.max(highest, (double) usage.getUsed() / usage.getMax());
+            }
+        }
+        return highest;
+    }
+
+    private static List<MemoryPoolMXBean> getMonitoredPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .filter(MemoryPoolMXBean::isCollectionUsageThresholdSupported)
+                .filter(pool -> pool.getUsage().getMax() > 0)
+                .toList();
+    }
+
+    /**
+     * Move to the level for the given pressure, reporting the transition if it changes.
+     */
+    synchronized void update(double newPressure) {
+        pressure = newPressure;
+
+        var previous = level;
+        var next = levelFor(previous, newPressure);
+        if (next == previous) {
+            return;
+        }
+
+        level = next;
+        transitions.get(next).inc();
+        sendTransition(previous, next, newPressure);
+    }
+
+    private PressureLevel levelFor(PressureLevel current, double newPressure) {
+        if (newPressure >= criticalThreshold) {
+            return PressureLevel.CRITICAL;
+        }
+        if (current == PressureLevel.CRITICAL && newPressure >= criticalThreshold - RECOVERY_MARGIN) {
+            return PressureLevel.CRITICAL;
+        }
+        if (newPressure >= elevatedThreshold) {
+            return PressureLevel.ELEVATED;
+        }
+        if (current != PressureLevel.NORMAL && newPressure >= elevatedThreshold - RECOVERY_MARGIN) {
+            return PressureLevel.ELEVATED;
+        }
+        return PressureLevel.NORMAL;
+    }
+
+    private void sendTransition(PressureLevel previous, PressureLevel next, double newPressure) {
+        var loggerContext = (LoggerContext) getContext();
+        var event = new LoggingEvent(HeapPressureFilter.class.getName(),
+                loggerContext.getLogger(LOGGER_NAME),
+                Level.WARN,
+                "Heap pressure changed from {} to {}, with {}% of the heap used after collection",
+                null,
+                new Object[] { previous, next, Math.round(newPressure * 100) });
+        event.setMDCPropertyMap(Map.of());
+
+        appender.doAppend(event);
+    }
+
+    PressureLevel getLevel() {
+        return level;
+    }
+
+    double getPressure() {
+        return pressure;
+    }
+
+    long getShedEventCount() {
+        return shedEvents.sum();
+    }
+
+    long getTransitionCount(PressureLevel pressureLevel) {
+        return transitions.get(pressureLevel).getCount();
+    }
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        return Map.of(
+                "level", (Gauge<String>) () -> level.name(),
+                "pressure", (Gauge<Double>) this::getPressure,
+                "shedEvents", (Gauge<Long>) this::getShedEventCount,
+                "normal", transitions.get(PressureLevel.NORMAL),
+                "elevated", transitions.get(PressureLevel.ELEVATED),
+                "critical", transitions.get(PressureLevel.CRITICAL)
+        );
+    }
+}
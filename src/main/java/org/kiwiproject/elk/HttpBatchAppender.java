@@ -0,0 +1,289 @@
+package org.kiwiproject.elk;
+
+import static java.util.Objects.isNull;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.SlidingTimeWindowArrayReservoir;
+import com.codahale.metrics.Timer;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An appender that sends batches of encoded events to the Logstash
+ * <a href="https://www.elastic.co/guide/en/logstash/current/plugins-inputs-http.html">http input</a>.
+ * <p>
+ * Each batch is sent as a single POST request, whose body is either newline-delimited JSON or a
+ * JSON array, optionally compressed using gzip. Requests are sent using HTTP/1.1 over persistent
+ * connections, with at most {@code maxInFlightRequests} requests outstanding at once. When that
+ * limit is reached, the sender thread waits, and events accumulate in the queue. Requests that fail
+ * with a 5xx response or an I/O error are retried with exponential backoff, up to {@code maxRetries} times.
+ * Batches whose retries are still pending when the appender is stopped, after the shutdown grace period,
+ * are dropped and counted, as are those that fail while it is stopping.
+ * When {@code virtualThreads} is set, retries and the HTTP client's own tasks also run on virtual threads.
+ * <p>
+ * This is also a {@link MetricSet} containing histograms of the batch sizes (in events and in bytes),
+ * a timer of the request latencies, and counters of retries and dropped events.
+ */
+@Getter(AccessLevel.PACKAGE)
+@Setter(AccessLevel.PACKAGE)
+class HttpBatchAppender extends AbstractBatchingAppender implements MetricSet {
+
+    private URI uri;
+    private ElkHttpBatchFormat batchFormat = ElkHttpBatchFormat.NDJSON;
+    private boolean gzip = true;
+    private int maxInFlightRequests = 2;
+    private int maxRetries = 3;
+    private Duration initialRetryDelay = Duration.ofMillis(100);
+    private Duration maxRetryDelay = Duration.ofSeconds(10);
+    private Duration connectTimeout = Duration.ofSeconds(5);
+    private Duration requestTimeout = Duration.ofSeconds(10);
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final Histogram batchSizes = new Histogram(new SlidingTimeWindowArrayReservoir(5, TimeUnit.MINUTES));
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final Histogram batchBytes = new Histogram(new SlidingTimeWindowArrayReservoir(5, TimeUnit.MINUTES));
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final Timer requestLatency = new Timer();
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final Counter retries = new Counter();
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private HttpClient httpClient;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Semaphore inFlightPermits;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private ScheduledExecutorService retryExecutor;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final Set<Retry> pendingRetries = ConcurrentHashMap.newKeySet();
+
+    @Override
+    protected String getTransportName() {
+        return "http";
+    }
+
+    @Override
+    protected boolean startSender() {
+        if (isNull(uri)) {
+            addError("No URI was configured for appender " + name);
+            return false;
+        }
+
+        var httpClientBuilder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout);
+        if (isVirtualThreads()) {
+            // run each of the client's tasks on its own virtual thread, instead of its default pool
+            var clientThreads = newThreadFactory("elk-http-client-" + name);
+            httpClientBuilder.executor(runnable -> clientThreads.newThread(runnable).start());
+        }
+        httpClient = httpClientBuilder.build();
+        inFlightPermits = new Semaphore(maxInFlightRequests);
+        retryExecutor = Executors.newSingleThreadScheduledExecutor(newThreadFactory("elk-http-retry-" + name));
+
+        return true;
+    }
+
+    @Override
+    protected void sendBatch(List<ILoggingEvent> batch) throws IOException, InterruptedException {
+        var body = createBody(batch);
+        batchSizes.update(batch.size());
+        batchBytes.update(body.length);
+
+        inFlightPermits.acquire();
+        send(body, batch.size(), 0);
+    }
+
+    private byte[] createBody(List<ILoggingEvent> batch) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = gzip ? new GZIPOutputStream(bytes) : bytes) {
+            batchFormat.writeStart(out);
+            for (var i = 0; i < batch.size(); i++) {
+                if (i > 0) {
+                    batchFormat.writeSeparator(out);
+                }
+                out.write(encode(batch.get(i)));
+            }
+            batchFormat.writeEnd(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void send(byte[] body, int eventCount, int attempt) {
+        var requestBuilder = HttpRequest.newBuilder(uri)
+                .timeout(requestTimeout)
+                .header("Content-Type", batchFormat.getContentType())
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        if (gzip) {
+            requestBuilder.header("Content-Encoding", "gzip");
+        }
+
+        var context = requestLatency.time();
+        httpClient.sendAsync(requestBuilder.build(), HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    context.stop();
+                    handleResponse(body, eventCount, attempt, response, error);
+                });
+    }
+
+    private void handleResponse(byte[] body, int eventCount, int attempt,
+                                HttpResponse<Void> response, Throwable error) {
+
+        var retryable = isNull(response) || response.statusCode() >= 500;
+        var successful = !retryable && response.statusCode() < 300;
+
+        if (successful) {
+            inFlightPermits.release();
+            recordSuccess();
+            return;
+        }
+
+        recordFailure();
+
+        if (retryable && attempt < maxRetries && isStarted() && scheduleRetry(body, eventCount, attempt + 1)) {
+            retries.inc();
+            return;
+        }
+
+        dropBatch(eventCount);
+
+        if (isNull(response)) {
+            addWarn("Unable to send batch of " + eventCount + " events to " + uri + " after " +
+                    (attempt + 1) + " attempts. Dropping them.", error);
+        } else {
+            addWarn("Unable to send batch of " + eventCount + " events to " + uri + "; received status " +
+                    response.statusCode() + " after " + (attempt + 1) + " attempts. Dropping them.");
+        }
+    }
+
+    /**
+     * @return true if the retry was scheduled, false if the appender has been stopped since it was checked
+     */
+    private boolean scheduleRetry(byte[] body, int eventCount, int attempt) {
+        var retry = new Retry(body, eventCount, attempt);
+        pendingRetries.add(retry);
+        try {
+            retryExecutor.schedule(retry, retryDelayMillis(attempt - 1), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            pendingRetries.remove(retry);
+            return false;
+        }
+    }
+
+    /**
+     * Give up on a batch, releasing its in-flight permit.
+     */
+    private void dropBatch(int eventCount) {
+        inFlightPermits.release();
+        getDroppedEventCount().add(eventCount);
+    }
+
+    private long retryDelayMillis(int attempt) {
+        var delay = initialRetryDelay.toMillis() << Math.min(attempt, 30);
+        return Math.min(delay, maxRetryDelay.toMillis());
+    }
+
+    @Override
+    protected void stopSender() {
+        try {
+            // wait for outstanding requests (including pending retries) to complete
+            if (!inFlightPermits.tryAcquire(maxInFlightRequests, getShutdownGracePeriod().toMillis(), TimeUnit.MILLISECONDS)) {
+                addWarn("Some requests did not complete before shutdown");
+            }
+            retryExecutor.shutdownNow();
+            if (!retryExecutor.awaitTermination(getShutdownGracePeriod().toMillis(), TimeUnit.MILLISECONDS)) {
+                addWarn("Retry thread did not finish before shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            retryExecutor.shutdownNow();
+        }
+        dropPendingRetries();
+    }
+
+    /**
+     * Drop the batches whose retries were discarded by shutting down the retry executor.
+     */
+    private void dropPendingRetries() {
+        for (var retry : pendingRetries) {
+            if (pendingRetries.remove(retry)) {
+                dropBatch(retry.eventCount);
+                addWarn("Unable to send batch of " + retry.eventCount + " events to " + uri +
+                        " before shutdown; a retry was pending. Dropping them.");
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        return Map.of(
+                "batchSize", batchSizes,
+                "batchBytes", batchBytes,
+                "requestLatency", requestLatency,
+                "retries", retries,
+                "droppedEvents", (Gauge<Long>) () -> getDroppedEventCount().sum(),
+                "queuedEvents", (Gauge<Integer>) this::getQueuedEventCount
+        );
+    }
+
+    /**
+     * A scheduled retry of a batch, which only sends it if it has not been dropped on shutdown.
+     */
+    private class Retry implements Runnable {
+
+        private final byte[] body;
+        private final int eventCount;
+        private final int attempt;
+
+        Retry(byte[] body, int eventCount, int attempt) {
+            this.body = body;
+            this.eventCount = eventCount;
+            this.attempt = attempt;
+        }
+
+        @Override
+        public void run() {
+            if (pendingRetries.remove(this)) {
+                send(body, eventCount, attempt);
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import io.dropwizard.util.Duration;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.net.URI;
+
+/**
+ * Sends batches of events to the Logstash
+ * <a href="https://www.elastic.co/guide/en/logstash/current/plugins-inputs-http.html">http input</a>.
+ * <p>
+ * For example:
+ * <pre>
+ * logging:
+ *   appenders:
+ *     - type: elk
+ *       port: 8080
+ *       transport:
+ *         type: http
+ *         batchFormat: json_array
+ *         maxBatchSize: 1000
+ *         flushInterval: 500ms
+ * </pre>
+ * The Logstash host and port are configured using the {@code host} and {@code port} properties
+ * of the appender, the same as for the other transports. Only the {@code json} encoding is supported.
+ * <p>
+ * The appender's batch size and byte histograms, request latency timer, and retry and drop counts
+ * are registered as metrics by {@link ElkAppenderBundle}.
+ * <table>
+ *     <caption>Configuration properties</caption>
+ *     <tr>
+ *         <td>Name</td>
+ *         <td>Default</td>
+ *         <td>Description</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code path}</td>
+ *         <td>{@code /}</td>
+ *         <td>The request path.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code tls}</td>
+ *         <td>{@code false}</td>
+ *         <td>Whether to use HTTPS instead of HTTP.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code batchFormat}</td>
+ *         <td>{@code ndjson}</td>
+ *         <td>The format of request bodies: {@code ndjson} or {@code json_array}.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code gzip}</td>
+ *         <td>{@code true}</td>
+ *         <td>Whether to compress request bodies using gzip.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code maxBatchSize}</td>
+ *         <td>{@code 500}</td>
+ *         <td>The maximum number of events in each request.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code flushInterval}</td>
+ *         <td>{@code 1 second}</td>
+ *         <td>The maximum time to wait for a batch to fill before sending it.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code queueSize}</td>
+ *         <td>{@code 8192}</td>
+ *         <td>The number of events that can wait to be sent. When full, new events are dropped.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code maxInFlightRequests}</td>
+ *         <td>{@code 2}</td>
+ *         <td>
+ *             The maximum number of requests awaiting a response. Each uses its own persistent
+ *             HTTP/1.1 connection.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code maxRetries}</td>
+ *         <td>{@code 3}</td>
+ *         <td>
+ *             How many times to retry a request that fails with a 5xx status or an I/O error.
+ *             Requests that fail with a 4xx status are not retried.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code initialRetryDelay}</td>
+ *         <td>{@code 100 milliseconds}</td>
+ *         <td>The delay before the first retry. Doubles after each retry.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code maxRetryDelay}</td>
+ *         <td>{@code 10 seconds}</td>
+ *         <td>The maximum delay between retries.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code connectTimeout}</td>
+ *         <td>{@code 5 seconds}</td>
+ *         <td>The timeout for opening a connection.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code requestTimeout}</td>
+ *         <td>{@code 10 seconds}</td>
+ *         <td>The timeout for receiving a response.</td>
+ *     </tr>
+ * </table>
+ */
+@Setter
+@Getter(AccessLevel.PACKAGE)  // getters are visible with package scope for testing
+@JsonTypeName("http")
+public class HttpTransportFactory implements ElkTransportFactory {
+
+    static final String METRICS_PREFIX = MetricRegistry.name(ElkAppenderFactory.class, "http");
+
+    private String path = "/";
+    private boolean tls;
+    private ElkHttpBatchFormat batchFormat = ElkHttpBatchFormat.NDJSON;
+    private boolean gzip = true;
+    private int maxBatchSize = AbstractBatchingAppender.DEFAULT_MAX_BATCH_SIZE;
+    private Duration flushInterval = Duration.seconds(1);
+    private int queueSize = AbstractBatchingAppender.DEFAULT_QUEUE_SIZE;
+    private int maxInFlightRequests = 2;
+    private int maxRetries = 3;
+    private Duration initialRetryDelay = Duration.milliseconds(100);
+    private Duration maxRetryDelay = Duration.seconds(10);
+    private Duration connectTimeout = Duration.seconds(5);
+    private Duration requestTimeout = Duration.seconds(10);
+
+    @Override
+    public Appender<ILoggingEvent> build(ElkTransportContext context) {
+        var encoding = context.getEncoding();
+        checkState(!encoding.isBinary(), "encoding %s is not supported by the http transport", encoding);
+
+        var encoder = context.newEncoder();
+        encoder.setLineSeparator(null);  // the batch format adds the separators
+
+        var appender = new HttpBatchAppender();
+        appender.setUri(toUri(context.getHost(), context.getPort()));
+        appender.setEncoder(encoder);
+        configure(appender);
+
+        ElkAppenderMetrics.register(METRICS_PREFIX, appender);
+
+        return appender;
+    }
+
+    URI toUri(String host, int port) {
+        var scheme = tls ? "https" : "http";
+        var normalizedPath = path.startsWith("/") ? path : "/" + path;
+        return URI.create(scheme + "://" + host + ":" + port + normalizedPath);
+    }
+
+    private void configure(HttpBatchAppender appender) {
+        appender.setBatchFormat(batchFormat);
+        appender.setGzip(gzip);
+        appender.setMaxBatchSize(maxBatchSize);
+        appender.setFlushInterval(flushInterval.toJavaDuration());
+        appender.setQueueSize(queueSize);
+        appender.setMaxInFlightRequests(maxInFlightRequests);
+        appender.setMaxRetries(maxRetries);
+        appender.setInitialRetryDelay(initialRetryDelay.toJavaDuration());
+        appender.setMaxRetryDelay(maxRetryDelay.toJavaDuration());
+        appender.setConnectTimeout(connectTimeout.toJavaDuration());
+        appender.setRequestTimeout(requestTimeout.toJavaDuration());
+    }
+}
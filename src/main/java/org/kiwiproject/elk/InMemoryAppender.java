@@ -0,0 +1,109 @@
+package org.kiwiproject.elk;
+
+import static java.util.Objects.isNull;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.encoder.Encoder;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An appender that encodes events and keeps them in memory instead of sending them anywhere.
+ * <p>
+ * This exercises the same encoding pipeline as the network transports, without needing a socket, which
+ * makes it useful in tests and benchmarks. It counts all the events and bytes it has encoded, and
+ * retains up to {@code retainedEvents} of the most recent encoded events; older events are discarded.
+ *
+ * @see MemoryTransportFactory
+ */
+public class InMemoryAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    private Encoder<ILoggingEvent> encoder;
+
+    @Getter
+    @Setter(AccessLevel.PACKAGE)
+    private int retainedEvents = MemoryTransportFactory.DEFAULT_RETAINED_EVENTS;
+
+    private final LongAdder eventCount = new LongAdder();
+    private final LongAdder byteCount = new LongAdder();
+    private BlockingQueue<byte[]> retained;
+
+    @Override
+    public void start() {
+        if (isNull(encoder)) {
+            addError("No encoder was configured for appender " + name);
+            return;
+        }
+
+        encoder.setContext(getContext());
+        if (!encoder.isStarted()) {
+            encoder.start();
+        }
+
+        retained = new ArrayBlockingQueue<>(Math.max(1, retainedEvents));
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        if (encoder != null) {
+            encoder.stop();
+        }
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        var bytes = encoder.encode(event);
+        eventCount.increment();
+        byteCount.add(bytes.length);
+
+        if (retainedEvents > 0) {
+            while (!retained.offer(bytes)) {
+                retained.poll();
+            }
+        }
+    }
+
+    /**
+     * The total number of events encoded since this appender started or was last cleared.
+     */
+    public long getEventCount() {
+        return eventCount.sum();
+    }
+
+    /**
+     * The total number of bytes encoded since this appender started or was last cleared.
+     */
+    public long getByteCount() {
+        return byteCount.sum();
+    }
+
+    /**
+     * The most recent encoded events, oldest first.
+     */
+    public List<byte[]> getEncodedEvents() {
+        return isNull(retained) ? List.of() : new ArrayList<>(retained);
+    }
+
+    /**
+     * Discard the retained events and reset the counts.
+     */
+    public void clear() {
+        eventCount.reset();
+        byteCount.reset();
+        if (retained != null) {
+            retained.clear();
+        }
+    }
+}
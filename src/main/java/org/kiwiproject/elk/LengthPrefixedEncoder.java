@@ -0,0 +1,86 @@
+package org.kiwiproject.elk;
+
+import static java.util.Objects.requireNonNull;
+
+import ch.qos.logback.core.Context;
+import ch.qos.logback.core.encoder.Encoder;
+import ch.qos.logback.core.encoder.EncoderBase;
+import net.logstash.logback.encoder.StreamingEncoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link Encoder} that frames each event encoded by a delegate encoder with a four-byte,
+ * big-endian length prefix.
+ * <p>
+ * Binary encodings such as CBOR and Smile can contain newline bytes, so they cannot be
+ * newline-delimited when sent over a stream like a TCP connection. The receiver instead reads
+ * the length, then exactly that many bytes.
+ *
+ * @param <E> the event type
+ */
+class LengthPrefixedEncoder<E> extends EncoderBase<E> implements StreamingEncoder<E> {
+
+    static final int PREFIX_LENGTH = Integer.BYTES;
+
+    private final Encoder<E> delegate;
+
+    LengthPrefixedEncoder(Encoder<E> delegate) {
+        this.delegate = requireNonNull(delegate);
+    }
+
+    Encoder<E> getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void setContext(Context context) {
+        super.setContext(context);
+        delegate.setContext(context);
+    }
+
+    @Override
+    public void start() {
+        if (!delegate.isStarted()) {
+            delegate.start();
+        }
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        delegate.stop();
+    }
+
+    @Override
+    public byte[] headerBytes() {
+        return null;
+    }
+
+    @Override
+    public byte[] encode(E event) {
+        var payload = delegate.encode(event);
+        return ByteBuffer.allocate(PREFIX_LENGTH + payload.length)
+                .putInt(payload.length)
+                .put(payload)
+                .array();
+    }
+
+    @Override
+    public void encode(E event, OutputStream outputStream) throws IOException {
+        var payload = delegate.encode(event);
+        outputStream.write(payload.length >>> 24);
+        outputStream.write(payload.length >>> 16);
+        outputStream.write(payload.length >>> 8);
+        outputStream.write(payload.length);
+        outputStream.write(payload);
+    }
+
+    @Override
+    public byte[] footerBytes() {
+        return null;
+    }
+}
@@ -0,0 +1,266 @@
+package org.kiwiproject.elk;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.filter.Filter;
+import ch.qos.logback.core.spi.FilterReply;
+import lombok.AccessLevel;
+import lombok.Getter;
+import net.logstash.logback.marker.Markers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A filter that denies events from the configured loggers at or below the configured levels,
+ * counting them instead, and periodically sends a single summary event with the counts and a
+ * few sample messages to an appender.
+ * <p>
+ * Counting happens on the logging thread, so it must be cheap. The counts are kept in striped
+ * {@link LongAdder}s, grouped by logger, level, and optionally an MDC value, and only the first
+ * few messages in each group are formatted. The level that applies to each logger is resolved
+ * once and cached. The number of groups is bounded by {@code maxGroups}: beyond it, an event is
+ * counted in the group for its logger and level without an MDC value, if there is one, and
+ * otherwise in the group for its level and the {@value #OTHER_LOGGERS} logger.
+ * <p>
+ * An event counted while a summary is being sent may be missed from that summary.
+ *
+ * @see ElkAggregationConfig
+ */
+class LogVolumeAggregationFilter extends Filter<ILoggingEvent> {
+
+    static final String SUMMARY_LOGGER_NAME = "org.kiwiproject.elk.LogVolumeSummary";
+    static final String OTHER_LOGGERS = "other";
+
+    /**
+     * Marks loggers that are not aggregated. No event has a level at or below {@code ALL}.
+     */
+    private static final Level NOT_AGGREGATED = Level.ALL;
+
+    private final Map<String, Level> configuredLevels;
+    private final Appender<ILoggingEvent> appender;
+    private final Duration interval;
+    private final String mdcKey;
+    private final int maxSamples;
+    private final int maxGroups;
+
+    private final Map<String, Level> resolvedLevels = new ConcurrentHashMap<>();
+    private final AtomicReference<ConcurrentHashMap<GroupKey, Group>> groups =
+            new AtomicReference<>(new ConcurrentHashMap<>());
+
+    @Getter(AccessLevel.PACKAGE)
+    private final LongAdder summaryCount = new LongAdder();
+
+    private ScheduledExecutorService scheduler;
+
+    record GroupKey(String loggerName, Level level, String mdcValue) {
+    }
+
+    private static class Group {
+        final LongAdder count = new LongAdder();
+        final AtomicInteger sampleCount = new AtomicInteger();
+        final AtomicReferenceArray<String> samples;
+
+        Group(int maxSamples) {
+            samples = new AtomicReferenceArray<>(maxSamples);
+        }
+    }
+
+    LogVolumeAggregationFilter(Map<String, Level> configuredLevels,
+                               Appender<ILoggingEvent> appender,
+                               Duration interval,
+                               String mdcKey,
+                               int maxSamples,
+                               int maxGroups) {
+        this.configuredLevels = Map.copyOf(configuredLevels);
+        this.appender = appender;
+        this.interval = interval;
+        this.mdcKey = mdcKey;
+        this.maxSamples = maxSamples;
+        this.maxGroups = maxGroups;
+    }
+
+    @Override
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "elk-aggregation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var intervalMillis = interval.toMillis();
+        scheduler.scheduleAtFixedRate(this::sendSummaryQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+
+        super.stop();
+        scheduler.shutdownNow();
+        sendSummaryQuietly();
+    }
+
+    @Override
+    public FilterReply decide(ILoggingEvent event) {
+        var loggerName = event.getLoggerName();
+        var level = event.getLevel();
+        var maxLevel = resolvedLevels.computeIfAbsent(loggerName, this::resolveLevel);
+        if (level.toInt() > maxLevel.toInt()) {
+            return FilterReply.NEUTRAL;
+        }
+
+        count(event, loggerName, level);
+        return FilterReply.DENY;
+    }
+
+    private Level resolveLevel(String loggerName) {
+        if (SUMMARY_LOGGER_NAME.equals(loggerName)) {
+            return NOT_AGGREGATED;
+        }
+
+        return configuredLevels.entrySet()
+                .stream()
+                .filter(entry -> appliesTo(entry.getKey(), loggerName))
+                .max(Comparator.comparingInt(entry -> entry.getKey().length()))
+                .map(Map.Entry::getValue)
+                .orElse(NOT_AGGREGATED);
+    }
+
+    private static boolean appliesTo(String configuredName, String loggerName) {
+        return loggerName.equals(configuredName) ||
+                (loggerName.startsWith(configuredName) && loggerName.charAt(configuredName.length()) == '.');
+    }
+
+    private void count(ILoggingEvent event, String loggerName, Level level) {
+        var currentGroups = groups.get();
+        var key = new GroupKey(loggerName, level, getMdcValue(event));
+
+        var group = currentGroups.get(key);
+        if (isNull(group)) {
+            group = currentGroups.size() < maxGroups
+                    ? currentGroups.computeIfAbsent(key, ignored -> new Group(maxSamples))
+                    : getOverflowGroup(currentGroups, key);
+        }
+
+        group.count.increment();
+
+        if (group.sampleCount.get() < maxSamples) {
+            var index = group.sampleCount.getAndIncrement();
+            if (index < maxSamples) {
+                group.samples.set(index, event.getFormattedMessage());
+            }
+        }
+    }
+
+    /**
+     * @return the group to count an event in once there are {@code maxGroups} groups
+     */
+    private Group getOverflowGroup(ConcurrentHashMap<GroupKey, Group> currentGroups, GroupKey key) {
+        if (nonNull(key.mdcValue())) {
+            var withoutMdcValue = currentGroups.get(new GroupKey(key.loggerName(), key.level(), null));
+            if (nonNull(withoutMdcValue)) {
+                return withoutMdcValue;
+            }
+        }
+        return currentGroups.computeIfAbsent(new GroupKey(OTHER_LOGGERS, key.level(), null),
+                ignored -> new Group(maxSamples));
+    }
+
+    private String getMdcValue(ILoggingEvent event) {
+        if (isNull(mdcKey)) {
+            return null;
+        }
+
+        var mdc = event.getMDCPropertyMap();
+        return isNull(mdc) ? null : mdc.get(mdcKey);
+    }
+
+    private void sendSummaryQuietly() {
+        try {
+            sendSummary();
+        } catch (Exception e) {
+            addWarn("Unable to send log volume summary", e);
+        }
+    }
+
+    /**
+     * Send a summary of the events counted since the last summary, if there are any.
+     */
+    void sendSummary() {
+        var counted = groups.getAndSet(new ConcurrentHashMap<>());
+        if (counted.isEmpty()) {
+            return;
+        }
+
+        var summaries = new ArrayList<Map<String, Object>>(counted.size());
+        var total = 0L;
+        for (var entry : counted.entrySet()) {
+            var count = entry.getValue().count.sum();
+            total += count;
+            summaries.add(summarize(entry.getKey(), entry.getValue(), count));
+        }
+
+        var aggregation = new LinkedHashMap<String, Object>();
+        aggregation.put("interval_ms", interval.toMillis());
+        aggregation.put("total", total);
+        aggregation.put("groups", summaries);
+
+        var loggerContext = (LoggerContext) getContext();
+        var event = new LoggingEvent(LogVolumeAggregationFilter.class.getName(),
+                loggerContext.getLogger(SUMMARY_LOGGER_NAME),
+                Level.INFO,
+                "Aggregated {} log events in {} groups over the last {} ms",
+                null,
+                new Object[] { total, summaries.size(), interval.toMillis() });
+        event.setMDCPropertyMap(Map.of());
+        event.addMarker(Markers.appendEntries(Map.of("aggregation", aggregation)));
+
+        appender.doAppend(event);
+        summaryCount.increment();
+    }
+
+    private Map<String, Object> summarize(GroupKey key, Group group, long count) {
+        var summary = new LinkedHashMap<String, Object>();
+        summary.put("logger", key.loggerName());
+        summary.put("level", key.level().toString());
+        if (nonNull(key.mdcValue())) {
+            summary.put(mdcKey, key.mdcValue());
+        }
+        summary.put("count", count);
+        summary.put("samples", getSamples(group));
+        return summary;
+    }
+
+    private static List<String> getSamples(Group group) {
+        var samples = new ArrayList<String>(group.samples.length());
+        for (var i = 0; i < group.samples.length(); i++) {
+            var sample = group.samples.get(i);
+            if (nonNull(sample)) {
+                samples.add(sample);
+            }
+        }
+        return samples;
+    }
+}
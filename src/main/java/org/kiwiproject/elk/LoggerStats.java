@@ -0,0 +1,246 @@
+package org.kiwiproject.elk;
+
+import static java.util.Comparator.comparingLong;
+import static java.util.Objects.nonNull;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.LockFreeExponentiallyDecayingReservoir;
+import com.codahale.metrics.Snapshot;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Approximate per-logger event counts and encoded bytes, used to find the loggers responsible
+ * for most of the volume sent to Logstash.
+ * <p>
+ * The counts for every logger are estimated using a pair of
+ * <a href="https://en.wikipedia.org/wiki/Count%E2%80%93min_sketch">count-min sketches</a>, which use
+ * a fixed amount of memory regardless of the number of loggers, and never underestimate. Loggers
+ * whose estimated bytes are among the highest are tracked as "heavy hitters", with exact counts
+ * (since they started being tracked) and a histogram of their encoded event sizes. When the list
+ * of heavy hitters is full, a logger whose estimate exceeds the smallest tracked logger replaces it.
+ * <p>
+ * The sketches are striped: each thread records into one of up to {@value #MAX_STRIPES} copies, chosen
+ * by its thread ID, so logging threads rarely update the same cells. The stripes use the same hash
+ * functions, so they are merged by adding their cells when the estimates are read. Each stripe takes
+ * 128 KiB. Recording an event updates a few cells of its stripe and, for tracked loggers, a couple of
+ * {@link LongAdder}s and a lock-free histogram, so it is safe to call on every event. For other loggers,
+ * the merged estimate is only computed once the recording thread's stripe alone holds that logger's
+ * share of the admission threshold.
+ * <p>
+ * The stats of each running appender are kept in {@link #REGISTRY}, for {@link ElkLoggerStatsTask}.
+ */
+class LoggerStats {
+
+    static final int SKETCH_DEPTH = 4;
+    static final int SKETCH_WIDTH = 2048;
+    static final int MAX_STRIPES = 8;
+
+    static final ElkAppenderRegistry<LoggerStats> REGISTRY = new ElkAppenderRegistry<>();
+
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L
+    };
+
+    private final int capacity;
+    private final Stripe[] stripes;
+    private final Map<String, Tracked> heavyHitters = new ConcurrentHashMap<>();
+    private final LongAdder totalEvents = new LongAdder();
+    private final LongAdder totalBytes = new LongAdder();
+
+    /**
+     * The smallest estimated bytes among the heavy hitters, when the list is full. A logger must
+     * exceed this to be considered for the list, which avoids taking the lock on most events.
+     */
+    private volatile long admissionThreshold;
+
+    private static class Stripe {
+        final AtomicLongArray events = new AtomicLongArray(SKETCH_DEPTH * SKETCH_WIDTH);
+        final AtomicLongArray bytes = new AtomicLongArray(SKETCH_DEPTH * SKETCH_WIDTH);
+    }
+
+    private static class Tracked {
+        final LongAdder events = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final Histogram sizes = new Histogram(LockFreeExponentiallyDecayingReservoir.builder().build());
+    }
+
+    /**
+     * One row of the report.
+     *
+     * @param loggerName      the logger name
+     * @param estimatedEvents the estimated number of events, never less than the actual number
+     * @param estimatedBytes  the estimated number of encoded bytes, never less than the actual number
+     * @param trackedEvents   the exact number of events since the logger started being tracked
+     * @param trackedBytes    the exact number of bytes since the logger started being tracked
+     * @param sizes           a snapshot of the encoded event sizes since the logger started being tracked
+     */
+    record Entry(String loggerName,
+                 long estimatedEvents,
+                 long estimatedBytes,
+                 long trackedEvents,
+                 long trackedBytes,
+                 Snapshot sizes) {
+    }
+
+    /**
+     * @param capacity the maximum number of heavy hitters to track
+     */
+    LoggerStats(int capacity) {
+        this(capacity, Math.min(MAX_STRIPES, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1)));
+    }
+
+    /**
+     * @param capacity the maximum number of heavy hitters to track
+     * @param stripes  the number of copies of the sketches, a power of two
+     */
+    LoggerStats(int capacity, int stripes) {
+        this.capacity = capacity;
+        this.stripes = new Stripe[stripes];
+        for (var i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Record one event of the given encoded size from the given logger.
+     */
+    void record(String loggerName, long bytes) {
+        totalEvents.increment();
+        totalBytes.add(bytes);
+
+        var stripe = currentStripe();
+        var hash = loggerName.hashCode();
+        var stripeBytes = Long.MAX_VALUE;
+        for (var row = 0; row < SKETCH_DEPTH; row++) {
+            var index = index(hash, row);
+            stripe.events.incrementAndGet(index);
+            stripeBytes = Math.min(stripeBytes, stripe.bytes.addAndGet(index, bytes));
+        }
+
+        var tracked = heavyHitters.get(loggerName);
+        if (nonNull(tracked)) {
+            tracked.events.increment();
+            tracked.bytes.add(bytes);
+            tracked.sizes.update(bytes);
+        } else if (stripeBytes > admissionThreshold / stripes.length && estimateBytes(loggerName) > admissionThreshold) {
+            admit(loggerName);
+        }
+    }
+
+    private Stripe currentStripe() {
+        var id = Thread.currentThread().getId();
+        var mixed = id * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (mixed >>> 32) & (stripes.length - 1)];
+    }
+
+    private synchronized void admit(String loggerName) {
+        if (heavyHitters.containsKey(loggerName)) {
+            return;
+        }
+
+        if (heavyHitters.size() >= capacity) {
+            var smallest = heavyHitters.keySet()
+                    .stream()
+                    .min(comparingLong(this::estimateBytes))
+                    .orElseThrow();
+            if (estimateBytes(smallest) >= estimateBytes(loggerName)) {
+                admissionThreshold = estimateBytes(smallest);
+                return;
+            }
+            heavyHitters.remove(smallest);
+        }
+
+        heavyHitters.put(loggerName, new Tracked());
+
+        if (heavyHitters.size() >= capacity) {
+            admissionThreshold = heavyHitters.keySet()
+                    .stream()
+                    .mapToLong(this::estimateBytes)
+                    .min()
+                    .orElse(0);
+        }
+    }
+
+    long estimateEvents(String loggerName) {
+        return estimate(loggerName, stripe -> stripe.events);
+    }
+
+    long estimateBytes(String loggerName) {
+        return estimate(loggerName, stripe -> stripe.bytes);
+    }
+
+    /**
+     * Estimate from the merged stripes, i.e. the smallest, over the rows, of the sum of the logger's cell
+     * in each stripe.
+     */
+    private long estimate(String loggerName, Function<Stripe, AtomicLongArray> sketch) {
+        var hash = loggerName.hashCode();
+        var estimate = Long.MAX_VALUE;
+        for (var row = 0; row < SKETCH_DEPTH; row++) {
+            var index = index(hash, row);
+            var sum = 0L;
+            for (var stripe : stripes) {
+                sum += sketch.apply(stripe).get(index);
+            }
+            estimate = Math.min(estimate, sum);
+        }
+        return estimate;
+    }
+
+    private static int index(int hash, int row) {
+        var mixed = (hash ^ SEEDS[row]) * 0xFF51AFD7ED558CCDL;
+        mixed ^= mixed >>> 33;
+        return row * SKETCH_WIDTH + (int) (mixed & (SKETCH_WIDTH - 1));
+    }
+
+    long getTotalEvents() {
+        return totalEvents.sum();
+    }
+
+    long getTotalBytes() {
+        return totalBytes.sum();
+    }
+
+    /**
+     * Get the heavy hitters, ordered by estimated bytes (highest first).
+     */
+    List<Entry> getTopLoggers(int limit) {
+        return heavyHitters.entrySet()
+                .stream()
+                .map(entry -> new Entry(entry.getKey(),
+                        estimateEvents(entry.getKey()),
+                        estimateBytes(entry.getKey()),
+                        entry.getValue().events.sum(),
+                        entry.getValue().bytes.sum(),
+                        entry.getValue().sizes.getSnapshot()))
+                .sorted(comparingLong(Entry::estimatedBytes).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Clear all counts and heavy hitters.
+     */
+    synchronized void reset() {
+        for (var stripe : stripes) {
+            for (var i = 0; i < stripe.events.length(); i++) {
+                stripe.events.set(i, 0);
+                stripe.bytes.set(i, 0);
+            }
+        }
+        heavyHitters.clear();
+        totalEvents.reset();
+        totalBytes.reset();
+        admissionThreshold = 0;
+    }
+}
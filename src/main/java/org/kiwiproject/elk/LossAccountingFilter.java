@@ -0,0 +1,215 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.filter.Filter;
+import ch.qos.logback.core.spi.FilterReply;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import net.logstash.logback.appender.listener.TcpAppenderListener;
+import net.logstash.logback.composite.AbstractJsonProvider;
+import net.logstash.logback.marker.Markers;
+import tools.jackson.core.JsonGenerator;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accounts for every event given to the appender, so that loss can be measured downstream. Each
+ * encoded event is stamped with the appender's instance id and a sequence number, and a heartbeat
+ * event with the cumulative number of events appended, sent, and dropped is sent periodically.
+ * <p>
+ * As a filter on the outermost appender, it counts the events at or above the appender's threshold
+ * that are appended, which happens on the logging threads, so the count is kept in a striped
+ * {@link LongAdder}. Sequence numbers are assigned as events are encoded, by a single thread for
+ * most transports, so an {@link AtomicLong} is uncontended, and the last one assigned is the number
+ * of events sent. The stages that drop events before they are encoded report them using
+ * {@link #recordDropped()}, and events rejected by the circuit breaker are added to those.
+ * <p>
+ * So, apart from events still in flight, appended = sent + dropped, and a sequence number missing
+ * downstream identifies an event lost after it was sent, e.g. by the network or Logstash.
+ * <p>
+ * The heartbeat is logged at {@code INFO}, but is sent whatever the appender's threshold: it is
+ * accepted ahead of the transport's threshold filter by {@link #newHeartbeatFilter()}, and is never
+ * rejected by the circuit breaker or shed under heap pressure. It is counted as appended, since it is
+ * sent with a sequence number.
+ *
+ * @see ElkLossAccountingConfig
+ */
+class LossAccountingFilter extends Filter<ILoggingEvent> {
+
+    static final String HEARTBEAT_LOGGER_NAME = "org.kiwiproject.elk.Heartbeat";
+    static final String SEQUENCE_FIELD = "sequence";
+    static final String INSTANCE_ID_FIELD = "instance_id";
+
+    @Getter(AccessLevel.PACKAGE)
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final Level threshold;
+    private final Duration heartbeatInterval;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder appendedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+
+    @Setter(AccessLevel.PACKAGE)
+    private Appender<ILoggingEvent> appender;
+
+    @Setter(AccessLevel.PACKAGE)
+    private ElkCircuitBreaker circuitBreaker;
+
+    private ScheduledExecutorService scheduler;
+
+    LossAccountingFilter(Level threshold, Duration heartbeatInterval) {
+        this.threshold = threshold;
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    @Override
+    public void start() {
+        checkState(nonNull(appender), "appender must be set before starting");
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "elk-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var intervalMillis = heartbeatInterval.toMillis();
+        scheduler.scheduleAtFixedRate(this::sendHeartbeatQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+
+        super.stop();
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public FilterReply decide(ILoggingEvent event) {
+        if (event.getLevel().isGreaterOrEqual(threshold) || isHeartbeat(event)) {
+            appendedCount.increment();
+        }
+        return FilterReply.NEUTRAL;
+    }
+
+    static boolean isHeartbeat(ILoggingEvent event) {
+        return HEARTBEAT_LOGGER_NAME.equals(event.getLoggerName());
+    }
+
+    /**
+     * @return a filter that accepts heartbeats, to add to the transport ahead of its threshold filter
+     */
+    Filter<ILoggingEvent> newHeartbeatFilter() {
+        var filter = new Filter<ILoggingEvent>() {
+            @Override
+            public FilterReply decide(ILoggingEvent event) {
+                return isHeartbeat(event) ? FilterReply.ACCEPT : FilterReply.NEUTRAL;
+            }
+        };
+        filter.setName("elk-heartbeat");
+        filter.start();
+        return filter;
+    }
+
+    /**
+     * Record that an event was dropped before it was encoded.
+     */
+    void recordDropped() {
+        droppedCount.increment();
+    }
+
+    long getAppendedCount() {
+        return appendedCount.sum();
+    }
+
+    long getSentCount() {
+        return sequence.get();
+    }
+
+    long getDroppedCount() {
+        var rejected = isNull(circuitBreaker) ? 0 : circuitBreaker.getRejectedEventCount();
+        return droppedCount.sum() + rejected;
+    }
+
+    /**
+     * @return a provider that adds the instance id and the next sequence number to each encoded event
+     */
+    AbstractJsonProvider<ILoggingEvent> newSequenceProvider() {
+        return new AbstractJsonProvider<>() {
+            @Override
+            public void writeTo(JsonGenerator generator, ILoggingEvent event) {
+                generator.writeStringProperty(INSTANCE_ID_FIELD, instanceId);
+                generator.writeNumberProperty(SEQUENCE_FIELD, sequence.incrementAndGet());
+            }
+        };
+    }
+
+    /**
+     * @return a listener that records events the TCP appender drops because its ring buffer is full
+     */
+    TcpAppenderListener<ILoggingEvent> newTcpListener() {
+        return new TcpAppenderListener<>() {
+            @Override
+            public void eventAppendFailed(Appender<ILoggingEvent> appender, ILoggingEvent event, Throwable reason) {
+                recordDropped();
+            }
+        };
+    }
+
+    private void sendHeartbeatQuietly() {
+        try {
+            sendHeartbeat();
+        } catch (Exception e) {
+            addWarn("Unable to send heartbeat", e);
+        }
+    }
+
+    /**
+     * Send a heartbeat event with the cumulative counts. The counts are read before it is appended,
+     * so they do not include the heartbeat itself.
+     */
+    void sendHeartbeat() {
+        var appended = getAppendedCount();
+        var sent = getSentCount();
+        var dropped = getDroppedCount();
+
+        var delivery = new LinkedHashMap<String, Object>();
+        delivery.put("appended", appended);
+        delivery.put("sent", sent);
+        delivery.put("dropped", dropped);
+        delivery.put("interval_ms", heartbeatInterval.toMillis());
+
+        var loggerContext = (LoggerContext) getContext();
+        var event = new LoggingEvent(LossAccountingFilter.class.getName(),
+                loggerContext.getLogger(HEARTBEAT_LOGGER_NAME),
+                Level.INFO,
+                "Appended {} log events, sent {}, dropped {}",
+                null,
+                new Object[] { appended, sent, dropped });
+        event.setMDCPropertyMap(Map.of());
+        event.addMarker(Markers.appendEntries(Map.of("delivery", delivery)));
+
+        appender.doAppend(event);
+    }
+}
@@ -0,0 +1,42 @@
+package org.kiwiproject.elk;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Encodes events and keeps them in memory using an {@link InMemoryAppender}, instead of sending
+ * them anywhere. Intended for tests and for benchmarking the encoding and queueing pipeline
+ * without a real socket.
+ * <pre>
+ * logging:
+ *   appenders:
+ *     - type: elk
+ *       transport:
+ *         type: memory
+ *         retainedEvents: 0
+ * </pre>
+ * Setting {@code retainedEvents} to zero keeps only the event and byte counts. The host and
+ * port are not used.
+ */
+@Setter
+@Getter(AccessLevel.PACKAGE)  // getters are visible with package scope for testing
+@JsonTypeName("memory")
+public class MemoryTransportFactory implements ElkTransportFactory {
+
+    static final int DEFAULT_RETAINED_EVENTS = 1_000;
+
+    private int retainedEvents = DEFAULT_RETAINED_EVENTS;
+
+    @Override
+    public Appender<ILoggingEvent> build(ElkTransportContext context) {
+        var appender = new InMemoryAppender();
+        appender.setEncoder(context.newEncoder());
+        appender.setRetainedEvents(retainedEvents);
+
+        return appender;
+    }
+}
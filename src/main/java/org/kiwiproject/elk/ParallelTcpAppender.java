@@ -0,0 +1,92 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.isNull;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import lombok.AccessLevel;
+import lombok.Getter;
+import net.logstash.logback.appender.LogstashTcpSocketAppender;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends events over several connections to the same destination, each a {@link LogstashTcpSocketAppender}
+ * with its own ring buffer and sender thread, so that encoding and writing are not limited to one thread
+ * and one socket.
+ * <p>
+ * Each event is handed to one connection's ring buffer, chosen according to the
+ * {@link ElkConnectionDistribution distribution}. Events on different connections may arrive out of order,
+ * so use {@link ElkConnectionDistribution#THREAD THREAD} or {@link ElkConnectionDistribution#MDC MDC}
+ * distribution to keep related events in order.
+ * <p>
+ * Like any transport, this is wrapped by the appender's async appender, so every event still passes
+ * through its single queue and worker thread, which calls this to hand the event to a connection's ring
+ * buffer. Only the encoding and writing that follow are parallel; the hand-off is a non-blocking publish
+ * to the ring buffer, so it is rarely the limit, but it is not spread across threads.
+ */
+class ParallelTcpAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+
+    @Getter(AccessLevel.PACKAGE)
+    private final List<LogstashTcpSocketAppender> connections;
+
+    private final ElkConnectionDistribution distribution;
+    private final String distributionKey;
+    private final AtomicLong nextConnection = new AtomicLong();
+
+    ParallelTcpAppender(List<LogstashTcpSocketAppender> connections,
+                        ElkConnectionDistribution distribution,
+                        String distributionKey) {
+        checkArgument(connections.size() > 1, "there must be more than one connection");
+        this.connections = List.copyOf(connections);
+        this.distribution = distribution;
+        this.distributionKey = distributionKey;
+    }
+
+    @Override
+    public void start() {
+        for (var i = 0; i < connections.size(); i++) {
+            var connection = connections.get(i);
+            connection.setContext(getContext());
+            connection.setName(getName() + "-" + i);
+            connection.start();
+        }
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+
+        super.stop();
+        connections.forEach(LogstashTcpSocketAppender::stop);
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        connections.get(selectConnection(event)).doAppend(event);
+    }
+
+    /**
+     * The thread name and MDC are captured before the event is queued, so they are those of the logging
+     * thread even when this is called by the async appender's worker thread.
+     */
+    int selectConnection(ILoggingEvent event) {
+        var key = switch (distribution) {
+            case ROUND_ROBIN -> null;
+            case THREAD -> event.getThreadName();
+            case MDC -> event.getMDCPropertyMap().get(distributionKey);
+        };
+
+        if (isNull(key)) {
+            return (int) (nextConnection.getAndIncrement() % connections.size());
+        }
+
+        var hash = key.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), connections.size());
+    }
+}
@@ -0,0 +1,197 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the total estimated size of the events waiting in an async appender's queue, since a number
+ * of events can mean very different amounts of heap depending on their messages and stack traces.
+ * <p>
+ * The size of each event is estimated from its message, {@link String} arguments, MDC, and stack
+ * trace, without formatting or encoding it. Those do not change while the event is queued, so the
+ * same estimate is released when the queue's worker hands the event over. Reserving and releasing are a single
+ * atomic addition each, so concurrent events may briefly exceed the budget by their own sizes. An
+ * event is always admitted when the queue holds no bytes, so an event larger than the budget is
+ * not rejected forever.
+ * <p>
+ * Threads waiting for space are only signalled when there are any, so releasing normally takes no lock.
+ * They also check again periodically, in case they missed the release of space that was briefly taken
+ * by an event that was then rejected.
+ * <p>
+ * This is also a {@link MetricSet} containing the bytes currently queued, the budget, and the number
+ * of events dropped because the budget was exhausted.
+ *
+ * @see FlightRecordingAsyncAppender#setQueuedBytesBudget(QueuedBytesBudget)
+ */
+class QueuedBytesBudget implements MetricSet {
+
+    static final String METRICS_NAME = "asyncQueue";
+
+    static final int EVENT_OVERHEAD_BYTES = 256;
+    static final int ARGUMENT_BYTES = 16;
+    static final int STACK_FRAME_BYTES = 96;
+
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final long maxQueuedBytes;
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final Counter droppedEvents = new Counter();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    QueuedBytesBudget(long maxQueuedBytes) {
+        checkArgument(maxQueuedBytes > 0, "maxQueuedBytes must be positive");
+        this.maxQueuedBytes = maxQueuedBytes;
+    }
+
+    /**
+     * Reserve space for the given number of bytes, if the budget allows.
+     *
+     * @return true if reserved, false if the budget is exhausted
+     */
+    boolean tryReserve(long size) {
+        var previous = queuedBytes.getAndAdd(size);
+        if (previous == 0 || previous + size <= maxQueuedBytes) {
+            return true;
+        }
+
+        // not a release, so waiting threads, which also call this, do not wake each other in turn
+        queuedBytes.addAndGet(-size);
+        return false;
+    }
+
+    /**
+     * Reserve space for the given number of bytes, waiting until the budget allows. Like a blocking
+     * async appender, this is not interrupted; the thread's interrupt status is restored afterwards.
+     */
+    void reserve(long size) {
+        if (tryReserve(size)) {
+            return;
+        }
+
+        var interrupted = false;
+        lock.lock();
+        try {
+            waiters.incrementAndGet();
+            while (!tryReserve(size)) {
+                try {
+                    released.awaitNanos(MAX_WAIT_NANOS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            waiters.decrementAndGet();
+            lock.unlock();
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Release bytes previously reserved, waking any threads waiting for space.
+     */
+    void release(long size) {
+        queuedBytes.addAndGet(-size);
+        if (waiters.get() == 0) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void recordDropped() {
+        droppedEvents.inc();
+    }
+
+    long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    long getMaxQueuedBytes() {
+        return maxQueuedBytes;
+    }
+
+    long getDroppedEventCount() {
+        return droppedEvents.getCount();
+    }
+
+    /**
+     * Estimate the size of an event once encoded, which is also roughly the heap it holds while queued.
+     * Only inputs that cannot change while the event is queued are used, so the estimate is the same
+     * when the event is queued and when it is dequeued.
+     */
+    static long estimateSize(ILoggingEvent event) {
+        long size = EVENT_OVERHEAD_BYTES + length(event.getLoggerName()) + length(event.getMessage());
+
+        var arguments = event.getArgumentArray();
+        if (nonNull(arguments)) {
+            for (var argument : arguments) {
+                size += argument instanceof String string ? string.length() : ARGUMENT_BYTES;
+            }
+        }
+
+        var mdc = event.getMDCPropertyMap();
+        if (nonNull(mdc)) {
+            for (var entry : mdc.entrySet()) {
+                size += length(entry.getKey()) + length(entry.getValue());
+            }
+        }
+
+        return size + estimateSize(event.getThrowableProxy());
+    }
+
+    private static long estimateSize(IThrowableProxy throwable) {
+        if (isNull(throwable)) {
+            return 0;
+        }
+
+        var frames = throwable.getStackTraceElementProxyArray().length - throwable.getCommonFrames();
+        var size = length(throwable.getClassName()) + length(throwable.getMessage()) + (long) frames * STACK_FRAME_BYTES;
+        size += estimateSize(throwable.getCause());
+
+        var suppressed = throwable.getSuppressed();
+        if (nonNull(suppressed)) {
+            for (var suppressedThrowable : suppressed) {
+                size += estimateSize(suppressedThrowable);
+            }
+        }
+        return size;
+    }
+
+    private static int length(String value) {
+        return isNull(value) ? 0 : value.length();
+    }
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        return Map.of(
+                "queuedBytes", (Gauge<Long>) this::getQueuedBytes,
+                "maxQueuedBytes", (Gauge<Long>) this::getMaxQueuedBytes,
+                "droppedEvents", droppedEvents
+        );
+    }
+}
@@ -0,0 +1,301 @@
+package org.kiwiproject.elk;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static org.kiwiproject.collect.KiwiCollections.isNullOrEmpty;
+
+import net.logstash.logback.decorate.JsonGeneratorDecorator;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.util.JsonGeneratorDelegate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Masks sensitive data in the string values of targeted fields as they are written, built from an
+ * {@link ElkMaskingConfig}.
+ * <p>
+ * The literals, prefixes, and required literals of all rules are compiled into a single
+ * {@link AhoCorasickAutomaton}, so each value is scanned once however many rules there are. A
+ * pattern rule's regular expression only runs on a value that contains one of its required
+ * literals, or on every value of its fields if it has none. Values of fields that no rule targets
+ * are not scanned at all, and masking a value that contains nothing sensitive does not allocate.
+ */
+class SensitiveDataMasker implements JsonGeneratorDecorator {
+
+    private enum RuleType {
+        LITERAL, PREFIX, PATTERN
+    }
+
+    /**
+     * A compiled rule. The pattern is null for literal and prefix rules.
+     */
+    private record Rule(RuleType type, Pattern pattern, boolean prefiltered) {
+    }
+
+    private final String mask;
+    private final Set<String> maskedFields;
+    private final Map<String, boolean[]> rulesByField;
+    private final Rule[] rules;
+    private final int[] patternRules;
+    private final AhoCorasickAutomaton automaton;
+    private final int[][] keywordRules;
+
+    /**
+     * @param mask          the replacement for sensitive text
+     * @param maskedFields  the fields whose values are replaced entirely
+     * @param defaultFields the fields that rules which do not list their own fields apply to
+     * @param maskingRules  the rules, which have been validated
+     */
+    SensitiveDataMasker(String mask,
+                        Set<String> maskedFields,
+                        Set<String> defaultFields,
+                        List<ElkMaskingRule> maskingRules) {
+        this.mask = mask;
+        this.maskedFields = Set.copyOf(maskedFields);
+
+        var ruleCount = maskingRules.size();
+        rules = new Rule[ruleCount];
+        var fieldRules = new HashMap<String, boolean[]>();
+        var keywordIndexes = new LinkedHashMap<String, List<Integer>>();
+        for (var ruleIndex = 0; ruleIndex < ruleCount; ruleIndex++) {
+            var maskingRule = maskingRules.get(ruleIndex);
+            rules[ruleIndex] = compile(maskingRule);
+
+            for (var keyword : keywordsOf(maskingRule)) {
+                keywordIndexes.computeIfAbsent(keyword, key -> new ArrayList<>()).add(ruleIndex);
+            }
+
+            var fields = isNullOrEmpty(maskingRule.getFields()) ? defaultFields : maskingRule.getFields();
+            for (var field : fields) {
+                fieldRules.computeIfAbsent(field, key -> new boolean[ruleCount])[ruleIndex] = true;
+            }
+        }
+
+        rulesByField = Map.copyOf(fieldRules);
+        patternRules = IntStream.range(0, ruleCount)
+                .filter(ruleIndex -> rules[ruleIndex].type() == RuleType.PATTERN)
+                .toArray();
+        automaton = keywordIndexes.isEmpty() ? null : new AhoCorasickAutomaton(List.copyOf(keywordIndexes.keySet()));
+        keywordRules = keywordIndexes.values().stream()
+                .map(ruleIndexes -> ruleIndexes.stream().mapToInt(Integer::intValue).toArray())
+                .toArray(int[][]::new);
+    }
+
+    private static Rule compile(ElkMaskingRule maskingRule) {
+        if (nonNull(maskingRule.getLiteral())) {
+            return new Rule(RuleType.LITERAL, null, false);
+        } else if (nonNull(maskingRule.getPrefix())) {
+            return new Rule(RuleType.PREFIX, null, false);
+        }
+        return new Rule(RuleType.PATTERN, Pattern.compile(maskingRule.getPattern()),
+                !isNullOrEmpty(maskingRule.getRequires()));
+    }
+
+    private static List<String> keywordsOf(ElkMaskingRule maskingRule) {
+        if (nonNull(maskingRule.getLiteral())) {
+            return List.of(maskingRule.getLiteral());
+        } else if (nonNull(maskingRule.getPrefix())) {
+            return List.of(maskingRule.getPrefix());
+        }
+        return isNullOrEmpty(maskingRule.getRequires()) ? List.of() : maskingRule.getRequires();
+    }
+
+    @Override
+    public JsonGenerator decorate(JsonGenerator generator) {
+        return new MaskingGenerator(generator, this);
+    }
+
+    boolean isTargeted(String field) {
+        return nonNull(field) && (maskedFields.contains(field) || rulesByField.containsKey(field));
+    }
+
+    /**
+     * Mask the sensitive data in a value of the given field.
+     *
+     * @return the masked value, or the same value if there was nothing to mask
+     */
+    String mask(String field, String value) {
+        if (isNull(field) || isNull(value)) {
+            return value;
+        }
+        if (maskedFields.contains(field)) {
+            return mask;
+        }
+
+        var applicable = rulesByField.get(field);
+        if (isNull(applicable)) {
+            return value;
+        }
+
+        Ranges ranges = null;
+        boolean[] triggered = null;
+        if (nonNull(automaton)) {
+            var state = AhoCorasickAutomaton.ROOT;
+            for (var i = 0; i < value.length(); i++) {
+                state = automaton.next(state, value.charAt(i));
+                for (var keyword : automaton.matches(state)) {
+                    for (var ruleIndex : keywordRules[keyword]) {
+                        if (!applicable[ruleIndex]) {
+                            continue;
+                        }
+
+                        switch (rules[ruleIndex].type()) {
+                            case LITERAL -> ranges = Ranges.add(ranges, i + 1 - automaton.keywordLength(keyword), i + 1);
+                            case PREFIX -> ranges = Ranges.add(ranges, i + 1, endOfPrefixedValue(value, i + 1));
+                            case PATTERN -> {
+                                if (isNull(triggered)) {
+                                    triggered = new boolean[rules.length];
+                                }
+                                triggered[ruleIndex] = true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        for (var ruleIndex : patternRules) {
+            var rule = rules[ruleIndex];
+            var shouldRun = applicable[ruleIndex] && (!rule.prefiltered() || (nonNull(triggered) && triggered[ruleIndex]));
+            if (shouldRun) {
+                var matcher = rule.pattern().matcher(value);
+                while (matcher.find()) {
+                    ranges = Ranges.add(ranges, matcher.start(), matcher.end());
+                }
+            }
+        }
+
+        return isNull(ranges) ? value : ranges.apply(value, mask);
+    }
+
+    /**
+     * The value after a prefix, e.g. a token after {@code Bearer }, ends at whitespace, a quote, or
+     * a separator used in query strings, key-value pairs, and JSON.
+     */
+    private static int endOfPrefixedValue(String value, int start) {
+        var end = start;
+        while (end < value.length() && !isValueSeparator(value.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    private static boolean isValueSeparator(char c) {
+        return Character.isWhitespace(c) || switch (c) {
+            case '"', '\'', ',', ';', '&', ')', ']', '}', '<', '>' -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * The ranges of a value to mask, which may overlap.
+     */
+    private static class Ranges {
+
+        private int[] starts = new int[4];
+        private int[] ends = new int[4];
+        private int count;
+
+        static Ranges add(Ranges ranges, int start, int end) {
+            if (start >= end) {
+                return ranges;
+            }
+
+            var result = isNull(ranges) ? new Ranges() : ranges;
+            if (result.count == result.starts.length) {
+                result.starts = Arrays.copyOf(result.starts, result.count * 2);
+                result.ends = Arrays.copyOf(result.ends, result.count * 2);
+            }
+            result.starts[result.count] = start;
+            result.ends[result.count] = end;
+            result.count++;
+            return result;
+        }
+
+        /**
+         * Replace each range, after merging overlapping and adjacent ranges, with the mask.
+         */
+        String apply(String value, String mask) {
+            sortByStart();
+
+            var masked = new StringBuilder(value.length());
+            var copiedTo = 0;
+            var i = 0;
+            while (i < count) {
+                var start = starts[i];
+                var end = ends[i];
+                while (++i < count && starts[i] <= end) {
+                    end = Math.max(end, ends[i]);
+                }
+                masked.append(value, copiedTo, start).append(mask);
+                copiedTo = end;
+            }
+            return masked.append(value, copiedTo, value.length()).toString();
+        }
+
+        /**
+         * Insertion sort, since there are only ever a few ranges, and they are mostly found in order.
+         */
+        private void sortByStart() {
+            for (var i = 1; i < count; i++) {
+                var start = starts[i];
+                var end = ends[i];
+                var j = i - 1;
+                while (j >= 0 && starts[j] > start) {
+                    starts[j + 1] = starts[j];
+                    ends[j + 1] = ends[j];
+                    j--;
+                }
+                starts[j + 1] = start;
+                ends[j + 1] = end;
+            }
+        }
+    }
+
+    /**
+     * Masks string values as they are written, using the name of the field being written.
+     */
+    private static class MaskingGenerator extends JsonGeneratorDelegate {
+
+        private final SensitiveDataMasker masker;
+
+        MaskingGenerator(JsonGenerator generator, SensitiveDataMasker masker) {
+            super(generator);
+            this.masker = masker;
+        }
+
+        @Override
+        public JsonGenerator writeString(String text) throws JacksonException {
+            return super.writeString(masker.mask(streamWriteContext().currentName(), text));
+        }
+
+        @Override
+        public JsonGenerator writeString(char[] text, int offset, int len) throws JacksonException {
+            var field = streamWriteContext().currentName();
+            if (masker.isTargeted(field)) {
+                return writeString(new String(text, offset, len));
+            }
+            return super.writeString(text, offset, len);
+        }
+
+        /**
+         * MDC values are written as POJOs.
+         */
+        @Override
+        public JsonGenerator writePOJO(Object value) throws JacksonException {
+            if (value instanceof String text) {
+                return writeString(text);
+            }
+            return super.writePOJO(value);
+        }
+    }
+}
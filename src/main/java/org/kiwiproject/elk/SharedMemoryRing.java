@@ -0,0 +1,434 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.function.Consumer;
+
+/**
+ * A ring of encoded events in a memory-mapped file, shared by the processes on a host. Any number
+ * of threads, in any number of processes, may add events; a single consumer (the
+ * {@link ElkRingForwarder elected forwarder}) reads them.
+ * <p>
+ * The file starts with a header holding the capacity, the read position, and the write position,
+ * each on its own cache line. Positions only increase, and are reduced modulo the capacity to find
+ * an offset in the data region. Each record is an 8-byte header, holding the payload length and
+ * state, followed by the {@link Claimant} that claimed it (its process ID and start time), and the
+ * payload, padded to a multiple of 8 bytes:
+ * <ol>
+ *     <li>A producer claims space by marking the record claimed at the write position with a
+ *     compare-and-set of its header, after checking that the space has been released by the
+ *     consumer, and then advances the write position past it. If there is not enough room, the
+ *     event is rejected rather than waiting.</li>
+ *     <li>It records itself as the claimant, copies the payload, and marks the record committed.</li>
+ *     <li>The consumer reads committed records in order, and after they are forwarded, marks their
+ *     space free and advances the read position, releasing the space.</li>
+ * </ol>
+ * Since a record is published before the write position moves past it, every record below the
+ * write position has a header, even if the producer that claimed it crashed immediately. A
+ * producer that finds a claimed record at the write position advances the write position for it.
+ * Each word of free space holds a marker of the lap of the ring it is free for, so that a producer
+ * holding a stale write position cannot claim space that has since been reused.
+ * <p>
+ * A record that does not fit before the end of the data region is preceded by a padding record
+ * filling the rest of it. Committed records remain in the file (and the page cache) if the process
+ * that wrote them crashes. A record left claimed by a crashed process can be found using
+ * {@link #getClaimedRecord()}, and skipped by releasing it once its claimant is no longer running;
+ * if the process crashed before recording itself, its claimant is {@link Claimant#UNKNOWN}.
+ * <p>
+ * The directory and file are created readable and writable only by their owner, since the events
+ * may hold anything that is logged, so the processes sharing a ring must run as the same user.
+ */
+class SharedMemoryRing implements Closeable {
+
+    static final long MAGIC = 0x454C4B52494E4733L;  // "ELKRING3"
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int READ_OFFSET = 64;
+    private static final int WRITE_OFFSET = 128;
+    static final int DATA_OFFSET = 192;
+
+    static final int RECORD_HEADER_SIZE = 8;
+    static final int CLAIMANT_SIZE = 16;
+
+    private static final int CLAIMED = 1;
+    private static final int COMMITTED = 2;
+    private static final int PADDING = 3;
+
+    /**
+     * The marker of free space for lap zero of the ring, decreasing by one for each lap. It is
+     * negative, so it is never a record header, and is unlikely to occur in a claimant or payload.
+     */
+    private static final long FREE = 0xF4EE_F4EE_0000_0000L;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    /**
+     * Serializes initialization within this JVM, since a file lock cannot be held twice by one JVM.
+     */
+    private static final Object INIT_LOCK = new Object();
+
+    /**
+     * A process that claimed a record, identified by its process ID and start time, since process
+     * IDs are reused.
+     *
+     * @param pid       the process ID
+     * @param startTime when the process started, in milliseconds since the epoch, or zero if unknown
+     */
+    record Claimant(long pid, long startTime) {
+
+        static final Claimant CURRENT = of(ProcessHandle.current());
+
+        /**
+         * The claimant of a record whose producer crashed before recording itself.
+         */
+        static final Claimant UNKNOWN = new Claimant(0, 0);
+
+        static Claimant of(ProcessHandle process) {
+            return new Claimant(process.pid(), process.info().startInstant().map(Instant::toEpochMilli).orElse(0L));
+        }
+
+        /**
+         * @return true if the process is still running, i.e. a running process has the same ID and
+         * start time; a process in another PID namespace (e.g. another container) is never found
+         */
+        boolean isRunning() {
+            return pid > 0 && ProcessHandle.of(pid)
+                    .filter(ProcessHandle::isAlive)
+                    .map(Claimant::of)
+                    .filter(this::equals)
+                    .isPresent();
+        }
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long capacity;
+
+    /**
+     * Open the ring at the given path, creating it with the given capacity if it does not exist.
+     * If it exists, its existing capacity is used.
+     */
+    static SharedMemoryRing open(Path path, long capacity) throws IOException {
+        checkArgument(capacity >= 1024 && capacity % RECORD_HEADER_SIZE == 0,
+                "capacity must be a multiple of %s, and at least 1024", RECORD_HEADER_SIZE);
+        checkArgument(capacity <= Integer.MAX_VALUE - DATA_OFFSET, "capacity must be less than 2GiB");
+
+        Files.createDirectories(path.toAbsolutePath().getParent(), ownerOnly("rwx------"));
+        var channel = openOwnerOnly(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            synchronized (INIT_LOCK) {
+                try (var ignored = channel.lock()) {
+                    return new SharedMemoryRing(path, channel, initialize(channel, capacity));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open the given file, creating it readable and writable only by its owner if it does not exist.
+     */
+    static FileChannel openOwnerOnly(Path path, StandardOpenOption... options) throws IOException {
+        var openOptions = EnumSet.of(StandardOpenOption.CREATE, options);
+        return FileChannel.open(path, openOptions, ownerOnly("rw-------"));
+    }
+
+    /**
+     * @return the given permissions as a file attribute, or none if the file system does not
+     * support POSIX permissions
+     */
+    private static FileAttribute<?>[] ownerOnly(String permissions) {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return new FileAttribute<?>[0];
+        }
+        return new FileAttribute<?>[] { PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(permissions)) };
+    }
+
+    private static long initialize(FileChannel channel, long capacity) throws IOException {
+        if (channel.size() >= DATA_OFFSET) {
+            var header = channel.map(FileChannel.MapMode.READ_ONLY, 0, DATA_OFFSET);
+            if ((long) LONGS.get(header, MAGIC_OFFSET) == MAGIC) {
+                return (long) LONGS.get(header, CAPACITY_OFFSET);
+            }
+        }
+
+        channel.truncate(0);
+        var header = channel.map(FileChannel.MapMode.READ_WRITE, 0, DATA_OFFSET + capacity);
+        for (var index = DATA_OFFSET; index < DATA_OFFSET + capacity; index += RECORD_HEADER_SIZE) {
+            LONGS.set(header, index, freeMarker(0));
+        }
+        LONGS.set(header, CAPACITY_OFFSET, capacity);
+        LONGS.setRelease(header, MAGIC_OFFSET, MAGIC);
+        header.force();
+        return capacity;
+    }
+
+    private SharedMemoryRing(Path path, FileChannel channel, long capacity) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.capacity = capacity;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, DATA_OFFSET + capacity);
+        checkState((long) LONGS.getAcquire(buffer, MAGIC_OFFSET) == MAGIC, "%s is not an ELK ring file", path);
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Add an encoded event, without blocking.
+     *
+     * @return true if the event was added, or false if there is not enough free space
+     */
+    boolean offer(byte[] payload) {
+        return offer(ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * Add an encoded event, between the given buffer's position and limit, without blocking.
+     * The buffer's position is not changed.
+     *
+     * @return true if the event was added, or false if there is not enough free space
+     */
+    boolean offer(ByteBuffer payload) {
+        var length = payload.remaining();
+        var position = claim(length, Claimant.CURRENT);
+        if (position < 0) {
+            return false;
+        }
+
+        buffer.put(payloadIndex(position), payload, payload.position(), length);
+        setRecordHeader(position, length, COMMITTED);
+        return true;
+    }
+
+    /**
+     * Claim space for a record with a payload of the given length, recording the given claimant,
+     * and mark it claimed.
+     *
+     * @return the position of the record, or -1 if there is not enough free space
+     */
+    long claim(int length, Claimant claimant) {
+        var position = reserve(length);
+        if (position >= 0) {
+            var index = dataIndex(position);
+            LONGS.set(buffer, index + RECORD_HEADER_SIZE, claimant.pid());
+            LONGS.set(buffer, index + RECORD_HEADER_SIZE + 8, claimant.startTime());
+        }
+        return position;
+    }
+
+    /**
+     * Mark a record with a payload of the given length claimed at the write position, preceded by
+     * a padding record if it does not fit before the end of the data region, and advance the write
+     * position past it. Its claimant is not recorded.
+     *
+     * @return the position of the record, or -1 if there is not enough free space
+     */
+    long reserve(int length) {
+        var recordSize = recordSize(length);
+        if (recordSize > capacity) {
+            return -1;
+        }
+
+        while (true) {
+            var position = (long) LONGS.getAcquire(buffer, WRITE_OFFSET);
+            var offset = position % capacity;
+            var padding = offset + recordSize > capacity ? capacity - offset : 0;
+            var read = getReadPosition();
+            if (position + padding + recordSize - read > capacity) {
+                return -1;
+            }
+
+            var index = dataIndex(position);
+            var header = (long) LONGS.getAcquire(buffer, index);
+            if (header > 0) {
+                // Claimed by a producer that has not advanced the write position yet
+                LONGS.compareAndSet(buffer, WRITE_OFFSET, position, position + sizeOf(header));
+                continue;
+            }
+
+            var size = padding > 0 ? padding : recordSize;
+            var claimed = padding > 0 ?
+                    recordHeader((int) padding - RECORD_HEADER_SIZE, PADDING) :
+                    recordHeader(length, CLAIMED);
+            if (LONGS.compareAndSet(buffer, index, freeMarker(position / capacity), claimed)) {
+                LONGS.compareAndSet(buffer, WRITE_OFFSET, position, position + size);
+                if (padding == 0) {
+                    return position;
+                }
+            }
+        }
+    }
+
+    /**
+     * Give the committed events, in order and without removing them, to the given consumer,
+     * until {@code maxBytes} of payload have been given or an uncommitted record is reached.
+     * Call {@link #release(long)} with the returned position once they have been handled.
+     *
+     * @param consumer receives each event's payload
+     * @return the position after the last event given
+     */
+    long peek(long maxBytes, Consumer<byte[]> consumer) {
+        return peekBuffers(maxBytes, payload -> {
+            var bytes = new byte[payload.remaining()];
+            payload.get(bytes);
+            consumer.accept(bytes);
+        });
+    }
+
+    /**
+     * Like {@link #peek(long, Consumer)}, but give each event's payload as a read-only view of the
+     * ring, without copying it. A view is only valid until its event is released.
+     *
+     * @param consumer receives each event's payload
+     * @return the position after the last event given
+     */
+    long peekBuffers(long maxBytes, Consumer<ByteBuffer> consumer) {
+        var position = getReadPosition();
+        var write = (long) LONGS.getAcquire(buffer, WRITE_OFFSET);
+        var bytes = 0L;
+
+        while (position < write && bytes < maxBytes) {
+            var header = (long) LONGS.getAcquire(buffer, dataIndex(position));
+            var state = (int) header;
+            var length = (int) (header >>> 32);
+
+            if (state == PADDING) {
+                position += RECORD_HEADER_SIZE + length;
+                continue;
+            }
+            if (state != COMMITTED) {
+                break;
+            }
+
+            var payload = buffer.slice(payloadIndex(position), length).asReadOnlyBuffer();
+            position += recordSize(length);
+            bytes += length;
+            consumer.accept(payload);
+        }
+
+        return position;
+    }
+
+    /**
+     * A record that has been claimed but not committed.
+     *
+     * @param size     the number of bytes of the record, including its header and padding
+     * @param claimant the process that claimed it
+     */
+    record ClaimedRecord(long size, Claimant claimant) {
+    }
+
+    /**
+     * @return the record at the read position if it has been claimed but not committed, otherwise null
+     */
+    ClaimedRecord getClaimedRecord() {
+        var position = getReadPosition();
+        if (position >= (long) LONGS.getAcquire(buffer, WRITE_OFFSET)) {
+            return null;
+        }
+
+        var index = dataIndex(position);
+        var header = (long) LONGS.getAcquire(buffer, index);
+        if ((int) header != CLAIMED) {
+            return null;
+        }
+
+        var pid = (long) LONGS.get(buffer, index + RECORD_HEADER_SIZE);
+        var claimant = pid > 0 ?
+                new Claimant(pid, (long) LONGS.get(buffer, index + RECORD_HEADER_SIZE + 8)) :
+                Claimant.UNKNOWN;
+        return new ClaimedRecord(recordSize((int) (header >>> 32)), claimant);
+    }
+
+    /**
+     * Mark the records before the given position free, and make their space available to producers.
+     */
+    void release(long position) {
+        var read = getReadPosition();
+        checkArgument(position >= read, "cannot release before the read position");
+
+        while (read < position) {
+            var length = Math.min(position - read, capacity - read % capacity);
+            var start = dataIndex(read);
+            var free = freeMarker(read / capacity + 1);
+            for (var i = 0; i < length; i += RECORD_HEADER_SIZE) {
+                LONGS.set(buffer, start + i, free);
+            }
+            read += length;
+        }
+        LONGS.setRelease(buffer, READ_OFFSET, position);
+    }
+
+    long getReadPosition() {
+        return (long) LONGS.getAcquire(buffer, READ_OFFSET);
+    }
+
+    long getWritePosition() {
+        return (long) LONGS.getAcquire(buffer, WRITE_OFFSET);
+    }
+
+    private void setRecordHeader(long position, int length, int state) {
+        LONGS.setRelease(buffer, dataIndex(position), recordHeader(length, state));
+    }
+
+    private static long recordHeader(int length, int state) {
+        return ((long) length << 32) | state;
+    }
+
+    /**
+     * @return the number of bytes of the record with the given header
+     */
+    private static long sizeOf(long header) {
+        var length = (int) (header >>> 32);
+        return (int) header == PADDING ? RECORD_HEADER_SIZE + length : recordSize(length);
+    }
+
+    private static long freeMarker(long lap) {
+        return FREE - lap;
+    }
+
+    private int dataIndex(long position) {
+        return (int) (DATA_OFFSET + position % capacity);
+    }
+
+    private int payloadIndex(long position) {
+        return dataIndex(position) + RECORD_HEADER_SIZE + CLAIMANT_SIZE;
+    }
+
+    static long recordSize(int payloadLength) {
+        var size = RECORD_HEADER_SIZE + CLAIMANT_SIZE + (long) payloadLength;
+        return (size + RECORD_HEADER_SIZE - 1) & -RECORD_HEADER_SIZE;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,119 @@
+package org.kiwiproject.elk;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static org.kiwiproject.elk.ElkFlightRecorderEvents.TRANSPORT_STAGE;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.encoder.Encoder;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An appender that encodes events and adds them to a {@link SharedMemoryRing}, optionally taking
+ * part in the election of the {@link ElkRingForwarder} that sends the ring's events to Logstash.
+ * <p>
+ * Events are encoded on the calling thread, which is the async appender's worker thread when
+ * built by {@link ElkAppenderFactory}, into a buffer taken from a {@link DirectBufferPool}, which is
+ * released once the event has been copied into the ring. When the ring is full, events are dropped,
+ * never blocking.
+ */
+@Getter(AccessLevel.PACKAGE)
+@Setter(AccessLevel.PACKAGE)
+class SharedMemoryRingAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+
+    private static final int DROPPED_WARN_FREQUENCY = 1000;
+
+    private Encoder<ILoggingEvent> encoder;
+    private Path ringFile;
+    private long capacity = ElkRingForwarder.DEFAULT_CAPACITY;
+    private long maxBatchBytes = ElkRingForwarder.DEFAULT_MAX_BATCH_BYTES;
+    private boolean forward = true;
+    private String host;
+    private int port;
+    private DirectBufferPool bufferPool = DirectBufferPool.shared();
+    private boolean virtualThreads;
+
+    @Setter(AccessLevel.NONE)
+    private final LongAdder droppedEventCount = new LongAdder();
+
+    @Setter(AccessLevel.NONE)
+    private SharedMemoryRing ring;
+
+    @Setter(AccessLevel.NONE)
+    private ElkRingForwarder forwarder;
+
+    @Override
+    public void start() {
+        if (isNull(encoder) || isNull(ringFile)) {
+            addError("No encoder or ring file was configured for appender " + name);
+            return;
+        }
+
+        try {
+            ring = SharedMemoryRing.open(ringFile, capacity);
+        } catch (IOException | RuntimeException e) {
+            addError("Unable to open ring file " + ringFile, e);
+            return;
+        }
+
+        encoder.setContext(getContext());
+        if (!encoder.isStarted()) {
+            encoder.start();
+        }
+
+        if (forward) {
+            forwarder = new ElkRingForwarder(ring, ElkRingForwarder.lockFileFor(ringFile), host, port, maxBatchBytes);
+            forwarder.setContext(getContext());
+            forwarder.setVirtualThreads(virtualThreads);
+            forwarder.start();
+        }
+
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+
+        super.stop();
+
+        if (nonNull(forwarder)) {
+            forwarder.stop();
+        }
+
+        try {
+            ring.close();
+        } catch (IOException e) {
+            addWarn("Unable to close ring file " + ringFile, e);
+        }
+        encoder.stop();
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        var buffer = bufferPool.encode(encoder, event);
+        try {
+            if (ring.offer(buffer)) {
+                return;
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+
+        droppedEventCount.increment();
+        ElkFlightRecorderEvents.recordDrop(TRANSPORT_STAGE, "ring full", event);
+        var dropped = droppedEventCount.sum();
+        if (dropped % DROPPED_WARN_FREQUENCY == 1) {
+            addWarn("Dropped " + dropped + " events (and counting...) because the ring " + ringFile + " is full");
+        }
+    }
+}
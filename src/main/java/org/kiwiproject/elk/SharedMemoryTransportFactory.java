@@ -0,0 +1,126 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkState;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import io.dropwizard.util.DataSize;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes events into a memory-mapped ring file shared by all the JVMs on a host, from which a
+ * single forwarder sends them to Logstash over one TCP connection. This is intended for hosts
+ * running many small services, which would otherwise each have their own connection, buffers,
+ * and sender thread.
+ * <pre>
+ * logging:
+ *   appenders:
+ *     - type: elk
+ *       transport:
+ *         type: shared-memory
+ *         size: 128MiB
+ * </pre>
+ * The forwarder is elected among the JVMs that use the ring (and have {@code forward} enabled) using
+ * a lock file next to the ring file; if the forwarding JVM exits or crashes, another takes over.
+ * Alternatively, disable {@code forward} everywhere and run {@link ElkRingForwarder} as a separate
+ * process. Events that have been written to the ring survive the crash of the JVM that wrote them.
+ * Events are encoded into pooled direct buffers, whose metrics are registered under
+ * {@code org.kiwiproject.elk.ElkAppenderFactory.bufferPool}, and the forwarder writes each batch
+ * straight from the ring.
+ * <table>
+ *     <caption>Configuration properties</caption>
+ *     <tr>
+ *         <td>Name</td>
+ *         <td>Default</td>
+ *         <td>Description</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code directory}</td>
+ *         <td>{@code /dev/shm/elk-appender}, or {@code elk-appender} in the temporary directory</td>
+ *         <td>
+ *             The directory containing the ring file. Use a memory-backed file system, such as
+ *             {@code /dev/shm}, so that the ring is never written to disk.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code name}</td>
+ *         <td>{@code elk-events}</td>
+ *         <td>The name of the ring; the ring file is named {@code <name>.ring}.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code size}</td>
+ *         <td>{@code 64MiB}</td>
+ *         <td>
+ *             The capacity of the ring, used by whichever JVM creates the ring file. JVMs that
+ *             open an existing ring file use its capacity.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code forward}</td>
+ *         <td>{@code true}</td>
+ *         <td>Whether this JVM may be elected to forward the ring's events to Logstash.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code maxBatchSize}</td>
+ *         <td>{@code 256KiB}</td>
+ *         <td>The maximum number of bytes the forwarder writes to Logstash at once.</td>
+ *     </tr>
+ * </table>
+ * The host and port are only used when {@code forward} is enabled.
+ */
+@Setter
+@Getter(AccessLevel.PACKAGE)  // getters are visible with package scope for testing
+@JsonTypeName("shared-memory")
+public class SharedMemoryTransportFactory implements ElkTransportFactory {
+
+    static final String DEFAULT_NAME = "elk-events";
+
+    private String directory;
+    private String name = DEFAULT_NAME;
+    private DataSize size = DataSize.bytes(ElkRingForwarder.DEFAULT_CAPACITY);
+    private boolean forward = true;
+    private DataSize maxBatchSize = DataSize.bytes(ElkRingForwarder.DEFAULT_MAX_BATCH_BYTES);
+
+    @Override
+    public Appender<ILoggingEvent> build(ElkTransportContext context) {
+        checkState(size.toBytes() > 0, "size must be positive");
+        checkState(maxBatchSize.toBytes() > 0, "maxBatchSize must be positive");
+
+        var encoder = context.newEncoder();
+
+        var appender = new SharedMemoryRingAppender();
+        appender.setEncoder(context.getEncoding().isBinary() ? new LengthPrefixedEncoder<>(encoder) : encoder);
+        appender.setRingFile(getRingFile());
+        appender.setCapacity(size.toBytes() & -SharedMemoryRing.RECORD_HEADER_SIZE);
+        appender.setMaxBatchBytes(maxBatchSize.toBytes());
+        appender.setForward(forward);
+        ElkAppenderMetrics.register(DirectBufferPool.METRICS_PREFIX, appender.getBufferPool());
+        if (forward) {
+            appender.setHost(context.getHost());
+            appender.setPort(context.getPort());
+        }
+
+        return appender;
+    }
+
+    Path getRingFile() {
+        return getEffectiveDirectory().resolve(name + ".ring");
+    }
+
+    private Path getEffectiveDirectory() {
+        if (!isBlank(directory)) {
+            return Path.of(directory);
+        }
+
+        var sharedMemory = Path.of("/dev/shm");
+        var parent = Files.isDirectory(sharedMemory) ? sharedMemory : Path.of(System.getProperty("java.io.tmpdir"));
+        return parent.resolve("elk-appender");
+    }
+}
@@ -0,0 +1,83 @@
+package org.kiwiproject.elk;
+
+import static java.util.Objects.nonNull;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.google.common.io.CountingOutputStream;
+import net.logstash.logback.encoder.LogstashEncoder;
+import org.kiwiproject.elk.ElkFlightRecorderEvents.EncodeEvent;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A {@link LogstashEncoder} that records the encoded size of each event in {@link LoggerStats},
+ * publishes each encoded event to an {@link ElkEventPublisher}, and keeps it in an
+ * {@link EventTailRing}. Any of them may be null. It also records an {@link EncodeEvent} Flight
+ * Recorder event for each event, when enabled.
+ * <p>
+ * When streaming to an output stream, the event is only encoded into a separate array when
+ * it is kept in the tail ring, or the publisher has a subscriber with outstanding demand, and
+ * its size is only counted when it is recorded.
+ */
+class TappedLogstashEncoder extends LogstashEncoder {
+
+    private final LoggerStats loggerStats;
+    private final ElkEventPublisher publisher;
+    private final EventTailRing tailRing;
+
+    TappedLogstashEncoder(LoggerStats loggerStats, ElkEventPublisher publisher, EventTailRing tailRing) {
+        this.loggerStats = loggerStats;
+        this.publisher = publisher;
+        this.tailRing = tailRing;
+    }
+
+    @Override
+    public byte[] encode(ILoggingEvent event) {
+        var encode = new EncodeEvent();
+        encode.begin();
+
+        var bytes = super.encode(event);
+
+        encode.end();
+        recordEncoded(encode, event, bytes.length);
+        if (nonNull(publisher)) {
+            publisher.publish(bytes);
+        }
+        if (nonNull(tailRing)) {
+            tailRing.add(event.getTimeStamp(), event.getLevel(), event.getLoggerName(), bytes);
+        }
+        return bytes;
+    }
+
+    @Override
+    public void encode(ILoggingEvent event, OutputStream outputStream) throws IOException {
+        if (nonNull(tailRing) || (nonNull(publisher) && publisher.hasDemand())) {
+            outputStream.write(encode(event));
+            return;
+        }
+
+        var encode = new EncodeEvent();
+        encode.begin();
+
+        if (nonNull(loggerStats) || encode.isEnabled()) {
+            var countingStream = new CountingOutputStream(outputStream);
+            super.encode(event, countingStream);
+            encode.end();
+            recordEncoded(encode, event, countingStream.getCount());
+        } else {
+            super.encode(event, outputStream);
+        }
+    }
+
+    private void recordEncoded(EncodeEvent encode, ILoggingEvent event, long size) {
+        if (nonNull(loggerStats)) {
+            loggerStats.record(event.getLoggerName(), size);
+        }
+        if (encode.shouldCommit()) {
+            encode.loggerName = event.getLoggerName();
+            encode.size = size;
+            encode.commit();
+        }
+    }
+}
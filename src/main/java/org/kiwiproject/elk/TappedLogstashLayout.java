@@ -0,0 +1,64 @@
+package org.kiwiproject.elk;
+
+import static java.util.Objects.nonNull;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import net.logstash.logback.layout.LogstashLayout;
+import org.kiwiproject.elk.ElkFlightRecorderEvents.EncodeEvent;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link LogstashLayout} that records the size of each event in {@link LoggerStats},
+ * publishes each event to an {@link ElkEventPublisher}, and keeps it in an
+ * {@link EventTailRing}. Any of them may be null. It also records an {@link EncodeEvent} Flight
+ * Recorder event for each event, when enabled.
+ * <p>
+ * The recorded size is the number of characters, which is the same as the number of UTF-8 bytes
+ * for ASCII content, and avoids encoding the event a second time just to count it. The event is
+ * only converted to bytes when it is kept in the tail ring, or the publisher has a subscriber
+ * with outstanding demand.
+ */
+class TappedLogstashLayout extends LogstashLayout {
+
+    private final LoggerStats loggerStats;
+    private final ElkEventPublisher publisher;
+    private final EventTailRing tailRing;
+
+    TappedLogstashLayout(LoggerStats loggerStats, ElkEventPublisher publisher, EventTailRing tailRing) {
+        this.loggerStats = loggerStats;
+        this.publisher = publisher;
+        this.tailRing = tailRing;
+    }
+
+    @Override
+    public String doLayout(ILoggingEvent event) {
+        var encode = new EncodeEvent();
+        encode.begin();
+
+        var layout = super.doLayout(event);
+
+        encode.end();
+        if (nonNull(loggerStats)) {
+            loggerStats.record(event.getLoggerName(), layout.length());
+        }
+        if (encode.shouldCommit()) {
+            encode.loggerName = event.getLoggerName();
+            encode.size = layout.length();
+            encode.commit();
+        }
+
+        var hasDemand = nonNull(publisher) && publisher.hasDemand();
+        if (hasDemand || nonNull(tailRing)) {
+            var bytes = layout.getBytes(StandardCharsets.UTF_8);
+            if (hasDemand) {
+                publisher.publish(bytes);
+            }
+            if (nonNull(tailRing)) {
+                tailRing.add(event.getTimeStamp(), event.getLevel(), event.getLoggerName(), bytes);
+            }
+        }
+
+        return layout;
+    }
+}
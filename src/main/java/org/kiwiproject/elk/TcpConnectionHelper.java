@@ -0,0 +1,82 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.nonNull;
+
+import io.dropwizard.util.Duration;
+import lombok.experimental.UtilityClass;
+import net.logstash.logback.appender.AbstractLogstashTcpSocketAppender;
+import net.logstash.logback.appender.destination.RoundRobinDestinationConnectionStrategy;
+
+/**
+ * Configures how long-lived the TCP connections to Logstash are, for both application and request logs,
+ * and which threads they use.
+ */
+@UtilityClass
+class TcpConnectionHelper {
+
+    /**
+     * Yield 50 times, then park for a millisecond at a time, until an event arrives.
+     */
+    static final String VIRTUAL_THREAD_WAIT_STRATEGY = "sleeping{50,1000000}";
+
+    /**
+     * Keep idle connections alive, so that a load balancer or firewall does not silently drop them, and
+     * reconnect once a connection reaches a maximum age.
+     * <p>
+     * For JSON, an empty line is written when no event has been written for {@code keepAliveInterval},
+     * which Logstash's {@code json_lines} codec ignores. An empty line would break the framing of binary
+     * encodings, so for those TCP keep-alive probes are sent instead, using the given socket factory.
+     * Probes are handled by the operating system, so they keep the connection alive for network devices
+     * that track TCP traffic, but not for proxies that only count data.
+     * <p>
+     * With a single destination, the default connection strategy only expires connections to secondary
+     * destinations, so a round-robin strategy is used, which reconnects to the same destination. The age
+     * is checked after each event is written, so an old connection is replaced before it is next written to.
+     *
+     * @param appender          the appender to configure
+     * @param binary            whether events are in a binary encoding
+     * @param keepAliveInterval the idle time after which to keep the connection alive, or null for none
+     * @param maxConnectionAge  the age after which to reconnect, or null to keep connections indefinitely
+     */
+    static void configure(AbstractLogstashTcpSocketAppender<?, ?> appender,
+                          boolean binary,
+                          Duration keepAliveInterval,
+                          Duration maxConnectionAge) {
+
+        if (nonNull(keepAliveInterval)) {
+            checkState(keepAliveInterval.toMilliseconds() > 0, "keepAliveInterval must be positive");
+            if (binary) {
+                appender.setSocketFactory(new FlightRecordingSocket.Factory(keepAliveInterval.toJavaDuration()));
+            } else {
+                appender.setKeepAliveDuration(toLogbackDuration(keepAliveInterval));
+            }
+        }
+
+        if (nonNull(maxConnectionAge)) {
+            checkState(maxConnectionAge.toMilliseconds() > 0, "maxConnectionAge must be positive");
+            var strategy = new RoundRobinDestinationConnectionStrategy();
+            strategy.setConnectionTTL(toLogbackDuration(maxConnectionAge));
+            appender.setConnectionStrategy(strategy);
+        }
+    }
+
+    /**
+     * Run the connection's sender, reconnect, and keep-alive tasks on virtual threads.
+     * <p>
+     * The default wait strategy of the sender waits for events using {@code synchronized} and
+     * {@link Object#wait()}, which would pin the virtual thread to its carrier thread while idle, so
+     * a strategy that parks instead is used, which adds up to a millisecond of latency to the first
+     * event after an idle period.
+     *
+     * @param appender the appender to configure, before it is started
+     */
+    static void useVirtualThreads(AbstractLogstashTcpSocketAppender<?, ?> appender) {
+        appender.setThreadFactory(ElkThreads.newThreadFactory(true, "elk-tcp"));
+        appender.setWaitStrategyType(VIRTUAL_THREAD_WAIT_STRATEGY);
+    }
+
+    private static ch.qos.logback.core.util.Duration toLogbackDuration(Duration duration) {
+        return ch.qos.logback.core.util.Duration.buildByMilliseconds(duration.toMilliseconds());
+    }
+}
@@ -0,0 +1,134 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkState;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import io.dropwizard.util.Duration;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import net.logstash.logback.appender.LogstashTcpSocketAppender;
+
+import java.util.ArrayList;
+
+/**
+ * Sends events to Logstash over a persistent TCP connection. This is the default transport.
+ * <p>
+ * JSON events are newline-delimited. Binary events are each preceded by their length as a
+ * four-byte, big-endian integer.
+ * <p>
+ * Connection attempts and socket writes are recorded as Flight Recorder events, when enabled.
+ * <p>
+ * When Logstash is behind a load balancer that drops idle connections, set {@code keepAliveInterval}
+ * to less than its idle timeout, so that the first events after a quiet period are not written to a
+ * connection that has been reset:
+ * <pre>
+ * logging:
+ *   appenders:
+ *     - type: elk
+ *       transport:
+ *         type: tcp
+ *         keepAliveInterval: 4m
+ *         maxConnectionAge: 1h
+ * </pre>
+ * A single sender thread encodes and writes every event, which limits throughput on the busiest
+ * services. Set {@code connections} to open several connections to the destination, each with its own
+ * ring buffer and sender thread. Events are still queued by the appender's single async queue and worker
+ * thread, which hands each one to a connection; only encoding and writing are parallel. See
+ * {@link ParallelTcpAppender}.
+ * <table>
+ *     <caption>Configuration properties</caption>
+ *     <tr>
+ *         <td>Name</td>
+ *         <td>Default</td>
+ *         <td>Description</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code keepAliveInterval}</td>
+ *         <td>{@code null}</td>
+ *         <td>
+ *             If set, keep the connection alive when nothing has been written for this long: with an
+ *             empty line for JSON, and with TCP keep-alive probes for binary encodings.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code maxConnectionAge}</td>
+ *         <td>{@code null}</td>
+ *         <td>
+ *             If set, reconnect after writing an event once the connection is this old, e.g. to
+ *             rebalance across Logstash instances or to stay under a load balancer's connection limit.
+ *             Connection attempts are at least 30 seconds apart, so it should be much longer than that.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code connections}</td>
+ *         <td>{@code 1}</td>
+ *         <td>
+ *             The number of connections to open to the destination, each with its own ring buffer and
+ *             sender thread, for when one thread encoding and writing cannot keep up. Events still pass
+ *             through the single async queue and worker thread, which hands each one to a connection.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code distribution}</td>
+ *         <td>{@code round-robin}</td>
+ *         <td>
+ *             How events are distributed across the connections: {@code round-robin}, {@code thread}, or
+ *             {@code mdc}. See {@link ElkConnectionDistribution}.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code distributionKey}</td>
+ *         <td>{@code null}</td>
+ *         <td>The MDC key whose value selects the connection, required for {@code mdc} distribution.</td>
+ *     </tr>
+ * </table>
+ */
+@Setter
+@Getter(AccessLevel.PACKAGE)  // getters are visible with package scope for testing
+@JsonTypeName("tcp")
+public class TcpTransportFactory implements ElkTransportFactory {
+
+    private Duration keepAliveInterval;
+    private Duration maxConnectionAge;
+    private int connections = 1;
+    private ElkConnectionDistribution distribution = ElkConnectionDistribution.ROUND_ROBIN;
+    private String distributionKey;
+
+    @Override
+    public Appender<ILoggingEvent> build(ElkTransportContext context) {
+        checkState(connections > 0, "connections must be positive");
+
+        if (connections == 1) {
+            return newConnection(context);
+        }
+
+        checkState(distribution != ElkConnectionDistribution.MDC || isNotBlank(distributionKey),
+                "distributionKey is required for mdc distribution");
+
+        var appenders = new ArrayList<LogstashTcpSocketAppender>(connections);
+        for (var i = 0; i < connections; i++) {
+            appenders.add(newConnection(context));
+        }
+        return new ParallelTcpAppender(appenders, distribution, distributionKey);
+    }
+
+    /**
+     * Each connection has its own encoder, since encoders are not shared between sender threads.
+     */
+    private LogstashTcpSocketAppender newConnection(ElkTransportContext context) {
+        var encoder = context.newEncoder();
+        var binary = context.getEncoding().isBinary();
+
+        var appender = new LogstashTcpSocketAppender();
+        appender.addDestination(context.getHost() + ":" + context.getPort());
+        appender.setSocketFactory(new FlightRecordingSocket.Factory());
+        appender.setEncoder(binary ? new LengthPrefixedEncoder<>(encoder) : encoder);
+        TcpConnectionHelper.configure(appender, binary, keepAliveInterval, maxConnectionAge);
+
+        return appender;
+    }
+}
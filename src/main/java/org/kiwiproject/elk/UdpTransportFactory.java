@@ -0,0 +1,36 @@
+package org.kiwiproject.elk;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import net.logstash.logback.appender.LogstashUdpSocketAppender;
+
+/**
+ * Sends each event to Logstash in its own UDP datagram.
+ * <p>
+ * Events in a binary encoding are encoded into pooled direct buffers, whose metrics are registered
+ * under {@code org.kiwiproject.elk.ElkAppenderFactory.bufferPool}.
+ * <p>
+ * The {@code useUdp} property of {@link ElkAppenderFactory} is a shorthand for this transport.
+ */
+@JsonTypeName("udp")
+public class UdpTransportFactory implements ElkTransportFactory {
+
+    @Override
+    public Appender<ILoggingEvent> build(ElkTransportContext context) {
+        if (context.getEncoding().isBinary()) {
+            var appender = new EncoderUdpSocketAppender<ILoggingEvent>();
+            appender.setHost(context.getHost());
+            appender.setPort(context.getPort());
+            appender.setEncoder(context.newEncoder());
+            ElkAppenderMetrics.register(DirectBufferPool.METRICS_PREFIX, appender.getBufferPool());
+            return appender;
+        }
+
+        var appender = new LogstashUdpSocketAppender();
+        appender.setHost(context.getHost());
+        appender.setPort(context.getPort());
+        appender.setLayout(context.newLayout());
+        return appender;
+    }
+}
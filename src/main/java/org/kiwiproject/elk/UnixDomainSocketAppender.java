@@ -0,0 +1,349 @@
+package org.kiwiproject.elk;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import net.logstash.logback.appender.LogstashTcpSocketAppender;
+import org.kiwiproject.elk.ElkFlightRecorderEvents.ConnectionAttemptEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.net.SocketFactory;
+
+/**
+ * A {@link LogstashTcpSocketAppender} that connects to a Unix domain socket instead of a TCP port,
+ * so it has exactly the same buffering, reconnection, keep-alive, and write timeout behavior, and
+ * the same listeners, as the TCP transport.
+ * <p>
+ * The TCP appender opens connections using a {@link SocketFactory}, so this supplies one whose
+ * sockets are backed by a {@link SocketChannel} connected to the socket file, ignoring the TCP
+ * address the appender passes to {@link Socket#connect(SocketAddress, int)}. The appender still
+ * requires a destination, so a loopback address labelled with the socket path is used, which
+ * also appears in its status messages.
+ */
+class UnixDomainSocketAppender extends LogstashTcpSocketAppender {
+
+    private static final byte[] LOOPBACK = { 127, 0, 0, 1 };
+
+    private final Path socketPath;
+
+    UnixDomainSocketAppender(Path socketPath) {
+        this.socketPath = socketPath;
+        setSocketFactory(new UnixDomainSocketFactory(UnixDomainSocketAddress.of(socketPath)));
+        addDestinations(newDestination(socketPath));
+    }
+
+    private static InetSocketAddress newDestination(Path socketPath) {
+        try {
+            return new InetSocketAddress(InetAddress.getByAddress(socketPath.toString(), LOOPBACK), 0);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to create a destination for " + socketPath, e);
+        }
+    }
+
+    Path getSocketPath() {
+        return socketPath;
+    }
+
+    /**
+     * Use the loopback address literal, so that the appender never tries to resolve the socket
+     * path as a host name when it reconnects.
+     */
+    @Override
+    protected String getHostString(InetSocketAddress address) {
+        return InetAddress.getLoopbackAddress().getHostAddress();
+    }
+
+    /**
+     * Creates {@link UnixDomainSocket}s. The TCP appender only uses unconnected sockets; the other
+     * methods connect the socket to the socket file, ignoring the host and port (and local address),
+     * as {@link UnixDomainSocket#connect(SocketAddress)} does.
+     */
+    static class UnixDomainSocketFactory extends SocketFactory {
+
+        private final UnixDomainSocketAddress address;
+
+        UnixDomainSocketFactory(UnixDomainSocketAddress address) {
+            this.address = address;
+        }
+
+        @Override
+        public Socket createSocket() {
+            return new UnixDomainSocket(address);
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return createConnectedSocket(InetSocketAddress.createUnresolved(host, port));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            return createConnectedSocket(InetSocketAddress.createUnresolved(host, port));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            return createConnectedSocket(new InetSocketAddress(host, port));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort)
+                throws IOException {
+            return createConnectedSocket(new InetSocketAddress(address, port));
+        }
+
+        private Socket createConnectedSocket(SocketAddress endpoint) throws IOException {
+            var socket = createSocket();
+            try {
+                socket.connect(endpoint);
+                return socket;
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Adapts a stream-mode Unix domain {@link SocketChannel} to the parts of the {@link Socket}
+     * API used by the TCP appender.
+     * <p>
+     * Once connected, the channel is non-blocking, and its streams wait for it using a selector
+     * each: one for reading and one for writing, so that the appender's writes are never blocked by
+     * its reader thread, which waits for the other end to close the connection. Reads wait at most
+     * the {@link #setSoTimeout(int) read timeout}, as for a TCP socket, and then throw
+     * {@link SocketTimeoutException}; the TCP appender sets it to its connection timeout, and reads
+     * again when it expires. Each stream may be used by one thread at a time. Connecting and
+     * closing use a {@link ReentrantLock} rather than {@code synchronized}, so that a virtual
+     * thread blocked connecting does not pin its carrier thread.
+     */
+    static class UnixDomainSocket extends Socket {
+
+        private final UnixDomainSocketAddress address;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile SocketChannel channel;
+        private volatile Selector readSelector;
+        private volatile Selector writeSelector;
+        private volatile boolean closed;
+        private volatile int soTimeout;
+
+        UnixDomainSocket(UnixDomainSocketAddress address) {
+            this.address = address;
+        }
+
+        /**
+         * Connect to the socket file, ignoring the given endpoint. Connecting to a Unix domain
+         * socket does not wait for the other end, so there is no timeout.
+         */
+        @Override
+        public void connect(SocketAddress endpoint, int timeout) throws IOException {
+            connect(endpoint);
+        }
+
+        @Override
+        public void connect(SocketAddress endpoint) throws IOException {
+            lock.lock();
+            try {
+                if (closed) {
+                    throw new SocketException("Socket is closed");
+                }
+
+                var attempt = new ConnectionAttemptEvent();
+                attempt.begin();
+
+                var newChannel = SocketChannel.open(StandardProtocolFamily.UNIX);
+                Selector newReadSelector = null;
+                Selector newWriteSelector = null;
+                try {
+                    newChannel.connect(address);
+                    newChannel.configureBlocking(false);
+                    newReadSelector = Selector.open();
+                    newChannel.register(newReadSelector, SelectionKey.OP_READ);
+                    newWriteSelector = Selector.open();
+                    newChannel.register(newWriteSelector, SelectionKey.OP_WRITE);
+                } catch (IOException e) {
+                    try {
+                        closeAll(newChannel, newReadSelector, newWriteSelector);
+                    } catch (IOException closeFailure) {
+                        e.addSuppressed(closeFailure);
+                    }
+                    FlightRecordingSocket.recordConnectionAttempt(attempt, address.toString(), e);
+                    throw e;
+                }
+                readSelector = newReadSelector;
+                writeSelector = newWriteSelector;
+                channel = newChannel;
+                FlightRecordingSocket.recordConnectionAttempt(attempt, address.toString(), null);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean isConnected() {
+            return nonNull(channel);
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public SocketAddress getRemoteSocketAddress() {
+            return address;
+        }
+
+        @Override
+        public void setSoTimeout(int timeout) {
+            this.soTimeout = timeout;
+        }
+
+        @Override
+        public int getSoTimeout() {
+            return soTimeout;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            var connectedChannel = getConnectedChannel();
+            var selector = readSelector;
+            return new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    var single = new byte[1];
+                    var read = read(single, 0, 1);
+                    return read < 0 ? -1 : single[0] & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] bytes, int offset, int length) throws IOException {
+                    if (length == 0) {
+                        return 0;
+                    }
+
+                    var buffer = ByteBuffer.wrap(bytes, offset, length);
+                    var timeout = soTimeout;
+                    var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+                    while (true) {
+                        var read = connectedChannel.read(buffer);
+                        if (read != 0) {
+                            return read;
+                        }
+
+                        var remainingMillis = timeout == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                        if (timeout > 0 && remainingMillis <= 0) {
+                            throw new SocketTimeoutException("Read timed out");
+                        }
+                        await(selector, remainingMillis);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            var connectedChannel = getConnectedChannel();
+            var selector = writeSelector;
+            return FlightRecordingSocket.recordWrites(new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    var buffer = ByteBuffer.wrap(bytes, offset, length);
+                    while (buffer.hasRemaining()) {
+                        if (connectedChannel.write(buffer) == 0) {
+                            await(selector, 0);
+                        }
+                    }
+                }
+            }, address.toString());
+        }
+
+        /**
+         * Wait until the channel is ready, the timeout expires, or the socket is closed.
+         *
+         * @param timeoutMillis the longest to wait, or zero to wait until ready or closed
+         */
+        private void await(Selector selector, long timeoutMillis) throws IOException {
+            try {
+                selector.select(timeoutMillis);
+                selector.selectedKeys().clear();
+            } catch (ClosedSelectorException e) {
+                throw new SocketException("Socket is closed");
+            }
+            if (closed) {
+                throw new SocketException("Socket is closed");
+            }
+        }
+
+        private SocketChannel getConnectedChannel() throws SocketException {
+            if (closed) {
+                throw new SocketException("Socket is closed");
+            }
+            if (isNull(channel)) {
+                throw new SocketException("Socket is not connected");
+            }
+            return channel;
+        }
+
+        @Override
+        public void close() throws IOException {
+            lock.lock();
+            try {
+                closed = true;
+                closeAll(channel, readSelector, writeSelector);
+            } finally {
+                lock.unlock();
+                super.close();
+            }
+        }
+
+        /**
+         * Close the given channel and selectors, ignoring nulls. Closing a selector wakes up a
+         * thread waiting on it.
+         */
+        private static void closeAll(Closeable... closeables) throws IOException {
+            IOException failure = null;
+            for (var closeable : closeables) {
+                try {
+                    if (nonNull(closeable)) {
+                        closeable.close();
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (nonNull(failure)) {
+                throw failure;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "UnixDomainSocket[" + address + "]";
+        }
+    }
+}
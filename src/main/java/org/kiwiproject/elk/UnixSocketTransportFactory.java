@@ -0,0 +1,63 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkState;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.nio.file.Path;
+
+/**
+ * Sends events over a persistent connection to a Unix domain socket, such as that of a local
+ * shipper, avoiding the overhead of the TCP loopback stack.
+ * <pre>
+ * logging:
+ *   appenders:
+ *     - type: elk
+ *       transport:
+ *         type: unix-socket
+ *         path: /run/logstash/logstash.sock
+ * </pre>
+ * Events are framed exactly as by the {@link TcpTransportFactory tcp} transport, and buffering and
+ * reconnection behave the same way, since the same appender is used. Unlike the {@code tcp} transport,
+ * it has no {@code keepAliveInterval} or {@code maxConnectionAge}, since there is no load balancer
+ * between the application and a local socket to drop idle connections or to rebalance.
+ * <table>
+ *     <caption>Configuration properties</caption>
+ *     <tr>
+ *         <td>Name</td>
+ *         <td>Default</td>
+ *         <td>Description</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code path}</td>
+ *         <td>(required)</td>
+ *         <td>The path of the socket file to connect to.</td>
+ *     </tr>
+ * </table>
+ * The host and port are not used.
+ */
+@Setter
+@Getter(AccessLevel.PACKAGE)  // getters are visible with package scope for testing
+@JsonTypeName("unix-socket")
+public class UnixSocketTransportFactory implements ElkTransportFactory {
+
+    private String path;
+
+    @Override
+    public Appender<ILoggingEvent> build(ElkTransportContext context) {
+        checkState(isNotBlank(path), "path is required for the unix-socket transport");
+
+        var encoder = context.newEncoder();
+
+        var appender = new UnixDomainSocketAppender(Path.of(path));
+        appender.setEncoder(context.getEncoding().isBinary() ? new LengthPrefixedEncoder<>(encoder) : encoder);
+
+        return appender;
+    }
+}
@@ -0,0 +1,58 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+/**
+ * Base class for load tests, which drive the {@link DropwizardTestAppExtension} application
+ * at a configurable rate, and report throughput, latency, drops, and GC time for the
+ * appender configuration in its YAML file.
+ * <p>
+ * The load is configured using system properties:
+ * <ul>
+ *     <li>{@code loadTest.eventsPerSecond} (default 20000)</li>
+ *     <li>{@code loadTest.threads} (default 4)</li>
+ *     <li>{@code loadTest.seconds} (default 10)</li>
+ * </ul>
+ * For example: {@code mvn test -Dbenchmarks -Dtest='*LoadTest' -DloadTest.eventsPerSecond=50000}
+ * <p>
+ * Implementing classes must register their own {@link FakeLogstashExtension} and
+ * {@link DropwizardTestAppExtension}, in that order, and expose them from the
+ * {@link #logstash()} and {@link #dwApp()} methods, respectively. They must also be annotated
+ * with {@link EnabledForBenchmarks}, since JUnit does not inherit it from this class.
+ */
+abstract class AbstractElkAppenderLoadTest {
+
+    /**
+     * Implementing classes must override this to provide the FakeLogstashExtension.
+     */
+    protected abstract FakeLogstashExtension logstash();
+
+    /**
+     * Implementing classes must override this to provide the DropwizardTestAppExtension.
+     */
+    protected abstract DropwizardTestAppExtension dwApp();
+
+    @Test
+    void shouldSustainLoad() throws InterruptedException {
+        var generator = ElkLoadGenerator.builder()
+                .logger(dwApp().getIntegrationTestLogger())
+                .logstash(logstash())
+                .eventsPerSecond(Integer.getInteger("loadTest.eventsPerSecond", 20_000))
+                .threads(Integer.getInteger("loadTest.threads", 4))
+                .duration(Duration.ofSeconds(Integer.getInteger("loadTest.seconds", 10)))
+                .build();
+
+        // warm up the JIT and the connection, then measure
+        generator.run();
+        var result = generator.run();
+
+        // print rather than log, since logging is configured for the load under test
+        System.out.println(result.format(getClass().getSimpleName()));
+
+        assertThat(result.received()).isPositive();
+    }
+}
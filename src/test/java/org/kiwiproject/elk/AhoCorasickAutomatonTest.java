@@ -0,0 +1,91 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.tuple;
+
+import org.assertj.core.groups.Tuple;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@DisplayName("AhoCorasickAutomaton")
+class AhoCorasickAutomatonTest {
+
+    @Test
+    void shouldFindAllKeywords_IncludingOverlappingOnes() {
+        var automaton = new AhoCorasickAutomaton(List.of("he", "she", "his", "hers"));
+
+        // each tuple is a keyword index and the index of the character it ends at
+        assertThat(search(automaton, "ushers"))
+                .containsExactlyInAnyOrder(tuple(1, 3), tuple(0, 3), tuple(3, 5));
+    }
+
+    @Test
+    void shouldFindKeywords_ThatAreSuffixesOfOtherKeywords() {
+        var automaton = new AhoCorasickAutomaton(List.of("password=", "word="));
+
+        assertThat(search(automaton, "password=x"))
+                .containsExactlyInAnyOrder(tuple(0, 8), tuple(1, 8));
+    }
+
+    @Test
+    void shouldFindRepeatedKeywords() {
+        var automaton = new AhoCorasickAutomaton(List.of("aa"));
+
+        assertThat(search(automaton, "aaaa"))
+                .containsExactly(tuple(0, 1), tuple(0, 2), tuple(0, 3));
+    }
+
+    @Test
+    void shouldFindKeywords_WithNonAsciiCharacters() {
+        var automaton = new AhoCorasickAutomaton(List.of("clé=", "€"));
+
+        assertThat(search(automaton, "une clé=valeur de 5€"))
+                .containsExactly(tuple(0, 7), tuple(1, 19));
+    }
+
+    @Test
+    void shouldNotFindAnything_InTextWithoutKeywords() {
+        var automaton = new AhoCorasickAutomaton(List.of("Bearer ", "token="));
+
+        assertThat(search(automaton, "Processed order 42001 for customer 12345")).isEmpty();
+    }
+
+    @Test
+    void shouldReportKeywordLengths() {
+        var automaton = new AhoCorasickAutomaton(List.of("a", "Bearer "));
+
+        assertThat(automaton.keywordLength(0)).isOne();
+        assertThat(automaton.keywordLength(1)).isEqualTo(7);
+    }
+
+    @Test
+    void shouldShareStates_ForCommonPrefixes() {
+        var automaton = new AhoCorasickAutomaton(List.of("token=", "tokens=", "to"));
+
+        // the root, then "token", then "=" and "s=" branching from it
+        assertThat(automaton.stateCount()).isEqualTo(1 + "token".length() + "=".length() + "s=".length());
+    }
+
+    @Test
+    void shouldNotAllowEmptyKeywords() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new AhoCorasickAutomaton(List.of("ok", "")))
+                .withMessage("keywords must not be empty");
+    }
+
+    private static List<Tuple> search(AhoCorasickAutomaton automaton, String text) {
+        var matches = new ArrayList<Tuple>();
+        var state = AhoCorasickAutomaton.ROOT;
+        for (var i = 0; i < text.length(); i++) {
+            state = automaton.next(state, text.charAt(i));
+            for (var keyword : automaton.matches(state)) {
+                matches.add(tuple(keyword, i));
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,145 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assumptions.assumeThat;
+import static org.kiwiproject.elk.TestLoggingEvents.getTcpEncoder;
+import static org.kiwiproject.elk.TestLoggingEvents.newInfoEvent;
+import static org.kiwiproject.elk.TestLoggingEvents.newLoggerContext;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.encoder.Encoder;
+import com.sun.management.ThreadMXBean;
+import io.dropwizard.logging.common.async.AsyncLoggingEventAppenderFactory;
+import io.dropwizard.logging.common.filter.ThresholdLevelFilterFactory;
+import lombok.extern.slf4j.Slf4j;
+import net.logstash.logback.encoder.StreamingEncoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junitpioneer.jupiter.SetSystemProperty;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Measures the bytes allocated per encoded event for representative configurations, and fails
+ * when a configuration exceeds its budget, so that a change which increases the allocation (and
+ * therefore the GC cost) of logging is noticed.
+ * <p>
+ * Events are encoded the way the TCP appender does, streaming into its output stream. The events
+ * are only encoded, never sent, so nothing needs to be listening on the port.
+ * <p>
+ * How much the JIT compiler's escape analysis eliminates depends on what else has run in the JVM,
+ * so this is a benchmark that runs in its own JVM, after encoding {@value #WARMUP_EVENTS} events
+ * per configuration:
+ * {@code mvn test -Dbenchmarks -Dtest=AllocationBudgetTest}. The build workflow runs it this way on Java 17.
+ * <p>
+ * Each budget is the highest of several such runs plus a margin of 25%, rounded up to a multiple of
+ * 16 bytes. If a change legitimately needs more, raise the budget in the same change so the increase
+ * is reviewed.
+ */
+@DisplayName("Allocation per encoded event")
+@EnabledForBenchmarks
+@SetSystemProperty(key = "kiwi.elk.host", value = "localhost")
+@SetSystemProperty(key = "kiwi.elk.port", value = "5044")
+@Slf4j
+class AllocationBudgetTest {
+
+    private static final int WARMUP_EVENTS = 200_000;
+    private static final int MEASURED_EVENTS = 10_000;
+
+    private LoggerContext loggerContext;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = newLoggerContext();
+    }
+
+    @AfterEach
+    void tearDown() {
+        loggerContext.stop();
+    }
+
+    static Stream<Arguments> shouldStayWithinAllocationBudget() {
+        return Stream.of(
+                Arguments.of("standard", configure(factory -> {}), 352),
+                Arguments.of("minimal payload",
+                        configure(factory -> factory.setPayloadProfile(ElkPayloadProfile.MINIMAL)), 96),
+                Arguments.of("without MDC", configure(factory -> factory.setIncludeMdc(false)), 352),
+                Arguments.of("CBOR", configure(factory -> factory.setEncoding(ElkEncoding.CBOR)), 816),
+                Arguments.of("logger stats", configure(factory -> factory.setTrackLoggerStats(true)), 464),
+                Arguments.of("tail events", configure(factory -> factory.setTailEvents(100)), 928)
+        );
+    }
+
+    /**
+     * Gives the lambda a target type, which {@link Arguments#of(Object...)} does not.
+     */
+    private static Consumer<ElkAppenderFactory> configure(Consumer<ElkAppenderFactory> configurer) {
+        return configurer;
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void shouldStayWithinAllocationBudget(String configuration,
+                                          Consumer<ElkAppenderFactory> configurer,
+                                          long budgetBytesPerEvent) throws IOException {
+        var threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeThat(threadMXBean.isThreadAllocatedMemorySupported())
+                .describedAs("thread allocated memory is not supported by this JVM")
+                .isTrue();
+
+        var factory = new ElkAppenderFactory();
+        configurer.accept(factory);
+        var appender = factory.build(loggerContext,
+                "allocation-budget-test",
+                null,
+                new ThresholdLevelFilterFactory(),
+                new AsyncLoggingEventAppenderFactory());
+
+        long bytesPerEvent;
+        try {
+            var encoder = getTcpEncoder(appender);
+            var event = newInfoEvent(loggerContext);
+
+            encode(encoder, event, WARMUP_EVENTS);
+
+            var threadId = Thread.currentThread().getId();
+            var before = threadMXBean.getThreadAllocatedBytes(threadId);
+            encode(encoder, event, MEASURED_EVENTS);
+            var after = threadMXBean.getThreadAllocatedBytes(threadId);
+
+            bytesPerEvent = (after - before) / MEASURED_EVENTS;
+        } finally {
+            appender.stop();
+        }
+
+        LOG.info("Bytes allocated per event: {} = {} (budget {})", configuration, bytesPerEvent, budgetBytesPerEvent);
+
+        assertThat(bytesPerEvent)
+                .describedAs("bytes allocated per event with %s configuration", configuration)
+                .isLessThanOrEqualTo(budgetBytesPerEvent);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void encode(Encoder<ILoggingEvent> encoder, ILoggingEvent event, int count) throws IOException {
+        var outputStream = OutputStream.nullOutputStream();
+        if (encoder instanceof StreamingEncoder) {
+            var streamingEncoder = (StreamingEncoder<ILoggingEvent>) encoder;
+            for (var i = 0; i < count; i++) {
+                streamingEncoder.encode(event, outputStream);
+            }
+        } else {
+            for (var i = 0; i < count; i++) {
+                outputStream.write(encoder.encode(event));
+            }
+        }
+    }
+}
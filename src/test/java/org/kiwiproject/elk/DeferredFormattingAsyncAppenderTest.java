@@ -0,0 +1,174 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.AppenderBase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+@DisplayName("DeferredFormattingAsyncAppender")
+class DeferredFormattingAsyncAppenderTest {
+
+    record OrderId(long value, String region) {
+    }
+
+    record Order(OrderId id, LocalDate date, Status status) {
+    }
+
+    record Wrapper(List<String> values) {
+    }
+
+    record Amount(BigDecimal value) {
+    }
+
+    record Node(String name, Node next) {
+    }
+
+    /**
+     * Records the thread that formats it.
+     */
+    record ThreadRecordingArgument(String value) {
+
+        static final List<String> FORMATTING_THREADS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String toString() {
+            FORMATTING_THREADS.add(Thread.currentThread().getName());
+            return value;
+        }
+    }
+
+    enum Status {
+        ACTIVE {
+            @Override
+            public String toString() {
+                return "active";
+            }
+        },
+        INACTIVE
+    }
+
+    @Nested
+    class IsImmutable {
+
+        static Stream<Object> immutableArguments() {
+            return Stream.of("text", 42, 42L, 4.2, true, 'c', new BigDecimal("1.5"), UUID.randomUUID(),
+                    Instant.now(), LocalDate.now(), ZoneOffset.UTC, Status.ACTIVE, Status.INACTIVE,
+                    new OrderId(1, "us"), new Order(new OrderId(1, "us"), LocalDate.now(), Status.INACTIVE),
+                    new Node("a", new Node("b", null)));
+        }
+
+        static Stream<Object> mutableArguments() {
+            return Stream.of(new StringBuilder("text"), new AtomicLong(), new ArrayList<>(), new int[] { 1 },
+                    Map.of("key", "value"), new Wrapper(List.of("a")), new Amount(BigDecimal.ONE), new Object());
+        }
+
+        @ParameterizedTest
+        @MethodSource("immutableArguments")
+        void shouldBeTrue_ForImmutableArguments(Object argument) {
+            assertThat(DeferredFormattingAsyncAppender.isImmutable(argument)).isTrue();
+        }
+
+        @ParameterizedTest
+        @MethodSource("mutableArguments")
+        void shouldBeFalse_ForOtherArguments(Object argument) {
+            assertThat(DeferredFormattingAsyncAppender.isImmutable(argument)).isFalse();
+        }
+
+        @Test
+        void shouldBeTrue_ForNull() {
+            assertThat(DeferredFormattingAsyncAppender.areImmutable(new Object[] { "a", null })).isTrue();
+        }
+    }
+
+    @Nested
+    class Append {
+
+        private LoggerContext loggerContext;
+        private DeferredFormattingAsyncAppender asyncAppender;
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+
+        @BeforeEach
+        void setUp() {
+            loggerContext = new LoggerContext();
+            loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+            ThreadRecordingArgument.FORMATTING_THREADS.clear();
+
+            var capturingAppender = new AppenderBase<ILoggingEvent>() {
+                @Override
+                protected void append(ILoggingEvent event) {
+                    messages.add(event.getFormattedMessage());
+                }
+            };
+            capturingAppender.setContext(loggerContext);
+            capturingAppender.start();
+
+            asyncAppender = new DeferredFormattingAsyncAppender();
+            asyncAppender.setContext(loggerContext);
+            asyncAppender.addAppender(capturingAppender);
+            asyncAppender.start();
+        }
+
+        @AfterEach
+        void tearDown() {
+            asyncAppender.stop();
+        }
+
+        @Test
+        void shouldFormatMessage_OnWorkerThread_WhenArgumentsAreImmutable() {
+            asyncAppender.doAppend(newEvent("Order {} in {}", new ThreadRecordingArgument("42"), "us"));
+
+            await().atMost(5, TimeUnit.SECONDS).until(() -> messages.size() == 1);
+            assertAll(
+                    () -> assertThat(messages).containsExactly("Order 42 in us"),
+                    () -> assertThat(ThreadRecordingArgument.FORMATTING_THREADS)
+                            .singleElement()
+                            .isNotEqualTo(Thread.currentThread().getName())
+            );
+        }
+
+        @Test
+        void shouldFormatMessage_OnLoggingThread_WhenAnyArgumentIsMutable() {
+            var mutable = new StringBuilder("before");
+            asyncAppender.doAppend(newEvent("Values {} and {}", new ThreadRecordingArgument("42"), mutable));
+            mutable.replace(0, mutable.length(), "after");
+
+            await().atMost(5, TimeUnit.SECONDS).until(() -> messages.size() == 1);
+            assertAll(
+                    () -> assertThat(messages).containsExactly("Values 42 and before"),
+                    () -> assertThat(ThreadRecordingArgument.FORMATTING_THREADS)
+                            .containsExactly(Thread.currentThread().getName())
+            );
+        }
+
+        private LoggingEvent newEvent(String message, Object... arguments) {
+            var logger = loggerContext.getLogger("org.acme.Logger");
+            return new LoggingEvent(getClass().getName(), logger, Level.INFO, message, null, arguments);
+        }
+    }
+}
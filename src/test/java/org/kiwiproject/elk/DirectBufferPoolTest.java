@@ -0,0 +1,175 @@
+package org.kiwiproject.elk;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.kiwiproject.elk.TestLoggingEvents.newInfoEvent;
+import static org.kiwiproject.elk.TestLoggingEvents.newLoggerContext;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.encoder.EncoderBase;
+import net.logstash.logback.encoder.LogstashEncoder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+@DisplayName("DirectBufferPool")
+class DirectBufferPoolTest {
+
+    private DirectBufferPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = new DirectBufferPool(DirectBufferPool.DEFAULT_MAX_POOLED_BYTES);
+    }
+
+    @Test
+    void shouldRoundUpToSizeClasses() {
+        assertAll(
+                () -> assertThat(pool.acquire(1).capacity()).isEqualTo(DirectBufferPool.MIN_CLASS_SIZE),
+                () -> assertThat(pool.acquire(257).capacity()).isEqualTo(512),
+                () -> assertThat(pool.acquire(4096).capacity()).isEqualTo(4096),
+                () -> assertThat(pool.acquire(100_000).capacity()).isEqualTo(100_000),
+                () -> assertThat(pool.acquire(1).isDirect()).isTrue()
+        );
+    }
+
+    @Test
+    void shouldReuseReleasedBuffers() {
+        var first = pool.acquire(1000);
+        first.putInt(42);
+        pool.release(first);
+
+        assertThat(pool.getPooledBytes()).isEqualTo(1024);
+
+        var second = pool.acquire(800);
+
+        assertAll(
+                () -> assertThat(second).isSameAs(first),
+                () -> assertThat(second.position()).isZero(),
+                () -> assertThat(pool.getPooledBytes()).isZero(),
+                () -> assertThat(pool.getHitCount()).isOne(),
+                () -> assertThat(pool.getMissCount()).isOne()
+        );
+    }
+
+    @Test
+    void shouldNotPoolMoreThanMaximum() {
+        pool = new DirectBufferPool(2048);
+        var buffers = new ByteBuffer[] {pool.acquire(1024), pool.acquire(1024), pool.acquire(1024)};
+
+        for (var buffer : buffers) {
+            pool.release(buffer);
+        }
+
+        assertThat(pool.getPooledBytes()).isEqualTo(2048);
+    }
+
+    @Test
+    void shouldNotPool_BuffersOutsideSizeClasses() {
+        pool.release(pool.acquire(100_000));
+        pool.release(ByteBuffer.allocate(1024));
+        pool.release(ByteBuffer.allocateDirect(1000));
+
+        assertThat(pool.getPooledBytes()).isZero();
+    }
+
+    @Test
+    void shouldEncodeEvents_IntoPooledBuffers() {
+        var loggerContext = newLoggerContext();
+        var encoder = new LogstashEncoder();
+        encoder.setContext(loggerContext);
+        encoder.start();
+        var event = newInfoEvent(loggerContext);
+
+        var buffer = pool.encode(encoder, event);
+
+        assertAll(
+                () -> assertThat(buffer.isDirect()).isTrue(),
+                () -> assertThat(string(buffer)).isEqualTo(new String(encoder.encode(event), UTF_8)),
+                () -> assertThat(pool.getAverageSize()).isGreaterThan(DirectBufferPool.MIN_CLASS_SIZE / 2.0)
+        );
+    }
+
+    @Test
+    void shouldGrowBuffer_WhenEventIsLargerThanExpected() {
+        var message = "x".repeat(10_000);
+        var encoder = new EncoderBase<ILoggingEvent>() {
+            @Override
+            public byte[] headerBytes() {
+                return null;
+            }
+
+            @Override
+            public byte[] encode(ILoggingEvent event) {
+                return event.getFormattedMessage().getBytes(UTF_8);
+            }
+
+            @Override
+            public byte[] footerBytes() {
+                return null;
+            }
+        };
+        var streamingEncoder = new LengthPrefixedEncoder<>(encoder);
+        var loggerContext = newLoggerContext();
+        var event = new LoggingEvent(getClass().getName(), loggerContext.getLogger("org.acme.Orders"), Level.INFO,
+                message, null, null);
+
+        var buffer = pool.encode(streamingEncoder, event);
+
+        assertAll(
+                () -> assertThat(buffer.capacity()).isEqualTo(16 * 1024),
+                () -> assertThat(buffer.remaining()).isEqualTo(LengthPrefixedEncoder.PREFIX_LENGTH + 10_000),
+                () -> assertThat(buffer.getInt()).isEqualTo(10_000),
+                () -> assertThat(string(buffer)).isEqualTo(message),
+                () -> assertThat(pool.getPooledBytes()).isPositive()
+        );
+    }
+
+    @Test
+    void shouldReleaseBuffer_WhenEncoderThrowsUncheckedException() {
+        var encoder = new EncoderBase<ILoggingEvent>() {
+            @Override
+            public byte[] headerBytes() {
+                return null;
+            }
+
+            @Override
+            public byte[] encode(ILoggingEvent event) {
+                throw new IllegalStateException("encoder failed");
+            }
+
+            @Override
+            public byte[] footerBytes() {
+                return null;
+            }
+        };
+        var streamingEncoder = new LengthPrefixedEncoder<>(encoder);
+        var event = newInfoEvent(newLoggerContext());
+
+        assertThatIllegalStateException()
+                .isThrownBy(() -> pool.encode(streamingEncoder, event))
+                .withMessage("encoder failed");
+
+        assertAll(
+                () -> assertThat(pool.getPooledBytes()).isPositive(),
+                () -> assertThat(pool.getMissCount()).isOne()
+        );
+
+        pool.acquire(DirectBufferPool.MIN_CLASS_SIZE);
+
+        assertAll(
+                () -> assertThat(pool.getPooledBytes()).isZero(),
+                () -> assertThat(pool.getHitCount()).isOne()
+        );
+    }
+
+    private static String string(ByteBuffer buffer) {
+        return UTF_8.decode(buffer).toString();
+    }
+}
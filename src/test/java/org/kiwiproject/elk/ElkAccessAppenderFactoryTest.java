@@ -0,0 +1,244 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.kiwiproject.test.assertj.KiwiAssertJ.assertIsExactType;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import ch.qos.logback.access.common.spi.IAccessEvent;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.AsyncAppenderBase;
+import ch.qos.logback.core.encoder.Encoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.logging.common.AppenderFactory;
+import io.dropwizard.logging.common.filter.NullLevelFilterFactory;
+import io.dropwizard.request.logging.async.AsyncAccessEventAppenderFactory;
+import io.dropwizard.util.Duration;
+import net.logstash.logback.appender.LogstashAccessTcpSocketAppender;
+import net.logstash.logback.appender.destination.RoundRobinDestinationConnectionStrategy;
+import net.logstash.logback.encoder.LogstashAccessEncoder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junitpioneer.jupiter.ClearSystemProperty;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+@DisplayName("ElkAccessAppenderFactory")
+class ElkAccessAppenderFactoryTest {
+
+    private static final String APP_NAME = "aTestApp";
+
+    private LoggerContext loggerContext;
+    private NullLevelFilterFactory<IAccessEvent> filterFactory;
+    private AsyncAccessEventAppenderFactory appenderFactory;
+    private ElkAccessAppenderFactory factory;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = TestLoggingEvents.newLoggerContext();
+        filterFactory = new NullLevelFilterFactory<>();
+        appenderFactory = new AsyncAccessEventAppenderFactory();
+
+        factory = new ElkAccessAppenderFactory();
+        factory.setHost("localhost");
+        factory.setPort(5044);
+    }
+
+    @Test
+    void shouldBeDiscoverable_AsElkAccessType() throws Exception {
+        ObjectMapper yamlMapper = Jackson.newObjectMapper(new YAMLFactory());
+        var yaml = """
+                type: elk-access
+                includeMessage: true
+                fieldNames:
+                  statusCode: status
+                """;
+
+        var accessFactory = assertIsExactType(yamlMapper.readValue(yaml, AppenderFactory.class), ElkAccessAppenderFactory.class);
+
+        assertAll(
+                () -> assertThat(accessFactory.isIncludeMessage()).isTrue(),
+                () -> assertThat(accessFactory.getFieldNames()).containsEntry("statusCode", "status")
+        );
+    }
+
+    @Test
+    void shouldCreateTcpAppender_WithHostAndPortFromFactory() {
+        var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+        var tcpAppender = getTcpAppender(appender);
+        assertThat(tcpAppender.getDestinations())
+                .singleElement()
+                .satisfies(address -> {
+                    assertThat(address.getHostName()).isEqualTo("localhost");
+                    assertThat(address.getPort()).isEqualTo(5044);
+                });
+    }
+
+    @Test
+    void shouldKeepAliveAndExpireTcpConnections_WhenConfigured() {
+        factory.setKeepAliveInterval(Duration.minutes(4));
+        factory.setMaxConnectionAge(Duration.hours(1));
+
+        var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+        var tcpAppender = getTcpAppender(appender);
+        var strategy = assertIsExactType(tcpAppender.getConnectionStrategy(), RoundRobinDestinationConnectionStrategy.class);
+        assertAll(
+                () -> assertThat(tcpAppender.getKeepAliveDuration().getMilliseconds()).isEqualTo(240_000),
+                () -> assertThat(strategy.getConnectionTTL().getMilliseconds()).isEqualTo(3_600_000)
+        );
+    }
+
+    @Test
+    void shouldCreateUdpAppender_WhenUseUdpIsTrue() {
+        factory.setUseUdp(true);
+
+        var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+        var udpAppender = assertIsExactType(getWrappedAppender(appender), EncoderUdpSocketAppender.class);
+        assertAll(
+                () -> assertThat(udpAppender.getHost()).isEqualTo("localhost"),
+                () -> assertThat(udpAppender.getPort()).isEqualTo(5044)
+        );
+    }
+
+    @Test
+    @ClearSystemProperty(key = "kiwi.elk.host")
+    @ClearSystemProperty(key = "kiwi.elk.port")
+    void shouldFail_WhenHostAndPortAreMissing() {
+        var accessFactory = new ElkAccessAppenderFactory();
+
+        assertThatIllegalStateException()
+                .isThrownBy(() -> accessFactory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory))
+                .withMessageStartingWith("Unable to get ELK host and/or port from ElkLoggerConfigProvider.");
+    }
+
+    @Test
+    void shouldEncodeSameFields_AsLogstashAccessEncoder_ExceptMessage() {
+        var event = newAccessEvent();
+
+        var fields = encodeToMap(event);
+        var defaultFields = encodeWithLogstashAccessEncoder(event);
+        defaultFields.remove("message");
+
+        assertThat(fields).containsExactlyInAnyOrderEntriesOf(defaultFields);
+    }
+
+    @Test
+    void shouldIncludeMessage_WhenEnabled() {
+        factory.setIncludeMessage(true);
+
+        var fields = encodeToMap(newAccessEvent());
+
+        assertThat(fields).hasEntrySatisfying("message", message -> assertThat((String) message).contains("\"GET /orders/42 HTTP/1.1\" 200 1234"));
+    }
+
+    @Test
+    void shouldApplyFieldNames_DisabledFields_AndCustomFields() {
+        factory.setIncludeContext(false);
+        factory.setFieldNames(Map.of("statusCode", "status", "elapsedTime", "duration_ms"));
+        factory.setDisabledFields(Set.of("version", "requestedUrl"));
+        factory.setCustomFields(Map.of("service", "order-service"));
+
+        var fields = encodeToMap(newAccessEvent());
+
+        assertAll(
+                () -> assertThat(fields).containsEntry("status", 200),
+                () -> assertThat(fields).containsEntry("duration_ms", 15),
+                () -> assertThat(fields).containsEntry("service", "order-service"),
+                () -> assertThat(fields).doesNotContainKeys("@version", "requested_url", "status_code", "organization")
+        );
+    }
+
+    @Test
+    void shouldIncludeContext_ByDefault() {
+        var fields = encodeToMap(newAccessEvent());
+
+        assertThat(fields).containsEntry("organization", "kiwiproject");
+    }
+
+    @Test
+    void shouldNotAllowDisablingUnknownFields() {
+        factory.setDisabledFields(Set.of("logger"));
+
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory))
+                .withMessageStartingWith("field logger cannot be disabled");
+    }
+
+    @Test
+    void shouldEncodeCbor_WithLengthPrefix() {
+        factory.setEncoding(ElkEncoding.CBOR);
+        factory.setCustomFields(Map.of("service", "order-service"));
+
+        var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+        var encoder = getTcpAppender(appender).getEncoder();
+        var bytes = encoder.encode(newAccessEvent());
+        var payload = Arrays.copyOfRange(bytes, 4, bytes.length);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> fields = CBORMapper.shared().readValue(payload, Map.class);
+        assertAll(
+                () -> assertThat(encoder).isExactlyInstanceOf(LengthPrefixedEncoder.class),
+                () -> assertThat(fields).containsEntry("status_code", 200),
+                () -> assertThat(fields).containsEntry("service", "order-service")
+        );
+    }
+
+    private Map<String, Object> encodeToMap(IAccessEvent event) {
+        var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+        var encoder = getTcpAppender(appender).getEncoder();
+        return decode(encoder, event);
+    }
+
+    private Map<String, Object> encodeWithLogstashAccessEncoder(IAccessEvent event) {
+        var encoder = new LogstashAccessEncoder();
+        encoder.setContext(loggerContext);
+        encoder.start();
+        return decode(encoder, event);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> decode(Encoder<IAccessEvent> encoder, IAccessEvent event) {
+        var json = new String(encoder.encode(event), StandardCharsets.UTF_8);
+        return JsonMapper.shared().readValue(json, Map.class);
+    }
+
+    private static LogstashAccessTcpSocketAppender getTcpAppender(Appender<IAccessEvent> appender) {
+        return assertIsExactType(getWrappedAppender(appender), LogstashAccessTcpSocketAppender.class);
+    }
+
+    private static Appender<IAccessEvent> getWrappedAppender(Appender<IAccessEvent> appender) {
+        assertThat(appender).isInstanceOf(AsyncAppenderBase.class);
+        return ((AsyncAppenderBase<IAccessEvent>) appender).getAppender("elk-access");
+    }
+
+    private static IAccessEvent newAccessEvent() {
+        var event = mock(IAccessEvent.class);
+        when(event.getTimeStamp()).thenReturn(1_700_000_000_000L);
+        when(event.getMethod()).thenReturn("GET");
+        when(event.getProtocol()).thenReturn("HTTP/1.1");
+        when(event.getStatusCode()).thenReturn(200);
+        when(event.getRequestURL()).thenReturn("GET /orders/42 HTTP/1.1");
+        when(event.getRequestURI()).thenReturn("/orders/42");
+        when(event.getRemoteHost()).thenReturn("127.0.0.1");
+        when(event.getRemoteUser()).thenReturn("alice");
+        when(event.getContentLength()).thenReturn(1234L);
+        when(event.getElapsedTime()).thenReturn(15L);
+        return event;
+    }
+}
@@ -0,0 +1,85 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import io.dropwizard.core.Configuration;
+import io.dropwizard.core.setup.AdminEnvironment;
+import io.dropwizard.core.setup.Environment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+@DisplayName("ElkAppenderBundle")
+class ElkAppenderBundleTest {
+
+    private static final String PREFIX = "org.kiwiproject.elk.ElkAppenderBundleTest";
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final AdminEnvironment adminEnvironment = mock(AdminEnvironment.class);
+    private final HealthCheckRegistry healthCheckRegistry = new HealthCheckRegistry();
+
+    @AfterEach
+    void tearDown() {
+        ElkAppenderMetrics.detach(metricRegistry);
+    }
+
+    @Test
+    void shouldRegisterMetrics_OfAppendersBuiltBeforeRun() {
+        var counter = new Counter();
+        ElkAppenderMetrics.register(PREFIX, () -> Map.of("sent", counter));
+
+        runBundle();
+
+        assertThat(metricRegistry.getCounters()).containsEntry(PREFIX + ".sent", counter);
+    }
+
+    @Test
+    void shouldReplaceMetrics_OfAppendersBuiltAfterRun() {
+        ElkAppenderMetrics.register(PREFIX, () -> Map.of("sent", new Counter()));
+        runBundle();
+
+        var newCounter = new Counter();
+        ElkAppenderMetrics.register(PREFIX, () -> Map.of("sent", newCounter));
+
+        assertThat(metricRegistry.getCounters()).containsEntry(PREFIX + ".sent", newCounter);
+    }
+
+    @Test
+    void shouldAddLoggerStatsTask() {
+        runBundle();
+
+        verify(adminEnvironment).addTask(any(ElkLoggerStatsTask.class));
+    }
+
+    @Test
+    void shouldAddTailTask() {
+        runBundle();
+
+        verify(adminEnvironment).addTask(any(ElkTailTask.class));
+    }
+
+    @Test
+    void shouldRegisterCircuitBreakerHealthCheck() {
+        runBundle();
+
+        assertThat(healthCheckRegistry.getNames()).contains(ElkCircuitBreakerHealthCheck.NAME);
+    }
+
+    private void runBundle() {
+        var environment = mock(Environment.class);
+        when(environment.metrics()).thenReturn(metricRegistry);
+        when(environment.admin()).thenReturn(adminEnvironment);
+        when(environment.healthChecks()).thenReturn(healthCheckRegistry);
+
+        new ElkAppenderBundle().run(new Configuration(), environment);
+    }
+}
@@ -1,32 +1,49 @@
 package org.kiwiproject.elk;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
 import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.Assertions.entry;
 import static org.assertj.core.api.Assertions.tuple;
+import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.kiwiproject.test.assertj.KiwiAssertJ.assertIsExactType;
+import static net.logstash.logback.fieldnames.LogstashCommonFieldNames.IGNORE_FIELD_INDICATOR;
 import static org.kiwiproject.test.constants.KiwiTestConstants.JSON_HELPER;
 
-import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
 import ch.qos.logback.core.Appender;
 import ch.qos.logback.core.AsyncAppenderBase;
+import ch.qos.logback.core.read.ListAppender;
+import ch.qos.logback.core.spi.FilterReply;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.logging.common.AppenderFactory;
 import io.dropwizard.logging.common.async.AsyncLoggingEventAppenderFactory;
+import io.dropwizard.util.DataSize;
+import io.dropwizard.util.Duration;
 import io.dropwizard.logging.common.filter.ThresholdLevelFilterFactory;
+import net.logstash.logback.appender.AsyncDisruptorAppender;
 import net.logstash.logback.appender.LogstashTcpSocketAppender;
 import net.logstash.logback.appender.LogstashUdpSocketAppender;
 import net.logstash.logback.encoder.LogstashEncoder;
 import net.logstash.logback.layout.LogstashLayout;
+import org.assertj.core.api.InstanceOfAssertFactories;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.NullAndEmptySource;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.junitpioneer.jupiter.ClearSystemProperty;
@@ -34,10 +51,19 @@ import org.junitpioneer.jupiter.SetSystemProperty;
 import org.kiwiproject.collect.KiwiMaps;
 import org.kiwiproject.config.provider.ResolvedBy;
 import org.kiwiproject.elk.LogstashContainerExtension.LogstashContainerType;
+import tools.jackson.dataformat.cbor.CBORMapper;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 
 @DisplayName("ElkAppenderFactory")
 class ElkAppenderFactoryTest {
@@ -55,6 +81,18 @@ class ElkAppenderFactoryTest {
         appenderFactory = new AsyncLoggingEventAppenderFactory();
     }
 
+    /**
+     * Add an appender to the root logger that keeps the events logged while the elk appender is built,
+     * like a console appender configured before it.
+     */
+    private ListAppender<ILoggingEvent> addRootListAppender() {
+        var listAppender = new ListAppender<ILoggingEvent>();
+        listAppender.setContext(loggerContext);
+        listAppender.start();
+        loggerContext.getLogger(Logger.ROOT_LOGGER_NAME).addAppender(listAppender);
+        return listAppender;
+    }
+
     @Nested
     class Constructor {
 
@@ -69,6 +107,14 @@ class ElkAppenderFactoryTest {
                 () -> assertThat(factory.isIncludeMdc()).isTrue(),
                 () -> assertThat(factory.getCustomFields()).isEmpty(),
                 () -> assertThat(factory.getFieldNames()).isEmpty(),
+                () -> assertThat(factory.getDisabledFields()).isEmpty(),
+                () -> assertThat(factory.getPayloadProfile()).isEqualTo(ElkPayloadProfile.STANDARD),
+                () -> assertThat(factory.getName()).isEqualTo(ElkAppenderFactory.DEFAULT_NAME),
+                () -> assertThat(factory.getTuningProfile()).isEqualTo(ElkTuningProfile.STANDARD),
+                () -> assertThat(factory.isVirtualThreads()).isFalse(),
+                () -> assertThat(factory.getMaxQueuedBytes()).isNull(),
+                () -> assertThat(factory.getEncoding()).isEqualTo(ElkEncoding.JSON),
+                () -> assertThat(factory.getTransport()).isExactlyInstanceOf(TcpTransportFactory.class),
                 () -> assertThat(factory.getElkLoggerConfigProvider()).isNotNull()
             );
         }
@@ -106,6 +152,17 @@ class ElkAppenderFactoryTest {
                             ResolvedBy.SYSTEM_PROPERTY.name(), ResolvedBy.NONE.name());
         }
 
+        @Test
+        void shouldNotRequireHostAndPort_ForTransportsThatDoNotUseThem() {
+            var factory = new ElkAppenderFactory();
+            factory.setTransport(new MemoryTransportFactory());
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var asyncAppender = assertIsExactType(appender, FlightRecordingAsyncAppender.class);
+            assertIsExactType(asyncAppender.getAppender("elk"), InMemoryAppender.class);
+        }
+
         private void tryBuildFactory() {
             var factory = new ElkAppenderFactory();
             factory.build(loggerContext,
@@ -266,7 +323,7 @@ class ElkAppenderFactoryTest {
 
         private static Map<String, Object> extractEncoderCustomFields(Appender<ILoggingEvent> appender) {
             var logstashTcpAppender = getLogstashTcpSocketAppender(appender);
-            var logstashEncoder = assertIsExactType(logstashTcpAppender.getEncoder(), LogstashEncoder.class);
+            var logstashEncoder = assertIsExactType(logstashTcpAppender.getEncoder(), TappedLogstashEncoder.class);
 
             var customFieldsJson = logstashEncoder.getCustomFields();
             return JSON_HELPER.toMap(customFieldsJson);
@@ -283,13 +340,859 @@ class ElkAppenderFactoryTest {
                     .withMessage("port %d is not a valid port (must be in range 1-65535)", port);
         }
 
+        @Test
+        void shouldCreateNewTcpAppender_WhenDisabledFieldsAreProvided() {
+            var factory = new ElkAppenderFactory();
+            factory.setFieldNames(Map.of("logger", "loggerName"));
+            factory.setDisabledFields(Set.of("levelValue", "thread"));
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var elkEncoder = assertIsExactType(getLogstashTcpSocketAppender(appender).getEncoder(), TappedLogstashEncoder.class);
+            var fieldNames = elkEncoder.getFieldNames();
+            assertAll(
+                    () -> assertThat(fieldNames.getLogger()).isEqualTo("loggerName"),
+                    () -> assertThat(fieldNames.getLevelValue()).isEqualTo(IGNORE_FIELD_INDICATOR),
+                    () -> assertThat(fieldNames.getThread()).isEqualTo(IGNORE_FIELD_INDICATOR),
+                    () -> assertThat(fieldNames.getVersion()).isEqualTo("@version")
+            );
+        }
+
+        @Test
+        void shouldCreateNewTcpAppender_UsingMinimalPayloadProfile() {
+            var factory = new ElkAppenderFactory();
+            factory.setPayloadProfile(ElkPayloadProfile.MINIMAL);
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var elkEncoder = assertIsExactType(getLogstashTcpSocketAppender(appender).getEncoder(), TappedLogstashEncoder.class);
+            var fieldNames = elkEncoder.getFieldNames();
+            assertAll(
+                    () -> assertThat(elkEncoder.isIncludeContext()).isFalse(),
+                    () -> assertThat(fieldNames.getVersion()).isEqualTo(IGNORE_FIELD_INDICATOR),
+                    () -> assertThat(fieldNames.getLevelValue()).isEqualTo(IGNORE_FIELD_INDICATOR),
+                    () -> assertThat(fieldNames.getThread()).isEqualTo(IGNORE_FIELD_INDICATOR),
+                    () -> assertThat(fieldNames.getMessage()).isEqualTo("message")
+            );
+        }
+
+        @Test
+        void shouldNotAllowDisablingNestedFields() {
+            var factory = new ElkAppenderFactory();
+            factory.setDisabledFields(Set.of("mdc"));
+
+            assertThatIllegalArgumentException()
+                    .isThrownBy(() -> factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory))
+                    .withMessageStartingWith("field mdc cannot be disabled");
+        }
+
+        @ParameterizedTest
+        @EnumSource(value = ElkEncoding.class, names = { "CBOR", "SMILE" })
+        void shouldUseLengthPrefixedEncoder_ForBinaryEncodings(ElkEncoding encoding) {
+            var factory = new ElkAppenderFactory();
+            factory.setEncoding(encoding);
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var encoder = assertIsExactType(getLogstashTcpSocketAppender(appender).getEncoder(), LengthPrefixedEncoder.class);
+            var logstashEncoder = assertIsExactType(encoder.getDelegate(), TappedLogstashEncoder.class);
+            assertAll(
+                    () -> assertThat(logstashEncoder.getDataFormat()).isEqualTo(encoding.getDataFormat()),
+                    () -> assertThat(logstashEncoder.getLineSeparator()).isNull()
+            );
+        }
+
+        @Test
+        void shouldEncodeCbor_WithSameFieldNamesAndCustomFields() {
+            var factory = new ElkAppenderFactory();
+            factory.setEncoding(ElkEncoding.CBOR);
+            factory.setFieldNames(Map.of("message", "logMessage"));
+            factory.setCustomFields(Map.of("serviceName", "invoice-service"));
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var encoder = TestLoggingEvents.getTcpEncoder(appender);
+            var event = TestLoggingEvents.newInfoEvent(loggerContext);
+            var bytes = encoder.encode(event);
+            var length = ByteBuffer.wrap(bytes).getInt();
+            var decoded = new CBORMapper().readValue(bytes, 4, length, Map.class);
+
+            assertThat(decoded)
+                    .containsEntry("logMessage", event.getFormattedMessage())
+                    .containsEntry("serviceName", "invoice-service")
+                    .containsKey("@timestamp");
+        }
+
+        @Test
+        void shouldUseEncoderUdpSocketAppender_ForBinaryEncodingsOverUdp() {
+            var factory = new ElkAppenderFactory();
+            factory.setUseUdp(true);
+            factory.setEncoding(ElkEncoding.SMILE);
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var asyncAppender = assertIsExactType(appender, FlightRecordingAsyncAppender.class);
+            var udpAppender = assertIsExactType(asyncAppender.getAppender("elk"), EncoderUdpSocketAppender.class);
+            var logstashEncoder = assertIsExactType(udpAppender.getEncoder(), TappedLogstashEncoder.class);
+            assertThat(logstashEncoder.getDataFormat()).isEqualTo("smile");
+        }
+
+        @Test
+        void shouldCreateHttpBatchAppender_WhenTransportIsHttp() {
+            var factory = new ElkAppenderFactory();
+            var http = new HttpTransportFactory();
+            http.setPath("logs");
+            http.setBatchFormat(ElkHttpBatchFormat.JSON_ARRAY);
+            http.setMaxBatchSize(100);
+            http.setFlushInterval(Duration.milliseconds(250));
+            factory.setTransport(http);
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var asyncAppender = assertIsExactType(appender, FlightRecordingAsyncAppender.class);
+            var httpAppender = assertIsExactType(asyncAppender.getAppender("elk"), HttpBatchAppender.class);
+            try {
+                var logstashEncoder = assertIsExactType(httpAppender.getEncoder(), TappedLogstashEncoder.class);
+                assertAll(
+                        () -> assertThat(httpAppender.isStarted()).isTrue(),
+                        () -> assertThat(httpAppender.getUri()).hasToString("http://localhost:5044/logs"),
+                        () -> assertThat(httpAppender.getBatchFormat()).isEqualTo(ElkHttpBatchFormat.JSON_ARRAY),
+                        () -> assertThat(httpAppender.isGzip()).isTrue(),
+                        () -> assertThat(httpAppender.getMaxBatchSize()).isEqualTo(100),
+                        () -> assertThat(httpAppender.getFlushInterval()).isEqualTo(java.time.Duration.ofMillis(250)),
+                        () -> assertThat(logstashEncoder.getLineSeparator()).isNull(),
+                        () -> assertThat(ElkAppenderMetrics.getMetricSets()).containsValue(httpAppender)
+                );
+            } finally {
+                httpAppender.stop();
+            }
+        }
+
+        @Test
+        void shouldNotAllowUseUdp_WithHttpTransport() {
+            var factory = new ElkAppenderFactory();
+            factory.setUseUdp(true);
+            factory.setTransport(new HttpTransportFactory());
+
+            assertThatIllegalStateException()
+                    .isThrownBy(() -> factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory))
+                    .withMessage("useUdp cannot be combined with transport HttpTransportFactory");
+        }
+
+        @Test
+        void shouldNotAllowBinaryEncodings_WithHttpTransport() {
+            var factory = new ElkAppenderFactory();
+            factory.setTransport(new HttpTransportFactory());
+            factory.setEncoding(ElkEncoding.CBOR);
+
+            assertThatIllegalStateException()
+                    .isThrownBy(() -> factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory))
+                    .withMessage("encoding CBOR is not supported by the http transport");
+        }
+
+        @Test
+        void shouldApplyFactorySettings_ToMemoryTransport() {
+            var factory = new ElkAppenderFactory();
+            factory.setTransport(new MemoryTransportFactory());
+            factory.setFieldNames(Map.of("message", "logMessage"));
+            factory.setCustomFields(Map.of("serviceName", "invoice-service"));
+            factory.setPayloadProfile(ElkPayloadProfile.MINIMAL);
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var asyncAppender = assertIsExactType(appender, FlightRecordingAsyncAppender.class);
+            var memoryAppender = assertIsExactType(asyncAppender.getAppender("elk"), InMemoryAppender.class);
+            var event = TestLoggingEvents.newInfoEvent(loggerContext);
+            memoryAppender.doAppend(event);
+
+            var encodedEvents = memoryAppender.getEncodedEvents();
+            assertThat(encodedEvents).hasSize(1);
+            var decoded = JSON_HELPER.toMap(new String(encodedEvents.get(0), StandardCharsets.UTF_8));
+            assertAll(
+                    () -> assertThat(decoded).containsEntry("logMessage", event.getFormattedMessage()),
+                    () -> assertThat(decoded).containsEntry("serviceName", "invoice-service"),
+                    () -> assertThat(decoded).doesNotContainKeys("@version", "thread_name"),
+                    () -> assertThat(memoryAppender.getEventCount()).isOne(),
+                    () -> assertThat(memoryAppender.getByteCount()).isEqualTo(encodedEvents.get(0).length)
+            );
+        }
+
+        @Test
+        void shouldAggregateEvents_FromConfiguredLoggers() {
+            var aggregation = new ElkAggregationConfig();
+            aggregation.setLoggers(Map.of(TestLoggingEvents.LOGGER_NAME, "INFO"));
+            aggregation.setInterval(Duration.hours(1));
+
+            var factory = new ElkAppenderFactory();
+            factory.setTransport(new MemoryTransportFactory());
+            factory.setAggregation(aggregation);
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var filter = assertIsExactType(appender.getCopyOfAttachedFiltersList().get(0), LogVolumeAggregationFilter.class);
+            var asyncAppender = assertIsExactType(appender, FlightRecordingAsyncAppender.class);
+            var memoryAppender = assertIsExactType(asyncAppender.getAppender("elk"), InMemoryAppender.class);
+
+            appender.doAppend(TestLoggingEvents.newInfoEvent(loggerContext));
+            appender.doAppend(TestLoggingEvents.newInfoEvent(loggerContext));
+            filter.sendSummary();
+            appender.stop();
+
+            var encodedEvents = memoryAppender.getEncodedEvents();
+            assertThat(encodedEvents).hasSize(1);
+            var decoded = JSON_HELPER.toMap(new String(encodedEvents.get(0), StandardCharsets.UTF_8));
+            assertAll(
+                    () -> assertThat(decoded).containsEntry("logger_name", LogVolumeAggregationFilter.SUMMARY_LOGGER_NAME),
+                    () -> assertThat(decoded).extractingByKey("aggregation")
+                            .asInstanceOf(InstanceOfAssertFactories.MAP)
+                            .containsEntry("total", 2)
+            );
+        }
+
+        @Test
+        void shouldTrackLoggerStats_WhenEnabled() {
+            var factory = new ElkAppenderFactory();
+            factory.setTransport(new MemoryTransportFactory());
+            factory.setTrackLoggerStats(true);
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var asyncAppender = assertIsExactType(appender, FlightRecordingAsyncAppender.class);
+            var memoryAppender = assertIsExactType(asyncAppender.getAppender("elk"), InMemoryAppender.class);
+            memoryAppender.doAppend(TestLoggingEvents.newInfoEvent(loggerContext));
+
+            var stats = LoggerStats.REGISTRY.get(ElkAppenderFactory.DEFAULT_NAME).orElseThrow();
+            assertThat(stats.getTopLoggers(1))
+                    .singleElement()
+                    .satisfies(entry -> {
+                        assertThat(entry.loggerName()).isEqualTo(TestLoggingEvents.LOGGER_NAME);
+                        assertThat(entry.estimatedBytes()).isEqualTo(memoryAppender.getByteCount());
+                    });
+        }
+
+        @Test
+        void shouldRejectEvents_WhenCircuitBreakerIsOpen() {
+            var circuitBreakerConfig = new ElkCircuitBreakerConfig();
+            circuitBreakerConfig.setFailureThreshold(1);
+
+            var factory = new ElkAppenderFactory();
+            factory.setCircuitBreaker(circuitBreakerConfig);
+            factory.setTransport(new MemoryTransportFactory());
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var circuitBreaker = ElkCircuitBreaker.REGISTRY.get(ElkAppenderFactory.DEFAULT_NAME).orElseThrow();
+            assertThat(appender.getCopyOfAttachedFiltersList()).contains(circuitBreaker);
+
+            circuitBreaker.recordFailure();
+            appender.doAppend(TestLoggingEvents.newInfoEvent(loggerContext));
+
+            var asyncAppender = assertIsExactType(appender, FlightRecordingAsyncAppender.class);
+            var memoryAppender = assertIsExactType(asyncAppender.getAppender("elk"), InMemoryAppender.class);
+            assertAll(
+                    () -> assertThat(circuitBreaker.getRejectedEventCount()).isOne(),
+                    () -> assertThat(memoryAppender.getEncodedEvents()).isEmpty()
+            );
+        }
+
+        @Test
+        void shouldOpenCircuitBreaker_WhenTcpConnectionFails() throws IOException {
+            var circuitBreakerConfig = new ElkCircuitBreakerConfig();
+            circuitBreakerConfig.setFailureThreshold(1);
+
+            var factory = new ElkAppenderFactory();
+            factory.setCircuitBreaker(circuitBreakerConfig);
+            factory.setPort(unusedPort());
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+            try {
+                var circuitBreaker = ElkCircuitBreaker.REGISTRY.get(ElkAppenderFactory.DEFAULT_NAME).orElseThrow();
+                await().atMost(5, TimeUnit.SECONDS)
+                        .until(() -> circuitBreaker.getState() == ElkCircuitBreaker.State.OPEN);
+            } finally {
+                appender.stop();
+            }
+        }
+
+        @Test
+        void shouldKeepCircuitBreakersOfEachAppender_UntilStopped() {
+            var auditFactory = new ElkAppenderFactory();
+            auditFactory.setName("audit");
+            auditFactory.setCircuitBreaker(new ElkCircuitBreakerConfig());
+            auditFactory.setTransport(new MemoryTransportFactory());
+            var factory = new ElkAppenderFactory();
+            factory.setCircuitBreaker(new ElkCircuitBreakerConfig());
+            factory.setTransport(new MemoryTransportFactory());
+
+            var auditAppender = auditFactory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var auditBreaker = ElkCircuitBreaker.REGISTRY.get("audit").orElseThrow();
+            var breaker = ElkCircuitBreaker.REGISTRY.get(ElkAppenderFactory.DEFAULT_NAME).orElseThrow();
+            var auditPrefix = ElkAppenderMetrics.prefix("audit", ElkCircuitBreaker.METRICS_NAME);
+            assertAll(
+                    () -> assertThat(auditBreaker).isNotSameAs(breaker),
+                    () -> assertThat(auditAppender.getCopyOfAttachedFiltersList()).contains(auditBreaker),
+                    () -> assertThat(ElkAppenderMetrics.getMetricSets())
+                            .containsEntry(auditPrefix, auditBreaker)
+                            .containsEntry(ElkAppenderMetrics.prefix(ElkAppenderFactory.DEFAULT_NAME,
+                                    ElkCircuitBreaker.METRICS_NAME), breaker)
+            );
+
+            auditAppender.stop();
+            appender.stop();
+
+            assertAll(
+                    () -> assertThat(ElkCircuitBreaker.REGISTRY.get("audit")).isEmpty(),
+                    () -> assertThat(ElkCircuitBreaker.REGISTRY.get(ElkAppenderFactory.DEFAULT_NAME)).isEmpty(),
+                    () -> assertThat(ElkAppenderMetrics.getMetricSets()).doesNotContainKey(auditPrefix)
+            );
+        }
+
+        private static int unusedPort() throws IOException {
+            try (var socket = new ServerSocket(0)) {
+                return socket.getLocalPort();
+            }
+        }
+
+        @Test
+        void shouldDeferFormatting_WhenEnabled() {
+            var factory = new ElkAppenderFactory();
+            factory.setTransport(new MemoryTransportFactory());
+            factory.setDeferFormatting(true);
+            factory.setIncludeCallerData(true);
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var asyncAppender = assertIsExactType(appender, DeferredFormattingAsyncAppender.class);
+            assertAll(
+                    () -> assertThat(asyncAppender.isStarted()).isTrue(),
+                    () -> assertThat(asyncAppender.isIncludeCallerData()).isTrue(),
+                    () -> assertThat(asyncAppender.getQueueSize()).isEqualTo(factory.getQueueSize()),
+                    () -> assertIsExactType(asyncAppender.getAppender("elk"), InMemoryAppender.class)
+            );
+        }
+
+        @Test
+        void shouldKeepTailOfEvents_EncodedAsSent_WhenEnabled() {
+            var factory = new ElkAppenderFactory();
+            factory.setTransport(new MemoryTransportFactory());
+            factory.setTailEvents(10);
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+            try {
+                var asyncAppender = assertIsExactType(appender, FlightRecordingAsyncAppender.class);
+                var memoryAppender = assertIsExactType(asyncAppender.getAppender("elk"), InMemoryAppender.class);
+                appender.doAppend(TestLoggingEvents.newInfoEvent(loggerContext));
+                await().atMost(5, TimeUnit.SECONDS).until(() -> memoryAppender.getEncodedEvents().size() == 1);
+
+                var tailRing = EventTailRing.REGISTRY.get(ElkAppenderFactory.DEFAULT_NAME).orElseThrow();
+                assertThat(tailRing.getEvents(entry -> true, 10))
+                        .singleElement()
+                        .satisfies(entry -> {
+                            assertThat(entry.loggerName()).isEqualTo(TestLoggingEvents.LOGGER_NAME);
+                            assertThat(entry.encoded()).isEqualTo(memoryAppender.getEncodedEvents().get(0));
+                        });
+            } finally {
+                appender.stop();
+            }
+        }
+
+        @Test
+        void shouldKeepTailOfEvents_WhileTransportIsDown() throws IOException {
+            var circuitBreakerConfig = new ElkCircuitBreakerConfig();
+            circuitBreakerConfig.setFailureThreshold(1);
+
+            var factory = new ElkAppenderFactory();
+            factory.setCircuitBreaker(circuitBreakerConfig);
+            factory.setPort(unusedPort());
+            factory.setTailEvents(10);
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+            try {
+                var circuitBreaker = ElkCircuitBreaker.REGISTRY.get(ElkAppenderFactory.DEFAULT_NAME).orElseThrow();
+                await().atMost(5, TimeUnit.SECONDS)
+                        .until(() -> circuitBreaker.getState() == ElkCircuitBreaker.State.OPEN);
+
+                for (var i = 0; i < 3; i++) {
+                    appender.doAppend(TestLoggingEvents.newInfoEvent(loggerContext));
+                }
+
+                var tailRing = EventTailRing.REGISTRY.get(ElkAppenderFactory.DEFAULT_NAME).orElseThrow();
+                assertAll(
+                        () -> assertThat(circuitBreaker.getRejectedEventCount()).isEqualTo(3),
+                        () -> assertThat(tailRing.getEvents(entry -> true, 10))
+                                .hasSize(3)
+                                .allSatisfy(entry -> assertThat(new String(entry.encoded(), StandardCharsets.UTF_8))
+                                        .contains("Processed order 42001 for customer customer-12345"))
+                );
+            } finally {
+                appender.stop();
+            }
+        }
+
+        @Test
+        void shouldMaskSensitiveData_InTargetedFields() {
+            var factory = new ElkAppenderFactory();
+            factory.setTransport(new MemoryTransportFactory());
+            var rule = new ElkMaskingRule();
+            rule.setPrefix("password=");
+            var masking = new ElkMaskingConfig();
+            masking.setFields(Set.of("message", "stack_trace"));
+            masking.setMaskedFields(Set.of("userId"));
+            masking.setRules(List.of(rule));
+            factory.setMasking(masking);
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var asyncAppender = assertIsExactType(appender, FlightRecordingAsyncAppender.class);
+            var memoryAppender = assertIsExactType(asyncAppender.getAppender("elk"), InMemoryAppender.class);
+            var event = new LoggingEvent(getClass().getName(), loggerContext.getLogger("org.acme.Login"), Level.WARN,
+                    "Login failed for {} with password={}",
+                    new IllegalStateException("rejected password=hunter2"),
+                    new Object[] { "jdoe", "hunter2" });
+            event.setMDCPropertyMap(Map.of("userId", "42", "traceId", "4bf92f35"));
+            memoryAppender.doAppend(event);
+
+            var encoded = JSON_HELPER.toMap(new String(memoryAppender.getEncodedEvents().get(0), StandardCharsets.UTF_8));
+            assertThat(encoded)
+                    .containsEntry("message", "Login failed for jdoe with password=****")
+                    .containsEntry("userId", "****")
+                    .containsEntry("traceId", "4bf92f35")
+                    .hasEntrySatisfying("stack_trace", stackTrace -> assertThat((String) stackTrace)
+                            .contains("rejected password=****")
+                            .doesNotContain("hunter2"));
+        }
+
+        @Test
+        void shouldBindMasking_FromYaml() throws Exception {
+            var yaml = """
+                    type: elk
+                    masking:
+                      mask: "[redacted]"
+                      rules:
+                        - prefix: "Bearer "
+                        - pattern: '[\\w.+-]+@[\\w-]+\\.[\\w.-]+'
+                          requires: ["@"]
+                          fields: [message, email]
+                    """;
+            var yamlMapper = Jackson.newObjectMapper(new YAMLFactory());
+            var factory = assertIsExactType(yamlMapper.readValue(yaml, AppenderFactory.class), ElkAppenderFactory.class);
+
+            var masker = factory.getMasking().build();
+
+            assertAll(
+                    () -> assertThat(masker.mask("message", "Bearer abc for jane@example.com"))
+                            .isEqualTo("Bearer [redacted] for [redacted]"),
+                    () -> assertThat(masker.mask("email", "jane@example.com")).isEqualTo("[redacted]")
+            );
+        }
+
+        @Test
+        void shouldAccountForEvents_WhenLossAccountingIsEnabled() {
+            var factory = new ElkAppenderFactory();
+            factory.setTransport(new MemoryTransportFactory());
+            factory.setLossAccounting(new ElkLossAccountingConfig());
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var asyncAppender = assertIsExactType(appender, FlightRecordingAsyncAppender.class);
+            var accounting = asyncAppender.getCopyOfAttachedFiltersList().stream()
+                    .filter(LossAccountingFilter.class::isInstance)
+                    .map(LossAccountingFilter.class::cast)
+                    .findFirst()
+                    .orElseThrow();
+            var memoryAppender = assertIsExactType(asyncAppender.getAppender("elk"), InMemoryAppender.class);
+            asyncAppender.doAppend(TestLoggingEvents.newInfoEvent(loggerContext));
+            asyncAppender.doAppend(TestLoggingEvents.newInfoEvent(loggerContext));
+            await().until(() -> memoryAppender.getEncodedEvents().size() == 2);
+
+            var second = JSON_HELPER.toMap(new String(memoryAppender.getEncodedEvents().get(1), StandardCharsets.UTF_8));
+            assertAll(
+                    () -> assertThat(accounting.isStarted()).isTrue(),
+                    () -> assertThat(second)
+                            .containsEntry("instance_id", accounting.getInstanceId())
+                            .containsEntry("sequence", 2),
+                    () -> assertThat(accounting.getAppendedCount()).isEqualTo(2),
+                    () -> assertThat(accounting.getSentCount()).isEqualTo(2),
+                    () -> assertThat(accounting.getDroppedCount()).isZero()
+            );
+        }
+
+        @Test
+        void shouldSendHeartbeats_WhenThresholdIsAboveInfo() {
+            var factory = new ElkAppenderFactory();
+            factory.setTransport(new MemoryTransportFactory());
+            factory.setThreshold("WARN");
+            factory.setLossAccounting(new ElkLossAccountingConfig());
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var asyncAppender = assertIsExactType(appender, FlightRecordingAsyncAppender.class);
+            var accounting = asyncAppender.getCopyOfAttachedFiltersList().stream()
+                    .filter(LossAccountingFilter.class::isInstance)
+                    .map(LossAccountingFilter.class::cast)
+                    .findFirst()
+                    .orElseThrow();
+            var memoryAppender = assertIsExactType(asyncAppender.getAppender("elk"), InMemoryAppender.class);
+            asyncAppender.doAppend(TestLoggingEvents.newInfoEvent(loggerContext));
+            accounting.sendHeartbeat();
+            await().until(() -> memoryAppender.getEncodedEvents().size() == 1);
+
+            var heartbeat = JSON_HELPER.toMap(new String(memoryAppender.getEncodedEvents().get(0), StandardCharsets.UTF_8));
+            assertAll(
+                    () -> assertThat(heartbeat).containsEntry("logger_name", LossAccountingFilter.HEARTBEAT_LOGGER_NAME),
+                    () -> assertThat(accounting.getAppendedCount()).isOne(),
+                    () -> assertThat(accounting.getSentCount()).isOne()
+            );
+        }
+
+                @Test
+        void shouldBindLossAccounting_FromYaml() throws Exception {
+            var yaml = """
+                    type: elk
+                    lossAccounting:
+                      heartbeatInterval: 30s
+                    """;
+            var yamlMapper = Jackson.newObjectMapper(new YAMLFactory());
+            var factory = assertIsExactType(yamlMapper.readValue(yaml, AppenderFactory.class), ElkAppenderFactory.class);
+
+            assertAll(
+                    () -> assertThat(factory.getLossAccounting().isEnabled()).isTrue(),
+                    () -> assertThat(factory.getLossAccounting().getHeartbeatInterval()).isEqualTo(Duration.seconds(30))
+            );
+        }
+
+        @Test
+        void shouldShedEvents_UnderHeapPressure_WhenEnabled() {
+            var factory = new ElkAppenderFactory();
+            factory.setTransport(new MemoryTransportFactory());
+            factory.setHeapPressure(new ElkHeapPressureConfig());
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var asyncAppender = assertIsExactType(appender, FlightRecordingAsyncAppender.class);
+            var filters = asyncAppender.getCopyOfAttachedFiltersList();
+            var heapPressure = assertIsExactType(filters.get(filters.size() - 1), HeapPressureFilter.class);
+            heapPressure.update(0.85);
+
+            assertAll(
+                    () -> assertThat(heapPressure.isStarted()).isTrue(),
+                    () -> assertThat(asyncAppender.getFilterChainDecision(TestLoggingEvents.newInfoEvent(loggerContext)))
+                            .isEqualTo(FilterReply.DENY),
+                    () -> assertThat(ElkAppenderMetrics.getMetricSets()).containsEntry(
+                            ElkAppenderMetrics.prefix(ElkAppenderFactory.DEFAULT_NAME, HeapPressureFilter.METRICS_NAME),
+                            heapPressure)
+            );
+        }
+
+        @Test
+        void shouldBindHeapPressure_FromYaml() throws Exception {
+            var yaml = """
+                    type: elk
+                    heapPressure:
+                      elevatedThreshold: 0.7
+                      criticalThreshold: 0.85
+                      elevatedLevel: INFO
+                      criticalLevel: WARN
+                    """;
+            var yamlMapper = Jackson.newObjectMapper(new YAMLFactory());
+            var factory = assertIsExactType(yamlMapper.readValue(yaml, AppenderFactory.class), ElkAppenderFactory.class);
+
+            assertAll(
+                    () -> assertThat(factory.getHeapPressure().isEnabled()).isTrue(),
+                    () -> assertThat(factory.getHeapPressure().getElevatedThreshold()).isEqualTo(0.7),
+                    () -> assertThat(factory.getHeapPressure().getCriticalThreshold()).isEqualTo(0.85),
+                    () -> assertThat(factory.getHeapPressure().getElevatedLevel()).isEqualTo("INFO"),
+                    () -> assertThat(factory.getHeapPressure().getCriticalLevel()).isEqualTo("WARN")
+            );
+        }
+
+        @Test
+        void shouldLimitQueuedBytes_WhenMaxQueuedBytesIsSet() {
+            var factory = new ElkAppenderFactory();
+            factory.setTransport(new MemoryTransportFactory());
+            factory.setMaxQueuedBytes(DataSize.kibibytes(64));
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var asyncAppender = assertIsExactType(appender, FlightRecordingAsyncAppender.class);
+            var metricsName = ElkAppenderMetrics.prefix(ElkAppenderFactory.DEFAULT_NAME, QueuedBytesBudget.METRICS_NAME);
+            var budget = assertIsExactType(ElkAppenderMetrics.getMetricSets().get(metricsName), QueuedBytesBudget.class);
+            var memoryAppender = assertIsExactType(asyncAppender.getAppender("elk"), InMemoryAppender.class);
+            appender.doAppend(TestLoggingEvents.newInfoEvent(loggerContext));
+            await().until(() -> memoryAppender.getEncodedEvents().size() == 1);
+            var queuedBytes = budget.getQueuedBytes();
+            appender.stop();
+
+            assertAll(
+                    () -> assertThat(budget.getMaxQueuedBytes()).isEqualTo(64 * 1024),
+                    () -> assertThat(asyncAppender.isNeverBlock()).isFalse(),
+                    () -> assertThat(queuedBytes).isZero(),
+                    () -> assertThat(ElkAppenderMetrics.getMetricSets()).doesNotContainKey(metricsName)
+            );
+        }
+
+        @Test
+        void shouldBindMaxQueuedBytes_FromYaml() throws Exception {
+            var yaml = """
+                    type: elk
+                    maxQueuedBytes: 16MiB
+                    """;
+            var yamlMapper = Jackson.newObjectMapper(new YAMLFactory());
+            var factory = assertIsExactType(yamlMapper.readValue(yaml, AppenderFactory.class), ElkAppenderFactory.class);
+
+            assertThat(factory.getMaxQueuedBytes()).isEqualTo(DataSize.mebibytes(16));
+        }
+
+        @Test
+        void shouldPublishEncodedEvents_WhenEnabled() {
+            var factory = new ElkAppenderFactory();
+            factory.setTransport(new MemoryTransportFactory());
+            factory.setPublishEvents(true);
+
+            var received = new CopyOnWriteArrayList<byte[]>();
+            ElkEventPublisher.shared().subscribe(new Flow.Subscriber<>() {
+                private Flow.Subscription subscription;
+
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    this.subscription = subscription;
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onNext(byte[] item) {
+                    received.add(item);
+                    subscription.cancel();
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var asyncAppender = assertIsExactType(appender, FlightRecordingAsyncAppender.class);
+            var memoryAppender = assertIsExactType(asyncAppender.getAppender("elk"), InMemoryAppender.class);
+            memoryAppender.doAppend(TestLoggingEvents.newInfoEvent(loggerContext));
+
+            await().atMost(5, TimeUnit.SECONDS).until(() -> received.size() == 1);
+            assertThat(received.get(0)).isEqualTo(memoryAppender.getEncodedEvents().get(0));
+        }
+
+        @Test
+        void shouldKeepDefaultBufferSettings_WithStandardTuningProfile() {
+            var factory = new ElkAppenderFactory();
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var asyncAppender = assertIsExactType(appender, FlightRecordingAsyncAppender.class);
+            var tcpAppender = getLogstashTcpSocketAppender(appender);
+            var defaults = new LogstashTcpSocketAppender();
+            assertAll(
+                    () -> assertThat(asyncAppender.getQueueSize()).isEqualTo(AsyncAppenderBase.DEFAULT_QUEUE_SIZE),
+                    () -> assertThat(asyncAppender.isNeverBlock()).isFalse(),
+                    () -> assertThat(tcpAppender.getRingBufferSize()).isEqualTo(defaults.getRingBufferSize()),
+                    () -> assertThat(tcpAppender.getWriteBufferSize()).isEqualTo(defaults.getWriteBufferSize()),
+                    () -> assertThat(tcpAppender.getAppendTimeout()).hasToString(defaults.getAppendTimeout().toString())
+            );
+            appender.stop();
+        }
+
+        @Test
+        void shouldApplyTuningProfile() {
+            var factory = new ElkAppenderFactory();
+            factory.setTuningProfile(ElkTuningProfile.THROUGHPUT);
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var asyncAppender = assertIsExactType(appender, DeferredFormattingAsyncAppender.class);
+            var tcpAppender = assertIsExactType(asyncAppender.getAppender("elk"), LogstashTcpSocketAppender.class);
+            assertAll(
+                    () -> assertThat(asyncAppender.getQueueSize()).isEqualTo(8192),
+                    () -> assertThat(asyncAppender.getDiscardingThreshold()).isZero(),
+                    () -> assertThat(asyncAppender.isNeverBlock()).isTrue(),
+                    () -> assertThat(tcpAppender.getWriteBufferSize()).isEqualTo(64 * 1024),
+                    () -> assertThat(tcpAppender.getAppendTimeout().getMilliseconds()).isEqualTo(100)
+            );
+            appender.stop();
+        }
+
+        @Test
+        void shouldPreferExplicitSettings_OverTuningProfile() {
+            var factory = new ElkAppenderFactory();
+            factory.setTuningProfile(ElkTuningProfile.LOW_LATENCY);
+            factory.setQueueSize(512);
+            factory.setNeverBlock(false);
+            factory.setDeferFormatting(false);
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var asyncAppender = assertIsExactType(appender, FlightRecordingAsyncAppender.class);
+            assertAll(
+                    () -> assertThat(asyncAppender.getQueueSize()).isEqualTo(512),
+                    () -> assertThat(asyncAppender.isNeverBlock()).isFalse(),
+                    () -> assertThat(asyncAppender.getDiscardingThreshold()).isEqualTo(512 / 5)
+            );
+            appender.stop();
+        }
+
+        @Test
+        void shouldBlockInsteadOfDropping_WithLosslessTuningProfile() {
+            var factory = new ElkAppenderFactory();
+            factory.setTuningProfile(ElkTuningProfile.LOSSLESS);
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var asyncAppender = assertIsExactType(appender, FlightRecordingAsyncAppender.class);
+            var tcpAppender = getLogstashTcpSocketAppender(appender);
+            assertAll(
+                    () -> assertThat(asyncAppender.getDiscardingThreshold()).isZero(),
+                    () -> assertThat(asyncAppender.isNeverBlock()).isFalse(),
+                    () -> assertThat(tcpAppender.getAppendTimeout().getMilliseconds()).isNegative()
+            );
+            appender.stop();
+        }
+
+        @Test
+        void shouldReportEffectiveTuningSettings() {
+            var factory = new ElkAppenderFactory();
+            factory.setTuningProfile(ElkTuningProfile.LOW_LATENCY);
+            factory.setQueueSize(4096);
+
+            var consoleAppender = addRootListAppender();
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+            appender.stop();
+
+            assertThat(consoleAppender.list)
+                    .singleElement()
+                    .satisfies(event -> {
+                        assertThat(event.getLoggerName()).isEqualTo(ElkAppenderFactory.class.getName());
+                        assertThat(event.getLevel()).isEqualTo(Level.INFO);
+                        assertThat(event.getFormattedMessage()).isEqualTo("Tuning profile LOW_LATENCY: queueSize=4096," +
+                                " discardingThreshold=-1, neverBlock=true, deferFormatting=true, ringBufferSize=8192," +
+                                " writeBufferSize=8192, appendTimeout=0 milliseconds");
+                    });
+        }
+
+        @Test
+        void shouldApplyTuningProfile_ToEachConnection() {
+            var transport = new TcpTransportFactory();
+            transport.setConnections(2);
+            var factory = new ElkAppenderFactory();
+            factory.setTransport(transport);
+            factory.setTuningProfile(ElkTuningProfile.LOW_LATENCY);
+            var consoleAppender = addRootListAppender();
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+            var asyncAppender = assertIsExactType(appender, DeferredFormattingAsyncAppender.class);
+            var parallelAppender = assertIsExactType(asyncAppender.getAppender("elk"), ParallelTcpAppender.class);
+            appender.stop();
+
+            assertAll(
+                    () -> assertThat(parallelAppender.getConnections())
+                            .extracting(LogstashTcpSocketAppender::getRingBufferSize)
+                            .containsExactly(8192, 8192),
+                    () -> assertThat(consoleAppender.list)
+                            .extracting(ILoggingEvent::getFormattedMessage)
+                            .anyMatch(message -> message.startsWith("Tuning profile LOW_LATENCY:") &&
+                                    message.contains(", connections=2, ringBufferSize=8192,"))
+            );
+        }
+
+        @Test
+        @EnabledForJreRange(max = JRE.JAVA_20)
+        void shouldUsePlatformThreads_WhenVirtualThreadsAreUnsupported() {
+            var factory = new ElkAppenderFactory();
+            factory.setVirtualThreads(true);
+            var consoleAppender = addRootListAppender();
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+            var tcpAppender = getLogstashTcpSocketAppender(appender);
+            appender.stop();
+
+            assertAll(
+                    () -> assertThat(tcpAppender.getWaitStrategy()).isSameAs(AsyncDisruptorAppender.DEFAULT_WAIT_STRATEGY),
+                    () -> assertThat(ElkThreadsTest.isVirtual(tcpAppender.getThreadFactory().newThread(() -> { })))
+                            .isFalse(),
+                    () -> assertThat(consoleAppender.list)
+                            .filteredOn(event -> event.getLevel() == Level.WARN)
+                            .extracting(ILoggingEvent::getFormattedMessage)
+                            .containsExactly("virtualThreads requires Java 21 or later; using platform threads instead")
+            );
+        }
+
+        @Test
+        @EnabledForJreRange(min = JRE.JAVA_21)
+        void shouldUseVirtualThreads_ForEachConnection_WhenEnabled() {
+            var transport = new TcpTransportFactory();
+            transport.setConnections(2);
+            var factory = new ElkAppenderFactory();
+            factory.setTransport(transport);
+            factory.setVirtualThreads(true);
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+            var asyncAppender = assertIsExactType(appender, FlightRecordingAsyncAppender.class);
+            var parallelAppender = assertIsExactType(asyncAppender.getAppender("elk"), ParallelTcpAppender.class);
+            appender.stop();
+
+            assertThat(parallelAppender.getConnections())
+                    .hasSize(2)
+                    .allSatisfy(connection -> assertAll(
+                            () -> assertThat(ElkThreadsTest.isVirtual(connection.getThreadFactory().newThread(() -> { })))
+                                    .isTrue(),
+                            () -> assertThat(connection.getWaitStrategy().getClass().getSimpleName())
+                                    .isEqualTo("SleepingWaitStrategy")
+                    ));
+        }
+
+        @Test
+        void shouldBindTuningProfile_AndExplicitSettings_FromYaml() throws Exception {
+            var yaml = """
+                    type: elk
+                    tuningProfile: low-latency
+                    queueSize: 1024
+                    """;
+            var yamlMapper = Jackson.newObjectMapper(new YAMLFactory());
+            var factory = assertIsExactType(yamlMapper.readValue(yaml, AppenderFactory.class), ElkAppenderFactory.class);
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var asyncAppender = assertIsExactType(appender, DeferredFormattingAsyncAppender.class);
+            assertAll(
+                    () -> assertThat(factory.getTuningProfile()).isEqualTo(ElkTuningProfile.LOW_LATENCY),
+                    () -> assertThat(asyncAppender.getQueueSize()).isEqualTo(1024),
+                    () -> assertThat(asyncAppender.isNeverBlock()).isTrue()
+            );
+            appender.stop();
+        }
+
+        @Test
+        void shouldUseUdpTransport_WhenUseUdpIsTrue_AndTransportIsUdp() {
+            var factory = new ElkAppenderFactory();
+            factory.setUseUdp(true);
+            factory.setTransport(new UdpTransportFactory());
+
+            var appender = factory.build(loggerContext, APP_NAME, null, filterFactory, appenderFactory);
+
+            var asyncAppender = assertIsExactType(appender, FlightRecordingAsyncAppender.class);
+            assertIsExactType(asyncAppender.getAppender("elk"), LogstashUdpSocketAppender.class);
+        }
+
         private static List<InetSocketAddress> getLogstashAppenderDestinations(Appender<ILoggingEvent> appender) {
             var logstashTcpAppender = getLogstashTcpSocketAppender(appender);
             return logstashTcpAppender.getDestinations();
         }
 
         private static LogstashTcpSocketAppender getLogstashTcpSocketAppender(Appender<ILoggingEvent> appender) {
-            var asyncAppender = assertIsExactType(appender, AsyncAppender.class);
+            var asyncAppender = assertIsExactType(appender, FlightRecordingAsyncAppender.class);
             var loggingEventAppender = asyncAppender.iteratorForAppenders().next();
             return assertIsExactType(loggingEventAppender, LogstashTcpSocketAppender.class);
         }
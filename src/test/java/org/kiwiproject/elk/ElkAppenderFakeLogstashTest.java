@@ -0,0 +1,49 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.kiwiproject.test.constants.KiwiTestConstants.JSON_HELPER;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+@DisplayName("ElkAppender (using in-JVM fake Logstash)")
+class ElkAppenderFakeLogstashTest {
+
+    @RegisterExtension
+    static final FakeLogstashExtension LOGSTASH = new FakeLogstashExtension();
+
+    @RegisterExtension
+    static final DropwizardTestAppExtension DW_APP =
+            new DropwizardTestAppExtension("elk-integration-test-config.yml");
+
+    @Test
+    void shouldSendLog() {
+        var logger = DW_APP.getIntegrationTestLogger();
+        var frenchHello = "Bonjour de Dropwizard !";
+        logger.info(frenchHello);
+
+        LOGSTASH.awaitEventsContain(frenchHello);
+
+        var helloLog = LOGSTASH.recentEvents().stream()
+                .filter(event -> event.contains(frenchHello))
+                .map(JSON_HELPER::toMap)
+                .findFirst()
+                .orElseThrow();
+
+        assertThat(helloLog)
+                .containsEntry("logger_name", "integration-test")
+                .containsEntry("level", "INFO");
+    }
+
+    @Test
+    void shouldRecordLatency_OfLoadEvents() {
+        var logger = DW_APP.getIntegrationTestLogger();
+        logger.info("{} seq={} sentNanos={}", FakeLogstashExtension.LOAD_MARKER, 1, System.nanoTime());
+
+        LOGSTASH.awaitEventsContain(FakeLogstashExtension.LOAD_MARKER);
+
+        assertThat(LOGSTASH.getLoadEventCount()).isPositive();
+        assertThat(LOGSTASH.getLatencyMicros().getCount()).isPositive();
+    }
+}
@@ -0,0 +1,26 @@
+package org.kiwiproject.elk;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+@EnabledForBenchmarks
+@DisplayName("ElkAppender load (lossless tuning profile)")
+class ElkAppenderLosslessProfileLoadTest extends AbstractElkAppenderLoadTest {
+
+    @RegisterExtension
+    static final FakeLogstashExtension LOGSTASH = new FakeLogstashExtension();
+
+    @RegisterExtension
+    static final DropwizardTestAppExtension DW_APP =
+            new DropwizardTestAppExtension("elk-lossless-profile-load-test-config.yml");
+
+    @Override
+    protected FakeLogstashExtension logstash() {
+        return LOGSTASH;
+    }
+
+    @Override
+    protected DropwizardTestAppExtension dwApp() {
+        return DW_APP;
+    }
+}
@@ -0,0 +1,26 @@
+package org.kiwiproject.elk;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+@EnabledForBenchmarks
+@DisplayName("ElkAppender load (throughput tuning profile)")
+class ElkAppenderThroughputProfileLoadTest extends AbstractElkAppenderLoadTest {
+
+    @RegisterExtension
+    static final FakeLogstashExtension LOGSTASH = new FakeLogstashExtension();
+
+    @RegisterExtension
+    static final DropwizardTestAppExtension DW_APP =
+            new DropwizardTestAppExtension("elk-throughput-profile-load-test-config.yml");
+
+    @Override
+    protected FakeLogstashExtension logstash() {
+        return LOGSTASH;
+    }
+
+    @Override
+    protected DropwizardTestAppExtension dwApp() {
+        return DW_APP;
+    }
+}
@@ -0,0 +1,33 @@
+package org.kiwiproject.elk;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.nio.file.Path;
+
+/**
+ * Compare with {@link ElkAppenderTcpLoadTest}, which uses the same load and TCP loopback:
+ * {@code mvn test -Dbenchmarks -Dtest='ElkAppenderTcpLoadTest,ElkAppenderUnixSocketLoadTest'}
+ */
+@EnabledForBenchmarks
+@DisplayName("ElkAppender load (unix-socket)")
+class ElkAppenderUnixSocketLoadTest extends AbstractElkAppenderLoadTest {
+
+    @RegisterExtension
+    static final FakeLogstashExtension LOGSTASH =
+            new FakeLogstashExtension(Path.of("target", "fake-logstash-load-test.sock"));
+
+    @RegisterExtension
+    static final DropwizardTestAppExtension DW_APP =
+            new DropwizardTestAppExtension("elk-unix-socket-load-test-config.yml");
+
+    @Override
+    protected FakeLogstashExtension logstash() {
+        return LOGSTASH;
+    }
+
+    @Override
+    protected DropwizardTestAppExtension dwApp() {
+        return DW_APP;
+    }
+}
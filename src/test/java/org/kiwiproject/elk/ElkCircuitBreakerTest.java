@@ -0,0 +1,259 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.kiwiproject.elk.TestLoggingEvents.newInfoEvent;
+import static org.kiwiproject.elk.TestLoggingEvents.newLoggerContext;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.spi.FilterReply;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+@DisplayName("ElkCircuitBreaker")
+class ElkCircuitBreakerTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(10);
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = new Ticker() {
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+    };
+
+    private ElkCircuitBreaker circuitBreaker;
+    private LoggingEvent event;
+
+    @BeforeEach
+    void setUp() {
+        var loggerContext = newLoggerContext();
+        circuitBreaker = new ElkCircuitBreaker(3, OPEN_DURATION, ticker);
+        circuitBreaker.setContext(loggerContext);
+        event = newInfoEvent(loggerContext);
+    }
+
+    @Test
+    void shouldAllowEvents_WhenClosed() {
+        assertAll(
+                () -> assertThat(circuitBreaker.getState()).isEqualTo(ElkCircuitBreaker.State.CLOSED),
+                () -> assertThat(circuitBreaker.decide(event)).isEqualTo(FilterReply.NEUTRAL)
+        );
+    }
+
+    @Test
+    void shouldOpen_AfterConsecutiveFailures() {
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordSuccess();
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        assertThat(circuitBreaker.getState()).isEqualTo(ElkCircuitBreaker.State.CLOSED);
+
+        circuitBreaker.recordFailure();
+
+        assertAll(
+                () -> assertThat(circuitBreaker.getState()).isEqualTo(ElkCircuitBreaker.State.OPEN),
+                () -> assertThat(circuitBreaker.decide(event)).isEqualTo(FilterReply.DENY),
+                () -> assertThat(circuitBreaker.decide(event)).isEqualTo(FilterReply.DENY),
+                () -> assertThat(circuitBreaker.getRejectedEventCount()).isEqualTo(2)
+        );
+    }
+
+    @Test
+    void shouldNotRejectHeartbeats_WhenOpen() {
+        for (var i = 0; i < 3; i++) {
+            circuitBreaker.recordFailure();
+        }
+        var loggerContext = (LoggerContext) circuitBreaker.getContext();
+        var heartbeat = new LoggingEvent(getClass().getName(),
+                loggerContext.getLogger(LossAccountingFilter.HEARTBEAT_LOGGER_NAME), Level.INFO, "heartbeat", null, null);
+
+        assertAll(
+                () -> assertThat(circuitBreaker.getState()).isEqualTo(ElkCircuitBreaker.State.OPEN),
+                () -> assertThat(circuitBreaker.decide(heartbeat)).isEqualTo(FilterReply.NEUTRAL),
+                () -> assertThat(circuitBreaker.getRejectedEventCount()).isZero()
+        );
+    }
+
+    @Test
+    void shouldAddRejectedEvents_ToTailRing() {
+        var tailRing = new EventTailRing(10, 10_000, false,
+                rejected -> rejected.getFormattedMessage().getBytes(StandardCharsets.UTF_8));
+        circuitBreaker.setTailRing(tailRing);
+
+        circuitBreaker.decide(event);
+        for (var i = 0; i < 3; i++) {
+            circuitBreaker.recordFailure();
+        }
+        circuitBreaker.decide(event);
+
+        assertThat(tailRing.getEvents(entry -> true, 10))
+                .singleElement()
+                .satisfies(entry -> assertThat(new String(entry.encoded(), StandardCharsets.UTF_8))
+                        .isEqualTo("Processed order 42001 for customer customer-12345"));
+    }
+
+    @Nested
+    class WhenOpen {
+
+        @BeforeEach
+        void setUp() {
+            for (var i = 0; i < 3; i++) {
+                circuitBreaker.recordFailure();
+            }
+        }
+
+        @Test
+        void shouldAllowOneProbe_AfterOpenDuration() {
+            advance(OPEN_DURATION.minusMillis(1));
+            assertThat(circuitBreaker.allowEvent()).isFalse();
+
+            advance(Duration.ofMillis(1));
+
+            assertAll(
+                    () -> assertThat(circuitBreaker.allowEvent()).isTrue(),
+                    () -> assertThat(circuitBreaker.getState()).isEqualTo(ElkCircuitBreaker.State.HALF_OPEN),
+                    () -> assertThat(circuitBreaker.allowEvent()).isFalse()
+            );
+
+            advance(OPEN_DURATION);
+            assertThat(circuitBreaker.allowEvent()).isTrue();
+        }
+
+        @Test
+        void shouldClose_WhenProbeSucceeds() {
+            advance(OPEN_DURATION);
+            circuitBreaker.allowEvent();
+
+            circuitBreaker.recordSuccess();
+
+            assertAll(
+                    () -> assertThat(circuitBreaker.getState()).isEqualTo(ElkCircuitBreaker.State.CLOSED),
+                    () -> assertThat(circuitBreaker.allowEvent()).isTrue()
+            );
+        }
+
+        @Test
+        void shouldReopen_WhenProbeFails() {
+            advance(OPEN_DURATION);
+            circuitBreaker.allowEvent();
+
+            circuitBreaker.recordFailure();
+
+            assertAll(
+                    () -> assertThat(circuitBreaker.getState()).isEqualTo(ElkCircuitBreaker.State.OPEN),
+                    () -> assertThat(circuitBreaker.allowEvent()).isFalse()
+            );
+        }
+
+        @Test
+        void shouldClose_WhenTransportRecoversOnItsOwn() {
+            circuitBreaker.newTcpListener().connectionOpened(null, null);
+
+            assertThat(circuitBreaker.getState()).isEqualTo(ElkCircuitBreaker.State.CLOSED);
+        }
+
+        @Test
+        void shouldCountTransitions() {
+            advance(OPEN_DURATION);
+            circuitBreaker.allowEvent();
+            circuitBreaker.recordSuccess();
+
+            var metrics = circuitBreaker.getMetrics();
+            assertAll(
+                    () -> assertThat(((Counter) metrics.get("opened")).getCount()).isOne(),
+                    () -> assertThat(((Counter) metrics.get("halfOpened")).getCount()).isOne(),
+                    () -> assertThat(((Counter) metrics.get("closed")).getCount()).isOne(),
+                    () -> assertThat(((Gauge<?>) metrics.get("state")).getValue()).isEqualTo("CLOSED")
+            );
+        }
+    }
+
+    @Nested
+    class HealthCheck {
+
+        private final ElkAppenderRegistry<ElkCircuitBreaker> breakers = new ElkAppenderRegistry<>();
+        private final ElkCircuitBreakerHealthCheck healthCheck = new ElkCircuitBreakerHealthCheck(breakers);
+
+        @Test
+        void shouldBeHealthy_WhenNotEnabled() {
+            assertThat(healthCheck.execute().isHealthy()).isTrue();
+        }
+
+        @Test
+        void shouldBeHealthy_WhenClosed() {
+            breakers.register("elk", circuitBreaker);
+
+            var result = healthCheck.execute();
+
+            assertAll(
+                    () -> assertThat(result.isHealthy()).isTrue(),
+                    () -> assertThat(result.getMessage()).isEqualTo("Circuit breakers are closed for appenders: elk")
+            );
+        }
+
+        @Test
+        void shouldBeUnhealthy_WhenOpen() {
+            breakers.register("elk", circuitBreaker);
+            openCircuitBreaker();
+
+            var result = healthCheck.execute();
+
+            assertAll(
+                    () -> assertThat(result.isHealthy()).isFalse(),
+                    () -> assertThat(result.getMessage())
+                            .isEqualTo("Circuit breaker of appender elk is OPEN; 1 events have been rejected")
+            );
+        }
+
+        @Test
+        void shouldReportEachAppender() {
+            var auditBreaker = new ElkCircuitBreaker(3, OPEN_DURATION, ticker);
+            breakers.register("audit", auditBreaker);
+            breakers.register("elk", circuitBreaker);
+            openCircuitBreaker();
+
+            var result = healthCheck.execute();
+
+            assertAll(
+                    () -> assertThat(result.isHealthy()).isFalse(),
+                    () -> assertThat(result.getMessage())
+                            .isEqualTo("Circuit breaker of appender elk is OPEN; 1 events have been rejected")
+            );
+        }
+
+        @Test
+        void shouldNotReportAppender_AfterItIsUnregistered() {
+            breakers.register("elk", circuitBreaker);
+            openCircuitBreaker();
+
+            breakers.unregister("elk", circuitBreaker);
+
+            assertThat(healthCheck.execute().isHealthy()).isTrue();
+        }
+
+        private void openCircuitBreaker() {
+            for (var i = 0; i < 3; i++) {
+                circuitBreaker.recordFailure();
+            }
+            circuitBreaker.decide(event);
+        }
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+}
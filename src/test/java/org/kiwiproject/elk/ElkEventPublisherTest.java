@@ -0,0 +1,169 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+@DisplayName("ElkEventPublisher")
+class ElkEventPublisherTest {
+
+    private final ElkEventPublisher publisher = new ElkEventPublisher(Runnable::run, 3);
+
+    static class RecordingSubscriber implements Flow.Subscriber<byte[]> {
+
+        final List<String> received = new CopyOnWriteArrayList<>();
+        final List<Throwable> errors = new CopyOnWriteArrayList<>();
+        Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(byte[] item) {
+            received.add(new String(item, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            errors.add(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            // the publisher never completes
+        }
+    }
+
+    @Test
+    void shouldDeliverEvents_UpToRequestedDemand() {
+        var subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(2);
+
+        publish("a", "b");
+        assertThat(subscriber.received).containsExactly("a", "b");
+
+        publish("c");
+        assertAll(
+                () -> assertThat(subscriber.received).containsExactly("a", "b"),
+                () -> assertThat(publisher.hasDemand()).isFalse()
+        );
+    }
+
+    @Test
+    void shouldNotBuffer_WhenSubscriberHasNoDemand() {
+        var subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        publish("a", "b");
+        subscriber.subscription.request(10);
+        publish("c");
+
+        assertThat(subscriber.received).containsExactly("c");
+    }
+
+    @Test
+    void shouldDropOldestEvents_WhenSubscriberIsSlow() {
+        var asyncPublisher = new ElkEventPublisher(Executors.newSingleThreadExecutor(), 3);
+        var blocked = new CountDownLatch(1);
+        var subscriber = new RecordingSubscriber() {
+            @Override
+            public void onNext(byte[] item) {
+                super.onNext(item);
+                awaitQuietly(blocked);
+            }
+        };
+        asyncPublisher.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        asyncPublisher.publish(bytes("first"));
+        await().until(() -> subscriber.received.size() == 1);
+
+        for (var i = 0; i < 10; i++) {
+            asyncPublisher.publish(bytes("event-" + i));
+        }
+        blocked.countDown();
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> subscriber.received.size() == 4);
+        assertAll(
+                () -> assertThat(subscriber.received).containsExactly("first", "event-7", "event-8", "event-9"),
+                () -> assertThat(asyncPublisher.getDroppedEventCount()).isEqualTo(7)
+        );
+    }
+
+    @Test
+    void shouldStopDelivering_WhenCancelled() {
+        var subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(10);
+
+        publish("a");
+        subscriber.subscription.cancel();
+        publish("b");
+
+        assertAll(
+                () -> assertThat(subscriber.received).containsExactly("a"),
+                () -> assertThat(publisher.getSubscriberCount()).isZero()
+        );
+    }
+
+    @Test
+    void shouldSignalError_WhenRequestIsNotPositive() {
+        var subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        subscriber.subscription.request(0);
+
+        assertAll(
+                () -> assertThat(subscriber.errors).singleElement().isInstanceOf(IllegalArgumentException.class),
+                () -> assertThat(publisher.getSubscriberCount()).isZero()
+        );
+    }
+
+    @Test
+    void shouldDeliverToEachSubscriber_Independently() {
+        var eager = new RecordingSubscriber();
+        var idle = new RecordingSubscriber();
+        publisher.subscribe(eager);
+        publisher.subscribe(idle);
+        eager.subscription.request(Long.MAX_VALUE);
+
+        publish("a", "b");
+
+        assertAll(
+                () -> assertThat(eager.received).containsExactly("a", "b"),
+                () -> assertThat(idle.received).isEmpty()
+        );
+    }
+
+    private void publish(String... events) {
+        for (var event : events) {
+            publisher.publish(bytes(event));
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package org.kiwiproject.elk;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.kiwiproject.elk.TestLoggingEvents.newInfoEvent;
+import static org.kiwiproject.elk.TestLoggingEvents.newLoggerContext;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import io.dropwizard.logging.common.async.AsyncLoggingEventAppenderFactory;
+import io.dropwizard.logging.common.filter.ThresholdLevelFilterFactory;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import net.logstash.logback.appender.LogstashTcpSocketAppender;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+@DisplayName("ElkFlightRecorderEvents")
+class ElkFlightRecorderEventsTest {
+
+    private static final String EVENT_PREFIX = "org.kiwiproject.elk.";
+
+    @RegisterExtension
+    static final FakeLogstashExtension LOGSTASH = new FakeLogstashExtension();
+
+    private static Recording recording;
+
+    @TempDir
+    Path tempDir;
+
+    private LoggerContext loggerContext;
+    private Instant testStart;
+
+    @BeforeAll
+    static void startRecording() {
+        recording = new Recording();
+        List.of("Enqueue", "Encode", "BatchFlush", "SocketWrite", "ConnectionAttempt", "Reconnect", "Drop")
+                .forEach(name -> recording.enable(EVENT_PREFIX + name).withThreshold(Duration.ZERO));
+        recording.start();
+    }
+
+    @AfterAll
+    static void stopRecording() {
+        recording.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        LOGSTASH.reset();
+        loggerContext = newLoggerContext();
+        testStart = Instant.now();
+    }
+
+    @AfterEach
+    void tearDown() {
+        loggerContext.stop();
+    }
+
+    @Test
+    void shouldRecordEachStage_OfSendingOverTcp() {
+        var factory = new ElkAppenderFactory();
+        factory.setHost("localhost");
+        factory.setPort(LOGSTASH.getPort());
+
+        var appender = factory.build(loggerContext, "test-app", null,
+                new ThresholdLevelFilterFactory(), new AsyncLoggingEventAppenderFactory());
+        appender.start();
+        try {
+            appender.doAppend(newInfoEvent(loggerContext));
+            LOGSTASH.awaitEventsContain("Processed order 42001");
+        } finally {
+            appender.stop();
+        }
+
+        var encode = awaitEvents("Encode").get(0);
+        var connectionAttempt = awaitEvents("ConnectionAttempt").get(0);
+        assertAll(
+                () -> assertThat(awaitEvents("Enqueue"))
+                        .extracting(event -> event.getString("loggerName"))
+                        .contains(TestLoggingEvents.LOGGER_NAME),
+                () -> assertThat(encode.getString("loggerName")).isEqualTo(TestLoggingEvents.LOGGER_NAME),
+                () -> assertThat(encode.getLong("size")).isPositive(),
+                () -> assertThat(connectionAttempt.getBoolean("succeeded")).isTrue(),
+                () -> assertThat(connectionAttempt.getString("destination")).endsWith(":" + LOGSTASH.getPort()),
+                () -> assertThat(awaitEvents("SocketWrite"))
+                        .extracting(event -> event.getLong("bytesWritten"))
+                        .allSatisfy(bytesWritten -> assertThat(bytesWritten).isPositive())
+        );
+    }
+
+    @Test
+    void shouldRecordReconnect_SpanningFailedAttempts() throws IOException {
+        var listener = new FlightRecordingTcpListener();
+        var appender = new LogstashTcpSocketAppender();
+        var address = new InetSocketAddress("localhost", LOGSTASH.getPort());
+
+        listener.connectionFailed(appender, address, new IOException("Connection refused"));
+        listener.connectionFailed(appender, address, new IOException("Connection refused"));
+        try (var socket = new Socket(address.getHostString(), address.getPort())) {
+            listener.connectionOpened(appender, socket);
+        }
+
+        var reconnects = awaitEvents("Reconnect");
+
+        assertThat(reconnects).hasSize(1);
+        assertThat(reconnects.get(0).getInt("failedAttempts")).isEqualTo(2);
+    }
+
+    @Test
+    void shouldNotRecordReconnect_ForFirstConnection() throws IOException {
+        var listener = new FlightRecordingTcpListener();
+        try (var socket = new Socket("localhost", LOGSTASH.getPort())) {
+            listener.connectionOpened(new LogstashTcpSocketAppender(), socket);
+        }
+
+        assertThat(getEvents("Reconnect")).isEmpty();
+    }
+
+    @Test
+    void shouldRecordDrops() throws IOException {
+        var event = newInfoEvent(loggerContext);
+        new FlightRecordingTcpListener().eventAppendFailed(new LogstashTcpSocketAppender(), event,
+                new IllegalStateException("full"));
+        ElkFlightRecorderEvents.recordDrop(ElkFlightRecorderEvents.TRANSPORT_STAGE, "batch failed", 25);
+
+        assertThat(getEvents("Drop"))
+                .extracting(drop -> drop.getString("reason"), drop -> drop.getString("loggerName"),
+                        drop -> drop.getInt("eventCount"))
+                .containsExactly(
+                        tuple("ring buffer full", TestLoggingEvents.LOGGER_NAME, 1),
+                        tuple("batch failed", null, 25));
+    }
+
+    @Test
+    void shouldRecordDrops_ByAsyncAppender_WhenQueueIsFull() {
+        var blockingAppender = new BlockingAppender();
+        blockingAppender.setContext(loggerContext);
+        blockingAppender.start();
+
+        var asyncAppender = new FlightRecordingAsyncAppender();
+        asyncAppender.setContext(loggerContext);
+        asyncAppender.setQueueSize(1);
+        asyncAppender.setDiscardingThreshold(0);
+        asyncAppender.setNeverBlock(true);
+        asyncAppender.addAppender(blockingAppender);
+        asyncAppender.start();
+        try {
+            for (var i = 0; i < 5; i++) {
+                asyncAppender.doAppend(newInfoEvent(loggerContext));
+            }
+        } finally {
+            blockingAppender.release();
+            asyncAppender.stop();
+        }
+
+        assertThat(awaitEvents("Drop"))
+                .extracting(drop -> drop.getString("stage"), drop -> drop.getString("reason"))
+                .contains(tuple("asyncQueue", "queue full"));
+    }
+
+    @Test
+    void shouldRecordBatchFlush() throws IOException {
+        var ringFile = tempDir.resolve("events.ring");
+        try (var ring = SharedMemoryRing.open(ringFile, 64 * 1024)) {
+            ring.offer("{\"message\":\"forwarded\"}\n".getBytes(UTF_8));
+
+            var forwarder = new ElkRingForwarder(ring, ElkRingForwarder.lockFileFor(ringFile), "localhost",
+                    LOGSTASH.getPort(), ElkRingForwarder.DEFAULT_MAX_BATCH_BYTES);
+            forwarder.setContext(loggerContext);
+            forwarder.start();
+            try {
+                LOGSTASH.awaitEventsContain("forwarded");
+            } finally {
+                forwarder.stop();
+            }
+        }
+
+        var flushes = awaitEvents("BatchFlush");
+
+        assertAll(
+                () -> assertThat(flushes.get(0).getString("transport")).isEqualTo("shared-memory"),
+                () -> assertThat(flushes.get(0).getInt("eventCount")).isOne(),
+                () -> assertThat(flushes.get(0).getBoolean("succeeded")).isTrue()
+        );
+    }
+
+    /**
+     * Wait until at least one event with the given name has been recorded since the test started.
+     * Events are committed by the appender's threads, so they may be recorded after Logstash
+     * has received the events they are about.
+     *
+     * @return the events with the given name recorded so far
+     */
+    private List<RecordedEvent> awaitEvents(String name) {
+        return await().until(() -> getEvents(name), events -> !events.isEmpty());
+    }
+
+    private List<RecordedEvent> getEvents(String name) throws IOException {
+        var file = tempDir.resolve("recording.jfr");
+        recording.dump(file);
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals(EVENT_PREFIX + name))
+                .filter(event -> !event.getStartTime().isBefore(testStart))
+                .toList();
+    }
+
+    /**
+     * Blocks the async appender's worker on the first event, so that its queue fills up.
+     */
+    private static class BlockingAppender extends AppenderBase<ILoggingEvent> {
+
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void release() {
+            released.countDown();
+        }
+    }
+}
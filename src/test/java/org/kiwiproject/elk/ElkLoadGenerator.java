@@ -0,0 +1,146 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logs events at a fixed rate from several threads, then waits for a {@link FakeLogstashExtension}
+ * to receive them, and reports the results.
+ * <p>
+ * Each thread sends at an equal share of the total rate. If a thread falls behind schedule (e.g.
+ * because the appender is blocking), it sends as fast as it can until it catches up, so the
+ * sustained rate shows what the appender can actually keep up with.
+ */
+@Slf4j
+@Builder
+class ElkLoadGenerator {
+
+    private final Logger logger;
+    private final FakeLogstashExtension logstash;
+    private final int eventsPerSecond;
+    private final int threads;
+    private final Duration duration;
+
+    /**
+     * The results of a load run.
+     *
+     * @param sent               the number of events logged
+     * @param received           the number of those events received by the fake Logstash
+     * @param dropped            the number of events logged but never received
+     * @param sustainedPerSecond events received per second, from the start of the run until the last was received
+     * @param bytesPerEvent      the average bytes received per event
+     * @param latencyMicrosP50   the median end-to-end latency in microseconds
+     * @param latencyMicrosP99   the 99th percentile end-to-end latency in microseconds
+     * @param latencyMicrosP999  the 99.9th percentile end-to-end latency in microseconds
+     * @param latencyMicrosMax   the maximum end-to-end latency in microseconds
+     * @param gcCount            the number of garbage collections during the run
+     * @param gcMillis           the total time spent in garbage collection during the run
+     */
+    record Result(long sent,
+                  long received,
+                  long dropped,
+                  long sustainedPerSecond,
+                  long bytesPerEvent,
+                  double latencyMicrosP50,
+                  double latencyMicrosP99,
+                  double latencyMicrosP999,
+                  long latencyMicrosMax,
+                  long gcCount,
+                  long gcMillis) {
+
+        String format(String name) {
+            return String.format("%s: sent=%d received=%d dropped=%d sustained=%d/s bytes/event=%d" +
+                            " latency(us) p50=%.0f p99=%.0f p99.9=%.0f max=%d gc=%d (%d ms)",
+                    name, sent, received, dropped, sustainedPerSecond, bytesPerEvent,
+                    latencyMicrosP50, latencyMicrosP99, latencyMicrosP999, latencyMicrosMax, gcCount, gcMillis);
+        }
+    }
+
+    /**
+     * Run the load, then wait for the fake Logstash to stop receiving events.
+     */
+    Result run() throws InterruptedException {
+        checkArgument(eventsPerSecond > 0, "eventsPerSecond must be positive");
+        checkArgument(threads > 0, "threads must be positive");
+
+        logstash.reset();
+        var gcCountBefore = totalGcCount();
+        var gcMillisBefore = totalGcMillis();
+        var sent = new AtomicLong();
+
+        var intervalNanos = TimeUnit.SECONDS.toNanos(1) * threads / eventsPerSecond;
+        var eventsPerThread = duration.toNanos() / intervalNanos;
+        var startNanos = System.nanoTime();
+
+        var executor = Executors.newFixedThreadPool(threads);
+        var futures = new ArrayList<Future<?>>();
+        for (var t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                for (var i = 0L; i < eventsPerThread; i++) {
+                    var scheduledNanos = startNanos + i * intervalNanos;
+                    var waitNanos = scheduledNanos - System.nanoTime();
+                    if (waitNanos > 0) {
+                        LockSupport.parkNanos(waitNanos);
+                    }
+                    logger.info("{} seq={} sentNanos={}", FakeLogstashExtension.LOAD_MARKER, sent.incrementAndGet(), System.nanoTime());
+                }
+            }));
+        }
+
+        executor.shutdown();
+        for (var future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Load thread failed", e.getCause());
+            }
+        }
+
+        logstash.awaitQuiet(Duration.ofSeconds(2), duration.plusSeconds(30));
+
+        var received = logstash.getLoadEventCount();
+        var elapsedNanos = Math.max(1, logstash.getLastReceivedNanos() - startNanos);
+        var snapshot = logstash.getLatencyMicros().getSnapshot();
+        var totalEvents = Math.max(1, logstash.getEventCount());
+
+        return new Result(sent.get(),
+                received,
+                sent.get() - received,
+                received * TimeUnit.SECONDS.toNanos(1) / elapsedNanos,
+                logstash.getByteCount() / totalEvents,
+                snapshot.getMedian(),
+                snapshot.get99thPercentile(),
+                snapshot.get999thPercentile(),
+                snapshot.getMax(),
+                totalGcCount() - gcCountBefore,
+                totalGcMillis() - gcMillisBefore);
+    }
+
+    private static long totalGcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+                .filter(count -> count > 0)
+                .sum();
+    }
+
+    private static long totalGcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+                .filter(millis -> millis > 0)
+                .sum();
+    }
+}
@@ -0,0 +1,92 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+
+@DisplayName("ElkLoggerStatsTask")
+class ElkLoggerStatsTaskTest {
+
+    private final ElkAppenderRegistry<LoggerStats> allStats = new ElkAppenderRegistry<>();
+    private final ElkLoggerStatsTask task = new ElkLoggerStatsTask(allStats);
+
+    @Test
+    void shouldReport_WhenStatsAreNotEnabled() {
+        var output = execute(Map.of());
+
+        assertThat(output).contains("Logger stats are not enabled");
+    }
+
+    @Test
+    void shouldPrintTopLoggers_UpToLimit() {
+        var stats = new LoggerStats(10);
+        stats.record("org.acme.Big", 1_000);
+        stats.record("org.acme.Medium", 500);
+        stats.record("org.acme.Small", 10);
+        allStats.register("elk", stats);
+
+        var output = execute(Map.of("limit", List.of("2")));
+
+        assertThat(output)
+                .contains("Total: 3 events, 1510 bytes")
+                .contains("org.acme.Big", "org.acme.Medium")
+                .doesNotContain("org.acme.Small");
+        assertThat(output.indexOf("org.acme.Big")).isLessThan(output.indexOf("org.acme.Medium"));
+    }
+
+    @Test
+    void shouldResetStats_WhenRequested() {
+        var stats = new LoggerStats(10);
+        stats.record("org.acme.Big", 1_000);
+        allStats.register("elk", stats);
+
+        var output = execute(Map.of("reset", List.of("true")));
+
+        assertThat(output).contains("org.acme.Big").contains("Stats were reset");
+        assertThat(stats.getTotalEvents()).isZero();
+    }
+
+    @Test
+    void shouldPrintStatsOfEachAppender_WithHeaders() {
+        var auditStats = new LoggerStats(10);
+        auditStats.record("org.acme.Audit", 200);
+        allStats.register("audit", auditStats);
+        var stats = new LoggerStats(10);
+        stats.record("org.acme.Big", 1_000);
+        allStats.register("elk", stats);
+
+        var output = execute(Map.of());
+
+        assertThat(output).containsSubsequence("==> audit <==", "org.acme.Audit", "==> elk <==", "org.acme.Big");
+    }
+
+    @Test
+    void shouldPrintStatsOfSelectedAppender() {
+        var auditStats = new LoggerStats(10);
+        auditStats.record("org.acme.Audit", 200);
+        allStats.register("audit", auditStats);
+        var stats = new LoggerStats(10);
+        stats.record("org.acme.Big", 1_000);
+        allStats.register("elk", stats);
+
+        var output = execute(Map.of("appender", List.of("elk")));
+
+        assertThat(output)
+                .contains("org.acme.Big")
+                .doesNotContain("org.acme.Audit", "==>");
+    }
+
+    private String execute(Map<String, List<String>> parameters) {
+        var stringWriter = new StringWriter();
+        try (var writer = new PrintWriter(stringWriter)) {
+            task.execute(parameters, writer);
+        }
+        return stringWriter.toString();
+    }
+}
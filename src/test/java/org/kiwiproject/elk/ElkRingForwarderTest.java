@@ -0,0 +1,171 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.awaitility.Awaitility.await;
+
+import ch.qos.logback.classic.LoggerContext;
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@DisplayName("ElkRingForwarder")
+class ElkRingForwarderTest {
+
+    @RegisterExtension
+    static final FakeLogstashExtension LOGSTASH = new FakeLogstashExtension();
+
+    @TempDir
+    Path tempDir;
+
+    private final AtomicLong nanos = new AtomicLong(1);
+    private final Ticker ticker = new Ticker() {
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+    };
+
+    private Path ringFile;
+    private SharedMemoryRing ring;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        LOGSTASH.reset();
+        ringFile = tempDir.resolve("test.ring");
+        ring = SharedMemoryRing.open(ringFile, 64 * 1024);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        ring.close();
+    }
+
+    @Test
+    void shouldForwardEvents_ToLogstash() {
+        var forwarder = newForwarder(ring);
+        forwarder.start();
+        try {
+            ring.offer(bytes("{\"message\":\"forwarded-1\"}\n"));
+            ring.offer(bytes("{\"message\":\"forwarded-2\"}\n"));
+
+            LOGSTASH.awaitEventsContain("forwarded-1", "forwarded-2");
+            await().atMost(5, TimeUnit.SECONDS).until(() -> ring.getReadPosition() == ring.getWritePosition());
+        } finally {
+            forwarder.stop();
+        }
+    }
+
+    @Test
+    void shouldElectOneForwarder_AndFailOver_WhenItStops() throws IOException {
+        try (var otherRing = SharedMemoryRing.open(ringFile, 64 * 1024)) {
+            var first = newForwarder(ring);
+            var second = newForwarder(otherRing);
+            first.start();
+            await().atMost(5, TimeUnit.SECONDS).until(first::isElected);
+            second.start();
+
+            try {
+                ring.offer(bytes("{\"message\":\"before-failover\"}\n"));
+                LOGSTASH.awaitEventsContain("before-failover");
+                assertThat(second.isElected()).isFalse();
+
+                first.stop();
+                await().atMost(5, TimeUnit.SECONDS).until(second::isElected);
+
+                ring.offer(bytes("{\"message\":\"after-failover\"}\n"));
+                LOGSTASH.awaitEventsContain("after-failover");
+                assertThat(second.getForwardedEventCount()).isOne();
+            } finally {
+                first.stop();
+                second.stop();
+            }
+        }
+    }
+
+    @Test
+    void shouldSkipClaimedRecord_WhenItsClaimantIsNoLongerRunning() {
+        var current = SharedMemoryRing.Claimant.CURRENT;
+        ring.claim(10, new SharedMemoryRing.Claimant(current.pid(), current.startTime() - 1));
+        ring.offer(bytes("{\"message\":\"after-abandoned\"}\n"));
+
+        var forwarder = newForwarder(ring);
+        forwarder.start();
+        try {
+            await().atMost(5, TimeUnit.SECONDS).until(() -> {
+                nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+                return forwarder.getSkippedEventCount() == 1;
+            });
+
+            LOGSTASH.awaitEventsContain("after-abandoned");
+        } finally {
+            forwarder.stop();
+        }
+    }
+
+    @Test
+    void shouldSkipReservedRecord_WhenItsProducerCrashedBeforeRecordingItself() {
+        ring.reserve(10);
+        ring.offer(bytes("{\"message\":\"after-reserved\"}\n"));
+
+        var forwarder = newForwarder(ring);
+        forwarder.start();
+        try {
+            await().atMost(5, TimeUnit.SECONDS).until(() -> {
+                nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+                return forwarder.getSkippedEventCount() == 1;
+            });
+
+            LOGSTASH.awaitEventsContain("after-reserved");
+        } finally {
+            forwarder.stop();
+        }
+    }
+
+    @Test
+    void shouldNotSkipClaimedRecord_WhileItsClaimantIsRunning() throws InterruptedException {
+        ring.claim(10, SharedMemoryRing.Claimant.CURRENT);
+        ring.offer(bytes("{\"message\":\"after-claimed\"}\n"));
+
+        var forwarder = newForwarder(ring);
+        forwarder.start();
+        try {
+            await().atMost(5, TimeUnit.SECONDS).until(forwarder::isElected);
+            for (var i = 0; i < 20; i++) {
+                nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+                Thread.sleep(20);
+            }
+
+            assertAll(
+                    () -> assertThat(forwarder.getSkippedEventCount()).isZero(),
+                    () -> assertThat(forwarder.getForwardedEventCount()).isZero(),
+                    () -> assertThat(ring.getClaimedRecord()).isNotNull()
+            );
+        } finally {
+            forwarder.stop();
+        }
+    }
+
+    private ElkRingForwarder newForwarder(SharedMemoryRing sharedMemoryRing) {
+        var forwarder = new ElkRingForwarder(sharedMemoryRing, ElkRingForwarder.lockFileFor(ringFile),
+                InetAddress.getLoopbackAddress().getHostAddress(), LOGSTASH.getPort(),
+                ElkRingForwarder.DEFAULT_MAX_BATCH_BYTES, ticker);
+        forwarder.setContext(new LoggerContext());
+        return forwarder;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,111 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+import ch.qos.logback.classic.Level;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+@DisplayName("ElkTailTask")
+class ElkTailTaskTest {
+
+    private final ElkAppenderRegistry<EventTailRing> rings = new ElkAppenderRegistry<>();
+    private final ElkTailTask task = new ElkTailTask(rings);
+
+    @Test
+    void shouldReport_WhenTailIsNotEnabled() {
+        var output = execute(Map.of());
+
+        assertThat(output).contains("The event tail is not enabled");
+    }
+
+    @Test
+    void shouldPrintEvents_FilteredByLevelAndLogger() {
+        var ring = newRing(false);
+        add(ring, Level.DEBUG, "org.acme.A", "{\"message\":\"debug\"}\n");
+        add(ring, Level.WARN, "org.acme.A", "{\"message\":\"warn\"}\n");
+        add(ring, Level.ERROR, "org.other.B", "{\"message\":\"error\"}\n");
+        rings.register("elk", ring);
+
+        var output = execute(Map.of("level", List.of("INFO"), "logger", List.of("org.acme")));
+
+        assertThat(output).isEqualTo("{\"message\":\"warn\"}" + System.lineSeparator());
+    }
+
+    @Test
+    void shouldPrintBinaryEvents_AsBase64() {
+        var ring = newRing(true);
+        add(ring, Level.INFO, "org.acme.A", "\u0001\u0002\u0003");
+        rings.register("elk", ring);
+
+        var output = execute(Map.of());
+
+        assertThat(output).isEqualTo("AQID" + System.lineSeparator());
+    }
+
+    @Test
+    void shouldLimitToNewestEvents() {
+        var ring = newRing(false);
+        for (var i = 0; i < 5; i++) {
+            add(ring, Level.INFO, "org.acme.A", "event-" + i);
+        }
+        rings.register("elk", ring);
+
+        var output = execute(Map.of("limit", List.of("2")));
+
+        assertThat(output.lines()).containsExactly("event-3", "event-4");
+    }
+
+    @Test
+    void shouldPrintEventsOfEachAppender_WithHeaders() {
+        var auditRing = newRing(false);
+        add(auditRing, Level.INFO, "org.acme.Audit", "audit-event");
+        rings.register("audit", auditRing);
+        var ring = newRing(false);
+        add(ring, Level.INFO, "org.acme.A", "elk-event");
+        rings.register("elk", ring);
+
+        var output = execute(Map.of());
+
+        assertThat(output.lines()).containsExactly("==> audit <==", "audit-event", "==> elk <==", "elk-event");
+    }
+
+    @Test
+    void shouldPrintEventsOfSelectedAppender() {
+        var auditRing = newRing(false);
+        add(auditRing, Level.INFO, "org.acme.Audit", "audit-event");
+        rings.register("audit", auditRing);
+        var ring = newRing(false);
+        add(ring, Level.INFO, "org.acme.A", "elk-event");
+        rings.register("elk", ring);
+
+        assertAll(
+                () -> assertThat(execute(Map.of("appender", List.of("audit"))).lines()).containsExactly("audit-event"),
+                () -> assertThat(execute(Map.of("appender", List.of("other"))))
+                        .contains("The event tail is not enabled for appender other")
+        );
+    }
+
+    private static EventTailRing newRing(boolean binary) {
+        return new EventTailRing(10, 10_000, binary, event -> event.getMessage().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void add(EventTailRing ring, Level level, String loggerName, String encoded) {
+        ring.add(System.currentTimeMillis(), level, loggerName, encoded.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String execute(Map<String, List<String>> parameters) {
+        var stringWriter = new StringWriter();
+        try (var writer = new PrintWriter(stringWriter)) {
+            task.execute(parameters, writer);
+        }
+        return stringWriter.toString();
+    }
+}
@@ -0,0 +1,65 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@DisplayName("ElkThreads")
+class ElkThreadsTest {
+
+    @Test
+    void shouldCreateNamedDaemonPlatformThreads() throws InterruptedException {
+        var ran = new CountDownLatch(1);
+        var thread = ElkThreads.newThread(false, "elk-test-sender", ran::countDown);
+        thread.start();
+
+        assertAll(
+                () -> assertThat(thread.getName()).isEqualTo("elk-test-sender"),
+                () -> assertThat(thread.isDaemon()).isTrue(),
+                () -> assertThat(isVirtual(thread)).isFalse(),
+                () -> assertThat(ran.await(5, TimeUnit.SECONDS)).isTrue()
+        );
+    }
+
+    @Test
+    @EnabledForJreRange(max = JRE.JAVA_20)
+    void shouldRejectVirtualThreads_WhenUnsupported() {
+        assertAll(
+                () -> assertThat(ElkThreads.isVirtualThreadSupported()).isFalse(),
+                () -> assertThatIllegalStateException()
+                        .isThrownBy(() -> ElkThreads.newThreadFactory(true, "elk-test"))
+                        .withMessage("virtual threads are not supported by this JVM")
+        );
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void shouldCreateNamedVirtualThreads_WhenSupported() throws InterruptedException {
+        var ran = new CountDownLatch(1);
+        var thread = ElkThreads.newThread(true, "elk-test-sender", ran::countDown);
+        thread.start();
+
+        assertAll(
+                () -> assertThat(ElkThreads.isVirtualThreadSupported()).isTrue(),
+                () -> assertThat(thread.getName()).isEqualTo("elk-test-sender"),
+                () -> assertThat(thread.isDaemon()).isTrue(),
+                () -> assertThat(isVirtual(thread)).isTrue(),
+                () -> assertThat(ran.await(5, TimeUnit.SECONDS)).isTrue()
+        );
+    }
+
+    /**
+     * {@code Thread.isVirtual()} does not exist in Java 17, which the tests are compiled for.
+     */
+    static boolean isVirtual(Thread thread) {
+        return thread.getClass().getName().equals("java.lang.VirtualThread");
+    }
+}
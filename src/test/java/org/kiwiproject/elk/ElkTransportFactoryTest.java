@@ -0,0 +1,92 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.kiwiproject.test.assertj.KiwiAssertJ.assertIsExactType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.logging.common.AppenderFactory;
+import io.dropwizard.util.DataSize;
+import io.dropwizard.util.Duration;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+@DisplayName("ElkTransportFactory")
+class ElkTransportFactoryTest {
+
+    private static final ObjectMapper YAML_MAPPER = Jackson.newObjectMapper(new YAMLFactory());
+
+    @ParameterizedTest
+    @CsvSource({
+            "tcp, org.kiwiproject.elk.TcpTransportFactory",
+            "udp, org.kiwiproject.elk.UdpTransportFactory",
+            "http, org.kiwiproject.elk.HttpTransportFactory",
+            "file, org.kiwiproject.elk.FileTransportFactory",
+            "memory, org.kiwiproject.elk.MemoryTransportFactory",
+            "shared-memory, org.kiwiproject.elk.SharedMemoryTransportFactory",
+            "unix-socket, org.kiwiproject.elk.UnixSocketTransportFactory"
+    })
+    void shouldDiscoverTransports_ByType(String type, Class<?> expectedClass) throws Exception {
+        var yaml = """
+                type: elk
+                transport:
+                  type: %s
+                """.formatted(type);
+
+        var factory = assertIsExactType(YAML_MAPPER.readValue(yaml, AppenderFactory.class), ElkAppenderFactory.class);
+
+        assertThat(factory.getTransport()).isExactlyInstanceOf(expectedClass);
+    }
+
+    @Test
+    void shouldBindTransportProperties() throws Exception {
+        var yaml = """
+                type: elk
+                payloadProfile: minimal
+                transport:
+                  type: file
+                  currentLogFilename: /var/log/acme/elk.ndjson
+                  archivedFileCount: 3
+                  maxFileSize: 10MiB
+                """;
+
+        var factory = assertIsExactType(YAML_MAPPER.readValue(yaml, AppenderFactory.class), ElkAppenderFactory.class);
+
+        var transport = assertIsExactType(factory.getTransport(), FileTransportFactory.class);
+        assertAll(
+                () -> assertThat(factory.getPayloadProfile()).isEqualTo(ElkPayloadProfile.MINIMAL),
+                () -> assertThat(transport.getCurrentLogFilename()).isEqualTo("/var/log/acme/elk.ndjson"),
+                () -> assertThat(transport.getArchivedFileCount()).isEqualTo(3),
+                () -> assertThat(transport.getMaxFileSize()).isEqualTo(DataSize.mebibytes(10))
+        );
+    }
+
+    @Test
+    void shouldBindTcpConnectionProperties() throws Exception {
+        var yaml = """
+                type: elk
+                transport:
+                  type: tcp
+                  keepAliveInterval: 4m
+                  maxConnectionAge: 1h
+                  connections: 4
+                  distribution: mdc
+                  distributionKey: tenantId
+                """;
+
+        var factory = assertIsExactType(YAML_MAPPER.readValue(yaml, AppenderFactory.class), ElkAppenderFactory.class);
+
+        var transport = assertIsExactType(factory.getTransport(), TcpTransportFactory.class);
+        assertAll(
+                () -> assertThat(transport.getKeepAliveInterval()).isEqualTo(Duration.minutes(4)),
+                () -> assertThat(transport.getMaxConnectionAge()).isEqualTo(Duration.hours(1)),
+                () -> assertThat(transport.getConnections()).isEqualTo(4),
+                () -> assertThat(transport.getDistribution()).isEqualTo(ElkConnectionDistribution.MDC),
+                () -> assertThat(transport.getDistributionKey()).isEqualTo("tenantId")
+        );
+    }
+}
@@ -0,0 +1,99 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.kiwiproject.elk.TestLoggingEvents.newInfoEvent;
+import static org.kiwiproject.elk.TestLoggingEvents.newLoggerContext;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import net.logstash.logback.encoder.LogstashEncoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Map;
+
+@DisplayName("EncoderUdpSocketAppender")
+class EncoderUdpSocketAppenderTest {
+
+    private LoggerContext loggerContext;
+    private DatagramSocket receiver;
+    private EncoderUdpSocketAppender<ILoggingEvent> appender;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        loggerContext = newLoggerContext();
+        receiver = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        receiver.setSoTimeout(5_000);
+
+        var encoder = new LogstashEncoder();
+        encoder.setDataFormat(ElkEncoding.CBOR.getDataFormat());
+        encoder.setLineSeparator(null);
+
+        appender = new EncoderUdpSocketAppender<>();
+        appender.setContext(loggerContext);
+        appender.setHost(InetAddress.getLoopbackAddress().getHostAddress());
+        appender.setPort(receiver.getLocalPort());
+        appender.setEncoder(encoder);
+        appender.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        appender.stop();
+        receiver.close();
+    }
+
+    @Test
+    void shouldSendEachEvent_InItsOwnDatagram() throws IOException {
+        var event = newInfoEvent(loggerContext);
+
+        appender.doAppend(event);
+
+        var packet = new DatagramPacket(new byte[EncoderUdpSocketAppender.MAX_DATAGRAM_SIZE], EncoderUdpSocketAppender.MAX_DATAGRAM_SIZE);
+        receiver.receive(packet);
+
+        var bytes = Arrays.copyOf(packet.getData(), packet.getLength());
+        var decoded = new CBORMapper().readValue(bytes, Map.class);
+        assertThat(decoded)
+                .containsEntry("message", event.getFormattedMessage())
+                .containsEntry("logger_name", event.getLoggerName());
+    }
+
+    @Test
+    void shouldReleaseBuffers_AfterSending() throws IOException {
+        var bufferPool = new DirectBufferPool(DirectBufferPool.DEFAULT_MAX_POOLED_BYTES);
+        appender.setBufferPool(bufferPool);
+        var packet = new DatagramPacket(new byte[EncoderUdpSocketAppender.MAX_DATAGRAM_SIZE], EncoderUdpSocketAppender.MAX_DATAGRAM_SIZE);
+
+        appender.doAppend(newInfoEvent(loggerContext));
+        receiver.receive(packet);
+        appender.doAppend(newInfoEvent(loggerContext));
+        receiver.receive(packet);
+
+        assertAll(
+                () -> assertThat(bufferPool.getHitCount()).isPositive(),
+                () -> assertThat(bufferPool.getPooledBytes()).isPositive()
+        );
+    }
+
+    @Test
+    void shouldNotStart_WhenNoEncoder() {
+        var noEncoderAppender = new EncoderUdpSocketAppender<ILoggingEvent>();
+        noEncoderAppender.setContext(loggerContext);
+        noEncoderAppender.setHost("localhost");
+        noEncoderAppender.setPort(receiver.getLocalPort());
+
+        noEncoderAppender.start();
+
+        assertThat(noEncoderAppender.isStarted()).isFalse();
+    }
+}
@@ -0,0 +1,161 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@DisplayName("EventTailRing")
+class EventTailRingTest {
+
+    @Test
+    void shouldKeepNewestEvents_UpToCapacity() {
+        var ring = newRing(3, 1_000);
+
+        for (var i = 0; i < 5; i++) {
+            add(ring, "event-" + i);
+        }
+
+        assertAll(
+                () -> assertThat(messages(ring)).containsExactly("event-2", "event-3", "event-4"),
+                () -> assertThat(ring.getTotalBytes()).isEqualTo(21)
+        );
+    }
+
+    @Test
+    void shouldEvictOldestEvents_WhenByteLimitIsExceeded() {
+        var ring = newRing(10, 20);
+
+        add(ring, "aaaaaaaa");
+        add(ring, "bbbbbbbb");
+        add(ring, "cccccccc");
+
+        assertAll(
+                () -> assertThat(messages(ring)).containsExactly("bbbbbbbb", "cccccccc"),
+                () -> assertThat(ring.getTotalBytes()).isEqualTo(16)
+        );
+    }
+
+    @Test
+    void shouldNotAddEvents_LargerThanByteLimit() {
+        var ring = newRing(10, 4);
+
+        add(ring, "abc");
+        add(ring, "too large");
+
+        assertThat(messages(ring)).containsExactly("abc");
+    }
+
+    @Test
+    void shouldFilterAndLimitEvents() {
+        var ring = newRing(10, 1_000);
+        ring.add(1, Level.INFO, "org.acme.A", bytes("a1"));
+        ring.add(2, Level.WARN, "org.acme.B", bytes("b1"));
+        ring.add(3, Level.WARN, "org.acme.A", bytes("a2"));
+        ring.add(4, Level.ERROR, "org.acme.A", bytes("a3"));
+
+        var events = ring.getEvents(entry -> entry.loggerName().equals("org.acme.A"), 2);
+
+        assertThat(events)
+                .extracting(EventTailRing.Entry::timestamp, EventTailRing.Entry::level)
+                .containsExactly(
+                        tuple(3L, Level.WARN),
+                        tuple(4L, Level.ERROR));
+    }
+
+    @Test
+    void shouldEncodeAndAddRejectedEvents_AtOrAboveThreshold() {
+        var ring = newRing(10, 1_000);
+        ring.setThreshold(Level.INFO);
+
+        ring.addRejected(event(Level.DEBUG, "debug"));
+        ring.addRejected(event(Level.INFO, "info"));
+        ring.addRejected(event(Level.ERROR, "error"));
+
+        assertAll(
+                () -> assertThat(messages(ring)).containsExactly("info", "error"),
+                () -> assertThat(ring.getEvents(entry -> true, Integer.MAX_VALUE))
+                        .extracting(EventTailRing.Entry::level, EventTailRing.Entry::loggerName)
+                        .containsExactly(
+                                tuple(Level.INFO, "org.acme.Logger"),
+                                tuple(Level.ERROR, "org.acme.Logger")),
+                () -> assertThat(ring.getTotalBytes()).isEqualTo(9)
+        );
+    }
+
+    @Test
+    void shouldStayWithinLimits_WhenAddingConcurrently() throws InterruptedException {
+        var ring = newRing(64, 2_000);
+
+        var executor = Executors.newFixedThreadPool(4);
+        for (var thread = 0; thread < 4; thread++) {
+            executor.execute(() -> {
+                for (var i = 0; i < 10_000; i++) {
+                    add(ring, "x".repeat(i % 100));
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        var events = ring.getEvents(entry -> true, Integer.MAX_VALUE);
+        var bytesInRing = events.stream().mapToLong(entry -> entry.encoded().length).sum();
+        assertAll(
+                () -> assertThat(events).hasSizeLessThanOrEqualTo(64),
+                () -> assertThat(ring.getTotalBytes()).isEqualTo(bytesInRing),
+                () -> assertThat(bytesInRing).isLessThanOrEqualTo(2_000)
+        );
+    }
+
+    @Test
+    void shouldRemoveAllEvents_WhenCleared() {
+        var ring = newRing(3, 1_000);
+        add(ring, "a");
+        add(ring, "b");
+
+        ring.clear();
+
+        assertAll(
+                () -> assertThat(messages(ring)).isEmpty(),
+                () -> assertThat(ring.getTotalBytes()).isZero()
+        );
+    }
+
+    private static EventTailRing newRing(int capacity, long maxBytes) {
+        return new EventTailRing(capacity, maxBytes, false,
+                event -> event.getFormattedMessage().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static LoggingEvent event(Level level, String message) {
+        var loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        return new LoggingEvent(EventTailRingTest.class.getName(), loggerContext.getLogger("org.acme.Logger"),
+                level, message, null, null);
+    }
+
+    private static void add(EventTailRing ring, String message) {
+        ring.add(System.currentTimeMillis(), Level.INFO, "org.acme.Logger", bytes(message));
+    }
+
+    private static List<String> messages(EventTailRing ring) {
+        return ring.getEvents(entry -> true, Integer.MAX_VALUE)
+                .stream()
+                .map(entry -> new String(entry.encoded(), StandardCharsets.UTF_8))
+                .toList();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
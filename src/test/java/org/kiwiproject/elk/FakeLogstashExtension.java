@@ -0,0 +1,362 @@
+package org.kiwiproject.elk;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.SlidingWindowReservoir;
+import lombok.extern.slf4j.Slf4j;
+import org.awaitility.Durations;
+import org.jspecify.annotations.NonNull;
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-JVM stand-in for Logstash, which accepts newline-delimited events over TCP and single
+ * events per datagram over UDP, on the same port number, and optionally newline-delimited events
+ * over a Unix domain socket. It counts and timestamps the events
+ * it receives, and keeps the most recent ones. Unlike {@link LogstashContainerExtension} it does
+ * not need Docker, starts instantly, and is fast enough to measure throughput.
+ * <p>
+ * Events whose message contains {@value #LOAD_MARKER} are counted separately, and when they also
+ * contain {@code sentNanos=<System.nanoTime()>}, the end-to-end latency is recorded. Since the
+ * server runs in the same JVM as the application, the sender's and receiver's clocks agree.
+ * <p>
+ * This extension sets the system properties required by {@link org.kiwiproject.config.provider.ElkLoggerConfigProvider}
+ * before all tests run, and clears them after all tests complete.
+ */
+@Slf4j
+public class FakeLogstashExtension implements BeforeAllCallback, AfterAllCallback {
+
+    /**
+     * Marks the events sent by {@link ElkLoadGenerator}.
+     */
+    static final String LOAD_MARKER = "elk-load-test";
+
+    private static final String SENT_NANOS_PREFIX = "sentNanos=";
+    private static final int RECENT_EVENT_COUNT = 1_000;
+    private static final int LATENCY_SAMPLE_COUNT = 1_000_000;
+    private static final int MAX_BIND_ATTEMPTS = 10;
+
+    private final LongAdder eventCount = new LongAdder();
+    private final LongAdder loadEventCount = new LongAdder();
+    private final LongAdder byteCount = new LongAdder();
+    private final AtomicLong lastReceivedNanos = new AtomicLong();
+    private final BlockingQueue<String> recentEvents = new ArrayBlockingQueue<>(RECENT_EVENT_COUNT);
+    private volatile Histogram latencyMicros = newLatencyHistogram();
+
+    private final Path unixSocketPath;
+
+    private ServerSocket serverSocket;
+    private DatagramSocket datagramSocket;
+    private ServerSocketChannel unixServerChannel;
+    private ExecutorService executor;
+
+    public FakeLogstashExtension() {
+        this(null);
+    }
+
+    /**
+     * Also accept events over a Unix domain socket at the given path, replacing any existing file.
+     */
+    public FakeLogstashExtension(Path unixSocketPath) {
+        this.unixSocketPath = unixSocketPath;
+    }
+
+    @Override
+    public void beforeAll(@NonNull ExtensionContext context) throws IOException {
+        bindSockets();
+
+        executor = Executors.newCachedThreadPool(runnable -> {
+            var thread = new Thread(runnable, "fake-logstash");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(this::acceptConnections);
+        executor.execute(this::receiveDatagrams);
+
+        if (nonNull(unixSocketPath)) {
+            bindUnixSocket();
+            executor.execute(this::acceptUnixConnections);
+            LOG.info("Fake Logstash listening on {}", unixSocketPath);
+        }
+
+        var host = InetAddress.getLoopbackAddress().getHostAddress();
+        var port = getPort();
+        LOG.info("Fake Logstash listening on {}:{} (TCP and UDP)", host, port);
+
+        System.setProperty("kiwi.elk.host", host);
+        System.setProperty("kiwi.elk.port", String.valueOf(port));
+    }
+
+    /**
+     * Bind TCP to an ephemeral port, and UDP to the same port number. Retry with a new port
+     * in the unlikely case that the UDP port is already in use.
+     */
+    private void bindSockets() throws IOException {
+        var loopback = InetAddress.getLoopbackAddress();
+
+        for (var attempt = 1; attempt <= MAX_BIND_ATTEMPTS; attempt++) {
+            var tcp = new ServerSocket(0, 50, loopback);
+            try {
+                datagramSocket = new DatagramSocket(new InetSocketAddress(loopback, tcp.getLocalPort()));
+                datagramSocket.setReceiveBufferSize(8 * 1024 * 1024);
+                serverSocket = tcp;
+                return;
+            } catch (SocketException e) {
+                LOG.debug("UDP port {} is in use; retrying", tcp.getLocalPort());
+                tcp.close();
+            }
+        }
+
+        throw new IllegalStateException("Unable to bind TCP and UDP to the same port after " + MAX_BIND_ATTEMPTS + " attempts");
+    }
+
+    private void bindUnixSocket() throws IOException {
+        Files.deleteIfExists(unixSocketPath);
+        Files.createDirectories(unixSocketPath.toAbsolutePath().getParent());
+        unixServerChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        unixServerChannel.bind(UnixDomainSocketAddress.of(unixSocketPath));
+    }
+
+    private void acceptUnixConnections() {
+        while (unixServerChannel.isOpen()) {
+            try {
+                var channel = unixServerChannel.accept();
+                executor.execute(() -> readLines(channel));
+            } catch (IOException e) {
+                LOG.trace("Stopped accepting Unix domain socket connections", e);
+                return;
+            }
+        }
+    }
+
+    private void readLines(SocketChannel channel) {
+        try (channel; var reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), UTF_8), 64 * 1024)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                record(line, line.length() + 1);
+            }
+        } catch (IOException e) {
+            LOG.trace("Unix domain socket connection closed", e);
+        }
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                var socket = serverSocket.accept();
+                executor.execute(() -> readLines(socket));
+            } catch (IOException e) {
+                LOG.trace("Stopped accepting connections", e);
+                return;
+            }
+        }
+    }
+
+    private void readLines(Socket socket) {
+        try (socket; var reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8), 64 * 1024)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                record(line, line.length() + 1);
+            }
+        } catch (IOException e) {
+            LOG.trace("Connection closed", e);
+        }
+    }
+
+    private void receiveDatagrams() {
+        var buffer = new byte[EncoderUdpSocketAppender.MAX_DATAGRAM_SIZE];
+        var packet = new DatagramPacket(buffer, buffer.length);
+
+        while (!datagramSocket.isClosed()) {
+            try {
+                datagramSocket.receive(packet);
+                record(new String(packet.getData(), 0, packet.getLength(), UTF_8).strip(), packet.getLength());
+            } catch (IOException e) {
+                LOG.trace("Stopped receiving datagrams", e);
+                return;
+            }
+        }
+    }
+
+    private void record(String event, int bytes) {
+        var receivedNanos = System.nanoTime();
+        eventCount.increment();
+        byteCount.add(bytes);
+        lastReceivedNanos.set(receivedNanos);
+
+        while (!recentEvents.offer(event)) {
+            recentEvents.poll();
+        }
+
+        if (!event.contains(LOAD_MARKER)) {
+            return;
+        }
+
+        loadEventCount.increment();
+
+        var index = event.indexOf(SENT_NANOS_PREFIX);
+        if (index >= 0) {
+            var start = index + SENT_NANOS_PREFIX.length();
+            var end = start;
+            while (end < event.length() && (Character.isDigit(event.charAt(end)) || event.charAt(end) == '-')) {
+                end++;
+            }
+            var sentNanos = Long.parseLong(event, start, end, 10);
+            latencyMicros.update((receivedNanos - sentNanos) / 1_000);
+        }
+    }
+
+    @Override
+    public void afterAll(@NonNull ExtensionContext context) {
+        System.clearProperty("kiwi.elk.host");
+        System.clearProperty("kiwi.elk.port");
+
+        closeQuietly();
+        if (nonNull(executor)) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            if (nonNull(serverSocket)) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (nonNull(datagramSocket)) {
+                datagramSocket.close();
+            }
+            closeUnixSocket();
+        }
+    }
+
+    private void closeUnixSocket() {
+        if (isNull(unixServerChannel)) {
+            return;
+        }
+
+        try {
+            unixServerChannel.close();
+            Files.deleteIfExists(unixSocketPath);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The TCP and UDP port.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * The total number of events received.
+     */
+    public long getEventCount() {
+        return eventCount.sum();
+    }
+
+    /**
+     * The number of events received that were sent by {@link ElkLoadGenerator}.
+     */
+    public long getLoadEventCount() {
+        return loadEventCount.sum();
+    }
+
+    /**
+     * The total number of bytes received, including line separators.
+     */
+    public long getByteCount() {
+        return byteCount.sum();
+    }
+
+    /**
+     * The {@link System#nanoTime()} when the last event was received.
+     */
+    public long getLastReceivedNanos() {
+        return lastReceivedNanos.get();
+    }
+
+    /**
+     * End-to-end latencies in microseconds of the events sent by {@link ElkLoadGenerator}.
+     */
+    public Histogram getLatencyMicros() {
+        return latencyMicros;
+    }
+
+    /**
+     * The most recently received events, oldest first.
+     */
+    public List<String> recentEvents() {
+        return new ArrayList<>(recentEvents);
+    }
+
+    /**
+     * Reset the counts, latencies, and recent events, e.g. before each test.
+     */
+    public void reset() {
+        eventCount.reset();
+        loadEventCount.reset();
+        byteCount.reset();
+        recentEvents.clear();
+        latencyMicros = newLatencyHistogram();
+    }
+
+    /**
+     * Waits up to 10 seconds for the given substrings to appear in the recent events.
+     */
+    public void awaitEventsContain(String... substring) {
+        await().atMost(Durations.TEN_SECONDS)
+                .untilAsserted(() -> assertThat(String.join("\n", recentEvents())).contains(substring));
+    }
+
+    /**
+     * Wait until no events have been received for the given quiet period, or the timeout elapses.
+     */
+    public void awaitQuiet(Duration quietPeriod, Duration timeout) {
+        await().atMost(timeout)
+                .pollInterval(Duration.ofMillis(50))
+                .until(() -> System.nanoTime() - lastReceivedNanos.get() > quietPeriod.toNanos());
+    }
+
+    private static Histogram newLatencyHistogram() {
+        return new Histogram(new SlidingWindowReservoir(LATENCY_SAMPLE_COUNT));
+    }
+}
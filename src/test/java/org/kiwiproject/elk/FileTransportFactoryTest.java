@@ -0,0 +1,81 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.kiwiproject.elk.TestLoggingEvents.newInfoEvent;
+import static org.kiwiproject.elk.TestLoggingEvents.newLoggerContext;
+import static org.kiwiproject.test.constants.KiwiTestConstants.JSON_HELPER;
+
+import ch.qos.logback.classic.LoggerContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+@DisplayName("FileTransportFactory")
+class FileTransportFactoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private LoggerContext loggerContext;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = newLoggerContext();
+    }
+
+    @Test
+    void shouldWriteNewlineDelimitedJson() throws IOException {
+        var logFile = tempDir.resolve("elk.ndjson");
+        var factory = new FileTransportFactory();
+        factory.setCurrentLogFilename(logFile.toString());
+
+        var appender = factory.build(new TestTransportContext(loggerContext, ElkEncoding.JSON));
+        appender.setContext(loggerContext);
+        appender.start();
+        appender.doAppend(newInfoEvent(loggerContext));
+        appender.doAppend(newInfoEvent(loggerContext));
+        appender.stop();
+
+        var content = Files.readString(logFile);
+        assertThat(content).endsWith("\n").doesNotContain("\r");
+        assertThat(content.lines())
+                .hasSize(2)
+                .allSatisfy(line -> assertThat(JSON_HELPER.toMap(line)).containsKey("message"));
+    }
+
+    @Test
+    void shouldDefaultArchivedLogFilenamePattern() {
+        var factory = new FileTransportFactory();
+        factory.setCurrentLogFilename("/var/log/acme/elk.ndjson");
+
+        assertThat(factory.getEffectiveArchivedLogFilenamePattern())
+                .isEqualTo("/var/log/acme/elk.ndjson.%d{yyyy-MM-dd}.%i.gz");
+    }
+
+    @Test
+    void shouldRequireCurrentLogFilename() {
+        var factory = new FileTransportFactory();
+        var context = new TestTransportContext(loggerContext, ElkEncoding.JSON);
+
+        assertThatIllegalStateException()
+                .isThrownBy(() -> factory.build(context))
+                .withMessage("currentLogFilename is required for the file transport");
+    }
+
+    @Test
+    void shouldNotAllowBinaryEncodings() {
+        var factory = new FileTransportFactory();
+        factory.setCurrentLogFilename(tempDir.resolve("elk.ndjson").toString());
+        var context = new TestTransportContext(loggerContext, ElkEncoding.SMILE);
+
+        assertThatIllegalStateException()
+                .isThrownBy(() -> factory.build(context))
+                .withMessage("encoding SMILE is not supported by the file transport");
+    }
+}
@@ -0,0 +1,292 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.kiwiproject.elk.TestLoggingEvents.newLoggerContext;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.kiwiproject.elk.HeapPressureFilter.PressureLevel;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+@DisplayName("HeapPressureFilter")
+class HeapPressureFilterTest {
+
+    private LoggerContext loggerContext;
+    private RecordingAppender recordingAppender;
+    private AsyncAppender asyncAppender;
+    private HeapPressureFilter filter;
+    private LossAccountingFilter lossAccounting;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = newLoggerContext();
+        recordingAppender = new RecordingAppender();
+        recordingAppender.setContext(loggerContext);
+        recordingAppender.start();
+
+        asyncAppender = new AsyncAppender();
+        asyncAppender.setContext(loggerContext);
+        asyncAppender.setQueueSize(16);
+        asyncAppender.setDiscardingThreshold(0);
+        asyncAppender.addAppender(recordingAppender);
+        asyncAppender.start();
+
+        lossAccounting = new LossAccountingFilter(Level.INFO, Duration.ofHours(1));
+        filter = new HeapPressureFilter(0.8, 0.9, Level.WARN, Level.ERROR);
+        filter.setContext(loggerContext);
+        filter.setAppender(asyncAppender);
+        filter.setLossAccounting(lossAccounting);
+        asyncAppender.addFilter(filter);
+    }
+
+    @AfterEach
+    void tearDown() {
+        filter.stop();
+        recordingAppender.release();
+        asyncAppender.stop();
+    }
+
+    @Test
+    void shouldAcceptEveryEvent_WhenPressureIsNormal() {
+        filter.update(0.5);
+
+        assertAll(
+                () -> assertThat(filter.getLevel()).isEqualTo(PressureLevel.NORMAL),
+                () -> assertThat(filter.decide(newEvent(Level.DEBUG))).isEqualTo(FilterReply.NEUTRAL),
+                () -> assertThat(filter.getTransitionCount(PressureLevel.ELEVATED)).isZero(),
+                () -> assertThat(recordingAppender.events).isEmpty()
+        );
+    }
+
+    @Test
+    void shouldShedLowerLevels_AsPressureRises() {
+        updateAndDrain(0.85);
+
+        assertAll(
+                () -> assertThat(filter.getLevel()).isEqualTo(PressureLevel.ELEVATED),
+                () -> assertThat(filter.decide(newEvent(Level.INFO))).isEqualTo(FilterReply.DENY),
+                () -> assertThat(filter.decide(newEvent(Level.WARN))).isEqualTo(FilterReply.NEUTRAL)
+        );
+
+        updateAndDrain(0.95);
+
+        assertAll(
+                () -> assertThat(filter.getLevel()).isEqualTo(PressureLevel.CRITICAL),
+                () -> assertThat(filter.decide(newEvent(Level.WARN))).isEqualTo(FilterReply.DENY),
+                () -> assertThat(filter.decide(newEvent(Level.ERROR))).isEqualTo(FilterReply.NEUTRAL),
+                () -> assertThat(filter.getShedEventCount()).isEqualTo(2),
+                () -> assertThat(lossAccounting.getDroppedCount()).isEqualTo(2)
+        );
+    }
+
+    @Test
+    void shouldNotShedHeartbeats() {
+        updateAndDrain(0.95);
+        var heartbeat = new LoggingEvent(getClass().getName(),
+                loggerContext.getLogger(LossAccountingFilter.HEARTBEAT_LOGGER_NAME), Level.INFO, "heartbeat", null, null);
+
+        assertAll(
+                () -> assertThat(filter.getLevel()).isEqualTo(PressureLevel.CRITICAL),
+                () -> assertThat(filter.decide(heartbeat)).isEqualTo(FilterReply.NEUTRAL),
+                () -> assertThat(filter.getShedEventCount()).isZero()
+        );
+    }
+
+    @Test
+    void shouldRestoreNormalBehavior_OnlyOncePressureDropsBelowMargin() {
+        filter.update(0.95);
+        filter.update(0.87);
+
+        assertThat(filter.getLevel()).isEqualTo(PressureLevel.CRITICAL);
+
+        filter.update(0.8);
+
+        assertThat(filter.getLevel()).isEqualTo(PressureLevel.ELEVATED);
+
+        filter.update(0.7);
+
+        assertAll(
+                () -> assertThat(filter.getLevel()).isEqualTo(PressureLevel.NORMAL),
+                () -> assertThat(filter.decide(newEvent(Level.DEBUG))).isEqualTo(FilterReply.NEUTRAL),
+                () -> assertThat(filter.getTransitionCount(PressureLevel.CRITICAL)).isOne(),
+                () -> assertThat(filter.getTransitionCount(PressureLevel.ELEVATED)).isOne(),
+                () -> assertThat(filter.getTransitionCount(PressureLevel.NORMAL)).isOne()
+        );
+    }
+
+    @Test
+    void shouldSendOneWarnEvent_ForEachTransition() {
+        filter.update(0.85);
+        filter.update(0.86);
+        filter.update(0.95);
+        filter.update(0.5);
+
+        await().until(() -> recordingAppender.events.size() == 3);
+        assertThat(recordingAppender.events)
+                .allSatisfy(event -> assertAll(
+                        () -> assertThat(event.getLoggerName()).isEqualTo(HeapPressureFilter.LOGGER_NAME),
+                        () -> assertThat(event.getLevel()).isEqualTo(Level.WARN)
+                ))
+                .extracting(ILoggingEvent::getFormattedMessage)
+                .containsExactly(
+                        "Heap pressure changed from NORMAL to ELEVATED, with 85% of the heap used after collection",
+                        "Heap pressure changed from ELEVATED to CRITICAL, with 95% of the heap used after collection",
+                        "Heap pressure changed from CRITICAL to NORMAL, with 50% of the heap used after collection");
+    }
+
+    @Test
+    void shouldShrinkEffectiveQueueCapacity_UnderPressure() {
+        recordingAppender.block();
+        asyncAppender.doAppend(newEvent(Level.ERROR));
+        await().until(() -> recordingAppender.blocked.getCount() == 0);
+        for (var i = 0; i < 4; i++) {
+            asyncAppender.doAppend(newEvent(Level.ERROR));
+        }
+
+        filter.update(0.85);
+
+        assertThat(filter.decide(newEvent(Level.ERROR))).isEqualTo(FilterReply.NEUTRAL);
+
+        filter.update(0.95);
+
+        assertAll(
+                () -> assertThat(asyncAppender.getNumberOfElementsInQueue()).isGreaterThanOrEqualTo(2),
+                () -> assertThat(filter.decide(newEvent(Level.ERROR))).isEqualTo(FilterReply.DENY),
+                () -> assertThat(filter.decide(newHeapPressureEvent())).isEqualTo(FilterReply.NEUTRAL)
+        );
+    }
+
+    @Test
+    void shouldMeasurePressure_AfterGarbageCollections_WithoutChangingPoolThresholds() {
+        var pools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .filter(MemoryPoolMXBean::isCollectionUsageThresholdSupported)
+                .toList();
+        var thresholdsBefore = thresholds(pools);
+        var otherFilter = new HeapPressureFilter(0.8, 0.9, Level.WARN, Level.ERROR);
+        otherFilter.setContext(loggerContext);
+        otherFilter.setAppender(asyncAppender);
+
+        filter.start();
+        otherFilter.start();
+        var thresholdsWhileStarted = thresholds(pools);
+        filter.stop();
+
+        System.gc();
+        await().until(() -> otherFilter.getPressure() > 0);
+        otherFilter.stop();
+
+        assertAll(
+                () -> assertThat(thresholdsWhileStarted).isEqualTo(thresholdsBefore),
+                () -> assertThat(thresholds(pools)).isEqualTo(thresholdsBefore),
+                () -> assertThat(filter.isStarted()).isFalse(),
+                () -> assertThat(otherFilter.isStarted()).isFalse()
+        );
+    }
+
+    @Test
+    void shouldRequireAppender_ToStart() {
+        var withoutAppender = new HeapPressureFilter(0.8, 0.9, Level.WARN, Level.ERROR);
+
+        assertThatIllegalStateException()
+                .isThrownBy(withoutAppender::start)
+                .withMessage("appender must be set before starting");
+    }
+
+    @Test
+    void shouldValidateThresholds() {
+        var elevated = new ElkHeapPressureConfig();
+        elevated.setElevatedThreshold(1.5);
+        var critical = new ElkHeapPressureConfig();
+        critical.setCriticalThreshold(0.7);
+
+        assertAll(
+                () -> assertThatIllegalStateException()
+                        .isThrownBy(() -> elevated.build(loggerContext))
+                        .withMessage("heapPressure elevatedThreshold must be between 0 and 1"),
+                () -> assertThatIllegalStateException()
+                        .isThrownBy(() -> critical.build(loggerContext))
+                        .withMessage("heapPressure criticalThreshold must be between elevatedThreshold and 1")
+        );
+    }
+
+    /**
+     * Update the pressure, and wait for the transition's event to leave the async queue, so that it does
+     * not count towards the queue's effective capacity.
+     */
+    private void updateAndDrain(double pressure) {
+        filter.update(pressure);
+        await().until(() -> asyncAppender.getNumberOfElementsInQueue() == 0);
+    }
+
+    private static List<Long> thresholds(List<MemoryPoolMXBean> pools) {
+        return pools.stream().map(MemoryPoolMXBean::getCollectionUsageThreshold).toList();
+    }
+
+    private LoggingEvent newEvent(Level level) {
+        var event = new LoggingEvent(HeapPressureFilterTest.class.getName(),
+                loggerContext.getLogger("org.acme.Orders"), level, "ok", null, null);
+        event.setMDCPropertyMap(Map.of());
+        return event;
+    }
+
+    private LoggingEvent newHeapPressureEvent() {
+        var event = new LoggingEvent(HeapPressureFilterTest.class.getName(),
+                loggerContext.getLogger(HeapPressureFilter.LOGGER_NAME), Level.WARN, "changed", null, null);
+        event.setMDCPropertyMap(Map.of());
+        return event;
+    }
+
+    /**
+     * Records events, optionally blocking the async appender's worker on the first event once blocked,
+     * so that its queue fills up.
+     */
+    private static class RecordingAppender extends AppenderBase<ILoggingEvent> {
+
+        private final List<ILoggingEvent> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private volatile boolean blocking;
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            events.add(event);
+            if (blocking) {
+                blocked.countDown();
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        void block() {
+            blocking = true;
+        }
+
+        void release() {
+            released.countDown();
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package org.kiwiproject.elk;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.kiwiproject.elk.TestLoggingEvents.newInfoEvent;
+import static org.kiwiproject.elk.TestLoggingEvents.newLoggerContext;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.status.Status;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.logstash.logback.encoder.LogstashEncoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.util.zip.GZIPInputStream;
+
+@DisplayName("HttpBatchAppender")
+class HttpBatchAppenderTest {
+
+    private LoggerContext loggerContext;
+    private HttpServer server;
+    private List<ReceivedRequest> requests;
+    private LinkedBlockingQueue<Integer> statusCodes;
+    private HttpBatchAppender appender;
+
+    record ReceivedRequest(String contentType, String contentEncoding, String body) {
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        loggerContext = newLoggerContext();
+        requests = new CopyOnWriteArrayList<>();
+        statusCodes = new LinkedBlockingQueue<>();
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+
+        var encoder = new LogstashEncoder();
+        encoder.setLineSeparator(null);
+
+        appender = new HttpBatchAppender();
+        appender.setContext(loggerContext);
+        appender.setName("elk");
+        appender.setEncoder(encoder);
+        appender.setUri(URI.create("http://localhost:" + server.getAddress().getPort() + "/"));
+        appender.setFlushInterval(Duration.ofMillis(100));
+        appender.setInitialRetryDelay(Duration.ofMillis(10));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        var contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        try (InputStream in = "gzip".equals(contentEncoding) ?
+                new GZIPInputStream(exchange.getRequestBody()) : exchange.getRequestBody()) {
+
+            var body = new String(in.readAllBytes(), UTF_8);
+            var statusCode = statusCodes.isEmpty() ? 200 : statusCodes.poll();
+            if (statusCode == 200) {
+                var contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+                requests.add(new ReceivedRequest(contentType, contentEncoding, body));
+            }
+            exchange.sendResponseHeaders(statusCode, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        appender.stop();
+        server.stop(0);
+    }
+
+    @Test
+    void shouldSendBatches_AsGzippedNdjson() {
+        appender.start();
+
+        appendEvents(3);
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> receivedEventCount() == 3);
+
+        var request = requests.get(0);
+        var lines = request.body().lines().toList();
+        assertAll(
+                () -> assertThat(request.contentType()).isEqualTo("application/x-ndjson"),
+                () -> assertThat(request.contentEncoding()).isEqualTo("gzip"),
+                () -> assertThat(request.body()).endsWith("\n"),
+                () -> assertThat(lines).allSatisfy(line ->
+                        assertThat(JsonMapper.shared().readValue(line, Map.class)).containsKey("message"))
+        );
+    }
+
+    @Test
+    void shouldSendBatches_AsJsonArrays_WithoutGzip() {
+        appender.setBatchFormat(ElkHttpBatchFormat.JSON_ARRAY);
+        appender.setGzip(false);
+        appender.start();
+
+        appendEvents(3);
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> receivedEventCount() == 3);
+
+        var request = requests.get(0);
+        assertAll(
+                () -> assertThat(request.contentType()).isEqualTo("application/json"),
+                () -> assertThat(request.contentEncoding()).isNull(),
+                () -> assertThat(JsonMapper.shared().readValue(request.body(), List.class)).hasSize(3)
+        );
+    }
+
+    @Test
+    void shouldLimitBatchSize() {
+        appender.setMaxBatchSize(2);
+        appender.start();
+
+        appendEvents(5);
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> receivedEventCount() == 5);
+
+        assertThat(requests).hasSizeGreaterThanOrEqualTo(3);
+        assertThat(batchSizes().getSnapshot().getMax()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void shouldRetry_ServerErrors() {
+        statusCodes.add(503);
+        statusCodes.add(502);
+        appender.start();
+
+        appendEvents(2);
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> receivedEventCount() == 2);
+
+        assertAll(
+                () -> assertThat(((Counter) appender.getMetrics().get("retries")).getCount()).isEqualTo(2),
+                () -> assertThat(appender.getDroppedEventCount().sum()).isZero()
+        );
+    }
+
+    @Test
+    void shouldDropBatch_AfterMaxRetries() {
+        appender.setMaxRetries(1);
+        statusCodes.add(503);
+        statusCodes.add(503);
+        appender.start();
+
+        appendEvents(2);
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> appender.getDroppedEventCount().sum() == 2);
+
+        assertThat(requests).isEmpty();
+    }
+
+    @Test
+    void shouldDropBatch_WhenStoppedWhileRetryIsPending() {
+        appender.setInitialRetryDelay(Duration.ofMinutes(1));
+        appender.setShutdownGracePeriod(Duration.ofMillis(200));
+        statusCodes.add(503);
+        appender.start();
+
+        appendEvents(1);
+
+        var retries = (Counter) appender.getMetrics().get("retries");
+        await().atMost(5, TimeUnit.SECONDS).until(() -> retries.getCount() == 1);
+        appender.stop();
+
+        assertAll(
+                () -> assertThat(appender.getDroppedEventCount().sum()).isOne(),
+                () -> assertThat(requests).isEmpty(),
+                () -> assertThat(loggerContext.getStatusManager().getCopyOfStatusList())
+                        .extracting(Status::getMessage)
+                        .anyMatch(message -> message.contains("a retry was pending"))
+        );
+    }
+
+    @Test
+    void shouldDropBatch_WithoutReportingFailure_WhenInterruptedWaitingForPermit() {
+        var circuitBreaker = new ElkCircuitBreaker(2, Duration.ofMinutes(1));
+        appender.setCircuitBreaker(circuitBreaker);
+        appender.setMaxInFlightRequests(1);
+        appender.setMaxBatchSize(1);
+        appender.setInitialRetryDelay(Duration.ofMinutes(1));
+        appender.setShutdownGracePeriod(Duration.ofMillis(200));
+        statusCodes.add(503);
+        appender.start();
+
+        appendEvents(2);
+
+        var retries = (Counter) appender.getMetrics().get("retries");
+        await().atMost(5, TimeUnit.SECONDS).until(() -> retries.getCount() == 1);
+        appender.stop();
+
+        assertAll(
+                () -> assertThat(appender.getDroppedEventCount().sum()).isEqualTo(2),
+                () -> assertThat(circuitBreaker.getState()).isEqualTo(ElkCircuitBreaker.State.CLOSED),
+                () -> assertThat(loggerContext.getStatusManager().getCopyOfStatusList())
+                        .extracting(Status::getMessage)
+                        .anyMatch(message -> message.contains("Interrupted sending batch of 1 events"))
+        );
+    }
+
+    @Test
+    void shouldReportFailedRequests_ToCircuitBreaker() {
+        var circuitBreaker = new ElkCircuitBreaker(2, Duration.ofMinutes(1));
+        appender.setCircuitBreaker(circuitBreaker);
+        appender.setMaxRetries(1);
+        statusCodes.add(503);
+        statusCodes.add(503);
+        appender.start();
+
+        appendEvents(2);
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> circuitBreaker.getState() == ElkCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void shouldNotRetry_ClientErrors() {
+        statusCodes.add(400);
+        appender.start();
+
+        appendEvents(2);
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> appender.getDroppedEventCount().sum() == 2);
+
+        assertAll(
+                () -> assertThat(((Counter) appender.getMetrics().get("retries")).getCount()).isZero(),
+                () -> assertThat(requests).isEmpty()
+        );
+    }
+
+    @Test
+    void shouldSendQueuedEvents_WhenStopped() {
+        appender.setFlushInterval(Duration.ofSeconds(30));
+        appender.start();
+
+        appendEvents(3);
+        appender.stop();
+
+        assertThat(receivedEventCount()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldRecordMetrics() {
+        appender.start();
+
+        appendEvents(4);
+
+        var metrics = appender.getMetrics();
+        var requestLatency = (Timer) metrics.get("requestLatency");
+        await().atMost(5, TimeUnit.SECONDS).until(() -> receivedEventCount() == 4 && requestLatency.getCount() == requests.size());
+
+        assertAll(
+                () -> assertThat(LongStream.of(batchSizes().getSnapshot().getValues()).sum()).isEqualTo(4),
+                () -> assertThat(((Histogram) metrics.get("batchBytes")).getCount()).isEqualTo(requests.size())
+        );
+    }
+
+    @Test
+    void shouldNotStart_WhenNoUri() {
+        appender.setUri(null);
+
+        appender.start();
+
+        assertThat(appender.isStarted()).isFalse();
+    }
+
+    private void appendEvents(int count) {
+        for (var i = 0; i < count; i++) {
+            appender.doAppend(newInfoEvent(loggerContext));
+        }
+    }
+
+    private long receivedEventCount() {
+        return requests.stream().mapToLong(HttpBatchAppenderTest::eventCount).sum();
+    }
+
+    private static long eventCount(ReceivedRequest request) {
+        if ("application/json".equals(request.contentType())) {
+            return JsonMapper.shared().readValue(request.body(), List.class).size();
+        }
+
+        return request.body().lines().count();
+    }
+
+    private Histogram batchSizes() {
+        return (Histogram) appender.getMetrics().get("batchSize");
+    }
+}
@@ -0,0 +1,78 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.kiwiproject.elk.TestLoggingEvents.newInfoEvent;
+import static org.kiwiproject.elk.TestLoggingEvents.newLoggerContext;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import net.logstash.logback.encoder.LogstashEncoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+@DisplayName("LengthPrefixedEncoder")
+class LengthPrefixedEncoderTest {
+
+    private LoggerContext loggerContext;
+    private LengthPrefixedEncoder<ILoggingEvent> encoder;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = newLoggerContext();
+
+        var delegate = new LogstashEncoder();
+        delegate.setLineSeparator(null);
+
+        encoder = new LengthPrefixedEncoder<>(delegate);
+        encoder.setContext(loggerContext);
+        encoder.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        encoder.stop();
+    }
+
+    @Test
+    void shouldStartDelegate() {
+        assertAll(
+                () -> assertThat(encoder.isStarted()).isTrue(),
+                () -> assertThat(encoder.getDelegate().isStarted()).isTrue()
+        );
+    }
+
+    @Test
+    void shouldPrefixEncodedEvent_WithItsLength() {
+        var event = newInfoEvent(loggerContext);
+
+        var bytes = encoder.encode(event);
+
+        var buffer = ByteBuffer.wrap(bytes);
+        var length = buffer.getInt();
+        assertAll(
+                () -> assertThat(length).isEqualTo(bytes.length - LengthPrefixedEncoder.PREFIX_LENGTH),
+                () -> assertThat(new String(bytes, 4, length, StandardCharsets.UTF_8))
+                        .startsWith("{")
+                        .endsWith("}")
+                        .contains(event.getFormattedMessage())
+        );
+    }
+
+    @Test
+    void shouldWriteSameBytes_WhenStreaming() throws IOException {
+        var event = newInfoEvent(loggerContext);
+        var outputStream = new ByteArrayOutputStream();
+
+        encoder.encode(event, outputStream);
+
+        assertThat(outputStream.toByteArray()).isEqualTo(encoder.encode(event));
+    }
+}
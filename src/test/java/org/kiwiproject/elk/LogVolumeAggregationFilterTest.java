@@ -0,0 +1,228 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.kiwiproject.elk.TestLoggingEvents.newLoggerContext;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import ch.qos.logback.core.spi.FilterReply;
+import net.logstash.logback.encoder.LogstashEncoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+@DisplayName("LogVolumeAggregationFilter")
+class LogVolumeAggregationFilterTest {
+
+    private LoggerContext loggerContext;
+    private ListAppender<ILoggingEvent> appender;
+    private LogVolumeAggregationFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = newLoggerContext();
+        appender = new ListAppender<>();
+        appender.setContext(loggerContext);
+        appender.start();
+
+        filter = newFilter(null, 2, 100);
+    }
+
+    private LogVolumeAggregationFilter newFilter(String mdcKey, int maxSamples, int maxGroups) {
+        var levels = Map.of("org.acme.noisy", Level.INFO, "org.acme.noisy.important", Level.DEBUG);
+        var newFilter = new LogVolumeAggregationFilter(levels, appender, Duration.ofHours(1), mdcKey, maxSamples, maxGroups);
+        newFilter.setContext(loggerContext);
+        return newFilter;
+    }
+
+    @AfterEach
+    void tearDown() {
+        filter.stop();
+    }
+
+    @Test
+    void shouldDeny_EventsFromAggregatedLoggers_AtOrBelowLevel() {
+        assertAll(
+                () -> assertThat(filter.decide(newEvent("org.acme.noisy", Level.INFO, "ok"))).isEqualTo(FilterReply.DENY),
+                () -> assertThat(filter.decide(newEvent("org.acme.noisy.Child", Level.DEBUG, "ok"))).isEqualTo(FilterReply.DENY),
+                () -> assertThat(filter.decide(newEvent("org.acme.noisy", Level.WARN, "ok"))).isEqualTo(FilterReply.NEUTRAL),
+                () -> assertThat(filter.decide(newEvent("org.acme.noisyneighbor", Level.INFO, "ok"))).isEqualTo(FilterReply.NEUTRAL),
+                () -> assertThat(filter.decide(newEvent("org.acme.other", Level.DEBUG, "ok"))).isEqualTo(FilterReply.NEUTRAL)
+        );
+    }
+
+    @Test
+    void shouldUseMostSpecificLogger() {
+        assertAll(
+                () -> assertThat(filter.decide(newEvent("org.acme.noisy.important.Audit", Level.DEBUG, "ok"))).isEqualTo(FilterReply.DENY),
+                () -> assertThat(filter.decide(newEvent("org.acme.noisy.important.Audit", Level.INFO, "ok"))).isEqualTo(FilterReply.NEUTRAL)
+        );
+    }
+
+    @Test
+    void shouldSendSummary_WithCountsAndSamples() {
+        for (var i = 0; i < 5; i++) {
+            filter.decide(newEvent("org.acme.noisy.Cache", Level.DEBUG, "cache miss " + i));
+        }
+        filter.decide(newEvent("org.acme.noisy.Cache", Level.INFO, "evicted"));
+
+        filter.sendSummary();
+
+        var summary = getSingleSummary();
+        @SuppressWarnings("unchecked")
+        var groups = (List<Map<String, Object>>) summary.get("groups");
+        assertAll(
+                () -> assertThat(summary).containsEntry("total", 6),
+                () -> assertThat(groups).hasSize(2),
+                () -> assertThat(groups).anySatisfy(group -> assertThat(group)
+                        .containsEntry("logger", "org.acme.noisy.Cache")
+                        .containsEntry("level", "DEBUG")
+                        .containsEntry("count", 5)
+                        .containsEntry("samples", List.of("cache miss 0", "cache miss 1"))),
+                () -> assertThat(groups).anySatisfy(group -> assertThat(group)
+                        .containsEntry("level", "INFO")
+                        .containsEntry("count", 1))
+        );
+    }
+
+    @Test
+    void shouldGroupByMdcValue_UpToMaxGroups() {
+        filter = newFilter("tenantId", 0, 2);
+
+        filter.decide(newEvent("org.acme.noisy", Level.INFO, "a", Map.of("tenantId", "t1")));
+        filter.decide(newEvent("org.acme.noisy", Level.INFO, "b", Map.of("tenantId", "t1")));
+        filter.decide(newEvent("org.acme.noisy", Level.INFO, "c", Map.of("tenantId", "t2")));
+        filter.decide(newEvent("org.acme.noisy", Level.INFO, "d", Map.of("tenantId", "t3")));
+
+        filter.sendSummary();
+
+        @SuppressWarnings("unchecked")
+        var groups = (List<Map<String, Object>>) getSingleSummary().get("groups");
+        assertThat(groups)
+                .extracting(group -> group.get("logger"), group -> group.get("tenantId"), group -> group.get("count"))
+                .containsExactlyInAnyOrder(
+                        tuple("org.acme.noisy", "t1", 2),
+                        tuple("org.acme.noisy", "t2", 1),
+                        tuple(LogVolumeAggregationFilter.OTHER_LOGGERS, null, 1));
+    }
+
+    @Test
+    void shouldBoundTotalGroups_CountingWithoutMdcValue_OrAsOtherLoggers() {
+        filter = newFilter("tenantId", 0, 3);
+
+        filter.decide(newEvent("org.acme.noisy", Level.INFO, "a"));
+        filter.decide(newEvent("org.acme.noisy", Level.INFO, "b", Map.of("tenantId", "t1")));
+        filter.decide(newEvent("org.acme.noisy.cache", Level.INFO, "c"));
+        filter.decide(newEvent("org.acme.noisy", Level.INFO, "d", Map.of("tenantId", "t2")));
+        filter.decide(newEvent("org.acme.noisy.pool", Level.INFO, "e"));
+        filter.decide(newEvent("org.acme.noisy.pool", Level.DEBUG, "f"));
+        filter.decide(newEvent("org.acme.noisy.cache", Level.INFO, "g"));
+
+        filter.sendSummary();
+
+        @SuppressWarnings("unchecked")
+        var groups = (List<Map<String, Object>>) getSingleSummary().get("groups");
+        assertThat(groups)
+                .extracting(group -> group.get("logger"), group -> group.get("level"),
+                        group -> group.get("tenantId"), group -> group.get("count"))
+                .containsExactlyInAnyOrder(
+                        tuple("org.acme.noisy", "INFO", null, 2),
+                        tuple("org.acme.noisy", "INFO", "t1", 1),
+                        tuple("org.acme.noisy.cache", "INFO", null, 2),
+                        tuple(LogVolumeAggregationFilter.OTHER_LOGGERS, "INFO", null, 1),
+                        tuple(LogVolumeAggregationFilter.OTHER_LOGGERS, "DEBUG", null, 1));
+    }
+
+    @Test
+    void shouldRejectInvalidLevels_WhenBuilt() {
+        var config = new ElkAggregationConfig();
+        config.setLoggers(Map.of("org.acme.noisy", "INFOO"));
+
+        assertThatIllegalStateException()
+                .isThrownBy(() -> config.build(loggerContext, appender))
+                .withMessage("aggregation level INFOO of logger org.acme.noisy is not valid");
+    }
+
+    @Test
+    void shouldNotSendSummary_WhenNothingWasCounted() {
+        filter.sendSummary();
+
+        assertThat(appender.list).isEmpty();
+    }
+
+    @Test
+    void shouldStartNewCounts_AfterEachSummary() {
+        filter.decide(newEvent("org.acme.noisy", Level.INFO, "first"));
+        filter.sendSummary();
+        filter.decide(newEvent("org.acme.noisy", Level.INFO, "second"));
+        filter.sendSummary();
+
+        assertThat(appender.list).hasSize(2);
+        assertThat(filter.getSummaryCount().sum()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldSendSummaries_Periodically_AndWhenStopped() {
+        filter = new LogVolumeAggregationFilter(Map.of("org.acme.noisy", Level.INFO), appender,
+                Duration.ofMillis(50), null, 1, 10);
+        filter.setContext(loggerContext);
+        filter.start();
+
+        filter.decide(newEvent("org.acme.noisy", Level.INFO, "periodic"));
+        await().until(() -> appender.list.size() == 1);
+
+        filter.decide(newEvent("org.acme.noisy", Level.INFO, "final"));
+        filter.stop();
+
+        assertThat(appender.list).hasSize(2);
+    }
+
+    @Test
+    void shouldNotAggregate_SummaryEvents() {
+        var filterForRoot = new LogVolumeAggregationFilter(Map.of("org", Level.INFO), appender,
+                Duration.ofHours(1), null, 1, 10);
+
+        var summaryEvent = newEvent(LogVolumeAggregationFilter.SUMMARY_LOGGER_NAME, Level.INFO, "summary");
+
+        assertThat(filterForRoot.decide(summaryEvent)).isEqualTo(FilterReply.NEUTRAL);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> getSingleSummary() {
+        assertThat(appender.list).hasSize(1);
+        var event = appender.list.get(0);
+        assertThat(event.getLoggerName()).isEqualTo(LogVolumeAggregationFilter.SUMMARY_LOGGER_NAME);
+
+        var encoder = new LogstashEncoder();
+        encoder.setContext(loggerContext);
+        encoder.start();
+        var json = new String(encoder.encode(event), StandardCharsets.UTF_8);
+        var fields = JsonMapper.shared().readValue(json, Map.class);
+        return (Map<String, Object>) fields.get("aggregation");
+    }
+
+    private LoggingEvent newEvent(String loggerName, Level level, String message) {
+        return newEvent(loggerName, level, message, Map.of());
+    }
+
+    private LoggingEvent newEvent(String loggerName, Level level, String message, Map<String, String> mdc) {
+        var event = new LoggingEvent(LogVolumeAggregationFilterTest.class.getName(),
+                loggerContext.getLogger(loggerName), level, message, null, null);
+        event.setMDCPropertyMap(mdc);
+        return event;
+    }
+}
@@ -0,0 +1,118 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@DisplayName("LoggerStats")
+class LoggerStatsTest {
+
+    @Test
+    void shouldCountEventsAndBytes_OfTrackedLoggers() {
+        var stats = new LoggerStats(10);
+
+        stats.record("org.acme.A", 100);
+        stats.record("org.acme.A", 300);
+        stats.record("org.acme.B", 50);
+
+        var top = stats.getTopLoggers(10);
+        assertAll(
+                () -> assertThat(stats.getTotalEvents()).isEqualTo(3),
+                () -> assertThat(stats.getTotalBytes()).isEqualTo(450),
+                () -> assertThat(top).extracting(LoggerStats.Entry::loggerName).containsExactly("org.acme.A", "org.acme.B"),
+                () -> assertThat(top.get(0).estimatedEvents()).isEqualTo(2),
+                () -> assertThat(top.get(0).estimatedBytes()).isEqualTo(400),
+                () -> assertThat(top.get(0).sizes().getMax()).isEqualTo(300)
+        );
+    }
+
+    @Test
+    void shouldFindHeavyHitters_AmongManyLoggers() {
+        var stats = new LoggerStats(5);
+
+        for (var round = 0; round < 100; round++) {
+            for (var i = 0; i < 1_000; i++) {
+                stats.record("org.acme.quiet.Logger" + i, 10);
+            }
+            stats.record("org.acme.noisy.Big", 50_000);
+            stats.record("org.acme.noisy.Medium", 20_000);
+        }
+
+        var top = stats.getTopLoggers(2);
+        assertThat(top)
+                .extracting(LoggerStats.Entry::loggerName)
+                .containsExactly("org.acme.noisy.Big", "org.acme.noisy.Medium");
+        assertThat(top.get(0).estimatedBytes()).isGreaterThanOrEqualTo(100 * 50_000L);
+    }
+
+    @Test
+    void shouldNeverUnderestimate() {
+        var stats = new LoggerStats(1);
+
+        for (var i = 0; i < 10_000; i++) {
+            stats.record("org.acme.Logger" + (i % 500), i % 500);
+        }
+
+        for (var i = 0; i < 500; i++) {
+            var loggerName = "org.acme.Logger" + i;
+            assertThat(stats.estimateEvents(loggerName)).isGreaterThanOrEqualTo(20);
+            assertThat(stats.estimateBytes(loggerName)).isGreaterThanOrEqualTo(20L * i);
+        }
+    }
+
+    @Test
+    void shouldMergeStripes_RecordedByDifferentThreads() throws InterruptedException {
+        var stats = new LoggerStats(10, 4);
+        var executor = Executors.newFixedThreadPool(8);
+
+        for (var thread = 0; thread < 8; thread++) {
+            executor.execute(() -> {
+                for (var i = 0; i < 10_000; i++) {
+                    stats.record("org.acme.A", 10);
+                    stats.record("org.acme.B", 1);
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        var top = stats.getTopLoggers(10);
+        assertAll(
+                () -> assertThat(stats.getStripeCount()).isEqualTo(4),
+                () -> assertThat(stats.getTotalEvents()).isEqualTo(160_000),
+                () -> assertThat(stats.estimateEvents("org.acme.A")).isEqualTo(80_000),
+                () -> assertThat(stats.estimateBytes("org.acme.A")).isEqualTo(800_000),
+                () -> assertThat(top).extracting(LoggerStats.Entry::loggerName).containsExactly("org.acme.A", "org.acme.B"),
+                () -> assertThat(top.get(0).trackedEvents()).isBetween(79_000L, 80_000L)
+        );
+    }
+
+    @Test
+    void shouldUseOneStripePerProcessor_UpToMaximum() {
+        var processors = Runtime.getRuntime().availableProcessors();
+
+        assertThat(new LoggerStats(10).getStripeCount())
+                .isBetween(1, LoggerStats.MAX_STRIPES)
+                .satisfies(stripes -> assertThat(Integer.bitCount(stripes)).isOne())
+                .isGreaterThanOrEqualTo(Math.min(processors, LoggerStats.MAX_STRIPES));
+    }
+
+    @Test
+    void shouldReset() {
+        var stats = new LoggerStats(10);
+        stats.record("org.acme.A", 100);
+
+        stats.reset();
+
+        assertAll(
+                () -> assertThat(stats.getTotalEvents()).isZero(),
+                () -> assertThat(stats.getTopLoggers(10)).isEmpty(),
+                () -> assertThat(stats.estimateBytes("org.acme.A")).isZero()
+        );
+    }
+}
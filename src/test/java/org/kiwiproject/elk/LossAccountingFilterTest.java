@@ -0,0 +1,200 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.kiwiproject.elk.TestLoggingEvents.newInfoEvent;
+import static org.kiwiproject.elk.TestLoggingEvents.newLoggerContext;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import ch.qos.logback.core.spi.FilterReply;
+import net.logstash.logback.encoder.LogstashEncoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+@DisplayName("LossAccountingFilter")
+class LossAccountingFilterTest {
+
+    private LoggerContext loggerContext;
+    private ListAppender<ILoggingEvent> appender;
+    private LossAccountingFilter filter;
+    private LogstashEncoder encoder;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = newLoggerContext();
+        appender = new ListAppender<>();
+        appender.setContext(loggerContext);
+        appender.start();
+
+        filter = new LossAccountingFilter(Level.INFO, Duration.ofHours(1));
+        filter.setContext(loggerContext);
+        filter.setAppender(appender);
+
+        encoder = new LogstashEncoder();
+        encoder.setContext(loggerContext);
+        encoder.addProvider(filter.newSequenceProvider());
+        encoder.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        filter.stop();
+        encoder.stop();
+    }
+
+    @Test
+    void shouldCountAppendedEvents_AtOrAboveThreshold() {
+        assertAll(
+                () -> assertThat(filter.decide(newEvent(Level.DEBUG))).isEqualTo(FilterReply.NEUTRAL),
+                () -> assertThat(filter.decide(newEvent(Level.INFO))).isEqualTo(FilterReply.NEUTRAL),
+                () -> assertThat(filter.decide(newEvent(Level.ERROR))).isEqualTo(FilterReply.NEUTRAL),
+                () -> assertThat(filter.getAppendedCount()).isEqualTo(2)
+        );
+    }
+
+    @Test
+    void shouldCountHeartbeats_WhateverTheThreshold() {
+        filter = new LossAccountingFilter(Level.ERROR, Duration.ofHours(1));
+        filter.setContext(loggerContext);
+        filter.setAppender(appender);
+
+        filter.sendHeartbeat();
+        filter.decide(appender.list.get(0));
+
+        assertThat(filter.getAppendedCount()).isOne();
+    }
+
+    @Test
+    void shouldAcceptOnlyHeartbeats_AheadOfTransportThreshold() {
+        filter.sendHeartbeat();
+        var heartbeatFilter = filter.newHeartbeatFilter();
+
+        assertAll(
+                () -> assertThat(heartbeatFilter.isStarted()).isTrue(),
+                () -> assertThat(heartbeatFilter.decide(appender.list.get(0))).isEqualTo(FilterReply.ACCEPT),
+                () -> assertThat(heartbeatFilter.decide(newEvent(Level.ERROR))).isEqualTo(FilterReply.NEUTRAL)
+        );
+    }
+
+    @Test
+    void shouldStampEncodedEvents_WithInstanceIdAndSequence() {
+        var first = encode(newInfoEvent(loggerContext));
+        var second = encode(newInfoEvent(loggerContext));
+
+        assertAll(
+                () -> assertThat(first)
+                        .containsEntry(LossAccountingFilter.INSTANCE_ID_FIELD, filter.getInstanceId())
+                        .containsEntry(LossAccountingFilter.SEQUENCE_FIELD, 1),
+                () -> assertThat(second)
+                        .containsEntry(LossAccountingFilter.INSTANCE_ID_FIELD, filter.getInstanceId())
+                        .containsEntry(LossAccountingFilter.SEQUENCE_FIELD, 2),
+                () -> assertThat(filter.getSentCount()).isEqualTo(2)
+        );
+    }
+
+    @Test
+    void shouldUseDifferentInstanceIds_ForEachFilter() {
+        var other = new LossAccountingFilter(Level.INFO, Duration.ofHours(1));
+
+        assertThat(other.getInstanceId()).isNotEqualTo(filter.getInstanceId());
+    }
+
+    @Test
+    void shouldCountDroppedEvents_IncludingCircuitBreakerRejections() {
+        var circuitBreaker = new ElkCircuitBreaker(1, Duration.ofHours(1));
+        circuitBreaker.setContext(loggerContext);
+        circuitBreaker.recordFailure();
+        circuitBreaker.decide(newEvent(Level.INFO));
+        filter.setCircuitBreaker(circuitBreaker);
+
+        filter.recordDropped();
+        filter.newTcpListener().eventAppendFailed(null, newEvent(Level.INFO), new IllegalStateException("full"));
+
+        assertThat(filter.getDroppedCount()).isEqualTo(3);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void shouldSendHeartbeat_WithCumulativeCounts() {
+        for (var i = 0; i < 5; i++) {
+            var event = newEvent(Level.INFO);
+            filter.decide(event);
+            if (i < 3) {
+                encode(event);
+            }
+        }
+        filter.recordDropped();
+
+        filter.sendHeartbeat();
+
+        assertThat(appender.list).hasSize(1);
+        var heartbeat = appender.list.get(0);
+        assertThat(heartbeat.getLoggerName()).isEqualTo(LossAccountingFilter.HEARTBEAT_LOGGER_NAME);
+        var delivery = (Map<String, Object>) encode(heartbeat).get("delivery");
+        assertThat(delivery)
+                .containsEntry("appended", 5)
+                .containsEntry("sent", 3)
+                .containsEntry("dropped", 1)
+                .containsEntry("interval_ms", 3_600_000);
+    }
+
+    @Test
+    void shouldSendHeartbeats_Periodically_UntilStopped() {
+        filter = new LossAccountingFilter(Level.INFO, Duration.ofMillis(50));
+        filter.setContext(loggerContext);
+        filter.setAppender(appender);
+        filter.start();
+
+        await().until(() -> appender.list.size() >= 2);
+        filter.stop();
+
+        assertThat(appender.list)
+                .extracting(ILoggingEvent::getLoggerName)
+                .containsOnly(LossAccountingFilter.HEARTBEAT_LOGGER_NAME);
+    }
+
+    @Test
+    void shouldRequireAppender_ToStart() {
+        var withoutAppender = new LossAccountingFilter(Level.INFO, Duration.ofHours(1));
+
+        assertThatIllegalStateException()
+                .isThrownBy(withoutAppender::start)
+                .withMessage("appender must be set before starting");
+    }
+
+    @Test
+    void shouldRequirePositiveHeartbeatInterval() {
+        var config = new ElkLossAccountingConfig();
+        config.setHeartbeatInterval(io.dropwizard.util.Duration.seconds(0));
+
+        assertThatIllegalStateException()
+                .isThrownBy(() -> config.build(loggerContext, Level.INFO))
+                .withMessage("lossAccounting heartbeatInterval must be positive");
+    }
+
+    private LoggingEvent newEvent(Level level) {
+        var event = new LoggingEvent(LossAccountingFilterTest.class.getName(),
+                loggerContext.getLogger("org.acme.Orders"), level, "ok", null, null);
+        event.setMDCPropertyMap(Map.of());
+        return event;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> encode(ILoggingEvent event) {
+        var json = new String(encoder.encode(event), StandardCharsets.UTF_8);
+        return JsonMapper.shared().readValue(json, Map.class);
+    }
+}
@@ -0,0 +1,180 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.kiwiproject.elk.TestLoggingEvents.newInfoEvent;
+import static org.kiwiproject.elk.TestLoggingEvents.newLoggerContext;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import com.sun.management.ThreadMXBean;
+import lombok.extern.slf4j.Slf4j;
+import net.logstash.logback.decorate.JsonGeneratorDecorator;
+import net.logstash.logback.encoder.LogstashEncoder;
+import net.logstash.logback.mask.MaskingJsonGeneratorDecorator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the cost per encoded event of masking with 0, 10, and 100 rules, compared with masking
+ * the same data by running one regular expression per rule over every string, using logstash-logback-encoder's
+ * {@link MaskingJsonGeneratorDecorator}.
+ * <p>
+ * Half of the events contain sensitive data. You can run it like:
+ * {@code mvn test -Dbenchmarks -Dtest=MaskingBenchmarkTest}
+ */
+@DisplayName("Masking cost")
+@EnabledForBenchmarks
+@Slf4j
+class MaskingBenchmarkTest {
+
+    private static final int WARMUP_ITERATIONS = 50_000;
+    private static final int MEASURED_ITERATIONS = 100_000;
+
+    private LoggerContext loggerContext;
+    private List<ILoggingEvent> events;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = newLoggerContext();
+
+        var sensitiveEvent = new LoggingEvent(getClass().getName(),
+                loggerContext.getLogger(TestLoggingEvents.LOGGER_NAME),
+                Level.INFO,
+                "Sent receipt for order {} to {} using key7={}",
+                null,
+                new Object[] { 42_001, "jane.doe@example.com", "0f1e2d3c4b5a" });
+        sensitiveEvent.setMDCPropertyMap(Map.of("traceId", "4bf92f3577b34da6a3ce929d0e0e4736", "userId", "42"));
+        sensitiveEvent.prepareForDeferredProcessing();
+
+        events = List.of(newInfoEvent(loggerContext), sensitiveEvent);
+    }
+
+    @AfterEach
+    void tearDown() {
+        loggerContext.stop();
+    }
+
+    @ParameterizedTest(name = "{0} rules")
+    @ValueSource(ints = { 0, 10, 100 })
+    void shouldMaskWithLessCost_ThanRegexPerRule(int ruleCount) throws IOException {
+        var unmasked = measure(null);
+        var automaton = measure(newConfig(ruleCount).build());
+        var regexPerRule = measure(newRegexPerRuleDecorator(ruleCount));
+
+        LOG.info("Masking with {} rules, per event: none = {} ns ({} bytes), automaton = {} ns ({} bytes)," +
+                        " regex per rule = {} ns ({} bytes)",
+                ruleCount, unmasked.nanos(), unmasked.bytes(), automaton.nanos(), automaton.bytes(),
+                regexPerRule.nanos(), regexPerRule.bytes());
+
+        if (ruleCount > 0) {
+            assertThat(automaton.nanos()).isLessThan(regexPerRule.nanos());
+        }
+    }
+
+    /**
+     * The rules are 40% prefixes of key-value pairs, 40% literal secrets, and 20% patterns, each with a
+     * literal that any match must contain. The first pattern masks email addresses.
+     */
+    private static ElkMaskingConfig newConfig(int ruleCount) {
+        var rules = new ArrayList<ElkMaskingRule>();
+        for (var i = 0; i < ruleCount; i++) {
+            var rule = new ElkMaskingRule();
+            switch (i % 5) {
+                case 0, 1 -> rule.setPrefix(prefix(i));
+                case 2, 3 -> rule.setLiteral(literal(i));
+                default -> {
+                    rule.setPattern(pattern(i));
+                    rule.setRequires(List.of(required(i)));
+                }
+            }
+            rules.add(rule);
+        }
+
+        var config = new ElkMaskingConfig();
+        config.setFields(Set.of("message", "stack_trace"));
+        config.setRules(rules);
+        return config;
+    }
+
+    private static JsonGeneratorDecorator newRegexPerRuleDecorator(int ruleCount) {
+        var decorator = new MaskingJsonGeneratorDecorator();
+        for (var i = 0; i < ruleCount; i++) {
+            var regex = switch (i % 5) {
+                case 0, 1 -> "(?<=" + Pattern.quote(prefix(i)) + ")[^\\s\"',;&)\\]}<>]+";
+                case 2, 3 -> Pattern.quote(literal(i));
+                default -> pattern(i);
+            };
+            decorator.addValue(regex);
+        }
+        decorator.start();
+        return decorator;
+    }
+
+    private static String prefix(int rule) {
+        return "key" + rule + "=";
+    }
+
+    private static String literal(int rule) {
+        return "secret-" + rule;
+    }
+
+    private static String pattern(int rule) {
+        return rule == 4 ? "[\\w.+-]+@[\\w-]+\\.[\\w.-]+" : "\\btok" + rule + "_[A-Za-z0-9]{16}";
+    }
+
+    private static String required(int rule) {
+        return rule == 4 ? "@" : "tok" + rule + "_";
+    }
+
+    private record Cost(long nanos, long bytes) {
+    }
+
+    private Cost measure(JsonGeneratorDecorator decorator) throws IOException {
+        var encoder = new LogstashEncoder();
+        encoder.setContext(loggerContext);
+        if (decorator != null) {
+            encoder.addDecorator(decorator);
+        }
+        encoder.start();
+        try {
+            encode(encoder, WARMUP_ITERATIONS);
+
+            var threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+            var threadId = Thread.currentThread().getId();
+            var bytesBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+            var start = System.nanoTime();
+
+            encode(encoder, MEASURED_ITERATIONS);
+
+            var elapsed = System.nanoTime() - start;
+            var bytes = threadMXBean.getThreadAllocatedBytes(threadId) - bytesBefore;
+            var eventCount = (long) MEASURED_ITERATIONS * events.size();
+            return new Cost(elapsed / eventCount, bytes / eventCount);
+        } finally {
+            encoder.stop();
+        }
+    }
+
+    private void encode(LogstashEncoder encoder, int iterations) throws IOException {
+        var outputStream = OutputStream.nullOutputStream();
+        for (var i = 0; i < iterations; i++) {
+            for (var event : events) {
+                encoder.encode(event, outputStream);
+            }
+        }
+    }
+}
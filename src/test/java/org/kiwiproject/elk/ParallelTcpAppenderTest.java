@@ -0,0 +1,100 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.kiwiproject.elk.TestLoggingEvents.newLoggerContext;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import net.logstash.logback.appender.LogstashTcpSocketAppender;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+@DisplayName("ParallelTcpAppender")
+class ParallelTcpAppenderTest {
+
+    private static final int CONNECTIONS = 4;
+
+    private LoggerContext loggerContext;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = newLoggerContext();
+    }
+
+    @Test
+    void shouldDistributeRoundRobin() {
+        var appender = newAppender(ElkConnectionDistribution.ROUND_ROBIN, null);
+
+        var selected = IntStream.range(0, 8)
+                .map(i -> appender.selectConnection(newEvent("thread-1", Map.of())))
+                .boxed()
+                .toList();
+
+        assertThat(selected).containsExactly(0, 1, 2, 3, 0, 1, 2, 3);
+    }
+
+    @Test
+    void shouldKeepEachThread_OnOneConnection() {
+        var appender = newAppender(ElkConnectionDistribution.THREAD, null);
+
+        var selectedByThread = new ArrayList<Integer>();
+        for (var i = 0; i < 32; i++) {
+            var threadName = "worker-" + i;
+            var first = appender.selectConnection(newEvent(threadName, Map.of()));
+            var second = appender.selectConnection(newEvent(threadName, Map.of()));
+            assertThat(second).isEqualTo(first);
+            selectedByThread.add(first);
+        }
+
+        assertThat(new HashSet<>(selectedByThread)).hasSizeGreaterThan(1).allMatch(i -> i >= 0 && i < CONNECTIONS);
+    }
+
+    @Test
+    void shouldKeepEachMdcValue_OnOneConnection_AndDistributeEventsWithoutOne() {
+        var appender = newAppender(ElkConnectionDistribution.MDC, "tenantId");
+
+        var tenant1 = appender.selectConnection(newEvent("thread-1", Map.of("tenantId", "t1")));
+        assertAll(
+                () -> assertThat(appender.selectConnection(newEvent("thread-2", Map.of("tenantId", "t1"))))
+                        .isEqualTo(tenant1),
+                () -> assertThat(appender.selectConnection(newEvent("thread-1", Map.of())))
+                        .isEqualTo(0),
+                () -> assertThat(appender.selectConnection(newEvent("thread-1", Map.of())))
+                        .isEqualTo(1)
+        );
+    }
+
+    @Test
+    void shouldRequireMoreThanOneConnection() {
+        var connections = List.of(new LogstashTcpSocketAppender());
+
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new ParallelTcpAppender(connections, ElkConnectionDistribution.ROUND_ROBIN, null))
+                .withMessage("there must be more than one connection");
+    }
+
+    private static ParallelTcpAppender newAppender(ElkConnectionDistribution distribution, String distributionKey) {
+        var connections = IntStream.range(0, CONNECTIONS)
+                .mapToObj(i -> new LogstashTcpSocketAppender())
+                .toList();
+        return new ParallelTcpAppender(connections, distribution, distributionKey);
+    }
+
+    private LoggingEvent newEvent(String threadName, Map<String, String> mdc) {
+        var event = new LoggingEvent(getClass().getName(), loggerContext.getLogger("org.acme.Orders"),
+                Level.INFO, "ok", null, null);
+        event.setThreadName(threadName);
+        event.setMDCPropertyMap(mdc);
+        return event;
+    }
+}
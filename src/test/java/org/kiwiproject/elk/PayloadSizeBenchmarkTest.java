@@ -0,0 +1,101 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.kiwiproject.elk.TestLoggingEvents.getTcpEncoder;
+import static org.kiwiproject.elk.TestLoggingEvents.newInfoEvent;
+import static org.kiwiproject.elk.TestLoggingEvents.newLoggerContext;
+
+import ch.qos.logback.classic.LoggerContext;
+import io.dropwizard.logging.common.async.AsyncLoggingEventAppenderFactory;
+import io.dropwizard.logging.common.filter.ThresholdLevelFilterFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junitpioneer.jupiter.SetSystemProperty;
+
+import java.util.Set;
+
+/**
+ * Measures the number of bytes per encoded event for different payload configurations.
+ * <p>
+ * The events are only encoded, never sent, so nothing needs to be listening on the port.
+ */
+@DisplayName("Payload size")
+@SetSystemProperty(key = "kiwi.elk.host", value = "localhost")
+@SetSystemProperty(key = "kiwi.elk.port", value = "5044")
+@Slf4j
+class PayloadSizeBenchmarkTest {
+
+    private LoggerContext loggerContext;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = newLoggerContext();
+    }
+
+    @AfterEach
+    void tearDown() {
+        loggerContext.stop();
+    }
+
+    @Test
+    void shouldReduceBytesPerEvent_WithMinimalPayloadProfile() {
+        var standardBytes = bytesPerEvent(new ElkAppenderFactory());
+
+        var minimalFactory = new ElkAppenderFactory();
+        minimalFactory.setPayloadProfile(ElkPayloadProfile.MINIMAL);
+        var minimalBytes = bytesPerEvent(minimalFactory);
+
+        LOG.info("Bytes per event: standard = {}, minimal = {}, reduction = {} bytes ({}%)",
+                standardBytes, minimalBytes, standardBytes - minimalBytes,
+                100 * (standardBytes - minimalBytes) / standardBytes);
+
+        assertThat(minimalBytes).isLessThan(standardBytes);
+    }
+
+    @Test
+    void shouldReduceBytesPerEvent_WithDisabledFields() {
+        var standardBytes = bytesPerEvent(new ElkAppenderFactory());
+
+        var factory = new ElkAppenderFactory();
+        factory.setDisabledFields(Set.of("levelValue"));
+        var bytes = bytesPerEvent(factory);
+
+        LOG.info("Bytes per event: standard = {}, without level_value = {}", standardBytes, bytes);
+
+        assertThat(bytes).isLessThan(standardBytes);
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = ElkEncoding.class, names = { "CBOR", "SMILE" })
+    void shouldReduceBytesPerEvent_WithBinaryEncodings(ElkEncoding encoding) {
+        var jsonBytes = bytesPerEvent(new ElkAppenderFactory());
+
+        var factory = new ElkAppenderFactory();
+        factory.setEncoding(encoding);
+        var binaryBytes = bytesPerEvent(factory);
+
+        LOG.info("Bytes per event: json = {}, {} = {} (including length prefix)", jsonBytes, encoding, binaryBytes);
+
+        assertThat(binaryBytes).isLessThan(jsonBytes);
+    }
+
+    private int bytesPerEvent(ElkAppenderFactory factory) {
+        var appender = factory.build(loggerContext,
+                "payload-size-test",
+                null,
+                new ThresholdLevelFilterFactory(),
+                new AsyncLoggingEventAppenderFactory());
+
+        try {
+            var encoder = getTcpEncoder(appender);
+            return encoder.encode(newInfoEvent(loggerContext)).length;
+        } finally {
+            appender.stop();
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.kiwiproject.elk.TestLoggingEvents.newInfoEvent;
+import static org.kiwiproject.elk.TestLoggingEvents.newLoggerContext;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.filter.Filter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+@DisplayName("QueuedBytesBudget")
+class QueuedBytesBudgetTest {
+
+    private LoggerContext loggerContext;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = newLoggerContext();
+    }
+
+    @Test
+    void shouldEstimateSize_FromMessageArgumentsAndMdc() {
+        var event = newInfoEvent(loggerContext);
+
+        var expected = QueuedBytesBudget.EVENT_OVERHEAD_BYTES
+                + TestLoggingEvents.LOGGER_NAME.length()
+                + "Processed order {} for customer {}".length()
+                + QueuedBytesBudget.ARGUMENT_BYTES + "customer-12345".length()
+                + "traceId".length() + "4bf92f3577b34da6a3ce929d0e0e4736".length()
+                + "userId".length() + "42".length();
+
+        assertThat(QueuedBytesBudget.estimateSize(event)).isEqualTo(expected);
+    }
+
+    @Test
+    void shouldEstimateSize_OfStackTraces() {
+        var withoutThrowable = newEvent("failed", null);
+        var cause = new IllegalStateException("cause");
+        var withThrowable = newEvent("failed", new RuntimeException("wrapper", cause));
+
+        var difference = QueuedBytesBudget.estimateSize(withThrowable) - QueuedBytesBudget.estimateSize(withoutThrowable);
+
+        assertThat(difference).isGreaterThan((long) cause.getStackTrace().length * QueuedBytesBudget.STACK_FRAME_BYTES);
+    }
+
+    @Test
+    void shouldEstimateSameSize_AfterEventIsPrepared() {
+        var event = newEvent("Sent {} to {}", new RuntimeException("oops"), new StringBuilder("mutable"), "jane");
+
+        var beforeQueueing = QueuedBytesBudget.estimateSize(event);
+        event.prepareForDeferredProcessing();
+
+        assertThat(QueuedBytesBudget.estimateSize(event)).isEqualTo(beforeQueueing);
+    }
+
+    @Test
+    void shouldReserveWithinBudget() {
+        var budget = new QueuedBytesBudget(1000);
+
+        assertAll(
+                () -> assertThat(budget.tryReserve(600)).isTrue(),
+                () -> assertThat(budget.tryReserve(600)).isFalse(),
+                () -> assertThat(budget.tryReserve(400)).isTrue(),
+                () -> assertThat(budget.getQueuedBytes()).isEqualTo(1000)
+        );
+    }
+
+    @Test
+    void shouldAlwaysAdmit_WhenNothingIsQueued() {
+        var budget = new QueuedBytesBudget(1000);
+
+        assertAll(
+                () -> assertThat(budget.tryReserve(5000)).isTrue(),
+                () -> assertThat(budget.tryReserve(1)).isFalse(),
+                () -> assertThat(budget.getQueuedBytes()).isEqualTo(5000)
+        );
+    }
+
+    @Test
+    void shouldWaitForSpace_WhenReserving() {
+        var budget = new QueuedBytesBudget(1000);
+        budget.reserve(600);
+
+        var reserved = CompletableFuture.runAsync(() -> budget.reserve(800));
+        await().during(Duration.ofMillis(200)).until(() -> !reserved.isDone());
+
+        budget.release(600);
+
+        await().until(reserved::isDone);
+        assertThat(budget.getQueuedBytes()).isEqualTo(800);
+    }
+
+    @Test
+    void shouldRequirePositiveBudget() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new QueuedBytesBudget(0))
+                .withMessage("maxQueuedBytes must be positive");
+    }
+
+    @Nested
+    class WithAsyncAppender {
+
+        private RecordingAppender recordingAppender;
+        private FlightRecordingAsyncAppender asyncAppender;
+        private QueuedBytesBudget budget;
+        private LossAccountingFilter lossAccounting;
+        private long eventSize;
+
+        @BeforeEach
+        void setUp() {
+            eventSize = QueuedBytesBudget.estimateSize(newInfoEvent(loggerContext));
+            budget = new QueuedBytesBudget(4 * eventSize);
+
+            recordingAppender = new RecordingAppender();
+            recordingAppender.setName("recording");
+            recordingAppender.setContext(loggerContext);
+            recordingAppender.start();
+
+            lossAccounting = new LossAccountingFilter(Level.INFO, Duration.ofHours(1));
+            asyncAppender = new FlightRecordingAsyncAppender();
+            asyncAppender.setContext(loggerContext);
+            asyncAppender.setQueueSize(64);
+            asyncAppender.setDiscardingThreshold(0);
+            asyncAppender.addAppender(recordingAppender);
+            asyncAppender.setLossAccounting(lossAccounting);
+        }
+
+        @Test
+        void shouldDropEvents_WhenBudgetIsExhausted_AndNeverBlockIsSet() {
+            asyncAppender.setNeverBlock(true);
+            asyncAppender.setQueuedBytesBudget(budget);
+            asyncAppender.start();
+
+            fillQueue();
+            asyncAppender.doAppend(newInfoEvent(loggerContext));
+
+            assertAll(
+                    () -> assertThat(asyncAppender.isNeverBlock()).isTrue(),
+                    () -> assertThat(asyncAppender.getNumberOfElementsInQueue()).isEqualTo(4),
+                    () -> assertThat(budget.getQueuedBytes()).isEqualTo(4 * eventSize),
+                    () -> assertThat(budget.getDroppedEventCount()).isEqualTo(1),
+                    () -> assertThat(lossAccounting.getDroppedCount()).isEqualTo(1)
+            );
+
+            recordingAppender.release();
+            await().until(() -> budget.getQueuedBytes() == 0);
+            asyncAppender.stop();
+
+            assertThat(recordingAppender.events).hasSize(5);
+        }
+
+        @Test
+        void shouldDropEvents_WithoutKeepingTheirBytes_WhenQueueIsFull_AndNeverBlockIsSet() {
+            asyncAppender.setQueueSize(2);
+            asyncAppender.setNeverBlock(true);
+            budget = new QueuedBytesBudget(64 * eventSize);
+            asyncAppender.setQueuedBytesBudget(budget);
+            asyncAppender.start();
+
+            recordingAppender.block();
+            asyncAppender.doAppend(newInfoEvent(loggerContext));
+            await().until(() -> recordingAppender.blocked.getCount() == 0);
+            for (var i = 0; i < 3; i++) {
+                asyncAppender.doAppend(newInfoEvent(loggerContext));
+            }
+
+            assertAll(
+                    () -> assertThat(asyncAppender.getNumberOfElementsInQueue()).isEqualTo(2),
+                    () -> assertThat(budget.getQueuedBytes()).isEqualTo(2 * eventSize),
+                    () -> assertThat(budget.getDroppedEventCount()).isZero(),
+                    () -> assertThat(lossAccounting.getDroppedCount()).isEqualTo(1)
+            );
+
+            recordingAppender.release();
+            await().until(() -> budget.getQueuedBytes() == 0);
+            asyncAppender.stop();
+
+            assertThat(recordingAppender.events).hasSize(3);
+        }
+
+        @Test
+        void shouldReleaseBytes_OfEventsDeniedByAttachedAppender() {
+            recordingAppender.addFilter(new Filter<>() {
+                @Override
+                public FilterReply decide(ILoggingEvent event) {
+                    return FilterReply.DENY;
+                }
+            });
+            asyncAppender.setQueuedBytesBudget(budget);
+            asyncAppender.start();
+
+            for (var i = 0; i < 10; i++) {
+                asyncAppender.doAppend(newInfoEvent(loggerContext));
+            }
+            await().until(() -> budget.getQueuedBytes() == 0 && asyncAppender.getNumberOfElementsInQueue() == 0);
+
+            assertAll(
+                    () -> assertThat(recordingAppender.events).isEmpty(),
+                    () -> assertThat(asyncAppender.getAppender("recording")).isSameAs(recordingAppender),
+                    () -> assertThat(asyncAppender.isAttached(recordingAppender)).isTrue()
+            );
+            asyncAppender.stop();
+        }
+
+        @Test
+        void shouldWaitForSpace_WhenBudgetIsExhausted_AndNeverBlockIsNotSet() {
+            asyncAppender.setNeverBlock(false);
+            asyncAppender.setQueuedBytesBudget(budget);
+            asyncAppender.start();
+
+            fillQueue();
+            var appended = CompletableFuture.runAsync(() -> asyncAppender.doAppend(newInfoEvent(loggerContext)));
+            await().during(Duration.ofMillis(200)).until(() -> !appended.isDone());
+
+            recordingAppender.release();
+
+            await().until(appended::isDone);
+            await().until(() -> budget.getQueuedBytes() == 0);
+            asyncAppender.stop();
+
+            assertAll(
+                    () -> assertThat(recordingAppender.events).hasSize(6),
+                    () -> assertThat(budget.getDroppedEventCount()).isZero()
+            );
+        }
+
+        /**
+         * Block the worker on the first event, then queue as many events as fit in the budget.
+         */
+        private void fillQueue() {
+            recordingAppender.block();
+            asyncAppender.doAppend(newInfoEvent(loggerContext));
+            await().until(() -> recordingAppender.blocked.getCount() == 0);
+            for (var i = 0; i < 4; i++) {
+                asyncAppender.doAppend(newInfoEvent(loggerContext));
+            }
+        }
+    }
+
+    private LoggingEvent newEvent(String message, Throwable throwable, Object... arguments) {
+        var event = new LoggingEvent(QueuedBytesBudgetTest.class.getName(),
+                loggerContext.getLogger("org.acme.Orders"), Level.ERROR, message, throwable, arguments);
+        event.setMDCPropertyMap(Map.of());
+        return event;
+    }
+
+    /**
+     * Records events, blocking the async appender's worker on the first event once blocked, so that
+     * its queue fills up.
+     */
+    private static class RecordingAppender extends AppenderBase<ILoggingEvent> {
+
+        private final List<ILoggingEvent> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private volatile boolean blocking;
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            events.add(event);
+            if (blocking) {
+                blocked.countDown();
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        void block() {
+            blocking = true;
+        }
+
+        void release() {
+            released.countDown();
+        }
+    }
+}
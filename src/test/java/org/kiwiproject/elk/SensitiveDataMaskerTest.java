@@ -0,0 +1,212 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@DisplayName("SensitiveDataMasker")
+class SensitiveDataMaskerTest {
+
+    @Nested
+    class Mask {
+
+        @Test
+        void shouldMaskLiterals() {
+            var masker = newMasker(literal("hunter2"));
+
+            assertThat(masker.mask("message", "login with hunter2 failed, hunter2!"))
+                    .isEqualTo("login with **** failed, ****!");
+        }
+
+        @ParameterizedTest
+        @CsvSource(delimiter = '|', textBlock = """
+                Authorization: Bearer abc.def-ghi   | Authorization: Bearer ****
+                GET /orders?password=s3cret&page=2  | GET /orders?password=****&page=2
+                {"password=":"x"} password=         | {"password=":"x"} password=
+                password=a, password=b              | password=****, password=****
+                """)
+        void shouldMaskValues_FollowingPrefixes(String value, String expected) {
+            var masker = newMasker(prefix("Bearer "), prefix("password="));
+
+            assertThat(masker.mask("message", value)).isEqualTo(expected);
+        }
+
+        @Test
+        void shouldMaskPatternMatches() {
+            var masker = newMasker(pattern("\\b(?:\\d[ -]?){12,18}\\d\\b"));
+
+            assertThat(masker.mask("message", "charged card 4111 1111 1111 1111 for order 42001"))
+                    .isEqualTo("charged card **** for order 42001");
+        }
+
+        @Test
+        void shouldOnlyRunPatterns_WhenARequiredLiteralIsPresent() {
+            var masker = newMasker(pattern("\\w+", "@"));
+
+            assertAll(
+                    () -> assertThat(masker.mask("message", "no email here")).isEqualTo("no email here"),
+                    () -> assertThat(masker.mask("message", "to: a@b")).isEqualTo("****: ****@****")
+            );
+        }
+
+        @Test
+        void shouldMaskEmailAddresses() {
+            var masker = newMasker(pattern("[\\w.+-]+@[\\w-]+\\.[\\w.-]+", "@"));
+
+            assertThat(masker.mask("message", "Sent receipt to jane.doe+orders@example.com at 10:42"))
+                    .isEqualTo("Sent receipt to **** at 10:42");
+        }
+
+        @Test
+        void shouldMergeOverlappingMatches_FromDifferentRules() {
+            var masker = newMasker(prefix("token="), literal("abc"), pattern("c\\d+"));
+
+            assertThat(masker.mask("message", "token=xxabc123 done")).isEqualTo("token=**** done");
+        }
+
+        @Test
+        void shouldReturnSameValue_WhenNothingMatches() {
+            var masker = newMasker(literal("hunter2"), prefix("Bearer "), pattern("\\d{16}", "card"));
+            var value = "Processed order 42001 for customer customer-12345";
+
+            assertThat(masker.mask("message", value)).isSameAs(value);
+        }
+
+        @Test
+        void shouldOnlyMaskTargetedFields() {
+            var inStackTrace = prefix("password=");
+            inStackTrace.setFields(Set.of("stack_trace"));
+            var masker = newMasker(literal("hunter2"), inStackTrace);
+
+            assertAll(
+                    () -> assertThat(masker.mask("message", "hunter2 password=x")).isEqualTo("**** password=x"),
+                    () -> assertThat(masker.mask("stack_trace", "hunter2 password=x")).isEqualTo("hunter2 password=****"),
+                    () -> assertThat(masker.mask("logger_name", "hunter2 password=x")).isEqualTo("hunter2 password=x"),
+                    () -> assertThat(masker.mask(null, "hunter2")).isEqualTo("hunter2")
+            );
+        }
+
+        @Test
+        void shouldMaskEntireValues_OfMaskedFields() {
+            var config = new ElkMaskingConfig();
+            config.setMask("[redacted]");
+            config.setMaskedFields(Set.of("sessionId"));
+            var masker = config.build();
+
+            assertAll(
+                    () -> assertThat(masker.mask("sessionId", "0f1e2d3c")).isEqualTo("[redacted]"),
+                    () -> assertThat(masker.mask("message", "0f1e2d3c")).isEqualTo("0f1e2d3c")
+            );
+        }
+    }
+
+    @Nested
+    class Decorate {
+
+        @Test
+        void shouldMaskStringValues_WrittenByTheGenerator() {
+            var config = newConfig(prefix("Bearer "));
+            config.setMaskedFields(Set.of("sessionId"));
+            var masker = config.build();
+
+            var json = new StringWriter();
+            var mapper = new JsonMapper();
+            try (var generator = masker.decorate(mapper.createGenerator(json))) {
+                generator.writeStartObject();
+                generator.writeStringProperty("message", "Authorization: Bearer abc");
+                generator.writeStringProperty("sessionId", "0f1e2d3c");
+                generator.writeStringProperty("logger_name", "Bearer abc");
+                generator.writeName("tags");
+                generator.writeStartArray();
+                generator.writeString("Bearer abc");
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+
+            assertThat(mapper.readValue(json.toString(), Map.class))
+                    .containsEntry("message", "Authorization: Bearer ****")
+                    .containsEntry("sessionId", "****")
+                    .containsEntry("logger_name", "Bearer abc")
+                    .containsEntry("tags", List.of("Bearer abc"));
+        }
+    }
+
+    @Nested
+    class Build {
+
+        @Test
+        void shouldRequireExactlyOneDefinition() {
+            var rule = literal("a");
+            rule.setPrefix("b");
+
+            assertThatIllegalStateException()
+                    .isThrownBy(() -> newConfig(prefix("ok"), rule).build())
+                    .withMessage("masking rule 1 must have exactly one of literal, prefix, or pattern");
+        }
+
+        @Test
+        void shouldNotAllowEmptyDefinitions() {
+            assertThatIllegalStateException()
+                    .isThrownBy(() -> newConfig(prefix("")).build())
+                    .withMessage("masking rule 0 must not be empty");
+        }
+
+        @Test
+        void shouldOnlyAllowRequires_WithPatterns() {
+            var rule = literal("a");
+            rule.setRequires(List.of("a"));
+
+            assertThatIllegalStateException()
+                    .isThrownBy(() -> newConfig(rule).build())
+                    .withMessage("masking rule 0 can only have requires with a pattern");
+        }
+
+        @Test
+        void shouldNotAllowInvalidPatterns() {
+            assertThatIllegalStateException()
+                    .isThrownBy(() -> newConfig(pattern("[unclosed")).build())
+                    .withMessage("masking rule 0 has an invalid pattern");
+        }
+    }
+
+    static SensitiveDataMasker newMasker(ElkMaskingRule... rules) {
+        return newConfig(rules).build();
+    }
+
+    static ElkMaskingConfig newConfig(ElkMaskingRule... rules) {
+        var config = new ElkMaskingConfig();
+        config.setRules(List.of(rules));
+        return config;
+    }
+
+    static ElkMaskingRule literal(String literal) {
+        var rule = new ElkMaskingRule();
+        rule.setLiteral(literal);
+        return rule;
+    }
+
+    static ElkMaskingRule prefix(String prefix) {
+        var rule = new ElkMaskingRule();
+        rule.setPrefix(prefix);
+        return rule;
+    }
+
+    static ElkMaskingRule pattern(String pattern, String... requires) {
+        var rule = new ElkMaskingRule();
+        rule.setPattern(pattern);
+        rule.setRequires(List.of(requires));
+        return rule;
+    }
+}
@@ -0,0 +1,269 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@DisplayName("SharedMemoryRing")
+class SharedMemoryRingTest {
+
+    private static final long CAPACITY = 1024;
+
+    @TempDir
+    Path tempDir;
+
+    private Path ringFile;
+    private SharedMemoryRing ring;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ringFile = tempDir.resolve("test.ring");
+        ring = SharedMemoryRing.open(ringFile, CAPACITY);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        ring.close();
+    }
+
+    @Test
+    void shouldReturnEvents_InOrder_UntilReleased() {
+        offer("first", "second");
+
+        var events = new ArrayList<String>();
+        var next = ring.peek(Long.MAX_VALUE, payload -> events.add(string(payload)));
+        assertThat(events).containsExactly("first", "second");
+        assertThat(peekAll()).containsExactly("first", "second");
+
+        ring.release(next);
+
+        assertAll(
+                () -> assertThat(peekAll()).isEmpty(),
+                () -> assertThat(ring.getReadPosition()).isEqualTo(ring.getWritePosition())
+        );
+    }
+
+    @Test
+    void shouldOfferFromBuffer_AndPeekViews_WithoutCopying() {
+        var buffer = ByteBuffer.allocateDirect(64).put(bytes("skipped|direct")).flip().position(8);
+
+        assertThat(ring.offer(buffer)).isTrue();
+        assertThat(buffer.position()).isEqualTo(8);
+
+        var views = new ArrayList<ByteBuffer>();
+        ring.peekBuffers(Long.MAX_VALUE, views::add);
+
+        assertThat(views).hasSize(1);
+        var view = views.get(0);
+        assertAll(
+                () -> assertThat(view.isDirect()).isTrue(),
+                () -> assertThat(view.isReadOnly()).isTrue(),
+                () -> assertThat(StandardCharsets.UTF_8.decode(view).toString()).isEqualTo("direct")
+        );
+    }
+
+    @Test
+    void shouldLimitBatch_ByBytes() {
+        offer("aaaa", "bbbb", "cccc");
+
+        var events = new ArrayList<String>();
+        ring.peek(8, payload -> events.add(string(payload)));
+
+        assertThat(events).containsExactly("aaaa", "bbbb");
+    }
+
+    @Test
+    void shouldRejectEvents_WhenFull() {
+        var payload = "x".repeat(232);  // 256 bytes per record, including the header and claimant
+
+        offer(payload, payload, payload, payload);
+
+        assertAll(
+                () -> assertThat(ring.offer(bytes("more"))).isFalse(),
+                () -> assertThat(ring.offer(new byte[(int) CAPACITY])).isFalse()
+        );
+    }
+
+    @Test
+    void shouldWrapAround_UsingPadding() {
+        var payload = "x".repeat(280);  // 304 bytes per record, so the fourth record does not fit before the end
+
+        for (var round = 0; round < 10; round++) {
+            offer(payload + round, payload + round);
+            assertThat(peekAll()).containsExactly(payload + round, payload + round);
+            ring.release(ring.peek(Long.MAX_VALUE, ignored -> { }));
+        }
+
+        assertThat(ring.getWritePosition()).isGreaterThan(CAPACITY * 5);
+    }
+
+    @Test
+    void shouldKeepEvents_WhenReopened() throws IOException {
+        offer("survivor");
+        ring.close();
+
+        ring = SharedMemoryRing.open(ringFile, CAPACITY * 4);
+
+        assertAll(
+                () -> assertThat(ring.getCapacity()).isEqualTo(CAPACITY),
+                () -> assertThat(peekAll()).containsExactly("survivor")
+        );
+    }
+
+    @Test
+    void shouldShareEvents_BetweenMappings() throws IOException {
+        try (var other = SharedMemoryRing.open(ringFile, CAPACITY)) {
+            assertThat(other.offer(bytes("from another mapping"))).isTrue();
+        }
+
+        assertThat(peekAll()).containsExactly("from another mapping");
+    }
+
+    @Test
+    void shouldKeepEveryEvent_FromConcurrentProducers() throws Exception {
+        ring.close();
+        ring = SharedMemoryRing.open(tempDir.resolve("concurrent.ring"), 64 * 1024);
+
+        var producers = 4;
+        var eventsPerProducer = 5_000;
+        var received = new HashSet<String>();
+        var executor = Executors.newFixedThreadPool(producers);
+        for (var producer = 0; producer < producers; producer++) {
+            var id = producer;
+            executor.execute(() -> {
+                for (var i = 0; i < eventsPerProducer; i++) {
+                    while (!ring.offer(bytes(id + "-" + i))) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+
+        while (!executor.isTerminated() || ring.getReadPosition() < ring.getWritePosition()) {
+            ring.release(ring.peek(Long.MAX_VALUE, payload -> received.add(string(payload))));
+        }
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(received).hasSize(producers * eventsPerProducer);
+    }
+
+    @Test
+    void shouldReportClaimedRecord_WithItsClaimant() {
+        offer("committed");
+        var claimant = new SharedMemoryRing.Claimant(42, 1_000);
+        var position = ring.claim(10, claimant);
+        ring.release(ring.peek(Long.MAX_VALUE, ignored -> { }));
+
+        var claimed = ring.getClaimedRecord();
+
+        assertAll(
+                () -> assertThat(ring.getReadPosition()).isEqualTo(position),
+                () -> assertThat(claimed).isEqualTo(new SharedMemoryRing.ClaimedRecord(SharedMemoryRing.recordSize(10), claimant)),
+                () -> assertThat(peekAll()).isEmpty()
+        );
+    }
+
+    @Test
+    void shouldReportUnknownClaimant_WhenRecordIsReservedButNotClaimed() {
+        var position = ring.reserve(10);
+
+        var claimed = ring.getClaimedRecord();
+
+        assertAll(
+                () -> assertThat(ring.getWritePosition()).isEqualTo(position + SharedMemoryRing.recordSize(10)),
+                () -> assertThat(claimed).isEqualTo(new SharedMemoryRing.ClaimedRecord(
+                        SharedMemoryRing.recordSize(10), SharedMemoryRing.Claimant.UNKNOWN)),
+                () -> assertThat(claimed.claimant().isRunning()).isFalse()
+        );
+    }
+
+    @Test
+    void shouldReuseReleasedSpace_OnEachLap() {
+        var payload = "x".repeat(232);  // 256 bytes per record, including the header and claimant
+        for (var lap = 0; lap < 3; lap++) {
+            for (var i = 0; i < CAPACITY / 256; i++) {
+                assertThat(ring.offer(bytes(payload))).isTrue();
+            }
+            assertThat(ring.offer(bytes(payload))).isFalse();
+
+            ring.release(ring.peek(Long.MAX_VALUE, ignored -> { }));
+        }
+
+        assertThat(ring.getWritePosition()).isEqualTo(3 * CAPACITY);
+    }
+
+    @Test
+    void shouldNotReportClaimedRecord_WhenCommitted() {
+        offer("committed");
+
+        assertThat(ring.getClaimedRecord()).isNull();
+    }
+
+    @Test
+    void shouldIdentifyRunningClaimant_ByProcessIdAndStartTime() {
+        var current = SharedMemoryRing.Claimant.CURRENT;
+
+        assertAll(
+                () -> assertThat(current.pid()).isEqualTo(ProcessHandle.current().pid()),
+                () -> assertThat(current.isRunning()).isTrue(),
+                () -> assertThat(new SharedMemoryRing.Claimant(current.pid(), current.startTime() - 1).isRunning())
+                        .describedAs("a process ID reused by another process")
+                        .isFalse()
+        );
+    }
+
+    @Test
+    @EnabledOnOs({ OS.LINUX, OS.MAC })
+    void shouldCreateDirectoryAndFile_ReadableOnlyByOwner() throws IOException {
+        var file = tempDir.resolve("private").resolve("owner-only.ring");
+
+        try (var ignored = SharedMemoryRing.open(file, CAPACITY)) {
+            assertAll(
+                    () -> assertThat(Files.getPosixFilePermissions(file.getParent()))
+                            .isEqualTo(PosixFilePermissions.fromString("rwx------")),
+                    () -> assertThat(Files.getPosixFilePermissions(file))
+                            .isEqualTo(PosixFilePermissions.fromString("rw-------"))
+            );
+        }
+    }
+
+    private void offer(String... events) {
+        for (var event : events) {
+            assertThat(ring.offer(bytes(event))).describedAs("offer %s", event).isTrue();
+        }
+    }
+
+    private List<String> peekAll() {
+        var events = new ArrayList<String>();
+        ring.peek(Long.MAX_VALUE, payload -> events.add(string(payload)));
+        return events;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] payload) {
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+}
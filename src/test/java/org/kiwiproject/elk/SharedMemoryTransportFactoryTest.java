@@ -0,0 +1,76 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.kiwiproject.elk.TestLoggingEvents.newInfoEvent;
+import static org.kiwiproject.elk.TestLoggingEvents.newLoggerContext;
+import static org.kiwiproject.test.constants.KiwiTestConstants.JSON_HELPER;
+
+import ch.qos.logback.classic.LoggerContext;
+import io.dropwizard.util.DataSize;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+@DisplayName("SharedMemoryTransportFactory")
+class SharedMemoryTransportFactoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private LoggerContext loggerContext;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = newLoggerContext();
+    }
+
+    @Test
+    void shouldWriteEventsToRing_WithoutForwarding() throws IOException {
+        var factory = new SharedMemoryTransportFactory();
+        factory.setDirectory(tempDir.toString());
+        factory.setSize(DataSize.kibibytes(64));
+        factory.setForward(false);
+
+        var appender = factory.build(new TestTransportContext(loggerContext));
+        appender.setContext(loggerContext);
+        appender.start();
+        appender.doAppend(newInfoEvent(loggerContext));
+        appender.doAppend(newInfoEvent(loggerContext));
+        appender.stop();
+
+        try (var ring = SharedMemoryRing.open(factory.getRingFile(), 1024)) {
+            var events = new ArrayList<String>();
+            ring.peek(Long.MAX_VALUE, payload -> events.add(new String(payload, StandardCharsets.UTF_8)));
+
+            assertAll(
+                    () -> assertThat(ring.getCapacity()).isEqualTo(DataSize.kibibytes(64).toBytes()),
+                    () -> assertThat(events)
+                            .hasSize(2)
+                            .allSatisfy(event -> assertThat(JSON_HELPER.toMap(event)).containsKey("message"))
+            );
+        }
+    }
+
+    @Test
+    void shouldNameRingFile() {
+        var factory = new SharedMemoryTransportFactory();
+        factory.setDirectory("/dev/shm/acme");
+        factory.setName("acme-events");
+
+        assertThat(factory.getRingFile()).isEqualTo(Path.of("/dev/shm/acme/acme-events.ring"));
+    }
+
+    @Test
+    void shouldDefaultDirectory() {
+        var factory = new SharedMemoryTransportFactory();
+
+        assertThat(factory.getRingFile().getParent().getFileName()).hasToString("elk-appender");
+    }
+}
@@ -0,0 +1,223 @@
+package org.kiwiproject.elk;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.kiwiproject.elk.TestLoggingEvents.newInfoEvent;
+import static org.kiwiproject.elk.TestLoggingEvents.newLoggerContext;
+import static org.kiwiproject.test.assertj.KiwiAssertJ.assertIsExactType;
+
+import ch.qos.logback.classic.LoggerContext;
+import io.dropwizard.util.Duration;
+import net.logstash.logback.appender.LogstashTcpSocketAppender;
+import net.logstash.logback.appender.destination.PreferPrimaryDestinationConnectionStrategy;
+import net.logstash.logback.appender.destination.RoundRobinDestinationConnectionStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+
+@DisplayName("TcpTransportFactory")
+class TcpTransportFactoryTest {
+
+    private LoggerContext loggerContext;
+    private ServerSocket serverSocket;
+    private ElkEncoding encoding;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        loggerContext = newLoggerContext();
+        serverSocket = new ServerSocket(0, 10, InetAddress.getLoopbackAddress());
+        serverSocket.setSoTimeout(5_000);
+        encoding = ElkEncoding.JSON;
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        loggerContext.stop();
+        serverSocket.close();
+    }
+
+    @Test
+    void shouldNotKeepAliveOrExpireConnections_ByDefault() {
+        var appender = build(new TcpTransportFactory());
+
+        assertAll(
+                () -> assertThat(appender.isKeepAliveEnabled()).isFalse(),
+                () -> assertThat(appender.getConnectionStrategy())
+                        .isExactlyInstanceOf(PreferPrimaryDestinationConnectionStrategy.class)
+        );
+    }
+
+    @Test
+    void shouldWriteEmptyLines_WhenIdle_ForJson() throws IOException {
+        var factory = new TcpTransportFactory();
+        factory.setKeepAliveInterval(Duration.milliseconds(100));
+        var appender = build(factory);
+
+        appender.start();
+        try (var socket = serverSocket.accept()) {
+            socket.setSoTimeout(5_000);
+            var reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+
+            assertAll(
+                    () -> assertThat(reader.readLine()).isEmpty(),
+                    () -> assertThat(reader.readLine()).isEmpty()
+            );
+        } finally {
+            appender.stop();
+        }
+    }
+
+    @Test
+    void shouldEnableTcpKeepAlive_ForBinaryEncodings() throws IOException {
+        encoding = ElkEncoding.CBOR;
+        var factory = new TcpTransportFactory();
+        factory.setKeepAliveInterval(Duration.seconds(30));
+        var appender = build(factory);
+
+        try (var socket = appender.getSocketFactory().createSocket()) {
+            assertAll(
+                    () -> assertThat(appender.isKeepAliveEnabled()).isFalse(),
+                    () -> assertThat(socket).isExactlyInstanceOf(FlightRecordingSocket.class),
+                    () -> assertThat(socket.getKeepAlive()).isTrue()
+            );
+        }
+    }
+
+    @Test
+    void shouldReconnect_WhenConnectionReachesMaxAge() throws IOException {
+        var factory = new TcpTransportFactory();
+        factory.setMaxConnectionAge(Duration.milliseconds(200));
+        var appender = build(factory);
+
+        assertThat(appender.getConnectionStrategy()).isExactlyInstanceOf(RoundRobinDestinationConnectionStrategy.class);
+
+        // connection attempts to a destination are at least this far apart, so it must be less than the age
+        appender.setReconnectionDelay(ch.qos.logback.core.util.Duration.buildByMilliseconds(50));
+        appender.start();
+        try (var first = serverSocket.accept()) {
+            sleep(300);
+
+            // the age is checked after each write, so this is the last event on the first connection
+            appender.doAppend(newInfoEvent(loggerContext, "on the first connection"));
+            assertThat(readLine(first)).contains("on the first connection");
+
+            try (var second = serverSocket.accept()) {
+                appender.doAppend(newInfoEvent(loggerContext, "on the second connection"));
+                assertThat(readLine(second)).contains("on the second connection");
+            }
+        } finally {
+            appender.stop();
+        }
+    }
+
+    @Test
+    void shouldRequirePositiveDurations() {
+        var keepAlive = new TcpTransportFactory();
+        keepAlive.setKeepAliveInterval(Duration.seconds(0));
+        var maxAge = new TcpTransportFactory();
+        maxAge.setMaxConnectionAge(Duration.seconds(0));
+
+        assertAll(
+                () -> assertThatIllegalStateException()
+                        .isThrownBy(() -> build(keepAlive))
+                        .withMessage("keepAliveInterval must be positive"),
+                () -> assertThatIllegalStateException()
+                        .isThrownBy(() -> build(maxAge))
+                        .withMessage("maxConnectionAge must be positive")
+        );
+    }
+
+    @Test
+    void shouldSendOverSeveralConnections_WhenConfigured() throws IOException {
+        var factory = new TcpTransportFactory();
+        factory.setConnections(3);
+        var appender = assertIsExactType(factory.build(newContext()), ParallelTcpAppender.class);
+        appender.setContext(loggerContext);
+        appender.setName("elk");
+
+        assertThat(appender.getConnections())
+                .hasSize(3)
+                .extracting(LogstashTcpSocketAppender::getEncoder)
+                .doesNotHaveDuplicates();
+
+        appender.start();
+        var sockets = new ArrayList<Socket>();
+        try {
+            for (var i = 0; i < 3; i++) {
+                sockets.add(serverSocket.accept());
+            }
+            for (var i = 0; i < 6; i++) {
+                appender.doAppend(newInfoEvent(loggerContext, "event " + i));
+            }
+
+            var received = new ArrayList<String>();
+            for (var socket : sockets) {
+                socket.setSoTimeout(5_000);
+                var reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+                received.add(reader.readLine());
+                received.add(reader.readLine());
+            }
+            assertThat(received)
+                    .extracting(line -> line.replaceAll(".*\"message\":\"(event \\d)\".*", "$1"))
+                    .containsExactlyInAnyOrder("event 0", "event 1", "event 2", "event 3", "event 4", "event 5");
+        } finally {
+            appender.stop();
+            for (var socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    void shouldValidateConnections() {
+        var noConnections = new TcpTransportFactory();
+        noConnections.setConnections(0);
+        var noKey = new TcpTransportFactory();
+        noKey.setConnections(2);
+        noKey.setDistribution(ElkConnectionDistribution.MDC);
+
+        assertAll(
+                () -> assertThatIllegalStateException()
+                        .isThrownBy(() -> noConnections.build(newContext()))
+                        .withMessage("connections must be positive"),
+                () -> assertThatIllegalStateException()
+                        .isThrownBy(() -> noKey.build(newContext()))
+                        .withMessage("distributionKey is required for mdc distribution")
+        );
+    }
+
+    private LogstashTcpSocketAppender build(TcpTransportFactory factory) {
+        var appender = assertIsExactType(factory.build(newContext()), LogstashTcpSocketAppender.class);
+        appender.setContext(loggerContext);
+        return appender;
+    }
+
+    private static String readLine(Socket socket) throws IOException {
+        socket.setSoTimeout(5_000);
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8)).readLine();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private TestTransportContext newContext() {
+        return new TestTransportContext(loggerContext, encoding,
+                InetAddress.getLoopbackAddress().getHostAddress(), serverSocket.getLocalPort());
+    }
+}
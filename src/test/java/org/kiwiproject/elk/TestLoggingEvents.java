@@ -0,0 +1,78 @@
+package org.kiwiproject.elk;
+
+import static com.google.common.base.Preconditions.checkState;
+import static org.kiwiproject.test.assertj.KiwiAssertJ.assertIsExactType;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.encoder.Encoder;
+import lombok.experimental.UtilityClass;
+import net.logstash.logback.appender.LogstashTcpSocketAppender;
+
+import java.util.Map;
+
+/**
+ * Test helpers for creating representative logging events, and for getting at
+ * the encoder of an appender built by {@link ElkAppenderFactory}. Transport factories
+ * are tested with a {@link TestTransportContext}.
+ */
+@UtilityClass
+class TestLoggingEvents {
+
+    static final String LOGGER_NAME = "org.acme.service.resource.OrderResource";
+
+    /**
+     * Create a logger context with a couple of context properties, like a typical application has.
+     */
+    static LoggerContext newLoggerContext() {
+        var loggerContext = new LoggerContext();
+        loggerContext.putProperty("organization", "kiwiproject");
+        loggerContext.putProperty("project", "dropwizard-elk-appender");
+        return loggerContext;
+    }
+
+    /**
+     * Create a typical INFO event with a formatted message, two arguments, and MDC values.
+     */
+    static LoggingEvent newInfoEvent(LoggerContext loggerContext) {
+        var logger = loggerContext.getLogger(LOGGER_NAME);
+        var event = new LoggingEvent(TestLoggingEvents.class.getName(),
+                logger,
+                Level.INFO,
+                "Processed order {} for customer {}",
+                null,
+                new Object[] { 42_001, "customer-12345" });
+        event.setMDCPropertyMap(Map.of("traceId", "4bf92f3577b34da6a3ce929d0e0e4736", "userId", "42"));
+        event.prepareForDeferredProcessing();
+        return event;
+    }
+
+    /**
+     * Create an INFO event with the given message, and no arguments or MDC values.
+     */
+    static LoggingEvent newInfoEvent(LoggerContext loggerContext, String message) {
+        var event = new LoggingEvent(TestLoggingEvents.class.getName(),
+                loggerContext.getLogger(LOGGER_NAME),
+                Level.INFO,
+                message,
+                null,
+                null);
+        event.setMDCPropertyMap(Map.of());
+        return event;
+    }
+
+    /**
+     * Get the encoder from the TCP appender wrapped by the async appender that
+     * {@link ElkAppenderFactory#build} returns. The encoder has been started.
+     */
+    static Encoder<ILoggingEvent> getTcpEncoder(Appender<ILoggingEvent> appender) {
+        var asyncAppender = assertIsExactType(appender, FlightRecordingAsyncAppender.class);
+        var tcpAppender = assertIsExactType(asyncAppender.getAppender("elk"), LogstashTcpSocketAppender.class);
+        var encoder = tcpAppender.getEncoder();
+        checkState(encoder.isStarted(), "encoder should have been started");
+        return encoder;
+    }
+}
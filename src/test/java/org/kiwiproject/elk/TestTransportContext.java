@@ -0,0 +1,70 @@
+package org.kiwiproject.elk;
+
+import static java.util.Objects.isNull;
+
+import ch.qos.logback.classic.LoggerContext;
+import net.logstash.logback.encoder.LogstashEncoder;
+import net.logstash.logback.layout.LogstashLayout;
+
+/**
+ * An {@link ElkTransportContext} for testing transport factories, which creates plain
+ * (untapped) encoders and layouts. The host and port are only available when given.
+ */
+class TestTransportContext implements ElkTransportContext {
+
+    private final LoggerContext loggerContext;
+    private final ElkEncoding encoding;
+    private final String host;
+    private final int port;
+
+    TestTransportContext(LoggerContext loggerContext) {
+        this(loggerContext, ElkEncoding.JSON);
+    }
+
+    TestTransportContext(LoggerContext loggerContext, ElkEncoding encoding) {
+        this(loggerContext, encoding, null, 0);
+    }
+
+    TestTransportContext(LoggerContext loggerContext, ElkEncoding encoding, String host, int port) {
+        this.loggerContext = loggerContext;
+        this.encoding = encoding;
+        this.host = host;
+        this.port = port;
+    }
+
+    @Override
+    public LoggerContext getLoggerContext() {
+        return loggerContext;
+    }
+
+    @Override
+    public String getHost() {
+        if (isNull(host)) {
+            throw new UnsupportedOperationException();
+        }
+        return host;
+    }
+
+    @Override
+    public int getPort() {
+        if (isNull(host)) {
+            throw new UnsupportedOperationException();
+        }
+        return port;
+    }
+
+    @Override
+    public ElkEncoding getEncoding() {
+        return encoding;
+    }
+
+    @Override
+    public LogstashEncoder newEncoder() {
+        return new LogstashEncoder();
+    }
+
+    @Override
+    public LogstashLayout newLayout() {
+        return new LogstashLayout();
+    }
+}
@@ -0,0 +1,182 @@
+package org.kiwiproject.elk;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.kiwiproject.elk.TestLoggingEvents.newInfoEvent;
+import static org.kiwiproject.elk.TestLoggingEvents.newLoggerContext;
+import static org.kiwiproject.test.assertj.KiwiAssertJ.assertIsExactType;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.util.Duration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@DisplayName("UnixSocketTransportFactory")
+class UnixSocketTransportFactoryTest {
+
+    private static final Path SOCKET_PATH = Path.of(System.getProperty("java.io.tmpdir"),
+            "elk-unix-socket-test-" + ProcessHandle.current().pid(), "logstash.sock");
+
+    @RegisterExtension
+    static final FakeLogstashExtension LOGSTASH = new FakeLogstashExtension(SOCKET_PATH);
+
+    @TempDir
+    Path tempDir;
+
+    private LoggerContext loggerContext;
+
+    @BeforeEach
+    void setUp() {
+        LOGSTASH.reset();
+        loggerContext = newLoggerContext();
+    }
+
+    @AfterEach
+    void tearDown() {
+        loggerContext.stop();
+    }
+
+    @Test
+    void shouldSendNewlineDelimitedJson() {
+        var factory = new UnixSocketTransportFactory();
+        factory.setPath(SOCKET_PATH.toString());
+
+        var appender = assertIsExactType(factory.build(new TestTransportContext(loggerContext)), UnixDomainSocketAppender.class);
+        appender.setContext(loggerContext);
+        appender.start();
+        try {
+            appender.doAppend(newInfoEvent(loggerContext, "over a unix socket 1"));
+            appender.doAppend(newInfoEvent(loggerContext, "over a unix socket 2"));
+
+            LOGSTASH.awaitEventsContain("over a unix socket 1", "over a unix socket 2");
+        } finally {
+            appender.stop();
+        }
+    }
+
+    @Test
+    void shouldReconnect_WhenSocketIsCreatedAfterStarting() throws Exception {
+        var socketPath = tempDir.resolve("late.sock");
+        var factory = new UnixSocketTransportFactory();
+        factory.setPath(socketPath.toString());
+
+        var appender = (UnixDomainSocketAppender) factory.build(new TestTransportContext(loggerContext));
+        appender.setReconnectionDelay(Duration.buildByMilliseconds(50));
+        appender.setContext(loggerContext);
+        appender.start();
+
+        var executor = Executors.newSingleThreadExecutor();
+        try (var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            try {
+                appender.doAppend(newInfoEvent(loggerContext, "sent before the socket existed"));
+                Thread.sleep(200);
+
+                server.bind(UnixDomainSocketAddress.of(socketPath));
+                var line = executor.submit(() -> {
+                    try (var channel = server.accept();
+                         var reader = new BufferedReader(
+                                 new InputStreamReader(Channels.newInputStream(channel), UTF_8))) {
+                        return reader.readLine();
+                    }
+                });
+
+                assertThat(line.get(10, TimeUnit.SECONDS)).contains("sent before the socket existed");
+            } finally {
+                // Stop while the server is still open; otherwise stopping waits for the reconnecting sender
+                appender.stop();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldRequirePath() {
+        var factory = new UnixSocketTransportFactory();
+        var context = new TestTransportContext(loggerContext);
+
+        assertThatIllegalStateException()
+                .isThrownBy(() -> factory.build(context))
+                .withMessage("path is required for the unix-socket transport");
+    }
+
+    @Test
+    void shouldConnectToSocketFile_IgnoringHostAndPort() throws IOException {
+        var socketFactory = new UnixDomainSocketAppender.UnixDomainSocketFactory(UnixDomainSocketAddress.of(SOCKET_PATH));
+
+        assertThat(socketFactory.createSocket()).hasToString("UnixDomainSocket[" + SOCKET_PATH + "]");
+        try (var socket = socketFactory.createSocket("localhost", 5044);
+             var other = socketFactory.createSocket(InetAddress.getLoopbackAddress(), 5044)) {
+            socket.getOutputStream().write("{\"message\":\"host and port ignored\"}\n".getBytes(UTF_8));
+
+            assertThat(other.isConnected()).isTrue();
+            LOGSTASH.awaitEventsContain("host and port ignored");
+        }
+    }
+
+    @Test
+    void shouldTimeOutReads_AfterSoTimeout() throws Exception {
+        var socketPath = tempDir.resolve("quiet.sock");
+        try (var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            var socketFactory = new UnixDomainSocketAppender.UnixDomainSocketFactory(UnixDomainSocketAddress.of(socketPath));
+
+            try (var socket = socketFactory.createSocket("ignored", 0);
+                 var accepted = server.accept()) {
+                socket.setSoTimeout(100);
+                var input = socket.getInputStream();
+
+                assertThatThrownBy(input::read).isExactlyInstanceOf(SocketTimeoutException.class);
+
+                accepted.write(ByteBuffer.wrap(new byte[] { 42 }));
+                assertThat(input.read()).isEqualTo(42);
+            }
+        }
+    }
+
+    @Test
+    void shouldStopWaitingToRead_WhenClosed() throws Exception {
+        var socketPath = tempDir.resolve("closing.sock");
+        var executor = Executors.newSingleThreadExecutor();
+        try (var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            var socketFactory = new UnixDomainSocketAppender.UnixDomainSocketFactory(UnixDomainSocketAddress.of(socketPath));
+
+            try (var socket = socketFactory.createSocket("ignored", 0);
+                 var ignored = server.accept()) {
+                var input = socket.getInputStream();
+                var read = executor.submit(() -> input.read());
+                Thread.sleep(100);
+
+                socket.close();
+
+                assertThatThrownBy(() -> read.get(5, TimeUnit.SECONDS))
+                        .hasCauseExactlyInstanceOf(SocketException.class);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
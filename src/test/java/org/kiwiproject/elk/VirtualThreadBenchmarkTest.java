@@ -0,0 +1,154 @@
+package org.kiwiproject.elk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.kiwiproject.elk.TestLoggingEvents.newInfoEvent;
+import static org.kiwiproject.elk.TestLoggingEvents.newLoggerContext;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import io.dropwizard.logging.common.async.AsyncLoggingEventAppenderFactory;
+import io.dropwizard.logging.common.filter.ThresholdLevelFilterFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares running the appenders' I/O work on platform threads with running it on virtual threads, for an
+ * application that sends to many destinations: {@value #DESTINATIONS} appenders with {@value #CONNECTIONS}
+ * TCP connections each, sending to a fake Logstash. It reports the platform threads started by the
+ * appenders, the heap they use once connected, and the throughput of sending {@value #EVENTS_PER_DESTINATION}
+ * events to each from {@value #LOGGING_THREADS} logging threads.
+ * <p>
+ * Note that the stacks of platform threads are outside the heap, while those of parked virtual threads are
+ * on it. Virtual threads require Java 21 or later; on earlier versions, only platform threads are measured
+ * and the comparison is skipped. You can run it like:
+ * {@code mvn test -Dbenchmarks -Dtest=VirtualThreadBenchmarkTest}
+ */
+@DisplayName("Virtual threads")
+@EnabledForBenchmarks
+@Slf4j
+class VirtualThreadBenchmarkTest {
+
+    private static final int DESTINATIONS = 25;
+    private static final int CONNECTIONS = 2;
+    private static final int LOGGING_THREADS = 4;
+    private static final int EVENTS_PER_DESTINATION = 20_000;
+
+    @RegisterExtension
+    static final FakeLogstashExtension LOGSTASH = new FakeLogstashExtension();
+
+    @Test
+    void shouldUseFewerPlatformThreads_WithVirtualThreads() throws InterruptedException {
+        var platform = measure(false);
+        LOG.info("With platform threads: {}", platform.format());
+
+        assumeTrue(ElkThreads.isVirtualThreadSupported(), "virtual threads require Java 21 or later");
+
+        var virtual = measure(true);
+        LOG.info("With virtual threads: {}", virtual.format());
+
+        assertAll(
+                () -> assertThat(virtual.platformThreads()).isLessThan(platform.platformThreads()),
+                () -> assertThat(virtual.eventsPerSecond()).isPositive()
+        );
+    }
+
+    private record Result(int platformThreads, long heapBytes, long eventsPerSecond) {
+
+        String format() {
+            return String.format("%d platform threads, %d KiB of heap, %d events/second",
+                    platformThreads, heapBytes / 1024, eventsPerSecond);
+        }
+    }
+
+    private Result measure(boolean virtualThreads) throws InterruptedException {
+        LOGSTASH.reset();
+        var loggerContext = newLoggerContext();
+        var threadMXBean = ManagementFactory.getThreadMXBean();
+        var threadsBefore = threadMXBean.getThreadCount();
+        var heapBefore = usedHeapAfterGc();
+
+        var appenders = new ArrayList<Appender<ILoggingEvent>>();
+        try {
+            for (var i = 0; i < DESTINATIONS; i++) {
+                appenders.add(newAppender(loggerContext, virtualThreads));
+            }
+
+            // connect every appender, and start their reconnect and reader tasks, before measuring
+            appenders.forEach(appender -> appender.doAppend(newInfoEvent(loggerContext)));
+            awaitEvents(DESTINATIONS);
+            var platformThreads = threadMXBean.getThreadCount() - threadsBefore;
+            var heapBytes = usedHeapAfterGc() - heapBefore;
+
+            LOGSTASH.reset();
+            var start = System.nanoTime();
+            send(loggerContext, appenders);
+            awaitEvents((long) DESTINATIONS * EVENTS_PER_DESTINATION);
+            var elapsedNanos = LOGSTASH.getLastReceivedNanos() - start;
+
+            var eventsPerSecond = (long) DESTINATIONS * EVENTS_PER_DESTINATION * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+            return new Result(platformThreads, heapBytes, eventsPerSecond);
+        } finally {
+            appenders.forEach(Appender::stop);
+            loggerContext.stop();
+        }
+    }
+
+    private static Appender<ILoggingEvent> newAppender(LoggerContext loggerContext, boolean virtualThreads) {
+        var transport = new TcpTransportFactory();
+        transport.setConnections(CONNECTIONS);
+
+        var factory = new ElkAppenderFactory();
+        factory.setHost("localhost");
+        factory.setPort(LOGSTASH.getPort());
+        factory.setTransport(transport);
+        factory.setTuningProfile(ElkTuningProfile.LOSSLESS);
+        factory.setVirtualThreads(virtualThreads);
+
+        return factory.build(loggerContext, "virtual-thread-benchmark", null,
+                new ThresholdLevelFilterFactory(), new AsyncLoggingEventAppenderFactory());
+    }
+
+    /**
+     * Each logging thread sends all the events of its share of the appenders, one event to each in turn.
+     */
+    private static void send(LoggerContext loggerContext, List<Appender<ILoggingEvent>> appenders)
+            throws InterruptedException {
+
+        var executor = Executors.newFixedThreadPool(LOGGING_THREADS);
+        for (var thread = 0; thread < LOGGING_THREADS; thread++) {
+            var share = new ArrayList<Appender<ILoggingEvent>>();
+            for (var i = thread; i < appenders.size(); i += LOGGING_THREADS) {
+                share.add(appenders.get(i));
+            }
+            executor.execute(() -> {
+                for (var i = 0; i < EVENTS_PER_DESTINATION; i++) {
+                    share.forEach(appender -> appender.doAppend(newInfoEvent(loggerContext)));
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(2, TimeUnit.MINUTES)).isTrue();
+    }
+
+    private static void awaitEvents(long count) {
+        await().atMost(Duration.ofMinutes(2)).until(() -> LOGSTASH.getEventCount() >= count);
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}